@@ -0,0 +1,93 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+package jxl;
+
+/**
+ * A read only view of a rectangular region of a sheet, such as a row or
+ * a column.  The view does not copy the cells, but reads them from the
+ * sheet as they are asked for, so it reflects the current contents of the
+ * sheet
+ */
+public interface CellRegion
+{
+  /**
+   * Gets the first column of this region
+   *
+   * @return the first column
+   */
+  public int getFirstColumn();
+
+  /**
+   * Gets the first row of this region
+   *
+   * @return the first row
+   */
+  public int getFirstRow();
+
+  /**
+   * Gets the number of columns in this region
+   *
+   * @return the number of columns
+   */
+  public int getColumns();
+
+  /**
+   * Gets the number of rows in this region
+   *
+   * @return the number of rows
+   */
+  public int getRows();
+
+  /**
+   * Gets the number of cells in this region
+   *
+   * @return the number of cells
+   */
+  public int size();
+
+  /**
+   * Gets the cell at the specified position in this region, taking the
+   * cells a row at a time.  For a row or a column, this is simply the
+   * position of the cell along the row or column
+   *
+   * @param index the position of the cell in this region
+   * @return the cell, which is empty if the sheet holds nothing there
+   */
+  public Cell get(int index);
+
+  /**
+   * Gets the cell at the specified column and row, relative to the top
+   * left of this region
+   *
+   * @param column the column relative to the first column
+   * @param row the row relative to the first row
+   * @return the cell, which is empty if the sheet holds nothing there
+   */
+  public Cell getCell(int column, int row);
+
+  /**
+   * Passes each cell which the sheet holds within this region to the
+   * visitor, a row at a time.  Positions at which the sheet holds
+   * nothing are skipped, and no empty cells are created for them
+   *
+   * @param visitor the visitor
+   */
+  public void forEachCell(CellVisitor visitor);
+}
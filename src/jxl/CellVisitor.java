@@ -0,0 +1,34 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+package jxl;
+
+/**
+ * Receives the cells of a sheet, or of part of a sheet, one at a time.
+ * This allows the cells to be scanned without creating any arrays
+ */
+public interface CellVisitor
+{
+  /**
+   * Called for each cell which is held by the sheet
+   *
+   * @param cell the cell
+   */
+  public void visitCell(Cell cell);
+}
@@ -0,0 +1,51 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+
+package jxl;
+
+/**
+ * An index of the contents of the cells on a sheet, which allows cells to
+ * be found by their contents without scanning the sheet.  The index holds
+ * the positions of the cells rather than the cells themselves
+ *
+ * @see Sheet#buildContentIndex
+ */
+public interface ContentIndex
+{
+  /**
+   * Gets the first cell, in row major order, whose contents match the
+   * string passed in.  Case is ignored if the index was built with the
+   * ignore case option
+   *
+   * @param contents the contents to find
+   * @return the cell, or NULL if no cell matches
+   */
+  public Cell findCell(String contents);
+
+  /**
+   * Gets all the cells whose contents match the string passed in, in row
+   * major order.  Case is ignored if the index was built with the ignore
+   * case option
+   *
+   * @param contents the contents to find
+   * @return the matching cells, which may be an empty array
+   */
+  public Cell[] findCells(String contents);
+}
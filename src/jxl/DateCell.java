@@ -20,6 +20,7 @@
 package jxl;
 
 import java.text.DateFormat;
+import java.time.LocalDateTime;
 import java.util.Date;
 
 /**
@@ -34,6 +35,23 @@ public interface DateCell extends Cell
    */
   public Date getDate();
 
+  /**
+   * Gets the date contained in this cell as the number of milliseconds
+   * since 01 Jan 1970 UTC.  This is the same as getDate().getTime(), but
+   * does not need a Date to be created
+   *
+   * @return the date in milliseconds
+   */
+  public long getEpochMillis();
+
+  /**
+   * Gets the date and time contained in this cell, as shown by Excel.
+   * There is no time zone adjustment
+   *
+   * @return the date and time
+   */
+  public LocalDateTime getLocalDateTime();
+
   /**
    * Indicates whether the date value contained in this cell refers to a date,
    * or merely a time
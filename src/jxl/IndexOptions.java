@@ -0,0 +1,64 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+
+package jxl;
+
+/**
+ * The options used when building the content index of a sheet
+ *
+ * @see Sheet#buildContentIndex
+ */
+public final class IndexOptions
+{
+  /**
+   * Indicates whether lookups made directly on the index ignore case
+   */
+  private boolean ignoreCase;
+
+  /**
+   * Default constructor.  The index matches contents exactly
+   */
+  public IndexOptions()
+  {
+    ignoreCase = false;
+  }
+
+  /**
+   * Accessor for the ignore case flag
+   *
+   * @return TRUE if lookups on the index ignore case, FALSE otherwise
+   */
+  public boolean getIgnoreCase()
+  {
+    return ignoreCase;
+  }
+
+  /**
+   * Sets whether lookups made directly on the index ignore case.  The
+   * findCell and findLabelCell methods of the sheet always match exactly,
+   * whichever way the index is built
+   *
+   * @param ic TRUE to ignore case, FALSE to match exactly
+   */
+  public void setIgnoreCase(boolean ic)
+  {
+    ignoreCase = ic;
+  }
+}
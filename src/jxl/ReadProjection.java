@@ -0,0 +1,179 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+
+package jxl;
+
+/**
+ * The families of sheet records which are read in, in addition to the cell
+ * values which are always read.  Records belonging to a family which is not
+ * part of the projection are skipped over without being decoded, which
+ * makes reading much cheaper when only the values of the cells are wanted.
+ * Projections are combined using the add and remove methods, for example
+ * ReadProjection.VALUES_ONLY.add(ReadProjection.MERGED_CELLS)
+ */
+public final class ReadProjection
+{
+  /**
+   * The families in this projection, as a bit mask
+   */
+  private int families;
+
+  /**
+   * Private constructor
+   *
+   * @param f the families in this projection
+   */
+  private ReadProjection(int f)
+  {
+    families = f;
+  }
+
+  /**
+   * The formats of the cells.  Without this, numbers are not formatted
+   * with their excel number format when they are read, and numbers with
+   * a date format are read as numbers rather than dates
+   */
+  public static final ReadProjection FORMATS = new ReadProjection(0x1);
+
+  /**
+   * The row and column information, such as heights, widths, hidden rows
+   * and columns and outlines
+   */
+  public static final ReadProjection ROWS_AND_COLUMNS =
+    new ReadProjection(0x2);
+
+  /**
+   * The merged cells
+   */
+  public static final ReadProjection MERGED_CELLS = new ReadProjection(0x4);
+
+  /**
+   * The hyperlinks
+   */
+  public static final ReadProjection HYPERLINKS = new ReadProjection(0x8);
+
+  /**
+   * The drawings, images, charts, comments and buttons
+   */
+  public static final ReadProjection DRAWINGS = new ReadProjection(0x10);
+
+  /**
+   * The conditional formats
+   */
+  public static final ReadProjection CONDITIONAL_FORMATS =
+    new ReadProjection(0x20);
+
+  /**
+   * The data validations
+   */
+  public static final ReadProjection DATA_VALIDATIONS =
+    new ReadProjection(0x40);
+
+  /**
+   * The autofilters
+   */
+  public static final ReadProjection AUTOFILTERS = new ReadProjection(0x80);
+
+  /**
+   * The page setup, including the headers, footers, margins, page breaks
+   * and print options
+   */
+  public static final ReadProjection PAGE_SETUP = new ReadProjection(0x100);
+
+  /**
+   * The window and protection settings of the sheet, such as frozen panes,
+   * the zoom factor and the password
+   */
+  public static final ReadProjection SHEET_SETTINGS =
+    new ReadProjection(0x200);
+
+  /**
+   * Everything.  This is the default
+   */
+  public static final ReadProjection ALL = new ReadProjection(0x3ff);
+
+  /**
+   * Only the values of the cells, without their formats
+   */
+  public static final ReadProjection VALUES_ONLY = new ReadProjection(0);
+
+  /**
+   * Gets a projection which includes everything in this projection and
+   * the one passed in
+   *
+   * @param p the projection to add
+   * @return the combined projection
+   */
+  public ReadProjection add(ReadProjection p)
+  {
+    return new ReadProjection(families | p.families);
+  }
+
+  /**
+   * Gets a projection which includes everything in this projection apart
+   * from the one passed in
+   *
+   * @param p the projection to remove
+   * @return the remaining projection
+   */
+  public ReadProjection remove(ReadProjection p)
+  {
+    return new ReadProjection(families & ~p.families);
+  }
+
+  /**
+   * Determines whether everything in the projection passed in is also
+   * part of this projection
+   *
+   * @param p the projection to check
+   * @return TRUE if it is included, FALSE otherwise
+   */
+  public boolean includes(ReadProjection p)
+  {
+    return (families & p.families) == p.families;
+  }
+
+  /**
+   * Standard equals method
+   *
+   * @param o the object to compare
+   * @return TRUE if the projections include the same families,
+   *         FALSE otherwise
+   */
+  public boolean equals(Object o)
+  {
+    if (!(o instanceof ReadProjection))
+    {
+      return false;
+    }
+
+    return families == ((ReadProjection) o).families;
+  }
+
+  /**
+   * Standard hash code method
+   *
+   * @return the hash code
+   */
+  public int hashCode()
+  {
+    return families;
+  }
+}
@@ -74,6 +74,21 @@ public interface Sheet
    */
   public Cell[] getRow(int row);
 
+  /**
+   * Gets the cells on the rows from firstRow up to, but not including,
+   * lastRow.  Each row is returned as it would be by getRow, so it is
+   * stripped of all trailing empty cells, and rows beyond the end of the
+   * sheet are empty.  When the sheet has not been read in (such as the
+   * sheets returned by Workbook.getSheets) only the blocks of rows within
+   * the window are read from the file, in which case the cells do not
+   * have any cell features such as comments or validation
+   *
+   * @param firstRow the first row to get
+   * @param lastRow the row after the last row to get
+   * @return the cells on the rows, indexed on the row relative to firstRow
+   */
+  public Cell[][] getRowWindow(int firstRow, int lastRow);
+
   /**
    * Gets all the cells on the specified column
    *
@@ -82,6 +97,99 @@ public interface Sheet
    */
   public Cell[] getColumn(int col);
 
+  /**
+   * Gets a read only view of the cells on the specified row.  Unlike
+   * getRow, this does not copy the cells into a new array, so it is the
+   * cheaper way of looking at each row of a large sheet in turn
+   *
+   * @param row the row whose cells are to be viewed
+   * @return a view of the cells up to the last cell on the row
+   */
+  public CellRegion rowView(int row);
+
+  /**
+   * Gets a read only view of the cells on the specified column.  Unlike
+   * getColumn, this does not copy the cells into a new array
+   *
+   * @param col the column whose cells are to be viewed
+   * @return a view of the cells up to the last cell on the column
+   */
+  public CellRegion columnView(int col);
+
+  /**
+   * Gets a read only view of the cells in the specified range.  The range
+   * may extend beyond the cells which the sheet holds, in which case the
+   * view contains empty cells there
+   *
+   * @param col1 the first column of the range
+   * @param row1 the first row of the range
+   * @param col2 the last column of the range
+   * @param row2 the last row of the range
+   * @return a view of the cells in the range
+   */
+  public CellRegion range(int col1, int row1, int col2, int row2);
+
+  /**
+   * Reads the numbers in the specified rows of a column into the array
+   * passed in, in a single pass over the sheet's cells and without
+   * creating cell objects where the sheet can avoid it.  The value for row
+   * firstRow + i is placed at index i.  Rows which do not contain a
+   * number cell, including those beyond the end of the sheet, are
+   * given a value of NaN.  Nothing is read if lastRow is before
+   * firstRow
+   *
+   * @param col the column
+   * @param firstRow the first row to read
+   * @param lastRow the last row to read
+   * @param values the array to receive the values
+   * @param present if not NULL, receives TRUE for each row which contains
+   *        a number and FALSE otherwise
+   * @return the number of rows which contain a number
+   */
+  public int readDoubles(int col, int firstRow, int lastRow,
+                         double[] values, boolean[] present);
+
+  /**
+   * Reads the contents of the specified rows of a column into the array
+   * passed in, in a single pass over the sheet's cells.  The contents
+   * of row firstRow + i are placed at index i, or NULL if the sheet holds
+   * no cell for that row.  Nothing is read if lastRow is before
+   * firstRow
+   *
+   * @param col the column
+   * @param firstRow the first row to read
+   * @param lastRow the last row to read
+   * @param values the array to receive the contents
+   * @return the number of rows for which the sheet holds a cell
+   */
+  public int readStrings(int col, int firstRow, int lastRow, String[] values);
+
+  /**
+   * Reads the types of the cells in the specified rows of a column into
+   * the array passed in, in a single pass over the sheet's cells and
+   * without creating cell objects where the sheet can avoid it.  The type
+   * of row firstRow + i is placed at index i.  Nothing is read if lastRow
+   * is before firstRow
+   *
+   * @param col the column
+   * @param firstRow the first row to read
+   * @param lastRow the last row to read
+   * @param types the array to receive the cell types
+   * @return the number of rows which are not empty
+   */
+  public int readCellTypes(int col, int firstRow, int lastRow,
+                           CellType[] types);
+
+  /**
+   * Takes an immutable copy of this sheet.  The contents of every cell are
+   * formatted when the copy is taken, so the copy may be shared by any
+   * number of threads without locking, and is not affected by this sheet
+   * being cleared out of the workbook's sheet cache or being modified
+   *
+   * @return an immutable copy of this sheet
+   */
+  public Sheet snapshot();
+
   /**
    * Gets the name of this sheet
    *
@@ -172,6 +280,23 @@ public interface Sheet
    */
   public LabelCell findLabelCell(String contents);
 
+  /**
+   * Builds an index of the contents of the cells on this sheet.  Once it
+   * has been built, findCell and findLabelCell look strings up in the
+   * index rather than scanning the sheet, which is worthwhile when many
+   * lookups are made against the same sheet.  Building an index replaces
+   * any index which the sheet already has
+   *
+   * @param options the index options, or NULL for the defaults
+   * @return the index
+   */
+  public ContentIndex buildContentIndex(IndexOptions options);
+
+  /**
+   * Discards the content index of this sheet, if it has one
+   */
+  public void removeContentIndex();
+
   /**
    * Gets the hyperlinks on this sheet
    *
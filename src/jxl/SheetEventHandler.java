@@ -0,0 +1,96 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+
+package jxl;
+
+/**
+ * Receives the contents of a workbook as it is read by Workbook.process.
+ * The cells are passed on as soon as they are read, and nothing is kept
+ * once a row has been passed on, so that sheets of any size may be read
+ * in a fixed amount of memory.  Cells are reported in the order in which
+ * they occur in the file, which is row by row and from left to right
+ * along each row.  Numbers and dates are reported with their excel value,
+ * so a date is the number of days since the start of the workbook's
+ * date system
+ */
+public interface SheetEventHandler
+{
+  /**
+   * Called before any of the cells on a sheet are reported
+   *
+   * @param index the zero based index of the sheet
+   * @param name the name of the sheet
+   */
+  public void startSheet(int index, String name);
+
+  /**
+   * Called for a number or date, or a formula which evaluates to a number
+   * or a date
+   *
+   * @param row the row of the cell
+   * @param column the column of the cell
+   * @param type the cell type
+   * @param value the value
+   * @param xfIndex the index of the cell's format
+   */
+  public void cell(int row, int column, CellType type, double value,
+                   int xfIndex);
+
+  /**
+   * Called for a label, an error, a blank cell, or a formula which
+   * evaluates to a string or an error.  Blank cells are only reported if
+   * the workbook settings do not ignore them
+   *
+   * @param row the row of the cell
+   * @param column the column of the cell
+   * @param type the cell type
+   * @param value the contents of the cell
+   * @param xfIndex the index of the cell's format
+   */
+  public void cell(int row, int column, CellType type, String value,
+                   int xfIndex);
+
+  /**
+   * Called for a boolean, or a formula which evaluates to a boolean
+   *
+   * @param row the row of the cell
+   * @param column the column of the cell
+   * @param type the cell type
+   * @param value the value
+   * @param xfIndex the index of the cell's format
+   */
+  public void cell(int row, int column, CellType type, boolean value,
+                   int xfIndex);
+
+  /**
+   * Called once all the cells on a row have been reported.  This is not
+   * called for rows which have no cells
+   *
+   * @param row the row
+   */
+  public void endRow(int row);
+
+  /**
+   * Called once all the cells on a sheet have been reported
+   *
+   * @param index the zero based index of the sheet
+   */
+  public void endSheet(int index);
+}
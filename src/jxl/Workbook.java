@@ -24,10 +24,13 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
 
 import jxl.read.biff.BiffException;
 import jxl.read.biff.File;
 import jxl.read.biff.PasswordException;
+import jxl.read.biff.WorkbookDescriptorImpl;
 import jxl.read.biff.WorkbookParser;
 import jxl.write.WritableWorkbook;
 import jxl.write.biff.WritableWorkbookImpl;
@@ -67,11 +70,12 @@ public abstract class Workbook
 
   /**
    * Gets the specified sheet within this workbook
-   * As described in the accompanying technical notes, each call
-   * to getSheet forces a reread of the sheet (for memory reasons).
-   * Therefore, do not make unnecessary calls to this method.  Furthermore,
-   * do not hold unnecessary references to Sheets in client code, as
-   * this will prevent the garbage collector from freeing the memory
+   * Sheets which have been read in are kept in a cache, which by default
+   * holds only the last sheet requested (see
+   * WorkbookSettings.setSheetCacheSize).  Sheets cleared out of the cache
+   * are reread when they are next used.  Do not hold unnecessary references
+   * to Sheets in client code, as this will prevent the garbage collector
+   * from freeing the memory
    *
    * @param index the zero based index of the reQuired sheet
    * @return The sheet specified by the index
@@ -83,17 +87,34 @@ public abstract class Workbook
 
   /**
    * Gets the sheet with the specified name from within this workbook.
-   * As described in the accompanying technical notes, each call
-   * to getSheet forces a reread of the sheet (for memory reasons).
-   * Therefore, do not make unnecessary calls to this method.  Furthermore,
-   * do not hold unnecessary references to Sheets in client code, as
-   * this will prevent the garbage collector from freeing the memory
+   * Sheets which have been read in are kept in a cache, which by default
+   * holds only the last sheet requested (see
+   * WorkbookSettings.setSheetCacheSize).  Sheets cleared out of the cache
+   * are reread when they are next used.  Do not hold unnecessary references
+   * to Sheets in client code, as this will prevent the garbage collector
+   * from freeing the memory
    *
    * @param name the sheet name
    * @return The sheet with the specified name, or null if it is not found
    */
   public abstract Sheet getSheet(String name);
 
+  /**
+   * Pins the specified sheet, so that once it has been read in it is not
+   * cleared out of the sheet cache
+   *
+   * @param index the zero based index of the sheet
+   */
+  public abstract void pinSheet(int index);
+
+  /**
+   * Unpins the specified sheet, so that it may be cleared out of the
+   * sheet cache
+   *
+   * @param index the zero based index of the sheet
+   */
+  public abstract void unpinSheet(int index);
+
   /**
    * Accessor for the software version
    *
@@ -184,6 +205,28 @@ public abstract class Workbook
    */
   public abstract void close();
 
+  /**
+   * Reads in the specified sheets, using the executor to read them
+   * concurrently, and waits until they have all been read.  The sheets are
+   * pinned in the sheet cache, so unlike the sheet returned by getSheet
+   * they remain in memory until they are released with unpinSheet or the
+   * workbook is closed.  No other methods on this workbook should be
+   * called while the sheets are being read
+   *
+   * @param indices the zero based indices of the sheets to read
+   * @param executor the executor on which to read the sheets
+   * @return the sheets, in the same order as the indices
+   */
+  public abstract Sheet[] loadSheets(int[] indices, Executor executor);
+
+  /**
+   * Reads each of the sheets in turn, passing their cells on to the
+   * handler rather than keeping them
+   *
+   * @param handler the handler which receives the cells
+   */
+  protected abstract void process(SheetEventHandler handler);
+
   /**
    * A factory method which takes in an excel file and reads in the contents.
    *
@@ -210,6 +253,14 @@ public abstract class Workbook
   public static Workbook getWorkbook(java.io.File file, WorkbookSettings ws)
     throws IOException, BiffException
   {
+    if (ws.getUseMemoryMappedFile())
+    {
+      Workbook workbook = new WorkbookParser(new File(file, ws), ws);
+      workbook.parse();
+
+      return workbook;
+    }
+
     FileInputStream fis = new FileInputStream(file);
 
     // Always close down the input stream, regardless of whether or not the
@@ -273,6 +324,115 @@ public abstract class Workbook
     return workbook;
   }
 
+  /**
+   * A factory method which reads the workbook from a buffer, such as one
+   * which has already been read into memory or memory mapped by the caller.
+   * The bytes between the buffer's position and its limit are parsed
+   * in place, without being copied
+   *
+   * @param buffer the buffer containing the excel 97 spreadsheet to parse
+   * @return a workbook instance
+   * @exception BiffException
+   */
+  public static Workbook getWorkbook(ByteBuffer buffer)
+    throws BiffException
+  {
+    return getWorkbook(buffer, new WorkbookSettings());
+  }
+
+  /**
+   * A factory method which reads the workbook from a buffer, such as one
+   * which has already been read into memory or memory mapped by the caller.
+   * The bytes between the buffer's position and its limit are parsed
+   * in place, without being copied
+   *
+   * @param buffer the buffer containing the excel 97 spreadsheet to parse
+   * @param ws the settings for the workbook
+   * @return a workbook instance
+   * @exception BiffException
+   */
+  public static Workbook getWorkbook(ByteBuffer buffer, WorkbookSettings ws)
+    throws BiffException
+  {
+    File dataFile = new File(buffer, ws);
+
+    Workbook workbook = new WorkbookParser(dataFile, ws);
+    workbook.parse();
+
+    return workbook;
+  }
+
+  /**
+   * Reads the descriptive information about an excel file, such as the
+   * sheet names and sizes, the named ranges and the document summary,
+   * without reading any of the cell data.  This is much cheaper than
+   * reading the whole workbook
+   *
+   * @param file the excel 97 spreadsheet to describe
+   * @return a description of the workbook
+   * @exception IOException
+   * @exception BiffException
+   */
+  public static WorkbookDescriptor peek(java.io.File file)
+    throws IOException, BiffException
+  {
+    return peek(file, new WorkbookSettings());
+  }
+
+  /**
+   * Reads the descriptive information about an excel file, such as the
+   * sheet names and sizes, the named ranges and the document summary,
+   * without reading any of the cell data.  This is much cheaper than
+   * reading the whole workbook.  The file is always memory mapped, and
+   * the mapping is released before this method returns
+   *
+   * @param file the excel 97 spreadsheet to describe
+   * @param ws the settings for the workbook
+   * @return a description of the workbook
+   * @exception IOException
+   * @exception BiffException
+   */
+  public static WorkbookDescriptor peek(java.io.File file,
+                                        WorkbookSettings ws)
+    throws IOException, BiffException
+  {
+    WorkbookDescriptorImpl descriptor =
+      new WorkbookDescriptorImpl(new File(file, ws), ws);
+    descriptor.read();
+
+    return descriptor;
+  }
+
+  /**
+   * Reads the cells of every sheet in the excel file, passing each one on
+   * to the handler as it is read.  No cell grid is built, so the memory
+   * used does not depend on the size of the sheets.  Comments and data
+   * validations are not reported.  The workbook is closed before this
+   * method returns
+   *
+   * @param file the excel 97 spreadsheet to read
+   * @param ws the settings for the workbook
+   * @param handler the handler which receives the cells
+   * @exception IOException
+   * @exception BiffException
+   */
+  public static void process(java.io.File file,
+                             WorkbookSettings ws,
+                             SheetEventHandler handler)
+    throws IOException, BiffException
+  {
+    Workbook workbook = getWorkbook(file, ws);
+
+    try
+    {
+      workbook.process(handler);
+    }
+    finally
+    {
+      workbook.close();
+    }
+  }
+
   /**
    * Creates a writable workbook with the given file name
    *
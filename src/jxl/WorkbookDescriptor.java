@@ -0,0 +1,170 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+package jxl;
+
+import java.util.Date;
+
+/**
+ * A lightweight description of a workbook, obtained from Workbook.peek.
+ * This gives the sheet names and sizes, the named ranges and the document
+ * summary properties without reading any of the cell data
+ */
+public interface WorkbookDescriptor
+{
+  /**
+   * Gets the number of sheets in the workbook
+   *
+   * @return the number of sheets
+   */
+  public int getNumberOfSheets();
+
+  /**
+   * Gets the sheet names
+   *
+   * @return an array of strings containing the sheet names
+   */
+  public String[] getSheetNames();
+
+  /**
+   * Determines whether the specified sheet is hidden
+   *
+   * @param index the zero based index of the sheet
+   * @return TRUE if the sheet is hidden, FALSE otherwise
+   */
+  public boolean isHidden(int index);
+
+  /**
+   * Gets the number of rows in the specified sheet, as recorded in the
+   * sheet's dimension record
+   *
+   * @param index the zero based index of the sheet
+   * @return the number of rows, or zero if the sheet has no dimensions
+   */
+  public int getRows(int index);
+
+  /**
+   * Gets the number of columns in the specified sheet, as recorded in the
+   * sheet's dimension record
+   *
+   * @param index the zero based index of the sheet
+   * @return the number of columns, or zero if the sheet has no dimensions
+   */
+  public int getColumns(int index);
+
+  /**
+   * Gets the names of the global named ranges
+   *
+   * @return the list of named cells within the workbook
+   */
+  public String[] getRangeNames();
+
+  /**
+   * Gets the cell references of the ranges with the specified name,
+   * eg. "Sheet1!A1:C10"
+   *
+   * @param name the name of the range
+   * @return the references, or NULL if there is no such name
+   */
+  public String[] getRangeReferences(String name);
+
+  /**
+   * Gets the title from the document summary
+   *
+   * @return the title, or NULL if it is not present
+   */
+  public String getTitle();
+
+  /**
+   * Gets the subject from the document summary
+   *
+   * @return the subject, or NULL if it is not present
+   */
+  public String getSubject();
+
+  /**
+   * Gets the author from the document summary
+   *
+   * @return the author, or NULL if it is not present
+   */
+  public String getAuthor();
+
+  /**
+   * Gets the keywords from the document summary
+   *
+   * @return the keywords, or NULL if they are not present
+   */
+  public String getKeywords();
+
+  /**
+   * Gets the comments from the document summary
+   *
+   * @return the comments, or NULL if they are not present
+   */
+  public String getComments();
+
+  /**
+   * Gets the user who last saved the workbook
+   *
+   * @return the last author, or NULL if it is not present
+   */
+  public String getLastAuthor();
+
+  /**
+   * Gets the name of the application which created the workbook
+   *
+   * @return the application name, or NULL if it is not present
+   */
+  public String getApplicationName();
+
+  /**
+   * Gets the time at which the workbook was created
+   *
+   * @return the creation time, or NULL if it is not present
+   */
+  public Date getCreated();
+
+  /**
+   * Gets the time at which the workbook was last saved
+   *
+   * @return the last saved time, or NULL if it is not present
+   */
+  public Date getLastSaved();
+
+  /**
+   * Gets the category from the document summary
+   *
+   * @return the category, or NULL if it is not present
+   */
+  public String getCategory();
+
+  /**
+   * Gets the manager from the document summary
+   *
+   * @return the manager, or NULL if it is not present
+   */
+  public String getManager();
+
+  /**
+   * Gets the company from the document summary
+   *
+   * @return the company, or NULL if it is not present
+   */
+  public String getCompany();
+}
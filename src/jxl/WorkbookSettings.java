@@ -20,6 +20,7 @@
 package jxl;
 
 import java.io.File;
+import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Locale;
 
@@ -84,7 +85,9 @@ public final class WorkbookSettings
    * command line, but better to deactivate the feature when reading
    * large spreadsheets within a WAS, as the calls to System.gc() not
    * only garbage collect the junk in JExcelApi, but also in the
-   * webservers JVM and can cause significant slowdown
+   * webservers JVM and can cause significant slowdown.
+   * Garbage collection is no longer requested whilst reading sheets, only
+   * when closing a workbook and when writing
    * GC deactivated using -Djxl.nogc=true on the JVM command line
    * Activated by default or by using -Djxl.nogc=false on the JVM command line
    */
@@ -140,6 +143,95 @@ public final class WorkbookSettings
    */
   private File temporaryFileDuringWriteDirectory;
 
+  /**
+   * Flag to indicate whether workbooks read from a file should be memory
+   * mapped rather than read into memory.  This may be set using the system
+   * property jxl.usememorymappedfile
+   */
+  private boolean useMemoryMappedFile;
+
+  /**
+   * The maximum number of bytes of heap used to buffer a workbook read
+   * from an input stream.  Workbooks larger than this are written to a
+   * temporary file instead.  Zero means there is no limit.  This may be
+   * set using the system property jxl.maximumheapfilesize
+   */
+  private int maximumHeapFileSize;
+
+  /**
+   * The directory used for the temporary file during read.  If this
+   * is NULL, the default system directory is used
+   */
+  private File temporaryFileDuringReadDirectory;
+
+  /**
+   * Flag to indicate whether the row blocks of large sheets are decoded
+   * in parallel.  This may be set using the system property
+   * jxl.parallelblockdecoding
+   */
+  private boolean parallelBlockDecoding;
+
+  /**
+   * The number of threads used to decode the row blocks of a sheet in
+   * parallel.  Zero means the number of available processors.  This may be
+   * set using the system property jxl.blockdecodingparallelism
+   */
+  private int blockDecodingParallelism;
+
+  /**
+   * The maximum number of sheets kept in memory by Workbook.getSheet.  This
+   * may be set using the system property jxl.sheetcachesize
+   */
+  private int sheetCacheSize;
+
+  /**
+   * The estimated number of bytes which the sheets kept in memory by
+   * Workbook.getSheet may use, or zero if there is no limit.  This may be
+   * set using the system property jxl.sheetcachememory
+   */
+  private long sheetCacheMemory;
+
+  /**
+   * Flag to indicate whether sheets cleared out of the sheet cache keep
+   * their cells through a soft reference.  This may be set using the
+   * system property jxl.sheetcachesoftreferences
+   */
+  private boolean sheetCacheSoftReferences;
+
+  /**
+   * Flag to indicate whether the values of sheets are held in columns of
+   * primitives rather than as cell objects.  This may be set using the
+   * system property jxl.columnarcellstorage
+   */
+  private boolean columnarCellStorage;
+
+  /**
+   * Flag to indicate whether the shared strings are held packed into
+   * character pools rather than as strings.  This may be set using the
+   * system property jxl.compactsharedstrings
+   */
+  private boolean compactSharedStrings;
+
+  /**
+   * Flag to indicate whether the shared strings are interned when they are
+   * read.  This may be set using the system property
+   * jxl.internsharedstrings
+   */
+  private boolean internSharedStrings;
+
+  /**
+   * Flag to indicate whether the packed shared strings are decoded in
+   * parallel.  This may be set using the system property
+   * jxl.parallelsharedstringdecoding
+   */
+  private boolean parallelSharedStringDecoding;
+
+  /**
+   * The families of sheet records which are read in.  This may be set to
+   * values only using the system property jxl.valuesonly
+   */
+  private ReadProjection readProjection;
+
   /**
    * The locale.  Normally this is the same as the system locale, but there
    * may be cases (eg. where you are uploading many spreadsheets from foreign
@@ -163,6 +255,22 @@ public final class WorkbookSettings
    */
   private String encoding;
 
+  /**
+   * The character set resolved from the encoding, looked up on first use
+   */
+  private Charset charset;
+
+  /**
+   * Indicates whether the encoding has been looked up
+   */
+  private volatile boolean charsetResolved;
+
+  /**
+   * Indicates whether the resolved character set decodes every byte below
+   * 0x80 to the ASCII character of the same value
+   */
+  private boolean asciiCompatibleCharset;
+
   /**
    * The character set used by the readable spreadsheeet
    */
@@ -264,6 +372,7 @@ public final class WorkbookSettings
     excel9file = false;
     windowProtected = false;
     hideobj = HIDEOBJ_SHOW_ALL;
+    readProjection = ReadProjection.ALL;
 
     // Initialize other properties from the system properties
     try
@@ -285,6 +394,8 @@ public final class WorkbookSettings
              // autofilter currently disabled by default
       useTemporaryFileDuringWrite =
         Boolean.getBoolean("jxl.usetemporaryfileduringwrite");
+      useMemoryMappedFile =
+        Boolean.getBoolean("jxl.usememorymappedfile");
       String tempdir =
         System.getProperty("jxl.temporaryfileduringwritedirectory");
 
@@ -293,6 +404,34 @@ public final class WorkbookSettings
         temporaryFileDuringWriteDirectory = new File(tempdir);
       }
 
+      maximumHeapFileSize =
+        Integer.getInteger("jxl.maximumheapfilesize", 0).intValue();
+      String readtempdir =
+        System.getProperty("jxl.temporaryfileduringreaddirectory");
+
+      if (readtempdir != null)
+      {
+        temporaryFileDuringReadDirectory = new File(readtempdir);
+      }
+
+      parallelBlockDecoding =
+        Boolean.getBoolean("jxl.parallelblockdecoding");
+      blockDecodingParallelism =
+        Integer.getInteger("jxl.blockdecodingparallelism", 0).intValue();
+      sheetCacheSize = Integer.getInteger("jxl.sheetcachesize", 1).intValue();
+      sheetCacheMemory = Long.getLong("jxl.sheetcachememory", 0).longValue();
+      sheetCacheSoftReferences =
+        Boolean.getBoolean("jxl.sheetcachesoftreferences");
+      columnarCellStorage = Boolean.getBoolean("jxl.columnarcellstorage");
+      compactSharedStrings = Boolean.getBoolean("jxl.compactsharedstrings");
+      internSharedStrings = Boolean.getBoolean("jxl.internsharedstrings");
+      parallelSharedStringDecoding =
+        Boolean.getBoolean("jxl.parallelsharedstringdecoding");
+      if (Boolean.getBoolean("jxl.valuesonly"))
+      {
+        readProjection = ReadProjection.VALUES_ONLY;
+      }
+
       encoding = System.getProperty("file.encoding");
     }
     catch (SecurityException e)
@@ -560,6 +699,78 @@ public final class WorkbookSettings
   public void setEncoding(String enc)
   {
     encoding = enc;
+    charsetResolved = false;
+  }
+
+  /**
+   * Accessor for the character set named by the encoding.  The lookup
+   * is only performed once, rather than on every string conversion
+   *
+   * @return the character set, or NULL if the encoding is not supported
+   */
+  public Charset getCharset()
+  {
+    if (!charsetResolved)
+    {
+      resolveCharset();
+    }
+    return charset;
+  }
+
+  /**
+   * Indicates whether the character set for this workbook decodes bytes
+   * below 0x80 as plain ASCII, so that strings consisting only of such
+   * bytes may be converted without the charset decoder
+   *
+   * @return TRUE if the character set is a superset of ASCII
+   */
+  public boolean isAsciiCompatibleCharset()
+  {
+    if (!charsetResolved)
+    {
+      resolveCharset();
+    }
+    return asciiCompatibleCharset;
+  }
+
+  /**
+   * Looks up the character set for the encoding, if this has not already
+   * been done
+   */
+  private synchronized void resolveCharset()
+  {
+    if (charsetResolved)
+    {
+      return;
+    }
+
+    charset = null;
+    asciiCompatibleCharset = false;
+
+    try
+    {
+      if (encoding != null)
+      {
+        charset = Charset.forName(encoding);
+      }
+    }
+    catch (IllegalArgumentException e)
+    {
+      logger.warn("Unsupported encoding " + encoding);
+    }
+
+    if (charset != null)
+    {
+      // Only the stateless single byte sets and UTF-8 are known to be
+      // safe - stateful encodings such as ISO-2022 treat ESC specially
+      String name = charset.name();
+      asciiCompatibleCharset = name.equals("UTF-8") ||
+                               name.equals("US-ASCII") ||
+                               name.startsWith("ISO-8859-") ||
+                               name.startsWith("windows-125");
+    }
+
+    charsetResolved = true;
   }
 
   /**
@@ -777,6 +988,332 @@ public final class WorkbookSettings
     return temporaryFileDuringWriteDirectory;
   }
 
+  /**
+   * Accessor for the memory mapped file flag.  If this is set, then
+   * workbooks read from a file are memory mapped and parsed directly
+   * from the mapping, rather than being copied onto the heap.  The mapping
+   * is released when the workbook is closed
+   *
+   * @return TRUE if workbook files are memory mapped, FALSE otherwise
+   */
+  public boolean getUseMemoryMappedFile()
+  {
+    return useMemoryMappedFile;
+  }
+
+  /**
+   * Sets whether workbooks read from a file are memory mapped.  This
+   * avoids holding a copy of the entire file on the heap, which is
+   * worthwhile for very large files.  It has no effect on workbooks
+   * read from an input stream
+   *
+   * @param mapped TRUE to memory map workbook files, FALSE otherwise
+   */
+  public void setUseMemoryMappedFile(boolean mapped)
+  {
+    useMemoryMappedFile = mapped;
+  }
+
+  /**
+   * Accessor for the maximum heap file size.  Workbooks read from an input
+   * stream are buffered on the heap up to this size, after which they
+   * are written to a temporary file and memory mapped instead
+   *
+   * @return the maximum number of bytes buffered on the heap, or zero if
+   *         there is no limit
+   */
+  public int getMaximumHeapFileSize()
+  {
+    return maximumHeapFileSize;
+  }
+
+  /**
+   * Sets the maximum number of bytes of heap used to buffer a workbook
+   * read from an input stream.  This gives a predictable bound on the
+   * memory used when many workbooks of unknown size are read at
+   * once.  By default there is no limit
+   *
+   * @param sz the maximum size in bytes, or zero for no limit
+   */
+  public void setMaximumHeapFileSize(int sz)
+  {
+    maximumHeapFileSize = sz;
+  }
+
+  /**
+   * Used in conjunction with the MaximumHeapFileSize setting to
+   * set the target directory for the temporary files.   If this is not set,
+   * the system default temporary directory is used.
+   * This has no effect unless the maximumHeapFileSize setting
+   * is non-zero
+   *
+   * @param dir the directory to which temporary files should be written
+   */
+  public void setTemporaryFileDuringReadDirectory(File dir)
+  {
+    temporaryFileDuringReadDirectory = dir;
+  }
+
+  /**
+   * Used in conjunction with the MaximumHeapFileSize setting to
+   * get the target directory for the temporary files.  This value can
+   * be NULL, in which case the normal system default temporary directory
+   * is used instead
+   *
+   * @return the temporary directory used during read, or NULL if it is
+   *         not set
+   */
+  public File getTemporaryFileDuringReadDirectory()
+  {
+    return temporaryFileDuringReadDirectory;
+  }
+
+  /**
+   * Accessor for the parallel block decoding flag.  If this is set, then
+   * the cells of a biff8 sheet are decoded a group of row blocks at a
+   * time on several threads
+   *
+   * @return TRUE if row blocks are decoded in parallel, FALSE otherwise
+   */
+  public boolean getParallelBlockDecoding()
+  {
+    return parallelBlockDecoding;
+  }
+
+  /**
+   * Sets whether the row blocks of a sheet are decoded in parallel.  This
+   * only helps with very large sheets, and only when the sheet has the
+   * INDEX and DBCELL records which locate the row blocks
+   *
+   * @param parallel TRUE to decode row blocks in parallel, FALSE otherwise
+   */
+  public void setParallelBlockDecoding(boolean parallel)
+  {
+    parallelBlockDecoding = parallel;
+  }
+
+  /**
+   * Accessor for the number of threads used to decode row blocks in
+   * parallel
+   *
+   * @return the number of threads
+   */
+  public int getBlockDecodingParallelism()
+  {
+    return blockDecodingParallelism > 0 ? blockDecodingParallelism :
+      Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Sets the number of threads used to decode row blocks in parallel.  By
+   * default this is the number of available processors
+   *
+   * @param threads the number of threads, or zero for the number of
+   *                available processors
+   */
+  public void setBlockDecodingParallelism(int threads)
+  {
+    blockDecodingParallelism = threads;
+  }
+
+  /**
+   * Accessor for the maximum number of sheets kept in memory by
+   * Workbook.getSheet
+   *
+   * @return the maximum number of sheets
+   */
+  public int getSheetCacheSize()
+  {
+    return sheetCacheSize;
+  }
+
+  /**
+   * Sets the maximum number of sheets kept in memory by Workbook.getSheet.
+   * When another sheet is read in, the least recently used sheets which
+   * have not been pinned are cleared.  The default is one, which means
+   * that only the last sheet requested is kept
+   *
+   * @param sheets the maximum number of sheets
+   */
+  public void setSheetCacheSize(int sheets)
+  {
+    sheetCacheSize = sheets;
+  }
+
+  /**
+   * Accessor for the memory budget of the sheets kept in memory by
+   * Workbook.getSheet
+   *
+   * @return the estimated number of bytes, or zero if there is no limit
+   */
+  public long getSheetCacheMemory()
+  {
+    return sheetCacheMemory;
+  }
+
+  /**
+   * Sets the estimated number of bytes which the sheets kept in memory by
+   * Workbook.getSheet may use.  This is applied as well as the maximum
+   * number of sheets, although the last sheet requested is always kept
+   *
+   * @param bytes the estimated number of bytes, or zero for no limit
+   */
+  public void setSheetCacheMemory(long bytes)
+  {
+    sheetCacheMemory = bytes;
+  }
+
+  /**
+   * Accessor for the sheet cache soft reference flag
+   *
+   * @return TRUE if sheets cleared out of the cache keep their cells
+   *         through a soft reference, FALSE otherwise
+   */
+  public boolean getSheetCacheSoftReferences()
+  {
+    return sheetCacheSoftReferences;
+  }
+
+  /**
+   * Sets whether sheets cleared out of the sheet cache keep their cells
+   * through a soft reference.  The cells may then be reused without
+   * reading the sheet again, unless the garbage collector needed
+   * the memory
+   *
+   * @param soft TRUE to keep cells through a soft reference, FALSE otherwise
+   */
+  public void setSheetCacheSoftReferences(boolean soft)
+  {
+    sheetCacheSoftReferences = soft;
+  }
+
+  /**
+   * Accessor for the columnar cell storage flag
+   *
+   * @return TRUE if cell values are held in columns of primitives,
+   *         FALSE otherwise
+   */
+  public boolean getColumnarCellStorage()
+  {
+    return columnarCellStorage;
+  }
+
+  /**
+   * Sets whether the values of the sheets read in are held in columns of
+   * primitives.  Plain numbers, dates, labels, booleans and blanks then use
+   * a few bytes each, and cell objects are only created when they are
+   * asked for through getCell, getRow or getColumn.  Sheets which hold
+   * mostly values then take up much less memory, at the cost of creating
+   * a new cell object on each access.  The primitive values may also be
+   * read without creating any cell objects through the accessors
+   * on SheetImpl
+   *
+   * @param columnar TRUE to hold cell values in columns of primitives,
+   *                 FALSE otherwise
+   */
+  public void setColumnarCellStorage(boolean columnar)
+  {
+    columnarCellStorage = columnar;
+  }
+
+  /**
+   * Accessor for the compact shared strings flag
+   *
+   * @return TRUE if the shared strings are held packed into character
+   *         pools, FALSE otherwise
+   */
+  public boolean getCompactSharedStrings()
+  {
+    return compactSharedStrings;
+  }
+
+  /**
+   * Sets whether the shared strings of the workbooks read in are held
+   * packed into character pools.  Compressed (8 bit) strings are then held
+   * as a range of a single byte array, and other strings as a range of a
+   * single char array, which saves most of the overhead of a string object
+   * per entry.  The strings are created when they are asked for, and are
+   * not retained by the workbook
+   *
+   * @param compact TRUE to hold the shared strings packed into character
+   *                pools, FALSE otherwise
+   */
+  public void setCompactSharedStrings(boolean compact)
+  {
+    compactSharedStrings = compact;
+  }
+
+  /**
+   * Accessor for the intern shared strings flag
+   *
+   * @return TRUE if the shared strings are interned, FALSE otherwise
+   */
+  public boolean getInternSharedStrings()
+  {
+    return internSharedStrings;
+  }
+
+  /**
+   * Sets whether the shared strings are interned when they are read, so
+   * that the same label read from different sheets or workbooks is held
+   * by a single string object
+   *
+   * @param intern TRUE to intern the shared strings, FALSE otherwise
+   */
+  public void setInternSharedStrings(boolean intern)
+  {
+    internSharedStrings = intern;
+  }
+
+  /**
+   * Accessor for the parallel shared string decoding flag
+   *
+   * @return TRUE if the packed shared strings are decoded in parallel,
+   *         FALSE otherwise
+   */
+  public boolean getParallelSharedStringDecoding()
+  {
+    return parallelSharedStringDecoding;
+  }
+
+  /**
+   * Sets whether the shared strings are decoded in parallel when they are
+   * packed into character pools.  The table is divided up using the
+   * EXTSST record, and each part is decoded on the same threads as the
+   * row blocks.  This only helps with very large shared string tables,
+   * and has no effect unless compact shared strings are set
+   *
+   * @param parallel TRUE to decode the shared strings in parallel,
+   *                 FALSE otherwise
+   */
+  public void setParallelSharedStringDecoding(boolean parallel)
+  {
+    parallelSharedStringDecoding = parallel;
+  }
+
+  /**
+   * Accessor for the read projection
+   *
+   * @return the families of sheet records which are read in
+   */
+  public ReadProjection getReadProjection()
+  {
+    return readProjection;
+  }
+
+  /**
+   * Sets the families of sheet records which are read in.  The records of
+   * any other families are skipped over without being decoded, and the
+   * corresponding sheet information (eg. merged cells or column widths)
+   * is then not available.  The cell values are always read
+   *
+   * @param projection the families of records to read
+   */
+  public void setReadProjection(ReadProjection projection)
+  {
+    readProjection = projection;
+  }
+
 
   /**
    * When true then Refresh All should be done on all external data ranges and
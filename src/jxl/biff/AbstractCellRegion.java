@@ -0,0 +1,194 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+package jxl.biff;
+
+import jxl.Cell;
+import jxl.CellRegion;
+import jxl.CellVisitor;
+
+/**
+ * Base class for the regions of a sheet.  Subclasses simply provide access
+ * to the cells held by the sheet
+ */
+public abstract class AbstractCellRegion implements CellRegion
+{
+  /**
+   * The first column
+   */
+  private int firstColumn;
+
+  /**
+   * The first row
+   */
+  private int firstRow;
+
+  /**
+   * The number of columns
+   */
+  private int columns;
+
+  /**
+   * The number of rows
+   */
+  private int rows;
+
+  /**
+   * Constructor
+   *
+   * @param c the first column
+   * @param r the first row
+   * @param nc the number of columns
+   * @param nr the number of rows
+   */
+  protected AbstractCellRegion(int c, int r, int nc, int nr)
+  {
+    firstColumn = c;
+    firstRow = r;
+    columns = Math.max(nc, 0);
+    rows = Math.max(nr, 0);
+  }
+
+  /**
+   * Gets the cell which the sheet holds at the specified position
+   *
+   * @param column the column
+   * @param row the row
+   * @return the cell, or NULL if the sheet holds nothing there
+   */
+  protected abstract Cell getStoredCell(int column, int row);
+
+  /**
+   * Gets the column after the last one on the specified row at which the
+   * sheet may hold a cell.  Used to cut short the scanning of rows
+   *
+   * @param row the row
+   * @return the column after the last cell on the row
+   */
+  protected int getColumnLimit(int row)
+  {
+    return firstColumn + columns;
+  }
+
+  /**
+   * Gets the first column of this region
+   *
+   * @return the first column
+   */
+  public int getFirstColumn()
+  {
+    return firstColumn;
+  }
+
+  /**
+   * Gets the first row of this region
+   *
+   * @return the first row
+   */
+  public int getFirstRow()
+  {
+    return firstRow;
+  }
+
+  /**
+   * Gets the number of columns in this region
+   *
+   * @return the number of columns
+   */
+  public int getColumns()
+  {
+    return columns;
+  }
+
+  /**
+   * Gets the number of rows in this region
+   *
+   * @return the number of rows
+   */
+  public int getRows()
+  {
+    return rows;
+  }
+
+  /**
+   * Gets the number of cells in this region
+   *
+   * @return the number of cells
+   */
+  public int size()
+  {
+    return columns * rows;
+  }
+
+  /**
+   * Gets the cell at the specified position in this region, taking the
+   * cells a row at a time
+   *
+   * @param index the position of the cell in this region
+   * @return the cell, which is empty if the sheet holds nothing there
+   */
+  public Cell get(int index)
+  {
+    if (index < 0 || index >= size())
+    {
+      throw new IndexOutOfBoundsException(Integer.toString(index));
+    }
+
+    return getCell(index % columns, index / columns);
+  }
+
+  /**
+   * Gets the cell at the specified column and row, relative to the top
+   * left of this region
+   *
+   * @param column the column relative to the first column
+   * @param row the row relative to the first row
+   * @return the cell, which is empty if the sheet holds nothing there
+   */
+  public Cell getCell(int column, int row)
+  {
+    int c = firstColumn + column;
+    int r = firstRow + row;
+    Cell cell = getStoredCell(c, r);
+
+    return cell != null ? cell : new EmptyCell(c, r);
+  }
+
+  /**
+   * Passes each cell which the sheet holds within this region to the
+   * visitor, a row at a time
+   *
+   * @param visitor the visitor
+   */
+  public void forEachCell(CellVisitor visitor)
+  {
+    for (int r = firstRow; r < firstRow + rows; r++)
+    {
+      int limit = Math.min(firstColumn + columns, getColumnLimit(r));
+      for (int c = firstColumn; c < limit; c++)
+      {
+        Cell cell = getStoredCell(c, r);
+        if (cell != null)
+        {
+          visitor.visitCell(cell);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,451 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+
+package jxl.biff;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+
+import jxl.Cell;
+import jxl.CellType;
+import jxl.ContentIndex;
+import jxl.IndexOptions;
+import jxl.Sheet;
+
+/**
+ * Maps the contents of the cells on a sheet to their positions, so that
+ * repeated lookups by contents don't have to scan the whole sheet.  Cells
+ * with no contents are not indexed.  The positions for each key are kept
+ * in row major order, and the cells are fetched from the sheet when a
+ * lookup is made.  If the index was built with the ignore case option,
+ * the keys are the lower case contents, and exact lookups check each
+ * candidate cell's contents in turn
+ */
+public class CellContentIndex implements ContentIndex
+{
+  /**
+   * The sheet which is indexed
+   */
+  private Sheet sheet;
+
+  /**
+   * Indicates whether the keys ignore case
+   */
+  private boolean ignoreCase;
+
+  /**
+   * The positions of the cells for each key, or NULL if the index needs
+   * to be rebuilt
+   */
+  private HashMap positions;
+
+  /**
+   * The key for each indexed position.  This is only built the first time
+   * that a single position is updated
+   */
+  private HashMap keys;
+
+  /**
+   * Constructor.  Builds the index from the current contents of the sheet
+   *
+   * @param s the sheet to index
+   * @param options the index options, or NULL for the defaults
+   */
+  public CellContentIndex(Sheet s, IndexOptions options)
+  {
+    sheet = s;
+    ignoreCase = options != null && options.getIgnoreCase();
+    build();
+  }
+
+  /**
+   * Builds the index by scanning the sheet row by row
+   */
+  private void build()
+  {
+    positions = new HashMap();
+    keys = null;
+
+    int numRows = sheet.getRows();
+    for (int row = 0; row < numRows; row++)
+    {
+      Cell[] cells = sheet.getRow(row);
+      for (int col = 0; col < cells.length; col++)
+      {
+        String contents = cells[col].getContents();
+        if (contents != null && contents.length() > 0)
+        {
+          // Positions are visited in row major order, so simply append
+          getPositionList(getKey(contents)).add(getPosition(col, row));
+        }
+      }
+    }
+  }
+
+  /**
+   * Marks the whole index as out of date, for example when rows or
+   * columns are inserted into the sheet.  It is rebuilt on the next lookup
+   */
+  public void invalidate()
+  {
+    positions = null;
+    keys = null;
+  }
+
+  /**
+   * Brings the index up to date for the cell at the specified position,
+   * after that cell has been added, removed or modified
+   *
+   * @param col the column
+   * @param row the row
+   */
+  public void update(int col, int row)
+  {
+    if (positions == null)
+    {
+      // The whole index will be rebuilt anyway
+      return;
+    }
+
+    if (keys == null)
+    {
+      buildKeys();
+    }
+
+    long position = getPosition(col, row);
+    Long pos = new Long(position);
+
+    String oldKey = (String) keys.remove(pos);
+    if (oldKey != null)
+    {
+      PositionList list = (PositionList) positions.get(oldKey);
+      list.remove(position);
+      if (list.size == 0)
+      {
+        positions.remove(oldKey);
+      }
+    }
+
+    String contents = sheet.getCell(col, row).getContents();
+    if (contents != null && contents.length() > 0)
+    {
+      String key = getKey(contents);
+      getPositionList(key).add(position);
+      keys.put(pos, key);
+    }
+  }
+
+  /**
+   * Builds the reverse map from positions to keys
+   */
+  private void buildKeys()
+  {
+    keys = new HashMap();
+    Iterator i = positions.entrySet().iterator();
+    while (i.hasNext())
+    {
+      Map.Entry entry = (Map.Entry) i.next();
+      PositionList list = (PositionList) entry.getValue();
+      for (int j = 0; j < list.size; j++)
+      {
+        keys.put(new Long(list.positions[j]), entry.getKey());
+      }
+    }
+  }
+
+  /**
+   * Gets the first cell, in row major order, whose contents match the
+   * string passed in
+   *
+   * @param contents the contents to find
+   * @return the cell, or NULL if no cell matches
+   */
+  public Cell findCell(String contents)
+  {
+    PositionList list = getCandidates(contents);
+    String key = list != null ? getKey(contents) : null;
+
+    for (int i = 0; list != null && i < list.size; i++)
+    {
+      Cell c = getCell(list.positions[i]);
+      if (getKey(c.getContents()).equals(key))
+      {
+        return c;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Gets all the cells whose contents match the string passed in, in row
+   * major order
+   *
+   * @param contents the contents to find
+   * @return the matching cells
+   */
+  public Cell[] findCells(String contents)
+  {
+    PositionList list = getCandidates(contents);
+    if (list == null)
+    {
+      return new Cell[0];
+    }
+
+    String key = getKey(contents);
+    Cell[] cells = new Cell[list.size];
+    int count = 0;
+    for (int i = 0; i < list.size; i++)
+    {
+      Cell c = getCell(list.positions[i]);
+      if (getKey(c.getContents()).equals(key))
+      {
+        cells[count] = c;
+        count++;
+      }
+    }
+
+    if (count < cells.length)
+    {
+      Cell[] found = new Cell[count];
+      System.arraycopy(cells, 0, found, 0, count);
+      cells = found;
+    }
+
+    return cells;
+  }
+
+  /**
+   * Gets the first cell, in row major order, whose contents are exactly
+   * the string passed in.  Used by the CellFinder
+   *
+   * @param contents the contents to find, which must not be empty
+   * @param labelsOnly TRUE if only labels and string formulas may match
+   * @return the cell, or NULL if no cell matches
+   */
+  Cell findExactCell(String contents, boolean labelsOnly)
+  {
+    PositionList list = getCandidates(contents);
+
+    for (int i = 0; list != null && i < list.size; i++)
+    {
+      Cell c = getCell(list.positions[i]);
+      if (c.getContents().equals(contents) &&
+          (!labelsOnly ||
+           c.getType() == CellType.LABEL ||
+           c.getType() == CellType.STRING_FORMULA))
+      {
+        return c;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Gets the cell within the specified range whose contents are exactly
+   * the string passed in.  The cells are taken in the same column by
+   * column order as the scan performed by the CellFinder
+   *
+   * @param contents the contents to find, which must not be empty
+   * @param firstCol the first column within the range
+   * @param firstRow the first row of the range
+   * @param lastCol the last column within the range
+   * @param lastRow the last row within the range
+   * @param reverse indicates whether to perform a reverse search or not
+   * @return the cell, or NULL if no cell matches
+   */
+  Cell findExactCell(String contents,
+                     int firstCol,
+                     int firstRow,
+                     int lastCol,
+                     int lastRow,
+                     boolean reverse)
+  {
+    PositionList list = getCandidates(contents);
+    Cell cell = null;
+
+    for (int i = 0; list != null && i < list.size; i++)
+    {
+      long position = list.positions[i];
+      int row = (int) (position >>> 32);
+      int col = (int) position;
+
+      if (col < firstCol || col > lastCol || row < firstRow || row > lastRow)
+      {
+        continue;
+      }
+
+      // Keep the cell which comes first in column order, or last if
+      // searching in reverse
+      if (cell != null)
+      {
+        boolean before = col < cell.getColumn() ||
+          (col == cell.getColumn() && row < cell.getRow());
+        if (before == reverse)
+        {
+          continue;
+        }
+      }
+
+      Cell c = sheet.getCell(col, row);
+      if (c.getType() != CellType.EMPTY && c.getContents().equals(contents))
+      {
+        cell = c;
+      }
+    }
+
+    return cell;
+  }
+
+  /**
+   * Gets the positions whose key is the same as that of the contents
+   * passed in, rebuilding the index first if necessary
+   *
+   * @param contents the contents
+   * @return the positions, or NULL if there are none
+   */
+  private PositionList getCandidates(String contents)
+  {
+    if (contents == null || contents.length() == 0)
+    {
+      return null;
+    }
+
+    if (positions == null)
+    {
+      build();
+    }
+
+    return (PositionList) positions.get(getKey(contents));
+  }
+
+  /**
+   * Gets the positions for the specified key, creating them if necessary
+   *
+   * @param key the key
+   * @return the positions
+   */
+  private PositionList getPositionList(String key)
+  {
+    PositionList list = (PositionList) positions.get(key);
+    if (list == null)
+    {
+      list = new PositionList();
+      positions.put(key, list);
+    }
+    return list;
+  }
+
+  /**
+   * Gets the cell at the specified position
+   *
+   * @param position the position
+   * @return the cell
+   */
+  private Cell getCell(long position)
+  {
+    return sheet.getCell((int) position, (int) (position >>> 32));
+  }
+
+  /**
+   * Gets the key for the specified contents
+   *
+   * @param contents the contents
+   * @return the key
+   */
+  private String getKey(String contents)
+  {
+    return ignoreCase ? contents.toLowerCase(Locale.ROOT) : contents;
+  }
+
+  /**
+   * Gets the position of a cell.  The row is held in the upper half, so
+   * that positions are ordered row by row
+   *
+   * @param col the column
+   * @param row the row
+   * @return the position
+   */
+  private static long getPosition(int col, int row)
+  {
+    return ((long) row << 32) | (col & 0xffffffffL);
+  }
+
+  /**
+   * The sorted positions of the cells which share a key
+   */
+  private static final class PositionList
+  {
+    /**
+     * The positions
+     */
+    private long[] positions = new long[1];
+
+    /**
+     * The number of positions
+     */
+    private int size;
+
+    /**
+     * Adds a position, keeping the positions in order
+     *
+     * @param position the position to add
+     */
+    void add(long position)
+    {
+      if (size == positions.length)
+      {
+        long[] newPositions = new long[size * 2];
+        System.arraycopy(positions, 0, newPositions, 0, size);
+        positions = newPositions;
+      }
+
+      int i = size;
+      while (i > 0 && positions[i - 1] > position)
+      {
+        positions[i] = positions[i - 1];
+        i--;
+      }
+      positions[i] = position;
+      size++;
+    }
+
+    /**
+     * Removes a position
+     *
+     * @param position the position to remove
+     */
+    void remove(long position)
+    {
+      for (int i = 0; i < size; i++)
+      {
+        if (positions[i] == position)
+        {
+          System.arraycopy(positions, i + 1, positions, i, size - i - 1);
+          size--;
+          return;
+        }
+      }
+    }
+  }
+}
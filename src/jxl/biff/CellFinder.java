@@ -35,11 +35,29 @@ public class CellFinder
 {
   private Sheet sheet;
 
+  /**
+   * The content index of the sheet, or NULL if the sheet has none
+   */
+  private CellContentIndex index;
+
   public CellFinder(Sheet s)
   {
     sheet = s;
   }
 
+  /**
+   * Constructor used by sheets which may have a content index.  Lookups
+   * of non-empty strings are answered from the index, if there is one
+   *
+   * @param s the sheet
+   * @param ci the content index, or NULL
+   */
+  public CellFinder(Sheet s, CellContentIndex ci)
+  {
+    sheet = s;
+    index = ci;
+  }
+
   /**
    * Gets the cell whose contents match the string passed in.
    * If no match is found, then null is returned.  The search is performed
@@ -61,6 +79,12 @@ public class CellFinder
                        int lastRow, 
                        boolean reverse)
   {
+    if (index != null && contents != null && contents.length() > 0)
+    {
+      return index.findExactCell(contents, firstCol, firstRow,
+                                 lastCol, lastRow, reverse);
+    }
+
     Cell cell = null;
     boolean found = false;
     
@@ -105,6 +129,11 @@ public class CellFinder
    */
   public Cell findCell(String contents)
   {
+    if (index != null && contents != null && contents.length() > 0)
+    {
+      return index.findExactCell(contents, false);
+    }
+
     Cell cell = null;
     boolean found = false;
     
@@ -196,6 +225,11 @@ public class CellFinder
    */
   public LabelCell findLabelCell(String contents)
   {
+    if (index != null && contents != null && contents.length() > 0)
+    {
+      return (LabelCell) index.findExactCell(contents, true);
+    }
+
     LabelCell cell = null;
     boolean found = false;
 
@@ -0,0 +1,322 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+
+package jxl.biff;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Converts between Excel date serial numbers, milliseconds since
+ * the epoch and java.time dates.  The conversions are plain arithmetic,
+ * and do not use Calendar or TimeZone
+ */
+public final class DateHelper
+{
+  /**
+   * The number of days between 1 Jan 1900 and 1 March 1900. Excel thinks
+   * the day before this was 29th Feb 1900, but it was 28th Feb 1900
+   */
+  private static final int nonLeapDay = 61;
+
+  /**
+   * The number of days between 01 Jan 1900 and 01 Jan 1970
+   */
+  private static final int utcOffsetDays = 25569;
+
+  /**
+   * The number of days between 01 Jan 1904 and 01 Jan 1970
+   */
+  private static final int utcOffsetDays1904 = 24107;
+
+  /**
+   * The number of seconds in a day
+   */
+  private static final long secondsInADay = 24 * 60 * 60;
+
+  /**
+   * The number of milliseconds in a second
+   */
+  private static final long msInASecond = 1000;
+
+  /**
+   * The number of milliseconds in a day
+   */
+  private static final long msInADay = secondsInADay * msInASecond;
+
+  /**
+   * The earliest date, in milliseconds, which java.text formats using the
+   * Gregorian calendar.  Dates before this are formatted as Julian dates
+   * by SimpleDateFormat, and so are not formatted with java.time
+   */
+  private static final long gregorianCutover = -12219292800000L;
+
+  /**
+   * The dates used to check that a DateTimeFormatter gives the same results
+   * as the SimpleDateFormat it replaces.  These cover every month and
+   * weekday, morning and afternoon, and two and four digit years
+   */
+  private static final LocalDateTime[] sampleDates;
+
+  static
+  {
+    sampleDates = new LocalDateTime[16];
+    for (int i = 0; i < 14; i++)
+    {
+      sampleDates[i] = LocalDateTime.of(2001 + i, (i % 12) + 1, i + 1,
+                                        (i * 5) % 24, i * 4, i * 3);
+    }
+    sampleDates[14] = LocalDateTime.of(1900, 1, 1, 0, 0, 0);
+    sampleDates[15] = LocalDateTime.of(1999, 12, 31, 23, 59, 59);
+  }
+
+  /**
+   * Private constructor disables the instantiation of this object
+   */
+  private DateHelper()
+  {
+  }
+
+  /**
+   * Converts an Excel date serial number into milliseconds since
+   * 01 Jan 1970 UTC.  Values between -1 and 1 are taken to be times only
+   *
+   * @param serial the Excel date serial number
+   * @param nineteenFour TRUE if the workbook uses the 1904 date system
+   * @return the number of milliseconds since the epoch
+   */
+  public static long getEpochMillis(double serial, boolean nineteenFour)
+  {
+    // Work round a bug in excel.  Excel seems to think there is a date
+    // called the 29th Feb, 1900 - but in actual fact this was not a leap
+    // year.  Therefore for dates less than 61 in the 1900 date system,
+    // add one to the numeric value
+    if (!nineteenFour && Math.abs(serial) >= 1 && serial < nonLeapDay)
+    {
+      serial += 1;
+    }
+
+    // Convert this to the number of days since 01 Jan 1970
+    int offsetDays = nineteenFour ? utcOffsetDays1904 : utcOffsetDays;
+    double utcDays = serial - offsetDays;
+
+    // Use the round function prior to ms conversion due to a rounding
+    // feature of Excel
+    return Math.round(utcDays * secondsInADay) * msInASecond;
+  }
+
+  /**
+   * Converts milliseconds since 01 Jan 1970 UTC into an Excel date
+   * serial number
+   *
+   * @param millis the number of milliseconds since the epoch
+   * @param time TRUE if only the time of day is wanted
+   * @param nineteenFour TRUE if the workbook uses the 1904 date system
+   * @return the Excel date serial number
+   */
+  public static double getSerial(long millis, boolean time,
+                                 boolean nineteenFour)
+  {
+    // Convert this to the number of days, plus fractions of a day since
+    // 01 Jan 1970, and add in the offset to the start of the date system
+    double utcDays = (double) millis / (double) msInADay;
+    double value = utcDays +
+      (nineteenFour ? utcOffsetDays1904 : utcOffsetDays);
+
+    // Work round the Excel leap year bug.  Only do this for full dates,
+    // not times
+    if (!nineteenFour && !time && value < nonLeapDay)
+    {
+      value -= 1;
+    }
+
+    // If this refers to a time, then get rid of the integer part
+    if (time)
+    {
+      value = value - (int) value;
+    }
+
+    return value;
+  }
+
+  /**
+   * Converts an Excel date serial number into a date and time.  The
+   * result is the date and time as shown by Excel, with no time zone
+   *
+   * @param serial the Excel date serial number
+   * @param nineteenFour TRUE if the workbook uses the 1904 date system
+   * @return the date and time
+   */
+  public static LocalDateTime getLocalDateTime(double serial,
+                                               boolean nineteenFour)
+  {
+    return getLocalDateTime(getEpochMillis(serial, nineteenFour));
+  }
+
+  /**
+   * Converts milliseconds since 01 Jan 1970 UTC into a date and time
+   *
+   * @param millis the number of milliseconds since the epoch
+   * @return the date and time in UTC
+   */
+  public static LocalDateTime getLocalDateTime(long millis)
+  {
+    long seconds = Math.floorDiv(millis, msInASecond);
+    int nanos = (int) Math.floorMod(millis, msInASecond) * 1000000;
+    return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+  }
+
+  /**
+   * Converts an Excel date serial number into a date, discarding any
+   * time of day
+   *
+   * @param serial the Excel date serial number
+   * @param nineteenFour TRUE if the workbook uses the 1904 date system
+   * @return the date
+   */
+  public static LocalDate getLocalDate(double serial, boolean nineteenFour)
+  {
+    return getLocalDateTime(serial, nineteenFour).toLocalDate();
+  }
+
+  /**
+   * Converts a date and time into milliseconds since 01 Jan 1970, treating
+   * it as a UTC date and time
+   *
+   * @param dt the date and time
+   * @return the number of milliseconds since the epoch
+   */
+  public static long getEpochMillis(LocalDateTime dt)
+  {
+    return dt.toEpochSecond(ZoneOffset.UTC) * msInASecond +
+      dt.getNano() / 1000000;
+  }
+
+  /**
+   * Converts a date and time into an Excel date serial number
+   *
+   * @param dt the date and time
+   * @param time TRUE if only the time of day is wanted
+   * @param nineteenFour TRUE if the workbook uses the 1904 date system
+   * @return the Excel date serial number
+   */
+  public static double getSerial(LocalDateTime dt, boolean time,
+                                 boolean nineteenFour)
+  {
+    return getSerial(getEpochMillis(dt), time, nineteenFour);
+  }
+
+  /**
+   * Converts a date into an Excel date serial number
+   *
+   * @param d the date
+   * @param nineteenFour TRUE if the workbook uses the 1904 date system
+   * @return the Excel date serial number
+   */
+  public static double getSerial(LocalDate d, boolean nineteenFour)
+  {
+    return getSerial(d.atStartOfDay(), false, nineteenFour);
+  }
+
+  /**
+   * Sees if a date, in milliseconds since the epoch, may be formatted
+   * with a formatter obtained from getDateTimeFormatter
+   *
+   * @param millis the number of milliseconds since the epoch
+   * @return TRUE if the formatter gives the same result as java.text
+   */
+  public static boolean isFormattable(long millis)
+  {
+    return millis >= gregorianCutover;
+  }
+
+  /**
+   * Gets an immutable DateTimeFormatter which formats in the same way as
+   * the date format, for dates in UTC.  The formatter is only returned
+   * if the pattern uses letters which mean the same to both, and if it
+   * gives the same results as the date format for a range of dates
+   *
+   * @param df the date format
+   * @return the equivalent formatter, or NULL if there is none
+   */
+  public static DateTimeFormatter getDateTimeFormatter(DateFormat df)
+  {
+    if (!(df instanceof SimpleDateFormat))
+    {
+      return null;
+    }
+
+    SimpleDateFormat sdf = (SimpleDateFormat) df.clone();
+    sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
+    String pattern = sdf.toPattern();
+
+    boolean quoted = false;
+    for (int i = 0; i < pattern.length(); i++)
+    {
+      char c = pattern.charAt(i);
+      if (c == '\'')
+      {
+        quoted = !quoted;
+      }
+      else if (!quoted && "[]{}#".indexOf(c) != -1)
+      {
+        // Optional sections and reserved characters for java.time
+        return null;
+      }
+      else if (!quoted && ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) &&
+               "yMdHhkKmsaE".indexOf(c) == -1)
+      {
+        return null;
+      }
+    }
+
+    DateTimeFormatter dtf = null;
+    try
+    {
+      dtf = DateTimeFormatter.ofPattern(pattern);
+
+      for (int i = 0; i < sampleDates.length; i++)
+      {
+        long millis = getEpochMillis(sampleDates[i]);
+        if (!dtf.format(sampleDates[i]).equals(sdf.format(new Date(millis))))
+        {
+          return null;
+        }
+      }
+    }
+    catch (IllegalArgumentException e)
+    {
+      return null;
+    }
+    catch (DateTimeException e)
+    {
+      return null;
+    }
+
+    return dtf;
+  }
+}
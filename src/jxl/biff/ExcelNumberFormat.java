@@ -0,0 +1,1027 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+
+package jxl.biff;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+
+/**
+ * A number format compiled from an Excel format string.  The format string
+ * is parsed once into its sections, and numbers are then formatted
+ * directly into a StringBuilder, without going through java.text.  Unlike
+ * DecimalFormat, an ExcelNumberFormat is immutable and may be shared
+ * between any number of threads.
+ *
+ * Excel formats which cannot be compiled (fractions, conditions,
+ * engineering notation and the like) are reported by compile returning
+ * null, in which case the caller carries on using the java.text
+ * equivalent.  For the formats which DecimalFormat understands, the
+ * output is the same as that of DecimalFormat
+ */
+public final class ExcelNumberFormat
+{
+  /**
+   * The format used for cells which have no number format of their own
+   */
+  private static final ExcelNumberFormat defaultFormat =
+    compile("#.###", new DecimalFormatSymbols());
+
+  /**
+   * The characters which Excel displays as they are, without needing
+   * to be quoted
+   */
+  private static final String literalCharacters = "$+():!^&'~{}<>= ";
+
+  /**
+   * The powers of ten which can be held exactly in a double
+   */
+  private static final double[] powersOfTen = new double[]
+    {1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+     1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+  /**
+   * The largest number of digits which are rounded using double arithmetic
+   */
+  private static final int maximumFastDigits = 10;
+
+  /**
+   * Returned in place of an exponent when the mantissa could not be
+   * formatted using double arithmetic
+   */
+  private static final int noExponent = Integer.MIN_VALUE;
+
+  /**
+   * The largest scaled value which is rounded using double arithmetic.
+   * Below this the error in the scaled value is small enough for the
+   * rounding to be decided unambiguously, except at a tie
+   */
+  private static final double maximumFastValue = 1e11;
+
+  /**
+   * How close to a tie the scaled value may be before the rounding is
+   * done on the exact decimal expansion of the value instead
+   */
+  private static final double tieTolerance = 1e-4;
+
+  /**
+   * The format string this was compiled from
+   */
+  private final String formatString;
+
+  /**
+   * The section used for positive numbers, and for all numbers if there
+   * are no other sections
+   */
+  private final Section positive;
+
+  /**
+   * The section used for negative numbers, or null if negative numbers
+   * are shown with a minus sign in front of the positive section
+   */
+  private final Section negative;
+
+  /**
+   * The section used for zero, or null if zero uses the positive section
+   */
+  private final Section zero;
+
+  /**
+   * The zero digit for the locale
+   */
+  private final char zeroDigit;
+
+  /**
+   * The decimal separator for the locale
+   */
+  private final char decimalSeparator;
+
+  /**
+   * The grouping separator for the locale
+   */
+  private final char groupingSeparator;
+
+  /**
+   * The minus sign for the locale.  For some locales this is more than
+   * one character
+   */
+  private final String minusSign;
+
+  /**
+   * The exponent separator for the locale
+   */
+  private final String exponentSeparator;
+
+  /**
+   * The string shown for NaN
+   */
+  private final String nan;
+
+  /**
+   * The string shown for infinity
+   */
+  private final String infinity;
+
+  /**
+   * One section of a format string.  Each section is made up of the
+   * literal text before the digits, the digits themselves and the
+   * literal text after the digits
+   */
+  private static final class Section
+  {
+    /**
+     * The text shown before the digits
+     */
+    final String prefix;
+
+    /**
+     * The text shown after the digits
+     */
+    final String suffix;
+
+    /**
+     * Indicates whether the section has any digit placeholders at all
+     */
+    final boolean digits;
+
+    /**
+     * The minimum number of integer digits
+     */
+    final int minimumIntegerDigits;
+
+    /**
+     * Indicates whether the integer digits are grouped in thousands
+     */
+    final boolean grouping;
+
+    /**
+     * The minimum number of fraction digits
+     */
+    final int minimumFractionDigits;
+
+    /**
+     * The maximum number of fraction digits
+     */
+    final int maximumFractionDigits;
+
+    /**
+     * Indicates whether the decimal separator is shown even when there
+     * are no fraction digits to follow it
+     */
+    final boolean decimalSeparatorAlwaysShown;
+
+    /**
+     * The factor the value is multiplied by before formatting, for
+     * percentages and for the thousands scaling of trailing commas
+     */
+    final double multiplier;
+
+    /**
+     * Indicates whether the number is shown in scientific notation
+     */
+    final boolean scientific;
+
+    /**
+     * The minimum number of exponent digits
+     */
+    final int minimumExponentDigits;
+
+    /**
+     * Constructor
+     *
+     * @param prefix the text before the digits
+     * @param suffix the text after the digits
+     * @param digits TRUE if the section has any digits placeholders
+     * @param minInt the minimum number of integer digits
+     * @param grouping TRUE if the integer digits are grouped
+     * @param minFrac the minimum number of fraction digits
+     * @param maxFrac the maximum number of fraction digits
+     * @param alwaysShown TRUE if the decimal separator is always shown
+     * @param multiplier the factor to multiply the value by
+     * @param scientific TRUE for scientific notation
+     * @param minExp the minimum number of exponent digits
+     */
+    Section(String prefix, String suffix, boolean digits,
+            int minInt, boolean grouping, int minFrac, int maxFrac,
+            boolean alwaysShown, double multiplier,
+            boolean scientific, int minExp)
+    {
+      this.prefix = prefix;
+      this.suffix = suffix;
+      this.digits = digits;
+      minimumIntegerDigits = minInt;
+      this.grouping = grouping;
+      minimumFractionDigits = minFrac;
+      maximumFractionDigits = maxFrac;
+      decimalSeparatorAlwaysShown = alwaysShown;
+      this.multiplier = multiplier;
+      this.scientific = scientific;
+      minimumExponentDigits = minExp;
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param fs the format string
+   * @param sections the compiled sections
+   * @param symbols the symbols for the locale
+   * @param minus the minus sign for the locale
+   */
+  private ExcelNumberFormat(String fs,
+                            Section[] sections,
+                            DecimalFormatSymbols symbols,
+                            String minus)
+  {
+    formatString = fs;
+    positive = sections[0];
+    negative = sections.length > 1 ? sections[1] : null;
+    zero = sections.length > 2 ? sections[2] : null;
+
+    zeroDigit = symbols.getZeroDigit();
+    decimalSeparator = symbols.getDecimalSeparator();
+    groupingSeparator = symbols.getGroupingSeparator();
+    minusSign = minus;
+    exponentSeparator = symbols.getExponentSeparator();
+    nan = symbols.getNaN();
+    infinity = symbols.getInfinity();
+  }
+
+  /**
+   * Gets the format used for numbers which have no number format of
+   * their own.  This is the equivalent of DecimalFormat("#.###")
+   *
+   * @return the default number format
+   */
+  public static ExcelNumberFormat getDefaultFormat()
+  {
+    return defaultFormat;
+  }
+
+  /**
+   * Compiles the Excel format string
+   *
+   * @param fs the Excel format string
+   * @param symbols the symbols for the locale
+   * @return the compiled format, or NULL if the format string uses
+   *    features which are not supported here
+   */
+  public static ExcelNumberFormat compile(String fs,
+                                          DecimalFormatSymbols symbols)
+  {
+    if (fs == null || fs.length() == 0)
+    {
+      return null;
+    }
+
+    // Split the format string into its sections.  A fourth section
+    // applies only to text, and so is ignored here
+    String[] sectionStrings = new String[3];
+    int numSections = 0;
+    int start = 0;
+    for (int i = 0; i <= fs.length() && numSections < 3; i++)
+    {
+      if (i == fs.length() || fs.charAt(i) == ';')
+      {
+        sectionStrings[numSections] = fs.substring(start, i);
+        numSections++;
+        start = i + 1;
+      }
+      else if (fs.charAt(i) == '"')
+      {
+        int end = fs.indexOf('"', i + 1);
+        if (end == -1)
+        {
+          return null;
+        }
+        i = end;
+      }
+      else if (fs.charAt(i) == '\\' || fs.charAt(i) == '_' ||
+               fs.charAt(i) == '*')
+      {
+        i++;
+      }
+    }
+
+    // The minus and percent signs are taken from DecimalFormat, as for some
+    // locales they include direction marks as well as the sign itself
+    DecimalFormat df = new DecimalFormat("0%", symbols);
+    String minus = df.getNegativePrefix();
+    String percent = df.getPositiveSuffix();
+
+    Section[] sections = new Section[numSections];
+    for (int i = 0; i < numSections; i++)
+    {
+      sections[i] = compileSection(sectionStrings[i], minus, percent);
+      if (sections[i] == null)
+      {
+        return null;
+      }
+    }
+
+    if (!sections[0].digits)
+    {
+      // There is nothing to format the number with
+      return null;
+    }
+
+    return new ExcelNumberFormat(fs, sections, symbols, minus);
+  }
+
+  /**
+   * Compiles a single section of the format string
+   *
+   * @param s the section
+   * @param minus the minus sign for the locale
+   * @param percent the percent sign for the locale
+   * @return the compiled section, or NULL if it is not supported
+   */
+  private static Section compileSection(String s,
+                                        String minus,
+                                        String percent)
+  {
+    StringBuffer prefix = new StringBuffer();
+    StringBuffer suffix = new StringBuffer();
+
+    // 0 = prefix, 1 = integer digits, 2 = fraction digits,
+    // 3 = exponent digits, 4 = suffix
+    int state = 0;
+    boolean digits = false;
+    int minInt = 0;
+    int intDigits = 0;
+    int zeros = 0;
+    boolean grouping = false;
+    int pendingCommas = 0;
+    int scaleCommas = 0;
+    boolean decimalPoint = false;
+    int minFrac = 0;
+    int maxFrac = 0;
+    int percents = 0;
+    boolean scientific = false;
+    int minExp = 0;
+
+    for (int i = 0; i < s.length(); i++)
+    {
+      char c = s.charAt(i);
+
+      if (c == '0' || c == '#')
+      {
+        if (state == 0)
+        {
+          state = 1;
+        }
+        else if (state == 4 || (state == 1 && pendingCommas > 0 &&
+                                intDigits == 0))
+        {
+          // Literal text in the middle of the digits
+          return null;
+        }
+
+        digits = true;
+        if (state == 1)
+        {
+          if (pendingCommas > 0)
+          {
+            grouping = true;
+            pendingCommas = 0;
+          }
+          intDigits++;
+          minInt += c == '0' ? 1 : 0;
+          zeros += c == '0' ? 1 : 0;
+        }
+        else if (state == 2)
+        {
+          maxFrac++;
+          minFrac += c == '0' ? 1 : 0;
+          zeros += c == '0' ? 1 : 0;
+        }
+        else if (state == 3)
+        {
+          if (c != '0')
+          {
+            return null;
+          }
+          minExp++;
+        }
+      }
+      else if (c == '.' && state <= 1 && !decimalPoint)
+      {
+        scaleCommas += pendingCommas;
+        pendingCommas = 0;
+        decimalPoint = true;
+        digits = true;
+        state = 2;
+      }
+      else if (c == ',' && state == 1)
+      {
+        pendingCommas++;
+      }
+      else if (c == ',' && state == 2)
+      {
+        scaleCommas++;
+      }
+      else if ((c == 'E' || c == 'e') && (state == 1 || state == 2) &&
+               i + 1 < s.length() && "+-0".indexOf(s.charAt(i + 1)) != -1)
+      {
+        // Excel always gives the sign of the exponent, but as in the java
+        // equivalent of the format only negative exponents are signed
+        // Only a single integer digit is supported in the mantissa
+        if (intDigits != 1 || minInt != 1 || grouping || pendingCommas > 0)
+        {
+          return null;
+        }
+        scientific = true;
+        state = 3;
+        i += s.charAt(i + 1) == '0' ? 0 : 1;
+      }
+      else if (c == '"')
+      {
+        int end = s.indexOf('"', i + 1);
+        if (end == -1)
+        {
+          return null;
+        }
+        state = endDigits(state);
+        (state == 0 ? prefix : suffix).append(s.substring(i + 1, end));
+        i = end;
+      }
+      else if (c == '\\' && i + 1 < s.length())
+      {
+        state = endDigits(state);
+        (state == 0 ? prefix : suffix).append(s.charAt(i + 1));
+        i++;
+      }
+      else if ((c == '_' || c == '*') && i + 1 < s.length())
+      {
+        // Padding and fill characters take up space on the screen only
+        state = endDigits(state);
+        i++;
+      }
+      else if (c == '[')
+      {
+        int end = s.indexOf(']', i + 1);
+        if (end == -1)
+        {
+          return null;
+        }
+        String tag = s.substring(i + 1, end);
+        if (tag.length() > 1 && tag.charAt(0) == '$')
+        {
+          // A currency and locale tag eg. [$EUR-407]
+          int dash = tag.indexOf('-');
+          state = endDigits(state);
+          (state == 0 ? prefix : suffix).append
+            (tag.substring(1, dash == -1 ? tag.length() : dash));
+        }
+        else if (!isColour(tag))
+        {
+          // Conditions and elapsed time are not supported
+          return null;
+        }
+        i = end;
+      }
+      else if (c == '%')
+      {
+        state = endDigits(state);
+        (state == 0 ? prefix : suffix).append(percent);
+        percents++;
+      }
+      else if (c == '-')
+      {
+        // As in DecimalFormat, a hyphen is shown as the minus sign
+        state = endDigits(state);
+        (state == 0 ? prefix : suffix).append(minus);
+      }
+      else if (literalCharacters.indexOf(c) != -1)
+      {
+        state = endDigits(state);
+        (state == 0 ? prefix : suffix).append(c);
+      }
+      else
+      {
+        // Fractions, text placeholders, date characters etc
+        return null;
+      }
+
+      if (state == 4 && pendingCommas > 0)
+      {
+        scaleCommas += pendingCommas;
+        pendingCommas = 0;
+      }
+    }
+
+    scaleCommas += pendingCommas;
+
+    if (scientific && (minExp == 0 || scaleCommas > 0))
+    {
+      return null;
+    }
+
+    double multiplier = 1;
+    for (int i = 0; i < percents; i++)
+    {
+      multiplier *= 100;
+    }
+    for (int i = 0; i < scaleCommas; i++)
+    {
+      multiplier /= 1000;
+    }
+
+    // As for DecimalFormat, the separator is always shown only when there
+    // are no digits either before or after it, and a pattern such as
+    // #.## without any zeros still has one integer digit
+    boolean alwaysShown = decimalPoint && (intDigits == 0 || maxFrac == 0);
+    if (zeros == 0 && intDigits > 0 && decimalPoint)
+    {
+      minInt = 1;
+    }
+
+    return new Section(prefix.toString(), suffix.toString(),
+                       digits, minInt, grouping, minFrac, maxFrac,
+                       alwaysShown, multiplier, scientific, minExp);
+  }
+
+  /**
+   * Moves the parser state on to the suffix once the digits have ended
+   *
+   * @param state the current state
+   * @return the new state
+   */
+  private static int endDigits(int state)
+  {
+    return state == 0 ? 0 : 4;
+  }
+
+  /**
+   * Sees if the tag in square brackets is a colour
+   *
+   * @param tag the contents of the square brackets
+   * @return TRUE if the tag is a colour
+   */
+  private static boolean isColour(String tag)
+  {
+    String t = tag.toLowerCase();
+    return t.equals("black") || t.equals("blue") || t.equals("cyan") ||
+      t.equals("green") || t.equals("magenta") || t.equals("red") ||
+      t.equals("white") || t.equals("yellow") ||
+      (t.startsWith("color") && t.length() > 5);
+  }
+
+  /**
+   * Gets the format string this was compiled from
+   *
+   * @return the format string
+   */
+  public String getFormatString()
+  {
+    return formatString;
+  }
+
+  /**
+   * Formats the value
+   *
+   * @param value the value to format
+   * @return the formatted value
+   */
+  public String format(double value)
+  {
+    StringBuilder sb = new StringBuilder(16);
+    format(value, sb);
+    return sb.toString();
+  }
+
+  /**
+   * Formats the value, appending the result to the string builder
+   *
+   * @param value the value to format
+   * @param sb the string builder to append to
+   */
+  public void format(double value, StringBuilder sb)
+  {
+    if (Double.isNaN(value))
+    {
+      sb.append(nan);
+      return;
+    }
+
+    // As in DecimalFormat, negative zero and negative values which round
+    // to zero are still shown as negative
+    boolean negativeValue = value < 0 || (value == 0 && 1 / value < 0);
+    Section section = positive;
+
+    if (value == 0 && zero != null)
+    {
+      section = zero;
+    }
+    else if (negativeValue && negative != null)
+    {
+      section = negative;
+    }
+    else if (negativeValue)
+    {
+      sb.append(minusSign);
+    }
+
+    sb.append(section.prefix);
+
+    if (section.digits)
+    {
+      double v = Math.abs(value) * section.multiplier;
+      if (Double.isInfinite(v))
+      {
+        sb.append(infinity);
+      }
+      else if (section.scientific)
+      {
+        appendScientific(v, section, sb);
+      }
+      else
+      {
+        appendFixed(v, section, sb);
+      }
+    }
+
+    sb.append(section.suffix);
+  }
+
+  /**
+   * Appends a value with a fixed number of decimal places
+   *
+   * @param v the absolute value, already multiplied up
+   * @param section the section
+   * @param sb the string builder
+   */
+  private void appendFixed(double v, Section section, StringBuilder sb)
+  {
+    int maxFrac = section.maximumFractionDigits;
+
+    if (maxFrac <= maximumFastDigits)
+    {
+      long units = round(v * powersOfTen[maxFrac]);
+      if (units != -1)
+      {
+        long divisor = (long) powersOfTen[maxFrac];
+        long integerPart = units / divisor;
+        boolean integerShown = appendInteger
+          (integerPart == 0 ? "" : Long.toString(integerPart), section, sb);
+        appendFraction(integerShown, units % divisor, maxFrac, section, sb);
+        return;
+      }
+    }
+
+    // Too large, or too close to a tie, to round reliably in double
+    // arithmetic, so use the decimal expansion of the value.  Like
+    // DecimalFormat, the shortest representation of the double is used
+    // if it has few enough decimal places, and otherwise the exact value
+    // is rounded half even
+    BigDecimal bd = BigDecimal.valueOf(v);
+    BigDecimal shortest = bd.stripTrailingZeros();
+    if (shortest.scale() == maxFrac + 1 && shortest.precision() == 1 &&
+        shortest.unscaledValue().intValue() == 5 && v < 1e-3 &&
+        !isFastPath(section))
+    {
+      // DecimalFormat rounds a small value such as 0.0005 down to zero
+      // when the five falls just after the last decimal place
+      bd = BigDecimal.ZERO;
+    }
+    else if (bd.scale() > maxFrac)
+    {
+      bd = new BigDecimal(v).setScale(maxFrac, RoundingMode.HALF_EVEN);
+    }
+
+    String plain = bd.toPlainString();
+    int point = plain.indexOf('.');
+    String integerDigits = point == -1 ? plain : plain.substring(0, point);
+    String fractionDigits = point == -1 ? "" : plain.substring(point + 1);
+
+    boolean integerShown = appendInteger
+      (integerDigits.equals("0") ? "" : integerDigits, section, sb);
+    appendFraction(integerShown, fractionDigits, section, sb);
+  }
+
+  /**
+   * Rounds a scaled value to the nearest whole number using double
+   * arithmetic
+   *
+   * @param scaled the scaled value
+   * @return the rounded value, or -1 if the value is too large or too close
+   *    to a tie for the rounding to be decided this way
+   */
+  private static long round(double scaled)
+  {
+    if (scaled >= maximumFastValue)
+    {
+      return -1;
+    }
+
+    double whole = Math.floor(scaled);
+    double remainder = scaled - whole;
+    if (Math.abs(remainder - 0.5) <= tieTolerance)
+    {
+      return -1;
+    }
+
+    return (long) whole + (remainder > 0.5 ? 1 : 0);
+  }
+
+  /**
+   * Sees if DecimalFormat would format this section using its fast path,
+   * which rounds small values slightly differently
+   *
+   * @param section the section
+   * @return TRUE if DecimalFormat uses its fast path for this section
+   */
+  private static boolean isFastPath(Section section)
+  {
+    return section.grouping &&
+      section.minimumIntegerDigits == 1 &&
+      section.minimumFractionDigits == 0 &&
+      section.maximumFractionDigits == 3 &&
+      section.multiplier == 1 &&
+      !section.decimalSeparatorAlwaysShown;
+  }
+
+  /**
+   * Appends the integer digits, padding them to the minimum number of
+   * integer digits and inserting the grouping separators
+   *
+   * @param digits the integer digits, or the empty string for zero
+   * @param section the section
+   * @param sb the string builder
+   * @return TRUE if any integer digits were appended
+   */
+  private boolean appendInteger(String digits,
+                                Section section,
+                                StringBuilder sb)
+  {
+    int count = Math.max(digits.length(), section.minimumIntegerDigits);
+    int padding = count - digits.length();
+
+    for (int i = 0; i < count; i++)
+    {
+      int digit = i < padding ? 0 : digits.charAt(i - padding) - '0';
+      sb.append((char) (zeroDigit + digit));
+
+      int remaining = count - i - 1;
+      if (section.grouping && remaining > 0 && remaining % 3 == 0)
+      {
+        sb.append(groupingSeparator);
+      }
+    }
+
+    return count > 0;
+  }
+
+  /**
+   * Appends the decimal separator if it is needed.  As in DecimalFormat,
+   * a zero is shown if there would otherwise be no digits at all
+   *
+   * @param integerShown TRUE if any integer digits have been appended
+   * @param fractionShown TRUE if any fraction digits are to follow
+   * @param section the section
+   * @param sb the string builder
+   */
+  private void appendSeparator(boolean integerShown,
+                               boolean fractionShown,
+                               Section section,
+                               StringBuilder sb)
+  {
+    if (!integerShown && !fractionShown)
+    {
+      sb.append(zeroDigit);
+    }
+
+    if (fractionShown || section.decimalSeparatorAlwaysShown)
+    {
+      sb.append(decimalSeparator);
+    }
+  }
+
+  /**
+   * Appends the decimal separator and the fraction digits, trimming the
+   * trailing zeros down to the minimum number of fraction digits
+   *
+   * @param integerShown TRUE if any integer digits have been appended
+   * @param fractionPart the fraction, in units of the last decimal place
+   * @param digits the number of decimal places
+   * @param section the section
+   * @param sb the string builder
+   */
+  private void appendFraction(boolean integerShown,
+                              long fractionPart,
+                              int digits,
+                              Section section,
+                              StringBuilder sb)
+  {
+    while (digits > section.minimumFractionDigits && fractionPart % 10 == 0)
+    {
+      fractionPart /= 10;
+      digits--;
+    }
+
+    appendSeparator(integerShown, digits > 0, section, sb);
+
+    int start = sb.length();
+    for (int i = 0; i < digits; i++)
+    {
+      sb.append(zeroDigit);
+    }
+    for (int i = sb.length() - 1; i >= start; i--)
+    {
+      sb.setCharAt(i, (char) (zeroDigit + (int) (fractionPart % 10)));
+      fractionPart /= 10;
+    }
+  }
+
+  /**
+   * Appends the decimal separator and the fraction digits, trimming the
+   * trailing zeros down to the minimum number of fraction digits
+   *
+   * @param integerShown TRUE if any integer digits have been appended
+   * @param digits the fraction digits
+   * @param section the section
+   * @param sb the string builder
+   */
+  private void appendFraction(boolean integerShown,
+                              String digits,
+                              Section section,
+                              StringBuilder sb)
+  {
+    int length = digits.length();
+    while (length > 0 && digits.charAt(length - 1) == '0')
+    {
+      length--;
+    }
+
+    int count = Math.max(length, section.minimumFractionDigits);
+    appendSeparator(integerShown, count > 0, section, sb);
+
+    for (int i = 0; i < count; i++)
+    {
+      int digit = i < length ? digits.charAt(i) - '0' : 0;
+      sb.append((char) (zeroDigit + digit));
+    }
+  }
+
+  /**
+   * Appends a value in scientific notation.  The mantissa has a single
+   * integer digit
+   *
+   * @param v the absolute value, already multiplied up
+   * @param section the section
+   * @param sb the string builder
+   */
+  private void appendScientific(double v, Section section, StringBuilder sb)
+  {
+    int maxFrac = section.maximumFractionDigits;
+    int exponent = 0;
+
+    if (v == 0)
+    {
+      sb.append(zeroDigit);
+      appendFraction(true, 0, maxFrac, section, sb);
+    }
+    else if ((exponent = appendMantissa(v, section, sb)) == noExponent)
+    {
+      int significant = 1 + maxFrac;
+      BigDecimal bd = BigDecimal.valueOf(v);
+      if (bd.precision() > significant && v == Math.rint(v) &&
+          v < Long.MAX_VALUE)
+      {
+        // DecimalFormat rounds ties in whole numbers up
+        bd = bd.round(new MathContext(significant, RoundingMode.HALF_UP));
+      }
+      else if (bd.precision() > significant)
+      {
+        bd = new BigDecimal(v).round
+          (new MathContext(significant, RoundingMode.HALF_EVEN));
+      }
+      String digits = bd.unscaledValue().toString();
+
+      sb.append((char) (zeroDigit + (digits.charAt(0) - '0')));
+      appendFraction(true, digits.substring(1), section, sb);
+      exponent = bd.precision() - bd.scale() - 1;
+    }
+
+    appendExponent(exponent, section, sb);
+  }
+
+  /**
+   * Multiplies the value by a power of ten
+   *
+   * @param v the value
+   * @param power the power of ten
+   * @return the scaled value, or NaN if the power is out of range
+   */
+  private static double scale(double v, int power)
+  {
+    if (power >= 0 && power < powersOfTen.length)
+    {
+      return v * powersOfTen[power];
+    }
+    else if (power < 0 && -power < powersOfTen.length)
+    {
+      return v / powersOfTen[-power];
+    }
+
+    return Double.NaN;
+  }
+
+  /**
+   * Appends the mantissa of a value in scientific notation using double
+   * arithmetic
+   *
+   * @param v the value, which is not zero
+   * @param section the section
+   * @param sb the string builder
+   * @return the exponent, or noExponent if nothing was appended because
+   *    the value is out of range or too close to a tie for double arithmetic
+   */
+  private int appendMantissa(double v, Section section, StringBuilder sb)
+  {
+    int maxFrac = section.maximumFractionDigits;
+    if (maxFrac >= maximumFastDigits)
+    {
+      return noExponent;
+    }
+
+    int significant = 1 + maxFrac;
+    int exponent = (int) Math.floor(Math.log10(v));
+    double scaled = scale(v, significant - 1 - exponent);
+    if (scaled < powersOfTen[significant - 1])
+    {
+      exponent--;
+      scaled = scale(v, significant - 1 - exponent);
+    }
+    else if (scaled >= powersOfTen[significant])
+    {
+      exponent++;
+      scaled = scale(v, significant - 1 - exponent);
+    }
+
+    long units = Double.isNaN(scaled) ? -1 : round(scaled);
+    if (units == -1)
+    {
+      return noExponent;
+    }
+
+    long divisor = (long) powersOfTen[maxFrac];
+    if (units == (long) powersOfTen[significant])
+    {
+      // Rounded up to the next power of ten
+      units = divisor;
+      exponent++;
+    }
+
+    sb.append((char) (zeroDigit + (int) (units / divisor)));
+    appendFraction(true, units % divisor, maxFrac, section, sb);
+    return exponent;
+  }
+
+  /**
+   * Appends the exponent of a value in scientific notation
+   *
+   * @param exponent the exponent
+   * @param section the section
+   * @param sb the string builder
+   */
+  private void appendExponent(int exponent, Section section, StringBuilder sb)
+  {
+    sb.append(exponentSeparator);
+    if (exponent < 0)
+    {
+      sb.append(minusSign);
+      exponent = -exponent;
+    }
+    String exponentDigits = Integer.toString(exponent);
+    for (int i = exponentDigits.length();
+         i < section.minimumExponentDigits; i++)
+    {
+      sb.append(zeroDigit);
+    }
+    for (int i = 0; i < exponentDigits.length(); i++)
+    {
+      sb.append((char) (zeroDigit + (exponentDigits.charAt(i) - '0')));
+    }
+  }
+}
@@ -23,6 +23,7 @@ import java.text.DateFormat;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
+import java.time.format.DateTimeFormatter;
 
 import jxl.common.Logger;
 
@@ -76,6 +77,26 @@ public class FormatRecord extends WritableRecordData
    */
   private java.text.Format format;
 
+  /**
+   * The compiled number format.  Compiled on first use
+   */
+  private ExcelNumberFormat excelNumberFormat;
+
+  /**
+   * Indicates whether the format string has been compiled yet
+   */
+  private boolean excelNumberFormatCompiled;
+
+  /**
+   * The java.time equivalent of the date format.  Created on first use
+   */
+  private DateTimeFormatter dateTimeFormatter;
+
+  /**
+   * Indicates whether the java.time equivalent has been looked for yet
+   */
+  private boolean dateTimeFormatterCreated;
+
   /**
    * The date strings to look for
    */
@@ -305,11 +326,13 @@ public class FormatRecord extends WritableRecordData
   }
 
   /**
-   * Gets the java equivalent number format for the formatString
+   * Gets the java equivalent number format for the formatString.  The
+   * format is created on first use, which may happen on several threads
+   * when sheets are read concurrently
    *
    * @return The java equivalent of the number format for this object
    */
-  public final NumberFormat getNumberFormat()
+  public final synchronized NumberFormat getNumberFormat()
   {
     if (format != null && format instanceof NumberFormat)
     {
@@ -339,12 +362,51 @@ public class FormatRecord extends WritableRecordData
     return (NumberFormat) format;
   }
 
+  /**
+   * Gets the compiled equivalent of the number format.  This formats in
+   * the same way as the java number format, using the same symbols, but
+   * may be shared between threads
+   *
+   * @return the compiled number format, or NULL if the format string
+   *    cannot be compiled
+   */
+  public final synchronized ExcelNumberFormat getExcelNumberFormat()
+  {
+    if (!excelNumberFormatCompiled)
+    {
+      DecimalFormat df = (DecimalFormat) getNumberFormat();
+      excelNumberFormat = ExcelNumberFormat.compile
+        (formatString, df.getDecimalFormatSymbols());
+      excelNumberFormatCompiled = true;
+    }
+
+    return excelNumberFormat;
+  }
+
+  /**
+   * Gets the immutable java.time equivalent of the date format.  This may
+   * be shared between threads
+   *
+   * @return the formatter, or NULL if the date format has no java.time
+   *    equivalent
+   */
+  public final synchronized DateTimeFormatter getDateTimeFormatter()
+  {
+    if (!dateTimeFormatterCreated)
+    {
+      dateTimeFormatter = DateHelper.getDateTimeFormatter(getDateFormat());
+      dateTimeFormatterCreated = true;
+    }
+
+    return dateTimeFormatter;
+  }
+
   /**
    * Gets the java equivalent date format for the formatString
    *
    * @return The java equivalent of the date format for this object
    */
-  public final DateFormat getDateFormat()
+  public final synchronized DateFormat getDateFormat()
   {
     if (format != null && format instanceof DateFormat)
     {
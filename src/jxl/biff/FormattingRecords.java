@@ -22,6 +22,7 @@ package jxl.biff;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.text.NumberFormat;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -232,6 +233,34 @@ public class FormattingRecords
     return fr.isDate() ? fr.getDateFormat() : null;
   }
 
+  /**
+   * Gets the immutable java.time equivalent of the DateFormat used to
+   * format the cell
+   *
+   * @param pos the xf format index
+   * @return the formatter, or NULL if the cell has no date format or its
+   *    format has no java.time equivalent
+   */
+  public final DateTimeFormatter getDateTimeFormatter(int pos)
+  {
+    XFRecord xfr = (XFRecord) xfRecords.get(pos);
+
+    if (xfr.isDate())
+    {
+      return xfr.getDateTimeFormatter();
+    }
+
+    FormatRecord fr = (FormatRecord)
+      formats.get(new Integer(xfr.getFormatRecord()));
+
+    if (fr == null)
+    {
+      return null;
+    }
+
+    return fr.isDate() ? fr.getDateTimeFormatter() : null;
+  }
+
   /**
    * Gets the NumberFormat used to format the cell.
    *
@@ -259,6 +288,36 @@ public class FormattingRecords
     return fr.isNumber() ? fr.getNumberFormat() : null;
   }
 
+  /**
+   * Gets the compiled number format used to format the cell.  The
+   * compiled formats are cached with their format records, and so are
+   * compiled once for each format index
+   *
+   * @param pos the xf format index
+   * @return the compiled number format, or NULL if the cell has no number
+   *    format or its format could not be compiled.  In the latter case
+   *    the java.text equivalent should be used instead
+   */
+  public final ExcelNumberFormat getExcelNumberFormat(int pos)
+  {
+    XFRecord xfr = (XFRecord) xfRecords.get(pos);
+
+    if (xfr.isNumber())
+    {
+      return xfr.getExcelNumberFormat();
+    }
+
+    FormatRecord fr = (FormatRecord)
+      formats.get(new Integer(xfr.getFormatRecord()));
+
+    if (fr == null)
+    {
+      return null;
+    }
+
+    return fr.isNumber() ? fr.getExcelNumberFormat() : null;
+  }
+
   /**
    * Gets the format record
    *
@@ -48,6 +48,20 @@ public abstract class RecordData
     code = r.getCode();
   }
 
+  /**
+   * Constructs this object from the raw data, optionally without holding
+   * on to it.  Records which decode everything they need in their
+   * constructor may then be built from a reusable record cursor
+   *
+   * @param r the raw data
+   * @param retain FALSE if the raw data is not needed after construction
+   */
+  protected RecordData(Record r, boolean retain)
+  {
+    record = retain ? r : null;
+    code = r.getCode();
+  }
+
   /**
    * Constructor used by the writable records
    *
@@ -0,0 +1,1297 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+package jxl.biff;
+
+import java.text.DateFormat;
+import java.text.NumberFormat;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.regex.Pattern;
+
+import jxl.BooleanCell;
+import jxl.BooleanFormulaCell;
+import jxl.Cell;
+import jxl.CellFeatures;
+import jxl.CellRegion;
+import jxl.CellType;
+import jxl.CellView;
+import jxl.ContentIndex;
+import jxl.DateCell;
+import jxl.DateFormulaCell;
+import jxl.ErrorCell;
+import jxl.ErrorFormulaCell;
+import jxl.FormulaCell;
+import jxl.Hyperlink;
+import jxl.Image;
+import jxl.IndexOptions;
+import jxl.LabelCell;
+import jxl.NumberCell;
+import jxl.NumberFormulaCell;
+import jxl.Range;
+import jxl.Sheet;
+import jxl.SheetSettings;
+import jxl.StringFormulaCell;
+import jxl.biff.formula.FormulaException;
+import jxl.format.CellFormat;
+
+/**
+ * An immutable copy of a sheet.  All the cells are copied when the
+ * snapshot is taken, and the contents of each cell are formatted there
+ * and then, so that the snapshot does not use any of the shared
+ * formatters of the workbook.  A snapshot may therefore be read by any
+ * number of threads at once without locking, and is not affected by the
+ * original sheet being cleared or modified.  The cell formats, cell
+ * features, hyperlinks and images are shared with the original sheet,
+ * and should only be read
+ */
+public final class SheetSnapshot implements Sheet
+{
+  /**
+   * The name of the sheet
+   */
+  private final String name;
+
+  /**
+   * Indicates whether the sheet is hidden
+   */
+  private final boolean hidden;
+
+  /**
+   * Indicates whether the sheet is protected
+   */
+  private final boolean sheetProtected;
+
+  /**
+   * The number of rows
+   */
+  private final int numRows;
+
+  /**
+   * The number of columns
+   */
+  private final int numCols;
+
+  /**
+   * The cells on each row, up to the last cell held on the row
+   */
+  private final Cell[][] cells;
+
+  /**
+   * The hyperlinks
+   */
+  private final Hyperlink[] hyperlinks;
+
+  /**
+   * The merged cells
+   */
+  private final Range[] mergedCells;
+
+  /**
+   * The sheet settings
+   */
+  private final SheetSettings settings;
+
+  /**
+   * The views of the columns of the sheet
+   */
+  private final CellView[] columnViews;
+
+  /**
+   * The view of the columns beyond the last column of the sheet
+   */
+  private final CellView defaultColumnView;
+
+  /**
+   * The views of the rows of the sheet
+   */
+  private final CellView[] rowViews;
+
+  /**
+   * The view of the rows beyond the last row of the sheet
+   */
+  private final CellView defaultRowView;
+
+  /**
+   * The images
+   */
+  private final Image[] images;
+
+  /**
+   * The row page breaks
+   */
+  private final int[] rowPageBreaks;
+
+  /**
+   * The column page breaks
+   */
+  private final int[] columnPageBreaks;
+
+  /**
+   * The index of the cell contents, or NULL if none has been built
+   */
+  private volatile CellContentIndex contentIndex;
+
+  /**
+   * Constructor.  Copies the sheet
+   *
+   * @param s the sheet to copy
+   */
+  public SheetSnapshot(Sheet s)
+  {
+    name = s.getName();
+    hidden = s.isHidden();
+    sheetProtected = s.isProtected();
+    numRows = s.getRows();
+    numCols = s.getColumns();
+
+    cells = new Cell[numRows][];
+    for (int r = 0; r < numRows; r++)
+    {
+      CellRegion row = s.rowView(r);
+      Cell[] copy = new Cell[row.getColumns()];
+      for (int c = 0; c < copy.length; c++)
+      {
+        // The view fills the gaps between held cells with empty cells,
+        // which are left out so that the snapshot holds what the sheet holds
+        Cell cell = row.getCell(c, 0);
+        copy[c] = cell instanceof EmptyCell ? null : copyCell(cell);
+      }
+      cells[r] = copy;
+    }
+
+    hyperlinks = (Hyperlink[]) s.getHyperlinks().clone();
+    mergedCells = (Range[]) s.getMergedCells().clone();
+    settings = new SheetSettings(s.getSettings(), this);
+
+    columnViews = new CellView[numCols];
+    for (int c = 0; c < numCols; c++)
+    {
+      columnViews[c] = new CellView(s.getColumnView(c));
+    }
+    defaultColumnView = new CellView(s.getColumnView(numCols));
+
+    rowViews = new CellView[numRows];
+    for (int r = 0; r < numRows; r++)
+    {
+      rowViews[r] = new CellView(s.getRowView(r));
+    }
+    defaultRowView = new CellView(s.getRowView(numRows));
+
+    images = new Image[s.getNumberOfImages()];
+    for (int i = 0; i < images.length; i++)
+    {
+      images[i] = s.getDrawing(i);
+    }
+
+    int[] rb = s.getRowPageBreaks();
+    rowPageBreaks = rb != null ? (int[]) rb.clone() : new int[0];
+    int[] cb = s.getColumnPageBreaks();
+    columnPageBreaks = cb != null ? (int[]) cb.clone() : new int[0];
+  }
+
+  /**
+   * Makes an immutable copy of the cell
+   *
+   * @param c the cell
+   * @return the copy
+   */
+  private static Cell copyCell(Cell c)
+  {
+    boolean formula = c instanceof FormulaCell;
+
+    if (c instanceof DateCell)
+    {
+      return formula ? new DateFormulaSnapshot((DateCell) c) :
+        new DateSnapshot((DateCell) c);
+    }
+    else if (c instanceof NumberCell)
+    {
+      return formula ? new NumberFormulaSnapshot((NumberCell) c) :
+        new NumberSnapshot((NumberCell) c);
+    }
+    else if (c instanceof LabelCell)
+    {
+      return formula ? new StringFormulaSnapshot((LabelCell) c) :
+        new LabelSnapshot((LabelCell) c);
+    }
+    else if (c instanceof BooleanCell)
+    {
+      return formula ? new BooleanFormulaSnapshot((BooleanCell) c) :
+        new BooleanSnapshot((BooleanCell) c);
+    }
+    else if (c instanceof ErrorCell)
+    {
+      return formula ? new ErrorFormulaSnapshot((ErrorCell) c) :
+        new ErrorSnapshot((ErrorCell) c);
+    }
+
+    return new CellSnapshot(c);
+  }
+
+  /**
+   * Returns the cell specified at this row and at this column
+   *
+   * @param column the column number
+   * @param row the row number
+   * @return the cell at the specified co-ordinates
+   */
+  public Cell getCell(int column, int row)
+  {
+    Cell c = getStoredCell(column, row);
+    return c != null ? c : new EmptyCell(column, row);
+  }
+
+  /**
+   * Returns the cell for the specified location eg. "A4"
+   *
+   * @param loc the cell reference
+   * @return the cell at the specified co-ordinates
+   */
+  public Cell getCell(String loc)
+  {
+    return getCell(CellReferenceHelper.getColumn(loc),
+                   CellReferenceHelper.getRow(loc));
+  }
+
+  /**
+   * Gets the cell held at the specified position
+   *
+   * @param column the column number
+   * @param row the row number
+   * @return the cell, or NULL if there is none
+   */
+  private Cell getStoredCell(int column, int row)
+  {
+    if (row < 0 || row >= numRows || column < 0 ||
+        column >= cells[row].length)
+    {
+      return null;
+    }
+
+    return cells[row][column];
+  }
+
+  /**
+   * Returns the number of rows in this sheet
+   *
+   * @return the number of rows in this sheet
+   */
+  public int getRows()
+  {
+    return numRows;
+  }
+
+  /**
+   * Returns the number of columns in this sheet
+   *
+   * @return the number of columns in this sheet
+   */
+  public int getColumns()
+  {
+    return numCols;
+  }
+
+  /**
+   * Gets all the cells on the specified row
+   *
+   * @param row the rows whose cells are to be returned
+   * @return the cells on the given row
+   */
+  public Cell[] getRow(int row)
+  {
+    int columns = row >= 0 && row < numRows ? cells[row].length : 0;
+    Cell[] c = new Cell[columns];
+    for (int i = 0; i < columns; i++)
+    {
+      c[i] = getCell(i, row);
+    }
+    return c;
+  }
+
+  /**
+   * Gets the cells on the rows from firstRow up to, but not including,
+   * lastRow
+   *
+   * @param firstRow the first row to get
+   * @param lastRow the row after the last row to get
+   * @return the cells on the rows, indexed on the row relative to firstRow
+   */
+  public Cell[][] getRowWindow(int firstRow, int lastRow)
+  {
+    Cell[][] window = new Cell[lastRow - firstRow][];
+    for (int i = 0; i < window.length; i++)
+    {
+      window[i] = getRow(firstRow + i);
+    }
+    return window;
+  }
+
+  /**
+   * Gets all the cells on the specified column
+   *
+   * @param col the column whose cells are to be returned
+   * @return the cells on the specified column
+   */
+  public Cell[] getColumn(int col)
+  {
+    int row = numRows - 1;
+    while (row >= 0 && getStoredCell(col, row) == null)
+    {
+      row--;
+    }
+
+    Cell[] c = new Cell[row + 1];
+    for (int i = 0; i <= row; i++)
+    {
+      c[i] = getCell(col, i);
+    }
+    return c;
+  }
+
+  /**
+   * Gets a view of the cells on the specified row
+   *
+   * @param row the row
+   * @return a view of the row
+   */
+  public CellRegion rowView(int row)
+  {
+    int columns = row >= 0 && row < numRows ? cells[row].length : 0;
+    return new SnapshotRegion(0, row, columns, 1);
+  }
+
+  /**
+   * Gets a view of the cells on the specified column
+   *
+   * @param col the column
+   * @return a view of the column
+   */
+  public CellRegion columnView(int col)
+  {
+    int row = numRows - 1;
+    while (row >= 0 && getStoredCell(col, row) == null)
+    {
+      row--;
+    }
+
+    return new SnapshotRegion(col, 0, 1, row + 1);
+  }
+
+  /**
+   * Gets a view of the cells in the specified range
+   *
+   * @param col1 the first column of the range
+   * @param row1 the first row of the range
+   * @param col2 the last column of the range
+   * @param row2 the last row of the range
+   * @return a view of the range
+   */
+  public CellRegion range(int col1, int row1, int col2, int row2)
+  {
+    return new SnapshotRegion(col1, row1, col2 - col1 + 1, row2 - row1 + 1);
+  }
+
+  /**
+   * Reads the numbers in the specified rows of a column into the array
+   * passed in
+   *
+   * @param col the column
+   * @param firstRow the first row to read
+   * @param lastRow the last row to read
+   * @param values the array to receive the values
+   * @param present if not NULL, receives TRUE for each row which contains
+   *        a number and FALSE otherwise
+   * @return the number of rows which contain a number
+   */
+  public int readDoubles(int col, int firstRow, int lastRow,
+                         double[] values, boolean[] present)
+  {
+    int count = 0;
+    for (int row = firstRow, i = 0; row <= lastRow; row++, i++)
+    {
+      Cell c = getStoredCell(col, row);
+      boolean number = c instanceof NumberCell;
+      values[i] = number ? ((NumberCell) c).getValue() : Double.NaN;
+      if (present != null)
+      {
+        present[i] = number;
+      }
+      if (number)
+      {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Reads the contents of the specified rows of a column into the array
+   * passed in
+   *
+   * @param col the column
+   * @param firstRow the first row to read
+   * @param lastRow the last row to read
+   * @param values the array to receive the contents
+   * @return the number of rows for which the sheet holds a cell
+   */
+  public int readStrings(int col, int firstRow, int lastRow, String[] values)
+  {
+    int count = 0;
+    for (int row = firstRow, i = 0; row <= lastRow; row++, i++)
+    {
+      Cell c = getStoredCell(col, row);
+      values[i] = c != null ? c.getContents() : null;
+      if (c != null)
+      {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Reads the types of the cells in the specified rows of a column into
+   * the array passed in
+   *
+   * @param col the column
+   * @param firstRow the first row to read
+   * @param lastRow the last row to read
+   * @param types the array to receive the cell types
+   * @return the number of rows which are not empty
+   */
+  public int readCellTypes(int col, int firstRow, int lastRow,
+                           CellType[] types)
+  {
+    int count = 0;
+    for (int row = firstRow, i = 0; row <= lastRow; row++, i++)
+    {
+      Cell c = getStoredCell(col, row);
+      types[i] = c != null ? c.getType() : CellType.EMPTY;
+      if (types[i] != CellType.EMPTY)
+      {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Gets the name of this sheet
+   *
+   * @return the name of the sheet
+   */
+  public String getName()
+  {
+    return name;
+  }
+
+  /**
+   * Determines whether the sheet is hidden
+   *
+   * @return whether or not the sheet is hidden
+   * @deprecated in favour of the getSettings function
+   */
+  public boolean isHidden()
+  {
+    return hidden;
+  }
+
+  /**
+   * Determines whether the sheet is protected
+   *
+   * @return whether or not the sheet is protected
+   * @deprecated in favour of the getSettings() api
+   */
+  public boolean isProtected()
+  {
+    return sheetProtected;
+  }
+
+  /**
+   * Gets the cell whose contents match the string passed in
+   *
+   * @param contents the string to match
+   * @return the Cell whose contents match the paramter, null if not found
+   */
+  public Cell findCell(String contents)
+  {
+    return new CellFinder(this, contentIndex).findCell(contents);
+  }
+
+  /**
+   * Gets the cell whose contents match the string passed in, within the
+   * specified range
+   *
+   * @param contents the string to match
+   * @param firstCol the first column within the range
+   * @param firstRow the first row of the range
+   * @param lastCol the last column within the range
+   * @param lastRow the last row within the range
+   * @param reverse indicates whether to perform a reverse search or not
+   * @return the Cell whose contents match the parameter, null if not found
+   */
+  public Cell findCell(String contents,
+                       int firstCol,
+                       int firstRow,
+                       int lastCol,
+                       int lastRow,
+                       boolean reverse)
+  {
+    return new CellFinder(this, contentIndex).findCell(contents, firstCol, firstRow,
+                                         lastCol, lastRow, reverse);
+  }
+
+  /**
+   * Gets the cell whose contents match the regular expression, within
+   * the specified range
+   *
+   * @param pattern the regular expression to match
+   * @param firstCol the first column within the range
+   * @param firstRow the first row of the range
+   * @param lastCol the last column within the range
+   * @param lastRow the last row within the range
+   * @param reverse indicates whether to perform a reverse search or not
+   * @return the Cell whose contents match the parameter, null if not found
+   */
+  public Cell findCell(Pattern pattern,
+                       int firstCol,
+                       int firstRow,
+                       int lastCol,
+                       int lastRow,
+                       boolean reverse)
+  {
+    return new CellFinder(this, contentIndex).findCell(pattern, firstCol, firstRow,
+                                         lastCol, lastRow, reverse);
+  }
+
+  /**
+   * Gets the cell whose contents match the string passed in
+   *
+   * @param contents the string to match
+   * @return the Cell whose contents match the paramter, null if not found
+   */
+  public LabelCell findLabelCell(String contents)
+  {
+    return new CellFinder(this, contentIndex).findLabelCell(contents);
+  }
+
+  /**
+   * Builds an index of the contents of the cells on this sheet, which is
+   * then used by findCell and findLabelCell
+   *
+   * @param options the index options, or NULL for the defaults
+   * @return the index
+   */
+  public ContentIndex buildContentIndex(IndexOptions options)
+  {
+    CellContentIndex index = new CellContentIndex(this, options);
+    contentIndex = index;
+    return index;
+  }
+
+  /**
+   * Discards the content index of this sheet
+   */
+  public void removeContentIndex()
+  {
+    contentIndex = null;
+  }
+
+  /**
+   * Gets the hyperlinks on this sheet
+   *
+   * @return an array of hyperlinks
+   */
+  public Hyperlink[] getHyperlinks()
+  {
+    return (Hyperlink[]) hyperlinks.clone();
+  }
+
+  /**
+   * Gets the cells which have been merged on this sheet
+   *
+   * @return an array of range objects
+   */
+  public Range[] getMergedCells()
+  {
+    return (Range[]) mergedCells.clone();
+  }
+
+  /**
+   * Gets the settings used on a particular sheet
+   *
+   * @return the sheet settings
+   */
+  public SheetSettings getSettings()
+  {
+    return new SheetSettings(settings, this);
+  }
+
+  /**
+   * Gets the column format for the specified column
+   *
+   * @param col the column number
+   * @return the column format, or NULL if the column has no specific format
+   * @deprecated Use getColumnView and the CellView bean instead
+   */
+  public CellFormat getColumnFormat(int col)
+  {
+    return getColumnView(col).getFormat();
+  }
+
+  /**
+   * Gets the column width for the specified column
+   *
+   * @param col the column number
+   * @return the column width, or the default width if the column has no
+   *         specified format
+   * @deprecated Use getColumnView instead
+   */
+  public int getColumnWidth(int col)
+  {
+    return getColumnView(col).getSize() / 256;
+  }
+
+  /**
+   * Gets the column width for the specified column
+   *
+   * @param col the column number
+   * @return the column format, or the default format if no override is
+   *         specified
+   */
+  public CellView getColumnView(int col)
+  {
+    return new CellView(col >= 0 && col < numCols ?
+                        columnViews[col] : defaultColumnView);
+  }
+
+  /**
+   * Gets the row height for the specified row
+   *
+   * @param row the row number
+   * @return the row height, or the default height if the row has no
+   *         specified format
+   * @deprecated use getRowView instead
+   */
+  public int getRowHeight(int row)
+  {
+    return getRowView(row).getDimension();
+  }
+
+  /**
+   * Gets the row view for the specified row
+   *
+   * @param row the row number
+   * @return the row format, or the default format if no override is
+   *         specified
+   */
+  public CellView getRowView(int row)
+  {
+    return new CellView(row >= 0 && row < numRows ?
+                        rowViews[row] : defaultRowView);
+  }
+
+  /**
+   * Accessor for the number of images on the sheet
+   *
+   * @return the number of images on this sheet
+   */
+  public int getNumberOfImages()
+  {
+    return images.length;
+  }
+
+  /**
+   * Accessor for the image
+   *
+   * @param i the 0 based image number
+   * @return  the image at the specified position
+   */
+  public Image getDrawing(int i)
+  {
+    return images[i];
+  }
+
+  /**
+   * Accessor for the page breaks on this sheet
+   *
+   * @return the page breaks on this sheet
+   */
+  public int[] getRowPageBreaks()
+  {
+    return (int[]) rowPageBreaks.clone();
+  }
+
+  /**
+   * Accessor for the page breaks on this sheet
+   *
+   * @return the page breaks on this sheet
+   */
+  public int[] getColumnPageBreaks()
+  {
+    return (int[]) columnPageBreaks.clone();
+  }
+
+  /**
+   * Gets a snapshot of this sheet, which is the sheet itself
+   *
+   * @return this sheet
+   */
+  public Sheet snapshot()
+  {
+    return this;
+  }
+
+  /**
+   * A region of the snapshot
+   */
+  private final class SnapshotRegion extends AbstractCellRegion
+  {
+    /**
+     * Constructor
+     *
+     * @param c the first column
+     * @param r the first row
+     * @param nc the number of columns
+     * @param nr the number of rows
+     */
+    SnapshotRegion(int c, int r, int nc, int nr)
+    {
+      super(c, r, nc, nr);
+    }
+
+    /**
+     * Gets the cell held at the specified position
+     *
+     * @param column the column
+     * @param row the row
+     * @return the cell, or NULL if there is none
+     */
+    protected Cell getStoredCell(int column, int row)
+    {
+      return SheetSnapshot.this.getStoredCell(column, row);
+    }
+
+    /**
+     * Gets the column after the last cell on the specified row
+     *
+     * @param row the row
+     * @return the column after the last cell on the row
+     */
+    protected int getColumnLimit(int row)
+    {
+      return row >= 0 && row < numRows ? cells[row].length : 0;
+    }
+  }
+
+  /**
+   * An immutable copy of a cell, holding its contents as they were
+   * formatted when the copy was made
+   */
+  private static class CellSnapshot implements Cell
+  {
+    /**
+     * The row
+     */
+    private final int row;
+
+    /**
+     * The column
+     */
+    private final int column;
+
+    /**
+     * The cell type
+     */
+    private final CellType type;
+
+    /**
+     * Indicates whether the cell is hidden
+     */
+    private final boolean hidden;
+
+    /**
+     * The formatted contents
+     */
+    private final String contents;
+
+    /**
+     * The cell format
+     */
+    private final CellFormat format;
+
+    /**
+     * The cell features
+     */
+    private final CellFeatures features;
+
+    /**
+     * The formula, if the cell is a formula
+     */
+    private final String formula;
+
+    /**
+     * The exception thrown when the formula was parsed, if it could not be
+     */
+    private final FormulaException formulaException;
+
+    /**
+     * Constructor
+     *
+     * @param c the cell to copy
+     */
+    CellSnapshot(Cell c)
+    {
+      row = c.getRow();
+      column = c.getColumn();
+      type = c.getType();
+      hidden = c.isHidden();
+      contents = c.getContents();
+      format = c.getCellFormat();
+      features = c.getCellFeatures();
+
+      String f = null;
+      FormulaException fe = null;
+      if (c instanceof FormulaCell)
+      {
+        try
+        {
+          f = ((FormulaCell) c).getFormula();
+        }
+        catch (FormulaException e)
+        {
+          fe = e;
+        }
+      }
+      formula = f;
+      formulaException = fe;
+    }
+
+    /**
+     * Gets the row
+     *
+     * @return the row
+     */
+    public int getRow()
+    {
+      return row;
+    }
+
+    /**
+     * Gets the column
+     *
+     * @return the column
+     */
+    public int getColumn()
+    {
+      return column;
+    }
+
+    /**
+     * Gets the cell type
+     *
+     * @return the cell type
+     */
+    public CellType getType()
+    {
+      return type;
+    }
+
+    /**
+     * Indicates whether the cell is hidden
+     *
+     * @return TRUE if the cell is hidden, FALSE otherwise
+     */
+    public boolean isHidden()
+    {
+      return hidden;
+    }
+
+    /**
+     * Gets the contents as they were formatted when the copy was made
+     *
+     * @return the contents
+     */
+    public String getContents()
+    {
+      return contents;
+    }
+
+    /**
+     * Gets the cell format
+     *
+     * @return the cell format
+     */
+    public CellFormat getCellFormat()
+    {
+      return format;
+    }
+
+    /**
+     * Gets the cell features
+     *
+     * @return the cell features
+     */
+    public CellFeatures getCellFeatures()
+    {
+      return features;
+    }
+
+    /**
+     * Gets the formula, for the formula cells
+     *
+     * @return the formula
+     * @exception FormulaException if the formula could not be parsed
+     */
+    public String getFormula() throws FormulaException
+    {
+      if (formulaException != null)
+      {
+        throw formulaException;
+      }
+
+      return formula;
+    }
+  }
+
+  /**
+   * A copy of a number cell
+   */
+  private static class NumberSnapshot extends CellSnapshot
+    implements NumberCell
+  {
+    /**
+     * The value
+     */
+    private final double value;
+
+    /**
+     * A private copy of the number format
+     */
+    private final NumberFormat numberFormat;
+
+    /**
+     * Constructor
+     *
+     * @param c the cell to copy
+     */
+    NumberSnapshot(NumberCell c)
+    {
+      super(c);
+      value = c.getValue();
+      NumberFormat nf = c.getNumberFormat();
+      numberFormat = nf != null ? (NumberFormat) nf.clone() : null;
+    }
+
+    /**
+     * Gets the value
+     *
+     * @return the value
+     */
+    public double getValue()
+    {
+      return value;
+    }
+
+    /**
+     * Gets a copy of the number format, which the caller may use freely
+     *
+     * @return the number format
+     */
+    public NumberFormat getNumberFormat()
+    {
+      return numberFormat != null ?
+        (NumberFormat) numberFormat.clone() : null;
+    }
+  }
+
+  /**
+   * A copy of a number formula cell
+   */
+  private static final class NumberFormulaSnapshot extends NumberSnapshot
+    implements NumberFormulaCell
+  {
+    /**
+     * Constructor
+     *
+     * @param c the cell to copy
+     */
+    NumberFormulaSnapshot(NumberCell c)
+    {
+      super(c);
+    }
+  }
+
+  /**
+   * A copy of a date cell
+   */
+  private static class DateSnapshot extends CellSnapshot implements DateCell
+  {
+    /**
+     * The date, in milliseconds
+     */
+    private final long time;
+
+    /**
+     * The date and time as shown by Excel
+     */
+    private final LocalDateTime localDateTime;
+
+    /**
+     * Indicates whether the date is just a time
+     */
+    private final boolean timeOnly;
+
+    /**
+     * A private copy of the date format
+     */
+    private final DateFormat dateFormat;
+
+    /**
+     * Constructor
+     *
+     * @param c the cell to copy
+     */
+    DateSnapshot(DateCell c)
+    {
+      super(c);
+      time = c.getEpochMillis();
+      localDateTime = c.getLocalDateTime();
+      timeOnly = c.isTime();
+      DateFormat df = c.getDateFormat();
+      dateFormat = df != null ? (DateFormat) df.clone() : null;
+    }
+
+    /**
+     * Gets a copy of the date
+     *
+     * @return the date
+     */
+    public Date getDate()
+    {
+      return new Date(time);
+    }
+
+    /**
+     * Gets the date in milliseconds
+     *
+     * @return the date in milliseconds
+     */
+    public long getEpochMillis()
+    {
+      return time;
+    }
+
+    /**
+     * Gets the date and time as shown by Excel
+     *
+     * @return the date and time
+     */
+    public LocalDateTime getLocalDateTime()
+    {
+      return localDateTime;
+    }
+
+    /**
+     * Indicates whether the date is just a time
+     *
+     * @return TRUE if the date is just a time, FALSE otherwise
+     */
+    public boolean isTime()
+    {
+      return timeOnly;
+    }
+
+    /**
+     * Gets a copy of the date format, which the caller may use freely
+     *
+     * @return the date format
+     */
+    public DateFormat getDateFormat()
+    {
+      return dateFormat != null ? (DateFormat) dateFormat.clone() : null;
+    }
+  }
+
+  /**
+   * A copy of a date formula cell
+   */
+  private static final class DateFormulaSnapshot extends DateSnapshot
+    implements DateFormulaCell
+  {
+    /**
+     * Constructor
+     *
+     * @param c the cell to copy
+     */
+    DateFormulaSnapshot(DateCell c)
+    {
+      super(c);
+    }
+  }
+
+  /**
+   * A copy of a label cell
+   */
+  private static class LabelSnapshot extends CellSnapshot implements LabelCell
+  {
+    /**
+     * The string
+     */
+    private final String string;
+
+    /**
+     * Constructor
+     *
+     * @param c the cell to copy
+     */
+    LabelSnapshot(LabelCell c)
+    {
+      super(c);
+      string = c.getString();
+    }
+
+    /**
+     * Gets the string
+     *
+     * @return the string
+     */
+    public String getString()
+    {
+      return string;
+    }
+  }
+
+  /**
+   * A copy of a string formula cell
+   */
+  private static final class StringFormulaSnapshot extends LabelSnapshot
+    implements StringFormulaCell
+  {
+    /**
+     * Constructor
+     *
+     * @param c the cell to copy
+     */
+    StringFormulaSnapshot(LabelCell c)
+    {
+      super(c);
+    }
+  }
+
+  /**
+   * A copy of a boolean cell
+   */
+  private static class BooleanSnapshot extends CellSnapshot
+    implements BooleanCell
+  {
+    /**
+     * The value
+     */
+    private final boolean value;
+
+    /**
+     * Constructor
+     *
+     * @param c the cell to copy
+     */
+    BooleanSnapshot(BooleanCell c)
+    {
+      super(c);
+      value = c.getValue();
+    }
+
+    /**
+     * Gets the value
+     *
+     * @return the value
+     */
+    public boolean getValue()
+    {
+      return value;
+    }
+  }
+
+  /**
+   * A copy of a boolean formula cell
+   */
+  private static final class BooleanFormulaSnapshot extends BooleanSnapshot
+    implements BooleanFormulaCell
+  {
+    /**
+     * Constructor
+     *
+     * @param c the cell to copy
+     */
+    BooleanFormulaSnapshot(BooleanCell c)
+    {
+      super(c);
+    }
+  }
+
+  /**
+   * A copy of an error cell
+   */
+  private static class ErrorSnapshot extends CellSnapshot implements ErrorCell
+  {
+    /**
+     * The error code
+     */
+    private final int errorCode;
+
+    /**
+     * Constructor
+     *
+     * @param c the cell to copy
+     */
+    ErrorSnapshot(ErrorCell c)
+    {
+      super(c);
+      errorCode = c.getErrorCode();
+    }
+
+    /**
+     * Gets the error code
+     *
+     * @return the error code
+     */
+    public int getErrorCode()
+    {
+      return errorCode;
+    }
+  }
+
+  /**
+   * A copy of an error formula cell
+   */
+  private static final class ErrorFormulaSnapshot extends ErrorSnapshot
+    implements ErrorFormulaCell
+  {
+    /**
+     * Constructor
+     *
+     * @param c the cell to copy
+     */
+    ErrorFormulaSnapshot(ErrorCell c)
+    {
+      super(c);
+    }
+  }
+}
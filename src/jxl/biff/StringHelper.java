@@ -20,6 +20,7 @@
 package jxl.biff;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 
 import jxl.common.Logger;
 
@@ -43,6 +44,12 @@ public final class StringHelper
   // are  "UTF-16LE" or "UnicodeLittleUnmarked"
   public static String UNICODE_ENCODING = "UnicodeLittle";
 
+  /**
+   * The ISO-8859-1 character set, used to build strings whose bytes are
+   * known to be plain ASCII
+   */
+  private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
   /**
    * Private default constructor to prevent instantiation
    */
@@ -72,15 +79,14 @@ public final class StringHelper
    */
   public static byte[] getBytes(String s, WorkbookSettings ws)
   {
-    try
-    {
-      return s.getBytes(ws.getEncoding());
-    }
-    catch (UnsupportedEncodingException e)
+    Charset cs = ws.getCharset();
+    if (cs == null)
     {
       // fail silently
       return null;
     }
+
+    return s.getBytes(cs);
   }
 
   /**
@@ -159,18 +165,43 @@ public final class StringHelper
       return "";  // Reduces number of new Strings
     }
 
-    try
+    Charset cs = ws.getCharset();
+    if (cs == null)
     {
-      return new String(d, pos, length, ws.getEncoding());
-      //      byte[] b = new byte[length];
-      //      System.arraycopy(d, pos, b, 0, length);
-      //      return new String(b, ws.getEncoding());
+      logger.warn("Unsupported encoding " + ws.getEncoding());
+      return "";
     }
-    catch (UnsupportedEncodingException e)
+
+    // Strings consisting solely of ASCII characters are by far the most
+    // common, and can be copied directly without the charset decoder
+    if (cs.equals(LATIN1) ||
+        (ws.isAsciiCompatibleCharset() && isAscii(d, pos, length)))
     {
-      logger.warn(e.toString());
-      return "";
+      return new String(d, pos, length, LATIN1);
+    }
+
+    return new String(d, pos, length, cs);
+  }
+
+  /**
+   * Determines whether all the bytes in the specified range are below 0x80
+   *
+   * @param d the byte data
+   * @param pos the start position
+   * @param length the number of bytes to check
+   * @return TRUE if the bytes are all ASCII characters
+   */
+  private static boolean isAscii(byte[] d, int pos, int length)
+  {
+    int end = pos + length;
+    for (int i = pos; i < end; i++)
+    {
+      if (d[i] < 0)
+      {
+        return false;
+      }
     }
+    return true;
   }
 
   /**
@@ -183,11 +214,34 @@ public final class StringHelper
    */
   public static String getUnicodeString(byte[] d, int length, int pos)
   {
+    if (length == 0)
+    {
+      return "";
+    }
+
+    // Decode the little endian characters straight from the source.
+    // Surrogates and byte order marks are left to the charset decoder,
+    // which validates the former and strips the latter
+    char[] chars = new char[length];
+    int p = pos;
+    boolean decoded = true;
+    for (int i = 0; i < length && decoded; i++)
+    {
+      char c = (char) ((d[p] & 0xff) | ((d[p + 1] & 0xff) << 8));
+      chars[i] = c;
+      p += 2;
+      decoded = (c < 0xd800 || c > 0xdfff) &&
+        (i > 0 || (c != 0xfeff && c != 0xfffe));
+    }
+
+    if (decoded)
+    {
+      return new String(chars);
+    }
+
     try
     {
-      byte[] b = new byte[length * 2];
-      System.arraycopy(d, pos, b, 0, length * 2);
-      return new String(b, UNICODE_ENCODING);
+      return new String(d, pos, length * 2, UNICODE_ENCODING);
     }
     catch (UnsupportedEncodingException e)
     {
@@ -25,6 +25,7 @@ import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
+import java.time.format.DateTimeFormatter;
 
 import jxl.common.Assert;
 import jxl.common.Logger;
@@ -83,12 +84,23 @@ public class XFRecord extends WritableRecordData implements CellFormat
    */
   private DateFormat dateFormat;
 
+  /**
+   * The java.time equivalent of the date format, or NULL if there is none
+   */
+  private DateTimeFormatter dateTimeFormatter;
+
   /**
    * The number format for this record.  Deduced when the record is read in
    * from a spreadsheet
    */
   private NumberFormat numberFormat;
 
+  /**
+   * The compiled equivalent of the number format, or NULL if it could
+   * not be compiled
+   */
+  private ExcelNumberFormat excelNumberFormat;
+
   /**
    * The used attribute.  Needs to be preserved in order to get accurate
    * rationalization
@@ -278,6 +290,21 @@ public class XFRecord extends WritableRecordData implements CellFormat
      new SimpleDateFormat("H:mm:ss"),
      new SimpleDateFormat("mm:ss.S")};
 
+  /**
+   * The java.time equivalents of the java date formats, where there are any
+   */
+  private static final DateTimeFormatter[] javaDateTimeFormatters =
+    new DateTimeFormatter[javaDateFormats.length];
+
+  static
+  {
+    for (int i = 0; i < javaDateFormats.length; i++)
+    {
+      javaDateTimeFormatters[i] =
+        DateHelper.getDateTimeFormatter(javaDateFormats[i]);
+    }
+  }
+
   /**
    * The list of built in number format values
    */
@@ -373,6 +400,7 @@ public class XFRecord extends WritableRecordData implements CellFormat
       {
         date = true;
         dateFormat = javaDateFormats[i];
+        dateTimeFormatter = javaDateTimeFormatters[i];
       }
     }
 
@@ -387,6 +415,7 @@ public class XFRecord extends WritableRecordData implements CellFormat
           new DecimalFormatSymbols(ws.getLocale());
         df.setDecimalFormatSymbols(symbols);
         numberFormat = df;
+        excelNumberFormat = ExcelNumberFormat.compile(df.toPattern(), symbols);
         //numberFormat = javaNumberFormats[i];
       }
     }
@@ -614,6 +643,16 @@ public class XFRecord extends WritableRecordData implements CellFormat
     return dateFormat;
   }
 
+  /**
+   * Gets the java.time date formatter for this format record
+   *
+   * @return the date formatter, or NULL if there is none
+   */
+  public DateTimeFormatter getDateTimeFormatter()
+  {
+    return dateTimeFormatter;
+  }
+
   /**
    * Gets the java number format for this format record
    *
@@ -624,6 +663,16 @@ public class XFRecord extends WritableRecordData implements CellFormat
     return numberFormat;
   }
 
+  /**
+   * Gets the compiled number format for this format record
+   *
+   * @return the compiled number format, or NULL if there is none
+   */
+  public ExcelNumberFormat getExcelNumberFormat()
+  {
+    return excelNumberFormat;
+  }
+
   /**
    * Gets the lookup number of the format record
    *
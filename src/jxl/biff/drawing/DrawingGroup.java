@@ -202,11 +202,12 @@ public class DrawingGroup implements EscherStream
   }
 
   /**
-   * Adds a drawing to the drawing group
+   * Adds a drawing to the drawing group.  This is synchronized, as sheets
+   * may be read concurrently
    *
    * @param d the drawing to add
    */
-  final void addDrawing(DrawingGroupObject d)
+  final synchronized void addDrawing(DrawingGroupObject d)
   {
     drawings.add(d);
     maxObjectId = Math.max(maxObjectId, d.getObjectId());
@@ -218,7 +219,7 @@ public class DrawingGroup implements EscherStream
    *
    * @param c the chart
    */
-  public void add(Chart c)
+  public synchronized void add(Chart c)
   {
     numCharts++;
   }
@@ -524,7 +525,7 @@ public class DrawingGroup implements EscherStream
    * @param blipId the blipId
    * @return the drawing data
    */
-  byte[] getImageData(int blipId)
+  synchronized byte[] getImageData(int blipId)
   {
     numBlips = getBStoreContainer().getNumBlips();
 
@@ -545,7 +546,8 @@ public class DrawingGroup implements EscherStream
    * @param mso the mso record
    * @param obj the obj record
    */
-  public void setDrawingsOmitted(MsoDrawingRecord mso, ObjRecord obj)
+  public synchronized void setDrawingsOmitted(MsoDrawingRecord mso,
+                                              ObjRecord obj)
   {
     drawingsOmitted = true;
 
@@ -24,6 +24,7 @@ import jxl.common.Assert;
 import jxl.BooleanCell;
 import jxl.CellType;
 import jxl.biff.FormattingRecords;
+import jxl.biff.Type;
 
 /**
  * A boolean cell last calculated value
@@ -64,6 +65,25 @@ class BooleanRecord extends CellValue implements BooleanCell
     }
   }
 
+  /**
+   * Constructor used when the cell is created from a boolean value which
+   * has already been read.  Cells constructed in this way have no raw data
+   *
+   * @param r the row
+   * @param c the column
+   * @param xfi the xf index
+   * @param val the boolean value
+   * @param fr the formatting records
+   * @param si the sheet
+   */
+  BooleanRecord(int r, int c, int xfi, boolean val,
+                FormattingRecords fr, SheetImpl si)
+  {
+    super(Type.BOOLERR, r, c, xfi, fr, si);
+    error = false;
+    value = val;
+  }
+
   /**
    * Interface method which queries whether this cell contains an error.
    * Returns TRUE if it does, otherwise returns FALSE.
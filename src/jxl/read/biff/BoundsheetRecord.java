@@ -118,6 +118,17 @@ class BoundsheetRecord extends RecordData
     return name;
   }
 
+  /**
+   * Accessor for the position of the sheet's BOF record within the
+   * workbook stream
+   *
+   * @return the offset of the sheet
+   */
+  public int getOffset()
+  {
+    return offset;
+  }
+
   /**
    * Accessor for the hidden flag
    *
@@ -0,0 +1,306 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+package jxl.read.biff;
+
+import jxl.Cell;
+import jxl.CellType;
+import jxl.NumberCell;
+
+/**
+ * Holds the cells of a sheet which has been read in.  Small sheets are
+ * held in a dense array, but the cells of sheets whose dimensions are large
+ * are held in a sparse store until it is known how many cells there are
+ */
+abstract class CellStore
+{
+  /**
+   * The largest number of cell slots for which a dense store is used
+   * straight away
+   */
+  private static final int DENSE_LIMIT = 1 << 18;
+
+  /**
+   * The estimated number of bytes used by each cell object
+   */
+  static final int CELL_SIZE = 48;
+
+  /**
+   * The estimated number of bytes used by the header of each array
+   */
+  static final int ARRAY_SIZE = 16;
+
+  /**
+   * The number of rows
+   */
+  protected int rows;
+
+  /**
+   * The number of columns
+   */
+  protected int columns;
+
+  /**
+   * The number of cells held
+   */
+  protected int cellCount;
+
+  /**
+   * Constructor
+   *
+   * @param r the number of rows
+   * @param c the number of columns
+   */
+  protected CellStore(int r, int c)
+  {
+    rows = r;
+    columns = c;
+  }
+
+  /**
+   * Creates a store for a sheet of the specified dimensions
+   *
+   * @param r the number of rows
+   * @param c the number of columns
+   * @return the store
+   */
+  static CellStore create(int r, int c)
+  {
+    if ((long) r * c <= DENSE_LIMIT)
+    {
+      return new DenseCellStore(r, c);
+    }
+
+    return new SparseCellStore(r, c);
+  }
+
+  /**
+   * Gets the cell at the specified location
+   *
+   * @param row the row
+   * @param col the column
+   * @return the cell, or NULL if there is no cell at this location
+   * @exception ArrayIndexOutOfBoundsException if the location is outside
+   *            the dimensions of the store
+   */
+  abstract Cell get(int row, int col);
+
+  /**
+   * Sets the cell at the specified location, which must be within the
+   * dimensions of the store
+   *
+   * @param row the row
+   * @param col the column
+   * @param cell the cell
+   */
+  abstract void set(int row, int col, Cell cell);
+
+  /**
+   * Determines whether there is a cell at the specified location
+   *
+   * @param row the row
+   * @param col the column
+   * @return TRUE if there is a cell at this location, FALSE otherwise
+   */
+  boolean contains(int row, int col)
+  {
+    return get(row, col) != null;
+  }
+
+  /**
+   * Gets the type of the cell at the specified location
+   *
+   * @param row the row
+   * @param col the column
+   * @return the cell type
+   */
+  CellType getCellType(int row, int col)
+  {
+    Cell c = get(row, col);
+    return c != null ? c.getType() : CellType.EMPTY;
+  }
+
+  /**
+   * Gets the value of the number at the specified location
+   *
+   * @param row the row
+   * @param col the column
+   * @return the value, or NaN if the cell does not contain a number
+   */
+  double getNumber(int row, int col)
+  {
+    Cell c = get(row, col);
+    return c instanceof NumberCell ? ((NumberCell) c).getValue() : Double.NaN;
+  }
+
+  /**
+   * Gets the shared string index of the label at the specified location
+   *
+   * @param row the row
+   * @param col the column
+   * @return the index, or -1 if the cell is not a shared string label
+   */
+  int getStringIndex(int row, int col)
+  {
+    Cell c = get(row, col);
+    return c instanceof LabelSSTRecord ?
+      ((LabelSSTRecord) c).getStringIndex() : -1;
+  }
+
+  /**
+   * Reads the numbers in the specified rows of a column into the array,
+   * starting at the given position.  Entries for rows without a number
+   * are left untouched
+   *
+   * @param col the column
+   * @param firstRow the first row, which must be within the store
+   * @param lastRow the last row, which must be within the store
+   * @param values the array to receive the values
+   * @param present if not NULL, set to TRUE for each row with a number
+   * @param pos the index in the arrays for the first row
+   * @return the number of rows which contain a number
+   */
+  int readNumbers(int col, int firstRow, int lastRow,
+                  double[] values, boolean[] present, int pos)
+  {
+    int count = 0;
+    for (int row = firstRow; row <= lastRow; row++, pos++)
+    {
+      Cell c = get(row, col);
+      if (c instanceof NumberCell)
+      {
+        values[pos] = ((NumberCell) c).getValue();
+        if (present != null)
+        {
+          present[pos] = true;
+        }
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Reads the contents of the cells in the specified rows of a column
+   * into the array, starting at the given position.  Entries for rows
+   * without a cell are left untouched
+   *
+   * @param col the column
+   * @param firstRow the first row, which must be within the store
+   * @param lastRow the last row, which must be within the store
+   * @param values the array to receive the contents
+   * @param pos the index in the array for the first row
+   * @return the number of rows which contain a cell
+   */
+  int readContents(int col, int firstRow, int lastRow,
+                   String[] values, int pos)
+  {
+    int count = 0;
+    for (int row = firstRow; row <= lastRow; row++, pos++)
+    {
+      Cell c = get(row, col);
+      if (c != null)
+      {
+        values[pos] = c.getContents();
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Reads the types of the cells in the specified rows of a column into
+   * the array, starting at the given position
+   *
+   * @param col the column
+   * @param firstRow the first row, which must be within the store
+   * @param lastRow the last row, which must be within the store
+   * @param types the array to receive the types
+   * @param pos the index in the array for the first row
+   * @return the number of rows which are not empty
+   */
+  int readCellTypes(int col, int firstRow, int lastRow,
+                    CellType[] types, int pos)
+  {
+    int count = 0;
+    for (int row = firstRow; row <= lastRow; row++, pos++)
+    {
+      CellType type = getCellType(row, col);
+      types[pos] = type;
+      if (type != CellType.EMPTY)
+      {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Gets the column of the last cell on the specified row
+   *
+   * @param row the row
+   * @return the column, or -1 if the row has no cells
+   */
+  abstract int getLastColumn(int row);
+
+  /**
+   * Gets the row of the last cell in the specified column
+   *
+   * @param col the column
+   * @return the row, or -1 if the column has no cells
+   */
+  abstract int getLastRow(int col);
+
+  /**
+   * Enlarges the store to the specified dimensions
+   *
+   * @param r the new number of rows
+   * @param c the new number of columns
+   */
+  abstract void resize(int r, int c);
+
+  /**
+   * Gets an estimate of the number of bytes used by the store and the
+   * cell objects it holds
+   *
+   * @return the estimated size
+   */
+  abstract long getEstimatedSize();
+
+  /**
+   * Called once all the cells have been added.  This returns the most
+   * compact store for the number of cells actually present
+   *
+   * @return the store to use from now on
+   */
+  CellStore optimize()
+  {
+    return this;
+  }
+
+  /**
+   * Gets the number of cells held
+   *
+   * @return the number of cells
+   */
+  final int getCellCount()
+  {
+    return cellCount;
+  }
+}
@@ -24,8 +24,8 @@ import jxl.common.Logger;
 import jxl.Cell;
 import jxl.CellFeatures;
 import jxl.biff.FormattingRecords;
-import jxl.biff.IntegerHelper;
 import jxl.biff.RecordData;
+import jxl.biff.Type;
 import jxl.biff.XFRecord;
 import jxl.format.CellFormat;
 
@@ -89,12 +89,50 @@ public abstract class CellValue extends RecordData
    * @param si the sheet containing this cell
    */
   protected CellValue(Record t, FormattingRecords fr, SheetImpl si)
+  {
+    this(t, fr, si, true);
+  }
+
+  /**
+   * Constructs this object from the raw cell data.  Cells which decode
+   * all their data in the constructor need not retain the raw data, and
+   * may then be read from a reusable record cursor
+   *
+   * @param t the raw cell data
+   * @param fr the formatting records
+   * @param si the sheet containing this cell
+   * @param retain FALSE if the raw data is not needed after construction
+   */
+  protected CellValue(Record t, FormattingRecords fr, SheetImpl si,
+                      boolean retain)
+  {
+    super(t, retain);
+    row     = t.getUShort(0);
+    column  = t.getUShort(2);
+    xfIndex = t.getUShort(4);
+    sheet = si;
+    formattingRecords = fr;
+    initialized = false;
+  }
+
+  /**
+   * Constructs this object from values which have already been decoded,
+   * without any raw cell data
+   *
+   * @param t the type of the record which held the cell
+   * @param r the row
+   * @param c the column
+   * @param xfi the xf index
+   * @param fr the formatting records
+   * @param si the sheet containing this cell
+   */
+  protected CellValue(Type t, int r, int c, int xfi,
+                      FormattingRecords fr, SheetImpl si)
   {
     super(t);
-    byte[] data = getRecord().getData();
-    row     = IntegerHelper.getInt(data[0], data[1]);
-    column  = IntegerHelper.getInt(data[2], data[3]);
-    xfIndex = IntegerHelper.getInt(data[4], data[5]);
+    row = r;
+    column = c;
+    xfIndex = xfi;
     sheet = si;
     formattingRecords = fr;
     initialized = false;
@@ -0,0 +1,632 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+
+package jxl.read.biff;
+
+import java.lang.reflect.Array;
+
+import jxl.Cell;
+import jxl.CellType;
+import jxl.NumberCell;
+import jxl.biff.FormattingRecords;
+
+/**
+ * A cell store which holds the values of a sheet in columns of primitives.
+ * Each column has a type and an xf index for every row, together with
+ * the numeric values and shared string indices when the column contains
+ * any numbers or labels.  Cell objects for these values are only created
+ * when they are asked for.  Cells which cannot be represented in this
+ * way, such as formulas and cells with comments or data validations, are
+ * held as objects in a sparse store
+ */
+final class ColumnarCellStore extends CellStore
+{
+  /**
+   * The types of value held in the columns
+   */
+  private static final byte NONE = 0;
+  private static final byte BLANK = 1;
+  private static final byte NUMBER = 2;
+  private static final byte DATE = 3;
+  private static final byte LABEL = 4;
+  private static final byte BOOLEAN = 5;
+  private static final byte OBJECT = 6;
+
+  /**
+   * The type of the value in each row of each column, or NULL for columns
+   * which have no cells
+   */
+  private byte[][] types;
+
+  /**
+   * The xf index of the value in each row of each column
+   */
+  private short[][] xfIndices;
+
+  /**
+   * The numbers, dates and booleans in each column, or NULL for columns
+   * which have none of these
+   */
+  private double[][] numbers;
+
+  /**
+   * The shared string indices of the labels in each column, or NULL for
+   * columns which have no labels
+   */
+  private int[][] stringIndices;
+
+  /**
+   * The cells which are held as objects, or NULL if there are none
+   */
+  private SparseCellStore objects;
+
+  /**
+   * The formatting records
+   */
+  private FormattingRecords formattingRecords;
+
+  /**
+   * The shared string table
+   */
+  private SSTRecord sharedStrings;
+
+  /**
+   * Indicates whether the workbook uses the 1904 date system
+   */
+  private boolean nineteenFour;
+
+  /**
+   * The sheet
+   */
+  private SheetImpl sheet;
+
+  /**
+   * Indicates whether numbers with a date format are held as dates
+   */
+  private boolean dates;
+
+  /**
+   * Constructor
+   *
+   * @param r the number of rows
+   * @param c the number of columns
+   * @param fr the formatting records
+   * @param sst the shared string table
+   * @param nf the 1904 date system flag
+   * @param si the sheet
+   * @param d TRUE if numbers with a date format are held as dates
+   */
+  ColumnarCellStore(int r, int c, FormattingRecords fr, SSTRecord sst,
+                    boolean nf, SheetImpl si, boolean d)
+  {
+    super(r, c);
+    types = new byte[c][];
+    xfIndices = new short[c][];
+    numbers = new double[c][];
+    stringIndices = new int[c][];
+    formattingRecords = fr;
+    sharedStrings = sst;
+    nineteenFour = nf;
+    sheet = si;
+    dates = d;
+  }
+
+  /**
+   * Checks that the location is within the dimensions of the store
+   *
+   * @param row the row
+   * @param col the column
+   * @exception ArrayIndexOutOfBoundsException if it is not
+   */
+  private void checkBounds(int row, int col)
+  {
+    if (row < 0 || row >= rows)
+    {
+      throw new ArrayIndexOutOfBoundsException(row);
+    }
+
+    if (col < 0 || col >= columns)
+    {
+      throw new ArrayIndexOutOfBoundsException(col);
+    }
+  }
+
+  /**
+   * Gets the type of value at the specified location
+   *
+   * @param row the row
+   * @param col the column
+   * @return the value type
+   */
+  private byte getValueType(int row, int col)
+  {
+    checkBounds(row, col);
+    return types[col] != null ? types[col][row] : NONE;
+  }
+
+  /**
+   * Gets the cell at the specified location, creating a new cell object
+   * for values which are held as primitives
+   *
+   * @param row the row
+   * @param col the column
+   * @return the cell, or NULL if there is no cell at this location
+   */
+  Cell get(int row, int col)
+  {
+    byte type = getValueType(row, col);
+
+    if (type == NONE)
+    {
+      return null;
+    }
+
+    if (type == OBJECT)
+    {
+      return objects.get(row, col);
+    }
+
+    int xf = xfIndices[col][row] & 0xffff;
+
+    if (type == BLANK)
+    {
+      return new MulBlankCell(row, col, xf, formattingRecords, sheet);
+    }
+    else if (type == LABEL)
+    {
+      return new LabelSSTRecord(row, col, xf, stringIndices[col][row],
+                                sharedStrings, formattingRecords, sheet);
+    }
+    else if (type == BOOLEAN)
+    {
+      return new BooleanRecord(row, col, xf, numbers[col][row] != 0,
+                               formattingRecords, sheet);
+    }
+
+    NumberValue nv = new NumberValue(row, col, numbers[col][row], xf,
+                                     formattingRecords, sheet);
+    if (type == DATE)
+    {
+      return new DateRecord(nv, xf, formattingRecords, nineteenFour, sheet);
+    }
+
+    if (dates)
+    {
+      nv.setNumberFormat(formattingRecords.getNumberFormat(xf),
+                         formattingRecords.getExcelNumberFormat(xf));
+    }
+    return nv;
+  }
+
+  /**
+   * Sets the cell at the specified location.  Plain values are broken
+   * down into primitives, and anything else is held as an object
+   *
+   * @param row the row
+   * @param col the column
+   * @param cell the cell
+   */
+  void set(int row, int col, Cell cell)
+  {
+    byte type = OBJECT;
+    int xf = 0;
+    double number = 0;
+    int stringIndex = 0;
+
+    if (cell instanceof CellFeaturesAccessor &&
+        ((CellFeaturesAccessor) cell).getCellFeatures() != null)
+    {
+      // Keep the features along with the cell
+      type = OBJECT;
+    }
+    else if (cell instanceof NumberRecord || cell instanceof RKRecord)
+    {
+      xf = ((CellValue) cell).getXFIndex();
+      number = ((NumberCell) cell).getValue();
+      type = dates && formattingRecords.isDate(xf) ? DATE : NUMBER;
+    }
+    else if (cell instanceof NumberValue)
+    {
+      xf = ((NumberValue) cell).getXFIndex();
+      number = ((NumberValue) cell).getValue();
+      type = dates && formattingRecords.isDate(xf) ? DATE : NUMBER;
+    }
+    else if (cell instanceof LabelSSTRecord)
+    {
+      xf = ((LabelSSTRecord) cell).getXFIndex();
+      stringIndex = ((LabelSSTRecord) cell).getStringIndex();
+      type = LABEL;
+    }
+    else if (cell instanceof BooleanRecord &&
+             !((BooleanRecord) cell).isError())
+    {
+      xf = ((BooleanRecord) cell).getXFIndex();
+      number = ((BooleanRecord) cell).getValue() ? 1 : 0;
+      type = BOOLEAN;
+    }
+    else if (cell instanceof BlankCell)
+    {
+      xf = ((BlankCell) cell).getXFIndex();
+      type = BLANK;
+    }
+    else if (cell instanceof MulBlankCell)
+    {
+      xf = ((MulBlankCell) cell).getXFIndex();
+      type = BLANK;
+    }
+
+    if (types[col] == null)
+    {
+      types[col] = new byte[rows];
+      xfIndices[col] = new short[rows];
+    }
+
+    byte oldType = types[col][row];
+    if (oldType == NONE)
+    {
+      cellCount++;
+    }
+    else if (oldType == OBJECT && type != OBJECT)
+    {
+      objects.set(row, col, null);
+    }
+
+    types[col][row] = type;
+    xfIndices[col][row] = (short) xf;
+
+    if (type == OBJECT)
+    {
+      if (objects == null)
+      {
+        objects = new SparseCellStore(rows, columns);
+      }
+      objects.set(row, col, cell);
+    }
+    else if (type == LABEL)
+    {
+      if (stringIndices[col] == null)
+      {
+        stringIndices[col] = new int[rows];
+      }
+      stringIndices[col][row] = stringIndex;
+    }
+    else if (type != BLANK)
+    {
+      if (numbers[col] == null)
+      {
+        numbers[col] = new double[rows];
+      }
+      numbers[col][row] = number;
+    }
+  }
+
+  /**
+   * Determines whether there is a cell at the specified location, without
+   * creating a cell object for it
+   *
+   * @param row the row
+   * @param col the column
+   * @return TRUE if there is a cell at this location, FALSE otherwise
+   */
+  boolean contains(int row, int col)
+  {
+    byte type = getValueType(row, col);
+    return type == OBJECT ? objects.get(row, col) != null : type != NONE;
+  }
+
+  /**
+   * Gets the type of the cell at the specified location, without creating
+   * a cell object for it
+   *
+   * @param row the row
+   * @param col the column
+   * @return the cell type
+   */
+  CellType getCellType(int row, int col)
+  {
+    byte type = getValueType(row, col);
+
+    if (type == NUMBER)
+    {
+      return CellType.NUMBER;
+    }
+    else if (type == DATE)
+    {
+      return CellType.DATE;
+    }
+    else if (type == LABEL)
+    {
+      return CellType.LABEL;
+    }
+    else if (type == BOOLEAN)
+    {
+      return CellType.BOOLEAN;
+    }
+    else if (type == OBJECT)
+    {
+      return super.getCellType(row, col);
+    }
+
+    return CellType.EMPTY;
+  }
+
+  /**
+   * Gets the value of the number at the specified location, without
+   * creating a cell object for it
+   *
+   * @param row the row
+   * @param col the column
+   * @return the value, or NaN if the cell does not contain a number
+   */
+  double getNumber(int row, int col)
+  {
+    byte type = getValueType(row, col);
+
+    if (type == NUMBER)
+    {
+      return numbers[col][row];
+    }
+    else if (type == OBJECT)
+    {
+      return super.getNumber(row, col);
+    }
+
+    return Double.NaN;
+  }
+
+  /**
+   * Gets the shared string index of the label at the specified location,
+   * without creating a cell object for it
+   *
+   * @param row the row
+   * @param col the column
+   * @return the index, or -1 if the cell is not a shared string label
+   */
+  int getStringIndex(int row, int col)
+  {
+    byte type = getValueType(row, col);
+
+    if (type == LABEL)
+    {
+      return stringIndices[col][row];
+    }
+    else if (type == OBJECT)
+    {
+      return super.getStringIndex(row, col);
+    }
+
+    return -1;
+  }
+
+  /**
+   * Reads the numbers in the specified rows of a column straight from the
+   * column's primitive values
+   *
+   * @param col the column
+   * @param firstRow the first row, which must be within the store
+   * @param lastRow the last row, which must be within the store
+   * @param values the array to receive the values
+   * @param present if not NULL, set to TRUE for each row with a number
+   * @param pos the index in the arrays for the first row
+   * @return the number of rows which contain a number
+   */
+  int readNumbers(int col, int firstRow, int lastRow,
+                  double[] values, boolean[] present, int pos)
+  {
+    checkBounds(firstRow, col);
+    checkBounds(lastRow, col);
+
+    byte[] t = types[col];
+    if (t == null)
+    {
+      return 0;
+    }
+
+    double[] n = numbers[col];
+    int count = 0;
+    for (int row = firstRow; row <= lastRow; row++, pos++)
+    {
+      byte type = t[row];
+      if (type == NUMBER ||
+          (type == OBJECT && objects.get(row, col) instanceof NumberCell))
+      {
+        values[pos] = type == NUMBER ? n[row] :
+          ((NumberCell) objects.get(row, col)).getValue();
+        if (present != null)
+        {
+          present[pos] = true;
+        }
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Reads the contents of the cells in the specified rows of a column.
+   * Labels are taken straight from the shared string table
+   *
+   * @param col the column
+   * @param firstRow the first row, which must be within the store
+   * @param lastRow the last row, which must be within the store
+   * @param values the array to receive the contents
+   * @param pos the index in the array for the first row
+   * @return the number of rows which contain a cell
+   */
+  int readContents(int col, int firstRow, int lastRow,
+                   String[] values, int pos)
+  {
+    checkBounds(firstRow, col);
+    checkBounds(lastRow, col);
+
+    byte[] t = types[col];
+    if (t == null)
+    {
+      return 0;
+    }
+
+    int count = 0;
+    for (int row = firstRow; row <= lastRow; row++, pos++)
+    {
+      byte type = t[row];
+      if (type == LABEL)
+      {
+        values[pos] = sharedStrings.getString(stringIndices[col][row]);
+        count++;
+      }
+      else if (type != NONE)
+      {
+        Cell c = get(row, col);
+        if (c != null)
+        {
+          values[pos] = c.getContents();
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Gets the column of the last cell on the specified row
+   *
+   * @param row the row
+   * @return the column, or -1 if the row has no cells
+   */
+  int getLastColumn(int row)
+  {
+    int col = columns - 1;
+    while (col >= 0 && (types[col] == null || !contains(row, col)))
+    {
+      col--;
+    }
+    return col;
+  }
+
+  /**
+   * Gets the row of the last cell in the specified column
+   *
+   * @param col the column
+   * @return the row, or -1 if the column has no cells
+   */
+  int getLastRow(int col)
+  {
+    if (types[col] == null)
+    {
+      return -1;
+    }
+
+    int row = rows - 1;
+    while (row >= 0 && !contains(row, col))
+    {
+      row--;
+    }
+    return row;
+  }
+
+  /**
+   * Enlarges the store to the specified dimensions
+   *
+   * @param r the new number of rows
+   * @param c the new number of columns
+   */
+  void resize(int r, int c)
+  {
+    if (c > columns)
+    {
+      types = (byte[][]) grow(types, new byte[c][]);
+      xfIndices = (short[][]) grow(xfIndices, new short[c][]);
+      numbers = (double[][]) grow(numbers, new double[c][]);
+      stringIndices = (int[][]) grow(stringIndices, new int[c][]);
+      columns = c;
+    }
+
+    if (r > rows)
+    {
+      for (int i = 0; i < columns; i++)
+      {
+        if (types[i] != null)
+        {
+          types[i] = (byte[]) grow(types[i], new byte[r]);
+          xfIndices[i] = (short[]) grow(xfIndices[i], new short[r]);
+        }
+
+        if (numbers[i] != null)
+        {
+          numbers[i] = (double[]) grow(numbers[i], new double[r]);
+        }
+
+        if (stringIndices[i] != null)
+        {
+          stringIndices[i] = (int[]) grow(stringIndices[i], new int[r]);
+        }
+      }
+      rows = r;
+    }
+
+    if (objects != null)
+    {
+      objects.resize(rows, columns);
+    }
+  }
+
+  /**
+   * Copies the contents of an array into the start of a larger one
+   *
+   * @param from the array to copy
+   * @param to the larger array
+   * @return the larger array
+   */
+  private static Object grow(Object from, Object to)
+  {
+    System.arraycopy(from, 0, to, 0, Array.getLength(from));
+    return to;
+  }
+
+  /**
+   * Gets an estimate of the number of bytes used by the store and the
+   * cell objects it holds
+   *
+   * @return the estimated size
+   */
+  long getEstimatedSize()
+  {
+    long size = 4 * ARRAY_SIZE + columns * 16L;
+    for (int c = 0; c < columns; c++)
+    {
+      if (types[c] != null)
+      {
+        size += 2 * ARRAY_SIZE + rows * 3L;
+      }
+
+      if (numbers[c] != null)
+      {
+        size += ARRAY_SIZE + rows * 8L;
+      }
+
+      if (stringIndices[c] != null)
+      {
+        size += ARRAY_SIZE + rows * 4L;
+      }
+    }
+
+    return objects != null ? size + objects.getEstimatedSize() : size;
+  }
+}
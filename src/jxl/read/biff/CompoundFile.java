@@ -19,6 +19,8 @@
 
 package jxl.read.biff;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Iterator;
 
@@ -26,7 +28,6 @@ import jxl.common.Logger;
 
 import jxl.WorkbookSettings;
 import jxl.biff.BaseCompoundFile;
-import jxl.biff.IntegerHelper;
 
 /**
  * Reads in and defrags an OLE compound compound file
@@ -41,9 +42,17 @@ public final class CompoundFile extends BaseCompoundFile
 
   /**
    * The original OLE stream, organized into blocks, which can
-   * appear at any physical location in the file
+   * appear at any physical location in the file.  This may be a heap
+   * buffer wrapping the bytes read in from a stream, or a view onto
+   * a memory mapped file
    */
-  private byte[] data;
+  private ByteBuffer data;
+
+  /**
+   * The streams of the additional property sets, indexed on the property
+   * set, once they have been copied onto the heap by detach
+   */
+  private byte[][] copiedStreams;
   /**
    * The number of blocks it takes to store the big block depot
    */
@@ -103,46 +112,48 @@ public final class CompoundFile extends BaseCompoundFile
    * @exception BiffException
    */
   public CompoundFile(byte[] d, WorkbookSettings ws) throws BiffException
+  {
+    this(ByteBuffer.wrap(d), ws);
+  }
+
+  /**
+   * Initializes the compound file directly from a buffer.  The ole data
+   * is taken to be the bytes between the buffer's position and its limit.
+   * The buffer contents are not copied, so this may be used on a memory
+   * mapped file or on a caller supplied buffer.  The buffer's position,
+   * limit and byte order are left untouched
+   *
+   * @param d the raw data of the ole stream
+   * @param ws the workbook settings
+   * @exception BiffException
+   */
+  public CompoundFile(ByteBuffer d, WorkbookSettings ws) throws BiffException
   {
     super();
-    data = d;
+    data = d.slice();
+    data.order(ByteOrder.LITTLE_ENDIAN);
     settings = ws;
 
     // First verify the OLE identifier
+    if (data.capacity() < BIG_BLOCK_SIZE)
+    {
+      throw new BiffException(BiffException.unrecognizedOLEFile);
+    }
+
     for (int i = 0; i < IDENTIFIER.length; i++)
     {
-      if (data[i] != IDENTIFIER[i])
+      if (data.get(i) != IDENTIFIER[i])
       {
         throw new BiffException(BiffException.unrecognizedOLEFile);
       }
     }
 
     propertySets = new ArrayList();
-    numBigBlockDepotBlocks = IntegerHelper.getInt
-      (data[NUM_BIG_BLOCK_DEPOT_BLOCKS_POS],
-       data[NUM_BIG_BLOCK_DEPOT_BLOCKS_POS + 1],
-       data[NUM_BIG_BLOCK_DEPOT_BLOCKS_POS + 2],
-       data[NUM_BIG_BLOCK_DEPOT_BLOCKS_POS + 3]);
-    sbdStartBlock = IntegerHelper.getInt
-      (data[SMALL_BLOCK_DEPOT_BLOCK_POS],
-       data[SMALL_BLOCK_DEPOT_BLOCK_POS + 1],
-       data[SMALL_BLOCK_DEPOT_BLOCK_POS + 2],
-       data[SMALL_BLOCK_DEPOT_BLOCK_POS + 3]);
-    rootStartBlock = IntegerHelper.getInt
-      (data[ROOT_START_BLOCK_POS],
-       data[ROOT_START_BLOCK_POS + 1],
-       data[ROOT_START_BLOCK_POS + 2],
-       data[ROOT_START_BLOCK_POS + 3]);
-    extensionBlock = IntegerHelper.getInt
-      (data[EXTENSION_BLOCK_POS],
-       data[EXTENSION_BLOCK_POS + 1],
-       data[EXTENSION_BLOCK_POS + 2],
-       data[EXTENSION_BLOCK_POS + 3]);
-    numExtensionBlocks = IntegerHelper.getInt
-      (data[NUM_EXTENSION_BLOCK_POS],
-       data[NUM_EXTENSION_BLOCK_POS + 1],
-       data[NUM_EXTENSION_BLOCK_POS + 2],
-       data[NUM_EXTENSION_BLOCK_POS + 3]);
+    numBigBlockDepotBlocks = data.getInt(NUM_BIG_BLOCK_DEPOT_BLOCKS_POS);
+    sbdStartBlock = data.getInt(SMALL_BLOCK_DEPOT_BLOCK_POS);
+    rootStartBlock = data.getInt(ROOT_START_BLOCK_POS);
+    extensionBlock = data.getInt(EXTENSION_BLOCK_POS);
+    numExtensionBlocks = data.getInt(NUM_EXTENSION_BLOCK_POS);
 
     bigBlockDepotBlocks = new int[numBigBlockDepotBlocks];
 
@@ -157,8 +168,7 @@ public final class CompoundFile extends BaseCompoundFile
 
     for (int i = 0; i < bbdBlocks; i++)
     {
-      bigBlockDepotBlocks[i] = IntegerHelper.getInt
-        (d[pos], d[pos + 1], d[pos + 2], d[pos + 3]);
+      bigBlockDepotBlocks[i] = data.getInt(pos);
       pos += 4;
     }
 
@@ -170,16 +180,14 @@ public final class CompoundFile extends BaseCompoundFile
 
       for (int i = bbdBlocks; i < bbdBlocks + blocksToRead; i++)
       {
-        bigBlockDepotBlocks[i] = IntegerHelper.getInt
-          (d[pos], d[pos + 1], d[pos + 2], d[pos + 3]);
+        bigBlockDepotBlocks[i] = data.getInt(pos);
         pos += 4;
       }
 
       bbdBlocks += blocksToRead;
       if (bbdBlocks < numBigBlockDepotBlocks)
       {
-        extensionBlock = IntegerHelper.getInt
-          (d[pos], d[pos + 1], d[pos + 2], d[pos + 3]);
+        extensionBlock = data.getInt(pos);
       }
     }
 
@@ -205,8 +213,7 @@ public final class CompoundFile extends BaseCompoundFile
 
       for (int j = 0; j < BIG_BLOCK_SIZE / 4; j++)
       {
-        bigBlockChain[index] = IntegerHelper.getInt
-          (data[pos], data[pos + 1], data[pos + 2], data[pos + 3]);
+        bigBlockChain[index] = data.getInt(pos);
         pos += 4;
         index++;
       }
@@ -218,45 +225,30 @@ public final class CompoundFile extends BaseCompoundFile
    */
   private void readSmallBlockDepot() throws BiffException
   {
-    int pos = 0;
-    int index = 0;
-    int sbdBlock = sbdStartBlock;
     smallBlockChain = new int[0];
 
     // Some non-excel generators specify -1 for an empty small block depot
     // simply warn and return
-    if (sbdBlock == -1)
+    if (sbdStartBlock == -1)
     {
       logger.warn("invalid small block depot number");
       return;
     }
 
-    int blockCount = 0;
-    for (; blockCount <= bigBlockChain.length && sbdBlock != -2; blockCount++)
-    {
-      // Allocate some more space to the small block chain
-      int[] oldChain = smallBlockChain;
-      smallBlockChain = new int[smallBlockChain.length + BIG_BLOCK_SIZE / 4];
-      System.arraycopy(oldChain, 0, smallBlockChain, 0, oldChain.length);
+    int[] sbdBlocks = readChain(sbdStartBlock);
+    smallBlockChain = new int[sbdBlocks.length * BIG_BLOCK_SIZE / 4];
 
-      pos = (sbdBlock + 1) * BIG_BLOCK_SIZE;
+    int index = 0;
+    for (int i = 0; i < sbdBlocks.length; i++)
+    {
+      int pos = (sbdBlocks[i] + 1) * BIG_BLOCK_SIZE;
 
       for (int j = 0; j < BIG_BLOCK_SIZE / 4; j++)
       {
-        smallBlockChain[index] = IntegerHelper.getInt
-          (data[pos], data[pos + 1], data[pos + 2], data[pos + 3]);
+        smallBlockChain[index] = data.getInt(pos);
         pos += 4;
         index++;
       }
-
-      sbdBlock = bigBlockChain[sbdBlock];
-    }
-
-    if (blockCount > bigBlockChain.length) 
-    {
-      // Attempted to read more blocks than the block chain contains entries 
-      // for.  This indicates a loop in the chain
-      throw new BiffException(BiffException.corruptFileFormat);
     }
   }
 
@@ -315,6 +307,104 @@ public final class CompoundFile extends BaseCompoundFile
    * @exception BiffException
    */
   public byte[] getStream(String streamName) throws BiffException
+  {
+    return getStreamView(streamName).toByteArray();
+  }
+
+  /**
+   * Gets the defragmented stream from this ole compound file.  Used when
+   * copying workbooks with macros
+   *
+   * @param psIndex the property storage index
+   * @return the defragmented ole stream
+   * @exception BiffException
+   */
+  public byte[] getStream(int psIndex) throws BiffException
+  {
+    if (copiedStreams != null)
+    {
+      if (copiedStreams[psIndex] == null)
+      {
+        throw new BiffException(BiffException.streamNotFound);
+      }
+      return copiedStreams[psIndex];
+    }
+
+    return getStreamView(getPropertyStorage(psIndex)).toByteArray();
+  }
+
+  /**
+   * Copies the streams of the additional property sets onto the heap and
+   * lets go of the compound file data, so that any memory mapping of the
+   * file may be released.  These streams are small, and are only kept so
+   * that they can be copied into a writable workbook.  Afterwards, only
+   * the property sets and the streams returned by getStream(int) for the
+   * additional property sets are available
+   */
+  void detach()
+  {
+    if (data == null)
+    {
+      return;
+    }
+
+    byte[][] streams = new byte[propertySets.size()][];
+    for (int i = 0; i < streams.length; i++)
+    {
+      PropertyStorage ps = getPropertyStorage(i);
+      if (ps.size > 0 && !isStandardPropertySet(ps))
+      {
+        try
+        {
+          streams[i] = getStream(i);
+        }
+        catch (BiffException e)
+        {
+          logger.warn("Unable to copy property set " + ps.name);
+        }
+      }
+    }
+
+    copiedStreams = streams;
+    data = null;
+  }
+
+  /**
+   * Determines whether the property set is one which is generated when the
+   * workbook is written, rather than copied from this file.  This mirrors
+   * the test made by the writable compound file
+   *
+   * @param ps the property set
+   * @return TRUE if the property set is a standard one
+   */
+  private boolean isStandardPropertySet(PropertyStorage ps)
+  {
+    if (ps.name.equalsIgnoreCase(ROOT_ENTRY_NAME))
+    {
+      return true;
+    }
+
+    for (int i = 0; i < STANDARD_PROPERTY_SETS.length; i++)
+    {
+      if (ps.name.equalsIgnoreCase(STANDARD_PROPERTY_SETS[i]) &&
+          findPropertyStorage(ps.name) == ps)
+      {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Gets a view of the named stream which reads directly from the
+   * underlying file data, without defragging the stream
+   *
+   * @param streamName the stream name to get
+   * @return a view of the stream
+   * @exception BiffException
+   */
+  SectorStream getStreamView(String streamName) throws BiffException
   {
     PropertyStorage ps = findPropertyStorage(streamName, 
                                              rootEntryPropertyStorage);
@@ -326,29 +416,18 @@ public final class CompoundFile extends BaseCompoundFile
       ps = getPropertyStorage(streamName);
     }
 
-    if (ps.size >= SMALL_BLOCK_THRESHOLD ||
-        streamName.equalsIgnoreCase(ROOT_ENTRY_NAME))
-    {
-      return getBigBlockStream(ps);
-    }
-    else
-    {
-      return getSmallBlockStream(ps);
-    }
+    return getStreamView(ps);
   }
 
   /**
-   * Gets the defragmented stream from this ole compound file.  Used when
-   * copying workbooks with macros
+   * Gets a view of the stream for the specified property storage
    *
-   * @param psIndex the property storage index
-   * @return the defragmented ole stream
+   * @param ps the property storage
+   * @return a view of the stream
    * @exception BiffException
    */
-  public byte[] getStream(int psIndex) throws BiffException
+  private SectorStream getStreamView(PropertyStorage ps) throws BiffException
   {
-    PropertyStorage ps = getPropertyStorage(psIndex);
-
     if (ps.size >= SMALL_BLOCK_THRESHOLD ||
         ps.name.equalsIgnoreCase(ROOT_ENTRY_NAME))
     {
@@ -465,12 +544,14 @@ public final class CompoundFile extends BaseCompoundFile
   }
 
   /**
-   * Build up the resultant stream using the big blocks
+   * Build up the resultant stream using the big blocks.  For consistency
+   * with the block structure, the stream is always a whole number of
+   * blocks long
    *
    * @param ps the property storage
    * @return the big block stream
    */
-  private byte[] getBigBlockStream(PropertyStorage ps)
+  private SectorStream getBigBlockStream(PropertyStorage ps)
   {
     int numBlocks = ps.size / BIG_BLOCK_SIZE;
     if (ps.size % BIG_BLOCK_SIZE != 0)
@@ -478,17 +559,14 @@ public final class CompoundFile extends BaseCompoundFile
       numBlocks++;
     }
 
-    byte[] streamData = new byte[numBlocks * BIG_BLOCK_SIZE];
+    int[] sectors = new int[numBlocks];
 
     int block = ps.startBlock;
 
     int count = 0;
-    int pos = 0;
     while (block != -2 && count < numBlocks)
     {
-      pos = (block + 1) * BIG_BLOCK_SIZE;
-      System.arraycopy(data, pos, streamData,
-                       count * BIG_BLOCK_SIZE, BIG_BLOCK_SIZE);
+      sectors[count] = (block + 1) * BIG_BLOCK_SIZE;
       count++;
       block = bigBlockChain[block];
     }
@@ -498,36 +576,52 @@ public final class CompoundFile extends BaseCompoundFile
       logger.warn("Property storage size inconsistent with block chain.");
     }
 
-    return streamData;
+    // Any blocks missing from the end of a short chain read as zeroes
+    for (int i = count; i < numBlocks; i++)
+    {
+      sectors[i] = data.capacity();
+    }
+
+    return new SectorStream(data, sectors, BIG_BLOCK_SIZE,
+                            numBlocks * BIG_BLOCK_SIZE);
   }
 
   /**
-   * Build up the resultant stream using the small blocks
+   * Build up the resultant stream using the small blocks.  The small
+   * blocks are mapped through the root entry's chain straight onto their
+   * physical positions in the file
+   *
    * @param ps the property storage
    * @return  the data
    * @exception BiffException
    */
-  private byte[] getSmallBlockStream(PropertyStorage ps)
+  private SectorStream getSmallBlockStream(PropertyStorage ps)
     throws BiffException
   {
-    byte[] rootdata = readData(rootEntryPropertyStorage.startBlock);
-    byte[] sbdata = new byte[0];
+    int[] rootBlocks = readChain(rootEntryPropertyStorage.startBlock);
+    int[] sectors = new int[16];
+    int smallBlocksPerBlock = BIG_BLOCK_SIZE / SMALL_BLOCK_SIZE;
 
     int block = ps.startBlock;
-    int pos = 0;
 
     int blockCount = 0;
     for (; blockCount <= smallBlockChain.length && block != -2; blockCount++)
     {
-      // grow the array
-      byte[] olddata = sbdata;
-      sbdata = new byte[olddata.length + SMALL_BLOCK_SIZE];
-      System.arraycopy(olddata, 0, sbdata, 0, olddata.length);
+      if (block < 0 || block / smallBlocksPerBlock >= rootBlocks.length)
+      {
+        throw new BiffException(BiffException.corruptFileFormat);
+      }
+
+      if (blockCount == sectors.length)
+      {
+        int[] oldSectors = sectors;
+        sectors = new int[oldSectors.length * 2];
+        System.arraycopy(oldSectors, 0, sectors, 0, oldSectors.length);
+      }
 
-      // Copy in the new data
-      pos = block * SMALL_BLOCK_SIZE;
-      System.arraycopy(rootdata, pos, sbdata,
-                       olddata.length, SMALL_BLOCK_SIZE);
+      sectors[blockCount] = 
+        (rootBlocks[block / smallBlocksPerBlock] + 1) * BIG_BLOCK_SIZE +
+        (block % smallBlocksPerBlock) * SMALL_BLOCK_SIZE;
       block = smallBlockChain[block];
 
       if (block == -1)
@@ -544,7 +638,11 @@ public final class CompoundFile extends BaseCompoundFile
       throw new BiffException(BiffException.corruptFileFormat);
     }
 
-    return sbdata;
+    int[] chain = new int[blockCount];
+    System.arraycopy(sectors, 0, chain, 0, blockCount);
+
+    return new SectorStream(data, chain, SMALL_BLOCK_SIZE,
+                            blockCount * SMALL_BLOCK_SIZE);
   }
 
   /**
@@ -555,25 +653,48 @@ public final class CompoundFile extends BaseCompoundFile
    * @return the data
    */
   private byte[] readData(int bl) throws BiffException
+  {
+    int[] blocks = readChain(bl);
+    int[] sectors = new int[blocks.length];
+    for (int i = 0; i < blocks.length; i++)
+    {
+      sectors[i] = (blocks[i] + 1) * BIG_BLOCK_SIZE;
+    }
+
+    return new SectorStream(data, sectors, BIG_BLOCK_SIZE,
+                            blocks.length * BIG_BLOCK_SIZE).toByteArray();
+  }
+
+  /**
+   * Follows the big block chain from the specified block, and returns
+   * the sequence of blocks visited
+   *
+   * @param bl the start block
+   * @return the blocks in the chain, in order
+   * @exception BiffException
+   */
+  private int[] readChain(int bl) throws BiffException
   {
     int block = bl;
-    int pos = 0;
-    byte[] entry = new byte[0];
+    int[] blocks = new int[16];
 
     int blockCount = 0;
     for (; blockCount <= bigBlockChain.length && block != -2; blockCount++)
     {
-      // Grow the array
-      byte[] oldEntry = entry;
-      entry = new byte[oldEntry.length + BIG_BLOCK_SIZE];
-      System.arraycopy(oldEntry, 0, entry, 0, oldEntry.length);
-      pos = (block + 1) * BIG_BLOCK_SIZE;
-      System.arraycopy(data, pos, entry,
-                       oldEntry.length, BIG_BLOCK_SIZE);
-      if (bigBlockChain[block] == block)
+      if (block < 0 || block >= bigBlockChain.length ||
+          bigBlockChain[block] == block)
       {
         throw new BiffException(BiffException.corruptFileFormat);
       }
+
+      if (blockCount == blocks.length)
+      {
+        int[] oldBlocks = blocks;
+        blocks = new int[oldBlocks.length * 2];
+        System.arraycopy(oldBlocks, 0, blocks, 0, oldBlocks.length);
+      }
+
+      blocks[blockCount] = block;
       block = bigBlockChain[block];
     }
 
@@ -584,7 +705,9 @@ public final class CompoundFile extends BaseCompoundFile
       throw new BiffException(BiffException.corruptFileFormat);
     }
 
-    return entry;
+    int[] chain = new int[blockCount];
+    System.arraycopy(blocks, 0, chain, 0, blockCount);
+    return chain;
   }
 
   /**
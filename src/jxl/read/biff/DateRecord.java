@@ -21,6 +21,8 @@ package jxl.read.biff;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.TimeZone;
 
@@ -31,6 +33,7 @@ import jxl.CellFeatures;
 import jxl.CellType;
 import jxl.DateCell;
 import jxl.NumberCell;
+import jxl.biff.DateHelper;
 import jxl.biff.FormattingRecords;
 import jxl.format.CellFormat;
 
@@ -45,9 +48,10 @@ class DateRecord implements DateCell, CellFeaturesAccessor
   private static Logger logger  = Logger.getLogger(DateRecord.class);
 
   /**
-   * The date represented within this cell
+   * The date represented within this cell, in milliseconds since
+   * 01 Jan 1970 UTC
    */
-  private Date date;
+  private long millis;
   /**
    * The row number of this cell record
    */
@@ -67,6 +71,12 @@ class DateRecord implements DateCell, CellFeaturesAccessor
    */
   private DateFormat format;
 
+  /**
+   * The immutable java.time equivalent of the format, or NULL if the
+   * format has no java.time equivalent
+   */
+  private DateTimeFormatter formatter;
+
   /**
    * The raw cell format
    */
@@ -106,27 +116,15 @@ class DateRecord implements DateCell, CellFeaturesAccessor
   private static final SimpleDateFormat timeFormat =
     new SimpleDateFormat("HH:mm:ss");
 
-  // The number of days between 1 Jan 1900 and 1 March 1900. Excel thinks
-  // the day before this was 29th Feb 1900, but it was 28th Feb 1900.
-  // I guess the programmers thought nobody would notice that they
-  // couldn't be bothered to program this dating anomaly properly
-  private static final int nonLeapDay = 61;
+  // The java.time equivalents of the default formats
+  private static final DateTimeFormatter dateFormatter =
+    DateHelper.getDateTimeFormatter(dateFormat);
 
-  private static final TimeZone gmtZone = TimeZone.getTimeZone("GMT");
+  private static final DateTimeFormatter timeFormatter =
+    DateHelper.getDateTimeFormatter(timeFormat);
 
-  // The number of days between 01 Jan 1900 and 01 Jan 1970 - this gives
-  // the UTC offset
-  private static final int utcOffsetDays = 25569;
-
-  // The number of days between 01 Jan 1904 and 01 Jan 1970 - this gives
-  // the UTC offset using the 1904 date system
-  private static final int utcOffsetDays1904 = 24107;
+  private static final TimeZone gmtZone = TimeZone.getTimeZone("GMT");
 
-  // The number of milliseconds in  a day
-  private static final long secondsInADay = 24 * 60 * 60;
-  private static final long msInASecond = 1000;
-  private static final long msInADay = secondsInADay * msInASecond;
-  
 
   /**
    * Constructs this object from the raw data
@@ -149,6 +147,7 @@ class DateRecord implements DateCell, CellFeaturesAccessor
     initialized = false;
 
     format = formattingRecords.getDateFormat(xfIndex);
+    formatter = formattingRecords.getDateTimeFormatter(xfIndex);
 
     // This value represents the number of days since 01 Jan 1900
     double numValue = num.getValue();
@@ -158,6 +157,7 @@ class DateRecord implements DateCell, CellFeaturesAccessor
       if (format == null)
       {
         format = timeFormat;
+        formatter = timeFormatter;
       }
       time = true;
     }
@@ -166,33 +166,16 @@ class DateRecord implements DateCell, CellFeaturesAccessor
       if (format == null)
       {
         format = dateFormat;
+        formatter = dateFormatter;
       }
       time = false;
     }
 
-    // Work round a bug in excel.  Excel seems to think there is a date
-    // called the 29th Feb, 1900 - but in actual fact this was not a leap year.
-    // Therefore for values less than 61 in the 1900 date system,
-    // add one to the numeric value
-    if (!nf && !time && numValue < nonLeapDay)
-    {
-      numValue += 1;
-    }
-
     // Get rid of any timezone adjustments - we are not interested
     // in automatic adjustments
     format.setTimeZone(gmtZone);
 
-    // Convert this to the number of days since 01 Jan 1970
-    int offsetDays = nf ? utcOffsetDays1904 : utcOffsetDays;
-    double utcDays = numValue - offsetDays;
-
-    // Convert this into utc by multiplying by the number of milliseconds
-    // in a day.  Use the round function prior to ms conversion due
-    // to a rounding feature of Excel (contributed by Jurgen
-    long utcValue = Math.round(utcDays * secondsInADay) * msInASecond;
-
-    date = new Date(utcValue);
+    millis = DateHelper.getEpochMillis(numValue, nf);
   }
 
   /**
@@ -222,7 +205,27 @@ class DateRecord implements DateCell, CellFeaturesAccessor
    */
   public Date getDate()
   {
-    return date;
+    return new Date(millis);
+  }
+
+  /**
+   * Gets the date as the number of milliseconds since 01 Jan 1970 UTC
+   *
+   * @return the date in milliseconds
+   */
+  public long getEpochMillis()
+  {
+    return millis;
+  }
+
+  /**
+   * Gets the date and time, as shown by Excel
+   *
+   * @return the date and time
+   */
+  public LocalDateTime getLocalDateTime()
+  {
+    return DateHelper.getLocalDateTime(millis);
   }
 
   /**
@@ -233,7 +236,12 @@ class DateRecord implements DateCell, CellFeaturesAccessor
    */
   public String getContents()
   {
-    return format.format(date);
+    if (formatter != null && DateHelper.isFormattable(millis))
+    {
+      return formatter.format(getLocalDateTime());
+    }
+
+    return format.format(getDate());
   }
 
   /**
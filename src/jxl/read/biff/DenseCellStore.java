@@ -0,0 +1,153 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+package jxl.read.biff;
+
+import jxl.Cell;
+
+/**
+ * A cell store which holds every location of the sheet in a two
+ * dimensional array
+ */
+final class DenseCellStore extends CellStore
+{
+  /**
+   * The cells
+   */
+  private Cell[][] cells;
+
+  /**
+   * Constructor
+   *
+   * @param r the number of rows
+   * @param c the number of columns
+   */
+  DenseCellStore(int r, int c)
+  {
+    super(r, c);
+    cells = new Cell[r][c];
+  }
+
+  /**
+   * Gets the cell at the specified location
+   *
+   * @param row the row
+   * @param col the column
+   * @return the cell, or NULL if there is no cell at this location
+   */
+  Cell get(int row, int col)
+  {
+    return cells[row][col];
+  }
+
+  /**
+   * Sets the cell at the specified location
+   *
+   * @param row the row
+   * @param col the column
+   * @param cell the cell
+   */
+  void set(int row, int col, Cell cell)
+  {
+    if (cells[row][col] == null)
+    {
+      cellCount++;
+    }
+    cells[row][col] = cell;
+  }
+
+  /**
+   * Gets the column of the last cell on the specified row
+   *
+   * @param row the row
+   * @return the column, or -1 if the row has no cells
+   */
+  int getLastColumn(int row)
+  {
+    Cell[] r = cells[row];
+    int col = r.length - 1;
+    while (col >= 0 && r[col] == null)
+    {
+      col--;
+    }
+    return col;
+  }
+
+  /**
+   * Gets the row of the last cell in the specified column
+   *
+   * @param col the column
+   * @return the row, or -1 if the column has no cells
+   */
+  int getLastRow(int col)
+  {
+    int row = rows - 1;
+    while (row >= 0 && cells[row][col] == null)
+    {
+      row--;
+    }
+    return row;
+  }
+
+  /**
+   * Enlarges the store to the specified dimensions
+   *
+   * @param r the new number of rows
+   * @param c the new number of columns
+   */
+  void resize(int r, int c)
+  {
+    // Resize the columns, if necessary
+    if (c > columns)
+    {
+      for (int i = 0; i < rows; i++)
+      {
+        Cell[] newRow = new Cell[c];
+        System.arraycopy(cells[i], 0, newRow, 0, columns);
+        cells[i] = newRow;
+      }
+      columns = c;
+    }
+
+    // Resize the rows, if necessary
+    if (r > rows)
+    {
+      Cell[][] newCells = new Cell[r][];
+      System.arraycopy(cells, 0, newCells, 0, rows);
+      for (int i = rows; i < r; i++)
+      {
+        newCells[i] = new Cell[columns];
+      }
+      cells = newCells;
+      rows = r;
+    }
+  }
+
+  /**
+   * Gets an estimate of the number of bytes used by the store and the
+   * cell objects it holds
+   *
+   * @return the estimated size
+   */
+  long getEstimatedSize()
+  {
+    return ARRAY_SIZE + (long) rows * (ARRAY_SIZE + 4 + columns * 4L) +
+      (long) cellCount * CELL_SIZE;
+  }
+}
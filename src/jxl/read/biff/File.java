@@ -23,12 +23,17 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 import jxl.common.Logger;
 
 import jxl.WorkbookSettings;
 import jxl.biff.BaseCompoundFile;
-import jxl.biff.IntegerHelper;
 import jxl.biff.Type;
 
 /**
@@ -42,9 +47,10 @@ public class File
   private static Logger logger = Logger.getLogger(File.class);
 
   /**
-   * The data from the excel 97 file
+   * The workbook stream from the excel 97 file.  This reads directly from
+   * the blocks of the compound file, rather than from a defragged copy
    */
-  private byte[] data;
+  private SectorStream data;
   /**
    * The current position within the file
    */
@@ -62,14 +68,36 @@ public class File
    */
   private int arrayGrowSize;
   /**
-   * A handle to the compound file. This is only preserved when the
-   * copying of PropertySets is enabled
+   * A handle to the compound file.  This is only preserved once the file
+   * has been cleared when the copying of PropertySets is enabled
    */
   private CompoundFile compoundFile;
+  /**
+   * Indicates whether the compound file contains additional property sets
+   * which are to be copied
+   */
+  private boolean copyPropertySets;
   /**
    * The workbook settings
    */
   private WorkbookSettings workbookSettings;
+  /**
+   * The memory mapping of the excel file, if it was opened in memory mapped
+   * mode.  This is retained so that the mapping can be released when
+   * the workbook is closed
+   */
+  private MappedByteBuffer mappedFile;
+  /**
+   * The temporary file to which the input stream was written, if it
+   * exceeded the maximum heap file size
+   */
+  private java.io.File temporaryFile;
+
+  /**
+   * The file from which this one was duplicated, or NULL if this is the
+   * original file
+   */
+  private File parent;
 
   /**
    * Constructs a file from the input stream
@@ -87,6 +115,14 @@ public class File
     initialFileSize = workbookSettings.getInitialFileSize();
     arrayGrowSize = workbookSettings.getArrayGrowSize();
 
+    // If the heap used for buffering is capped, then never allocate
+    // beyond the cap
+    int maximumHeapSize = workbookSettings.getMaximumHeapFileSize();
+    if (maximumHeapSize > 0)
+    {
+      initialFileSize = Math.min(initialFileSize, maximumHeapSize);
+    }
+
     byte[] d = new byte[initialFileSize];
     int bytesRead = is.read(d);
     int pos = bytesRead;
@@ -102,8 +138,22 @@ public class File
     {
       if (pos >= d.length)
       {
+        if (maximumHeapSize > 0 && d.length >= maximumHeapSize)
+        {
+          // The cap has been reached, so write what has been read so
+          // far, and the remainder of the stream, to a temporary file
+          spoolToTemporaryFile(d, pos, is);
+          break;
+        }
+
         // Grow the array
-        byte[] newArray = new byte[d.length + arrayGrowSize];
+        int newSize = d.length + arrayGrowSize;
+        if (maximumHeapSize > 0)
+        {
+          newSize = Math.min(newSize, maximumHeapSize);
+        }
+
+        byte[] newArray = new byte[newSize];
         System.arraycopy(d, 0, newArray, 0, d.length);
         d = newArray;
       }
@@ -116,46 +166,257 @@ public class File
       }
     }
 
-    bytesRead = pos + 1;
+    if (temporaryFile != null)
+    {
+      try
+      {
+        readWorkbookStream(mappedFile);
+      }
+      catch (BiffException e)
+      {
+        clear();
+        throw e;
+      }
+    }
+    else
+    {
+      bytesRead = pos + 1;
+
+      // Perform file reading checks and throw exceptions as necessary
+      if (bytesRead == 0)
+      {
+        throw new BiffException(BiffException.excelFileNotFound);
+      }
+
+      // The workbook is read directly from this array, so don't hold on
+      // to a mostly empty one
+      if (bytesRead < d.length / 2)
+      {
+        byte[] trimmed = new byte[bytesRead];
+        System.arraycopy(d, 0, trimmed, 0, bytesRead);
+        d = trimmed;
+      }
+
+      readWorkbookStream(ByteBuffer.wrap(d));
+    }
+
+    // Uncomment the following lines to send the pure workbook stream
+    // (ie. a defragged ole stream) to an output file
+
+//      FileOutputStream fos = new FileOutputStream("defraggedxls");
+//      fos.write(data);
+//      fos.close();
+
+  }
+
+  /**
+   * Constructs a file by memory mapping the excel file on disk.  The OLE
+   * header, sectors and workbook records are all read directly from the
+   * mapping, so the file is never copied onto the heap.  The mapping is
+   * released when the workbook is closed
+   *
+   * @param file the excel file
+   * @param ws the workbook settings
+   * @exception IOException
+   * @exception BiffException
+   */
+  public File(java.io.File file, WorkbookSettings ws)
+    throws IOException, BiffException
+  {
+    workbookSettings = ws;
+
+    mapFile(file);
+
+    try
+    {
+      readWorkbookStream(mappedFile);
+    }
+    catch (BiffException e)
+    {
+      clear();
+      throw e;
+    }
+  }
+
+  /**
+   * Writes the data buffered so far, followed by the rest of the input
+   * stream, to a temporary file and memory maps it.  The temporary file
+   * is deleted when the workbook is closed
+   *
+   * @param d the data buffered so far
+   * @param len the number of bytes in the buffer
+   * @param is the input stream
+   * @exception IOException
+   * @exception BiffException
+   */
+  private void spoolToTemporaryFile(byte[] d, int len, InputStream is)
+    throws IOException, BiffException
+  {
+    temporaryFile = java.io.File.createTempFile
+      ("jxl", ".tmp", workbookSettings.getTemporaryFileDuringReadDirectory());
+
+    try
+    {
+      FileOutputStream fos = new FileOutputStream(temporaryFile);
+      try
+      {
+        fos.write(d, 0, len);
+
+        // Reuse the buffer to copy the rest of the stream
+        int bytesRead = is.read(d);
+        while (bytesRead != -1)
+        {
+          fos.write(d, 0, bytesRead);
+
+          if (Thread.currentThread().isInterrupted())
+          {
+            throw new InterruptedIOException();
+          }
+
+          bytesRead = is.read(d);
+        }
+      }
+      finally
+      {
+        fos.close();
+      }
+
+      mapFile(temporaryFile);
+    }
+    catch (IOException e)
+    {
+      clear();
+      throw e;
+    }
+  }
+
+  /**
+   * Memory maps the specified file for reading
+   *
+   * @param file the file to map
+   * @exception IOException
+   * @exception BiffException if the file is empty
+   */
+  private void mapFile(java.io.File file) throws IOException, BiffException
+  {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try
+    {
+      FileChannel channel = raf.getChannel();
+      if (channel.size() == 0)
+      {
+        throw new BiffException(BiffException.excelFileNotFound);
+      }
+
+      // The mapping remains valid once the channel has been closed
+      mappedFile = channel.map(FileChannel.MapMode.READ_ONLY,
+                               0, channel.size());
+    }
+    finally
+    {
+      raf.close();
+    }
+  }
+
+  /**
+   * Constructs a file from a buffer containing the OLE compound file,
+   * such as one the caller has already read into memory or mapped.  The
+   * bytes between the buffer's position and its limit are used, and they
+   * are not copied
+   *
+   * @param buffer the buffer containing the excel data
+   * @param ws the workbook settings
+   * @exception BiffException
+   */
+  public File(ByteBuffer buffer, WorkbookSettings ws) throws BiffException
+  {
+    workbookSettings = ws;
 
-    // Perform file reading checks and throw exceptions as necessary
-    if (bytesRead == 0)
+    if (!buffer.hasRemaining())
     {
       throw new BiffException(BiffException.excelFileNotFound);
     }
 
-    CompoundFile cf = new CompoundFile(d, ws);
+    readWorkbookStream(buffer);
+  }
+
+  /**
+   * Reads the OLE compound file from the buffer and extracts the
+   * workbook stream
+   *
+   * @param buffer the OLE compound file data
+   * @exception BiffException
+   */
+  private void readWorkbookStream(ByteBuffer buffer) throws BiffException
+  {
+    compoundFile = new CompoundFile(buffer, workbookSettings);
     try
     {
-      data = cf.getStream("workbook");
+      data = compoundFile.getStreamView("workbook");
     }
     catch (BiffException e)
     {
       // this might be in excel 95 format - try again
-      data = cf.getStream("book");
+      data = compoundFile.getStreamView("book");
     }
 
-    if (!workbookSettings.getPropertySetsDisabled() &&
-        (cf.getNumberOfPropertySets() >
-         BaseCompoundFile.STANDARD_PROPERTY_SETS.length))
+    copyPropertySets = !workbookSettings.getPropertySetsDisabled() &&
+      (compoundFile.getNumberOfPropertySets() >
+       BaseCompoundFile.STANDARD_PROPERTY_SETS.length);
+  }
+
+  /**
+   * Releases the memory mapping, if there is one.  Java provides no
+   * public means of doing this, so where the runtime permits the buffer's
+   * cleaner is invoked directly; otherwise the mapping is left for the
+   * garbage collector.  The mapping must not be referenced after this
+   * has been called
+   */
+  private void releaseMapping()
+  {
+    if (mappedFile == null)
     {
-      compoundFile = cf;
+      return;
     }
 
-    cf = null;
+    MappedByteBuffer buffer = mappedFile;
+    mappedFile = null;
 
-    if (!workbookSettings.getGCDisabled())
+    try
     {
-      System.gc();
+      // Java 9 onwards
+      Class unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      Method invokeCleaner = unsafeClass.getMethod("invokeCleaner",
+                                                   new Class[]
+                                                   {ByteBuffer.class});
+      invokeCleaner.invoke(theUnsafe.get(null), new Object[] {buffer});
+      return;
+    }
+    catch (Exception e)
+    {
+      // fall through and try the older mechanism
     }
 
-    // Uncomment the following lines to send the pure workbook stream
-    // (ie. a defragged ole stream) to an output file
-
-//      FileOutputStream fos = new FileOutputStream("defraggedxls");
-//      fos.write(data);
-//      fos.close();
-
+    try
+    {
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner",
+                                                         new Class[0]);
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer, new Object[0]);
+      if (cleaner != null)
+      {
+        Method clean = cleaner.getClass().getMethod("clean", new Class[0]);
+        clean.setAccessible(true);
+        clean.invoke(cleaner, new Object[0]);
+      }
+    }
+    catch (Exception e)
+    {
+      logger.debug("Unable to release file mapping - " +
+                   "leaving it to the garbage collector");
+    }
   }
 
   /**
@@ -168,7 +429,34 @@ public class File
    */
   public File(byte[] d)
   {
-    data = d;
+    data = new SectorStream(ByteBuffer.wrap(d));
+  }
+
+  /**
+   * Constructs a duplicate of the file passed in.  The duplicate shares the
+   * workbook stream, but has its own position within it
+   *
+   * @param f the file to duplicate
+   */
+  private File(File f)
+  {
+    data = f.data;
+    filePos = f.filePos;
+    oldPos = f.oldPos;
+    workbookSettings = f.workbookSettings;
+    parent = f;
+  }
+
+  /**
+   * Creates a duplicate of this file, with an independent position.  Each
+   * sheet is read through its own duplicate, so that several sheets may be
+   * read at the same time
+   *
+   * @return the duplicate
+   */
+  File duplicate()
+  {
+    return new File(parent != null ? parent : this);
   }
 
   /**
@@ -182,6 +470,26 @@ public class File
     return r;
   }
 
+  /**
+   * Returns the next data record and increments the pointer, reusing
+   * the record passed in.  The record's previous contents are discarded,
+   * so records obtained this way must be copied by anything which retains
+   * them
+   *
+   * @param cursor the record to reuse, or NULL if one should be created
+   * @return the next data record
+   */
+  Record next(Record cursor)
+  {
+    if (cursor == null)
+    {
+      return new Record(data, filePos, this);
+    }
+
+    cursor.initialize(data, filePos, this);
+    return cursor;
+  }
+
   /**
    * Peek ahead to the next record, without incrementing the file position
    *
@@ -214,10 +522,18 @@ public class File
    */
   public byte[] read(int pos, int length)
   {
+    // Objects such as charts read from the file long after the sheet has
+    // been read, so go through the original which knows if it has
+    // been cleared
+    if (parent != null)
+    {
+      return parent.read(pos, length);
+    }
+
     byte[] ret = new byte[length];
     try
     {
-      System.arraycopy(data, pos, ret, 0, length);
+      data.get(pos, ret, 0, length);
     }
     catch (ArrayIndexOutOfBoundsException e)
     {
@@ -274,7 +590,7 @@ public class File
     boolean bofFound = false;
     while (!bofFound)
     {
-      int code = IntegerHelper.getInt(data[filePos], data[filePos + 1]);
+      int code = data.getUShort(filePos);
       if (code == Type.BOF.value)
       {
         bofFound = true;
@@ -296,11 +612,47 @@ public class File
   }
 
   /**
-   * Clears the contents of the file
+   * Clears the contents of the file.  If the compound file contains
+   * additional property sets which are to be copied, their streams are
+   * first copied onto the heap.  If the file was memory mapped, then the
+   * mapping is released, and any temporary file used to hold the workbook
+   * is deleted at the same time
    */
   public void clear()
   {
     data = null;
+
+    if (copyPropertySets && compoundFile != null)
+    {
+      compoundFile.detach();
+    }
+    else
+    {
+      compoundFile = null;
+    }
+
+    releaseMapping();
+
+    if (temporaryFile != null)
+    {
+      // The mapping must be released before the file can be deleted.
+      // Should the platform still refuse, fall back to deleting it on exit
+      if (!temporaryFile.delete())
+      {
+        temporaryFile.deleteOnExit();
+      }
+      temporaryFile = null;
+    }
+  }
+
+  /**
+   * Disables the copying of the additional property sets, for files which
+   * are only read for their descriptive information.  The compound file
+   * is then released along with the rest of the file when it is cleared
+   */
+  void disablePropertySetCopying()
+  {
+    copyPropertySets = false;
   }
 
   /**
@@ -311,7 +663,7 @@ public class File
   public boolean hasNext()
   {
     // Allow four bytes for the record code and its length
-    return filePos < data.length - 4;
+    return filePos < data.getLength() - 4;
   }
 
   /**
@@ -323,6 +675,25 @@ public class File
    */
   CompoundFile getCompoundFile()
   {
-    return compoundFile;
+    return copyPropertySets ? compoundFile : null;
+  }
+
+  /**
+   * Gets one of the other streams in the compound file, such as the
+   * summary information.  This must be called before the file is cleared
+   *
+   * @param name the name of the stream
+   * @return the stream data, or NULL if the file has no such stream
+   */
+  byte[] getStream(String name)
+  {
+    try
+    {
+      return compoundFile.getStream(name);
+    }
+    catch (BiffException e)
+    {
+      return null;
+    }
   }
 }
@@ -24,9 +24,7 @@ import jxl.common.Logger;
 
 import jxl.CellType;
 import jxl.WorkbookSettings;
-import jxl.biff.DoubleHelper;
 import jxl.biff.FormattingRecords;
-import jxl.biff.IntegerHelper;
 import jxl.biff.WorkbookMethods;
 import jxl.biff.formula.ExternalSheet;
 
@@ -79,55 +77,52 @@ class FormulaRecord extends CellValue
                        SheetImpl si,
                        WorkbookSettings ws)
   {
-    super(t, fr, si);
-
-    byte[] data = getRecord().getData();
+    super(t, fr, si, false);
+    byte valueType = t.getByte(6);
+    boolean nonNumeric = t.getByte(12) == -1 && t.getByte(13) == -1;
 
     shared = false;
 
     // Check to see if this forms part of a shared formula
-    int grbit = IntegerHelper.getInt(data[14], data[15]);
+    int grbit = t.getUShort(14);
     if ((grbit & 0x08) != 0)
     {
       shared = true;
 
-      if (data[6] == 0 && data[12] == -1 && data[13] == -1)
+      if (valueType == 0 && nonNumeric)
       {
         // It is a shared string formula
         formula = new SharedStringFormulaRecord
           (t, excelFile, fr, es, nt, si, ws);
       }
-      else if (data[6]  == 3 && data[12] == -1 &&  data[13] == -1)
+      else if (valueType == 3 && nonNumeric)
       {
         // We have a string which evaluates to null
         formula = new SharedStringFormulaRecord
           (t, excelFile, fr, es, nt, si, 
            SharedStringFormulaRecord.EMPTY_STRING);
       }
-      else if (data[6]  == 2 &&
-               data[12] == -1 &&
-               data[13] == -1)
+      else if (valueType == 2 && nonNumeric)
       {
         // The cell is in error
-        int errorCode = data[8];
+        int errorCode = t.getByte(8);
         formula = new SharedErrorFormulaRecord(t, excelFile, errorCode, 
                                                fr, es, nt, si);
       }
-      else if (data[6]  == 1  &&
-               data[12] == -1 &&
-               data[13] == -1)
+      else if (valueType == 1 && nonNumeric)
       {
-        boolean value = data[8] == 1 ? true : false;
+        boolean value = t.getByte(8) == 1 ? true : false;
         formula = new SharedBooleanFormulaRecord
           (t, excelFile, value, fr, es, nt, si);
       }
       else
       {
         // It is a numerical formula
-        double value = DoubleHelper.getIEEEDouble(data, 6);
+        double value = t.getDouble(6);
         SharedNumberFormulaRecord snfr = new SharedNumberFormulaRecord
           (t, excelFile, value, fr, es, nt, si);
-        snfr.setNumberFormat(fr.getNumberFormat(getXFIndex()));
+        snfr.setNumberFormat(fr.getNumberFormat(getXFIndex()),
+                             fr.getExcelNumberFormat(getXFIndex()));
         formula = snfr;
       }
 
@@ -136,27 +131,23 @@ class FormulaRecord extends CellValue
 
     // microsoft and their goddam magic values determine whether this
     // is a string or a number value
-    if (data[6] == 0 && data[12] == -1 && data[13] == -1)
+    if (valueType == 0 && nonNumeric)
     {
       // we have a string
       formula = new StringFormulaRecord(t, excelFile, fr, es, nt, si, ws);
     }
-    else if (data[6]  == 1  &&
-             data[12] == -1 &&
-             data[13] == -1)
+    else if (valueType == 1 && nonNumeric)
     {
       // We have a boolean formula
       // multiple values.  Thanks to Frank for spotting this
       formula = new BooleanFormulaRecord(t, fr, es, nt, si);
     }
-    else if (data[6]  == 2 &&
-             data[12] == -1 &&
-             data[13] == -1)
+    else if (valueType == 2 && nonNumeric)
     {
       // The cell is in error
       formula = new ErrorFormulaRecord(t, fr, es, nt, si);
     }
-    else if (data[6] == 3 && data[12] == -1 && data[13] == -1)
+    else if (valueType == 3 && nonNumeric)
     {
       // we have a string which evaluates to null
       formula = new StringFormulaRecord(t, fr, es, nt, si);
@@ -192,29 +183,26 @@ class FormulaRecord extends CellValue
                        SheetImpl si,
                        WorkbookSettings ws)
   {
-    super(t, fr, si);
-    byte[] data = getRecord().getData();
+    super(t, fr, si, false);
+    byte valueType = t.getByte(6);
+    boolean nonNumeric = t.getByte(12) == -1 && t.getByte(13) == -1;
 
     shared = false;
 
     // microsoft and their magic values determine whether this
     // is a string or a number value
-    if (data[6] == 0 && data[12] == -1 && data[13] == -1)
+    if (valueType == 0 && nonNumeric)
     {
       // we have a string
       formula = new StringFormulaRecord(t, excelFile, fr, es, nt, si, ws);
     }
-    else if (data[6]  == 1  &&
-             data[12] == -1 &&
-             data[13] == -1)
+    else if (valueType == 1 && nonNumeric)
     {
       // We have a boolean formula
       // multiple values.  Thanks to Frank for spotting this
       formula = new BooleanFormulaRecord(t, fr, es, nt, si);
     }
-    else if (data[6]  == 2 &&
-             data[12] == -1 &&
-             data[13] == -1)
+    else if (valueType == 2 && nonNumeric)
     {
       // The cell is in error
       formula = new ErrorFormulaRecord(t, fr, es, nt, si);
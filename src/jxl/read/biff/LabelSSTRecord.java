@@ -22,7 +22,7 @@ package jxl.read.biff;
 import jxl.CellType;
 import jxl.LabelCell;
 import jxl.biff.FormattingRecords;
-import jxl.biff.IntegerHelper;
+import jxl.biff.Type;
 
 /**
  * A label which is stored in the shared string table
@@ -34,13 +34,13 @@ class LabelSSTRecord extends CellValue implements LabelCell
    */
   private int index;
   /**
-   * The label
+   * The shared string table
    */
-  private String string;
+  private SSTRecord sharedStrings;
 
   /**
-   * Constructor.  Retrieves the index from the raw data and looks it up
-   * in the shared string table
+   * Constructor.  Retrieves the index from the raw data.  The label is not
+   * looked up in the shared string table until it is asked for
    *
    * @param stringTable the shared string table
    * @param t the raw data
@@ -50,10 +50,39 @@ class LabelSSTRecord extends CellValue implements LabelCell
   public LabelSSTRecord(Record t, SSTRecord stringTable, FormattingRecords fr,
                         SheetImpl si)
   {
-    super(t, fr, si);
-    byte[] data = getRecord().getData();
-    index = IntegerHelper.getInt(data[6], data[7], data[8], data[9]);
-    string = stringTable.getString(index);
+    super(t, fr, si, false);
+    index = t.getInt(6);
+    sharedStrings = stringTable;
+  }
+
+  /**
+   * Constructor used when the cell is created from a shared string index
+   * which has already been read
+   *
+   * @param r the row
+   * @param c the column
+   * @param xfi the xf index
+   * @param sstIndex the index into the shared string table
+   * @param stringTable the shared string table
+   * @param fr the formatting records
+   * @param si the sheet
+   */
+  LabelSSTRecord(int r, int c, int xfi, int sstIndex, SSTRecord stringTable,
+                 FormattingRecords fr, SheetImpl si)
+  {
+    super(Type.LABELSST, r, c, xfi, fr, si);
+    index = sstIndex;
+    sharedStrings = stringTable;
+  }
+
+  /**
+   * Gets the index of the label in the shared string table
+   *
+   * @return the shared string index
+   */
+  final int getStringIndex()
+  {
+    return index;
   }
 
   /**
@@ -63,7 +92,7 @@ class LabelSSTRecord extends CellValue implements LabelCell
    */
   public String getString()
   {
-    return string;
+    return sharedStrings.getString(index);
   }
 
   /**
@@ -73,7 +102,7 @@ class LabelSSTRecord extends CellValue implements LabelCell
    */
   public String getContents()
   {
-    return string;
+    return sharedStrings.getString(index);
   }
 
   /**
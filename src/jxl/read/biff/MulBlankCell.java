@@ -140,6 +140,16 @@ class MulBlankCell implements Cell, CellFeaturesAccessor
     return CellType.EMPTY;
   }
 
+  /**
+   * Gets the xf index of this cell
+   *
+   * @return the xf index
+   */
+  final int getXFIndex()
+  {
+    return xfIndex;
+  }
+
   /**
    * Gets the cell format for this cell
    *
@@ -21,7 +21,6 @@ package jxl.read.biff;
 
 import jxl.common.Logger;
 
-import jxl.biff.IntegerHelper;
 import jxl.biff.RecordData;
 
 /**
@@ -66,34 +65,30 @@ class MulRKRecord extends RecordData
    */
   public MulRKRecord(Record t)
   {
-    super(t);
-    byte[] data = getRecord().getData();
-    int length = getRecord().getLength();
-    row = IntegerHelper.getInt(data[0], data[1]);
-    colFirst = IntegerHelper.getInt(data[2], data[3]);
-    colLast = IntegerHelper.getInt(data[length - 2], data[length - 1]);
+    super(t, false);
+    int length = t.getLength();
+    row = t.getUShort(0);
+    colFirst = t.getUShort(2);
+    colLast = t.getUShort(length - 2);
     numrks = colLast - colFirst + 1;
     rknumbers = new int[numrks];
     xfIndices = new int[numrks];
 
-    readRks(data);
+    readRks(t);
   }
 
   /**
    * Reads the rks from the raw data
    *
-   * @param data the raw data
+   * @param t the raw data
    */
-  private void readRks(byte[] data)
+  private void readRks(Record t)
   {
     int pos = 4;
-    int rk;
     for (int i = 0; i < numrks; i++)
     {
-      xfIndices[i] = IntegerHelper.getInt(data[pos], data[pos + 1]);
-      rk = IntegerHelper.getInt
-        (data[pos + 2], data[pos + 3], data[pos + 4], data[pos + 5]);
-      rknumbers[i] = rk;
+      xfIndices[i] = t.getUShort(pos);
+      rknumbers[i] = t.getInt(pos + 2);
       pos += 6;
     }
   }
@@ -28,6 +28,7 @@ import jxl.CellType;
 import jxl.NumberCell;
 import jxl.NumberFormulaCell;
 import jxl.biff.DoubleHelper;
+import jxl.biff.ExcelNumberFormat;
 import jxl.biff.FormattingRecords;
 import jxl.biff.FormulaData;
 import jxl.biff.WorkbookMethods;
@@ -56,6 +57,12 @@ class NumberFormulaRecord extends CellValue
    */
   private NumberFormat format;
 
+  /**
+   * The compiled equivalent of the number format, or NULL if the java
+   * format is to be used
+   */
+  private ExcelNumberFormat excelFormat;
+
   /**
    * The string format for the double value
    */
@@ -102,10 +109,12 @@ class NumberFormulaRecord extends CellValue
     data = getRecord().getData();
 
     format = fr.getNumberFormat(getXFIndex());
+    excelFormat = fr.getExcelNumberFormat(getXFIndex());
 
     if (format == null)
     {
       format = defaultFormat;
+      excelFormat = ExcelNumberFormat.getDefaultFormat();
     }
 
     value = DoubleHelper.getIEEEDouble(data, 6);
@@ -128,7 +137,13 @@ class NumberFormulaRecord extends CellValue
    */
   public String getContents()
   {
-    return !Double.isNaN(value) ? format.format(value) : "";
+    if (Double.isNaN(value))
+    {
+      return "";
+    }
+
+    return excelFormat != null ?
+      excelFormat.format(value) : format.format(value);
   }
 
   /**
@@ -26,7 +26,7 @@ import jxl.common.Logger;
 
 import jxl.CellType;
 import jxl.NumberCell;
-import jxl.biff.DoubleHelper;
+import jxl.biff.ExcelNumberFormat;
 import jxl.biff.FormattingRecords;
 
 /**
@@ -50,6 +50,12 @@ class NumberRecord extends CellValue implements NumberCell
    */
   private NumberFormat format;
 
+  /**
+   * The compiled equivalent of the number format, or NULL if the java
+   * format is to be used
+   */
+  private ExcelNumberFormat excelFormat;
+
   /**
    * The formatter to convert the value into a string
    */
@@ -64,16 +70,31 @@ class NumberRecord extends CellValue implements NumberCell
    */
   public NumberRecord(Record t, FormattingRecords fr, SheetImpl si)
   {
-    super(t, fr, si);
-    byte[] data = getRecord().getData();
+    this(t, fr, si, true);
+  }
+
+  /**
+   * Constructs this object from the raw data, optionally without looking
+   * up the number format
+   *
+   * @param t the raw data
+   * @param fr the available formats
+   * @param si the sheet
+   * @param formatted FALSE if the default number format is to be used
+   */
+  NumberRecord(Record t, FormattingRecords fr, SheetImpl si, boolean formatted)
+  {
+    super(t, fr, si, false);
 
-    value = DoubleHelper.getIEEEDouble(data, 6);
+    value = t.getDouble(6);
 
     // Now get the number format
-    format = fr.getNumberFormat(getXFIndex());
+    format = formatted ? fr.getNumberFormat(getXFIndex()) : null;
+    excelFormat = formatted ? fr.getExcelNumberFormat(getXFIndex()) : null;
     if (format == null)
     {
       format = defaultFormat;
+      excelFormat = ExcelNumberFormat.getDefaultFormat();
     }
   }
 
@@ -94,7 +115,8 @@ class NumberRecord extends CellValue implements NumberCell
    */
   public String getContents()
   {
-    return format.format(value);
+    return excelFormat != null ?
+      excelFormat.format(value) : format.format(value);
   }
 
   /**
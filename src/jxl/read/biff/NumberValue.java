@@ -25,6 +25,7 @@ import java.text.NumberFormat;
 import jxl.CellFeatures;
 import jxl.CellType;
 import jxl.NumberCell;
+import jxl.biff.ExcelNumberFormat;
 import jxl.biff.FormattingRecords;
 import jxl.format.CellFormat;
 
@@ -52,6 +53,12 @@ class NumberValue implements NumberCell, CellFeaturesAccessor
    */
   private NumberFormat format;
 
+  /**
+   * The compiled equivalent of the number format, or NULL if the java
+   * format is to be used
+   */
+  private ExcelNumberFormat excelFormat;
+
   /**
    * The raw cell format
    */
@@ -107,6 +114,7 @@ class NumberValue implements NumberCell, CellFeaturesAccessor
     column = c;
     value = val;
     format = defaultFormat;
+    excelFormat = ExcelNumberFormat.getDefaultFormat();
     xfIndex = xfi;
     formattingRecords = fr;
     sheet = si;
@@ -119,12 +127,15 @@ class NumberValue implements NumberCell, CellFeaturesAccessor
    * that this cell is a number and not a date
    *
    * @param f the format
+   * @param ef the compiled equivalent of the format, or NULL if it could
+   *    not be compiled
    */
-  final void setNumberFormat(NumberFormat f)
+  final void setNumberFormat(NumberFormat f, ExcelNumberFormat ef)
   {
     if (f != null)
     {
       format = f;
+      excelFormat = ef;
     }
   }
 
@@ -165,7 +176,8 @@ class NumberValue implements NumberCell, CellFeaturesAccessor
    */
   public String getContents()
   {
-    return format.format(value);
+    return excelFormat != null ?
+      excelFormat.format(value) : format.format(value);
   }
 
   /**
@@ -218,6 +230,16 @@ class NumberValue implements NumberCell, CellFeaturesAccessor
     return false;
   }
 
+  /**
+   * Gets the xf index of this cell
+   *
+   * @return the xf index
+   */
+  final int getXFIndex()
+  {
+    return xfIndex;
+  }
+
   /**
    * Gets the NumberFormat used to format this cell.  This is the java
    * equivalent of the Excel format
@@ -0,0 +1,316 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+package jxl.read.biff;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Date;
+import java.util.HashMap;
+
+import jxl.common.Logger;
+
+import jxl.biff.IntegerHelper;
+
+/**
+ * Reads the properties out of an OLE property set stream, such as the
+ * SummaryInformation and DocumentSummaryInformation streams.  Only the
+ * first section of the property set, and only the string, integer and
+ * date property types, are read
+ */
+class PropertySet
+{
+  /**
+   * The logger
+   */
+  private static Logger logger = Logger.getLogger(PropertySet.class);
+
+  /**
+   * The property identifiers within the SummaryInformation stream
+   */
+  static final int TITLE = 2;
+  static final int SUBJECT = 3;
+  static final int AUTHOR = 4;
+  static final int KEYWORDS = 5;
+  static final int COMMENTS = 6;
+  static final int LAST_AUTHOR = 8;
+  static final int CREATED = 12;
+  static final int LAST_SAVED = 13;
+  static final int APPLICATION_NAME = 18;
+
+  /**
+   * The property identifiers within the DocumentSummaryInformation stream
+   */
+  static final int CATEGORY = 2;
+  static final int MANAGER = 14;
+  static final int COMPANY = 15;
+
+  /**
+   * The property identifier of the code page
+   */
+  private static final int CODEPAGE = 1;
+
+  /**
+   * The property types which are read
+   */
+  private static final int VT_I2 = 2;
+  private static final int VT_I4 = 3;
+  private static final int VT_LPSTR = 30;
+  private static final int VT_LPWSTR = 31;
+  private static final int VT_FILETIME = 64;
+
+  /**
+   * The code page used for unicode strings
+   */
+  private static final int UNICODE_CODEPAGE = 1200;
+
+  /**
+   * The number of milliseconds between the start of the FILETIME epoch
+   * (1 January 1601) and the start of the java epoch
+   */
+  private static final long FILETIME_EPOCH_OFFSET = 11644473600000L;
+
+  /**
+   * The property values, keyed on the property identifier
+   */
+  private HashMap properties;
+
+  /**
+   * Constructs the property set from the raw stream data.  Malformed data
+   * is logged and otherwise ignored, so that the properties read up to
+   * that point are still available
+   *
+   * @param data the property set stream
+   * @param encoding the encoding to use if the code page is not recognized
+   */
+  PropertySet(byte[] data, String encoding)
+  {
+    properties = new HashMap();
+
+    try
+    {
+      read(data, encoding);
+    }
+    catch (ArrayIndexOutOfBoundsException e)
+    {
+      logger.warn("Property set is truncated");
+    }
+  }
+
+  /**
+   * Reads the properties from the first section of the property set
+   *
+   * @param data the property set stream
+   * @param encoding the encoding to use if the code page is not recognized
+   */
+  private void read(byte[] data, String encoding)
+  {
+    // The header is 28 bytes, and is followed by the format id and offset
+    // of each section
+    int numSections = getInt(data, 24);
+    if (numSections < 1)
+    {
+      return;
+    }
+
+    int section = getInt(data, 44);
+    int numProperties = getInt(data, section + 4);
+
+    // Read the code page first, as this is needed to decode the strings
+    int codepage = 0;
+    for (int i = 0; i < numProperties; i++)
+    {
+      int pos = section + 8 + i * 8;
+      if (getInt(data, pos) == CODEPAGE)
+      {
+        int valuePos = section + getInt(data, pos + 4);
+        codepage = IntegerHelper.getInt(data[valuePos + 4],
+                                        data[valuePos + 5]);
+      }
+    }
+
+    String charset = getCharset(codepage, encoding);
+
+    for (int i = 0; i < numProperties; i++)
+    {
+      int pos = section + 8 + i * 8;
+      int id = getInt(data, pos);
+      int valuePos = section + getInt(data, pos + 4);
+      int type = getInt(data, valuePos);
+      Object value = null;
+
+      if (type == VT_LPSTR)
+      {
+        int length = getInt(data, valuePos + 4);
+        if (codepage == UNICODE_CODEPAGE)
+        {
+          value = getUnicodeString(data, valuePos + 8, length / 2);
+        }
+        else
+        {
+          value = getString(data, valuePos + 8, length, charset);
+        }
+      }
+      else if (type == VT_LPWSTR)
+      {
+        int length = getInt(data, valuePos + 4);
+        value = getUnicodeString(data, valuePos + 8, length);
+      }
+      else if (type == VT_FILETIME)
+      {
+        long low = getInt(data, valuePos + 4) & 0xffffffffL;
+        long high = getInt(data, valuePos + 8) & 0xffffffffL;
+        long filetime = (high << 32) | low;
+        if (filetime != 0)
+        {
+          value = new Date(filetime / 10000 - FILETIME_EPOCH_OFFSET);
+        }
+      }
+      else if (type == VT_I4)
+      {
+        value = new Integer(getInt(data, valuePos + 4));
+      }
+      else if (type == VT_I2)
+      {
+        value = new Integer(IntegerHelper.getInt(data[valuePos + 4],
+                                                 data[valuePos + 5]));
+      }
+
+      if (value != null)
+      {
+        properties.put(new Integer(id), value);
+      }
+    }
+  }
+
+  /**
+   * Gets the string value of the specified property
+   *
+   * @param id the property identifier
+   * @return the value, or NULL if the property is not present
+   */
+  String getString(int id)
+  {
+    Object value = properties.get(new Integer(id));
+    return value instanceof String ? (String) value : null;
+  }
+
+  /**
+   * Gets the date value of the specified property
+   *
+   * @param id the property identifier
+   * @return the value, or NULL if the property is not present
+   */
+  Date getDate(int id)
+  {
+    Object value = properties.get(new Integer(id));
+    return value instanceof Date ? (Date) value : null;
+  }
+
+  /**
+   * Gets the java character set for the code page
+   *
+   * @param codepage the windows code page
+   * @param encoding the encoding to use if the code page is not recognized
+   * @return the character set name
+   */
+  private static String getCharset(int codepage, String encoding)
+  {
+    if (codepage == 65001)
+    {
+      return "UTF-8";
+    }
+
+    String charset = "Cp" + codepage;
+    try
+    {
+      "".getBytes(charset);
+      return charset;
+    }
+    catch (UnsupportedEncodingException e)
+    {
+      return encoding;
+    }
+  }
+
+  /**
+   * Gets a null terminated string in the specified character set
+   *
+   * @param data the data
+   * @param pos the position of the string
+   * @param length the maximum number of bytes in the string
+   * @param charset the character set
+   * @return the string
+   */
+  private static String getString(byte[] data, int pos, int length,
+                                  String charset)
+  {
+    int len = 0;
+    while (len < length && data[pos + len] != 0)
+    {
+      len++;
+    }
+
+    try
+    {
+      return new String(data, pos, len, charset);
+    }
+    catch (UnsupportedEncodingException e)
+    {
+      return new String(data, pos, len);
+    }
+  }
+
+  /**
+   * Gets a null terminated unicode string
+   *
+   * @param data the data
+   * @param pos the position of the string
+   * @param length the maximum number of characters in the string
+   * @return the string
+   */
+  private static String getUnicodeString(byte[] data, int pos, int length)
+  {
+    StringBuffer sb = new StringBuffer(length);
+    for (int i = 0; i < length; i++)
+    {
+      char c = (char) IntegerHelper.getInt(data[pos + i * 2],
+                                           data[pos + i * 2 + 1]);
+      if (c == 0)
+      {
+        break;
+      }
+      sb.append(c);
+    }
+
+    return sb.toString();
+  }
+
+  /**
+   * Gets the four byte value at the specified position
+   *
+   * @param data the data
+   * @param pos the position
+   * @return the value
+   */
+  private static int getInt(byte[] data, int pos)
+  {
+    return IntegerHelper.getInt(data[pos], data[pos + 1],
+                                data[pos + 2], data[pos + 3]);
+  }
+}
@@ -26,8 +26,8 @@ import jxl.common.Logger;
 
 import jxl.CellType;
 import jxl.NumberCell;
+import jxl.biff.ExcelNumberFormat;
 import jxl.biff.FormattingRecords;
-import jxl.biff.IntegerHelper;
 
 /**
  * An individual RK record
@@ -49,6 +49,12 @@ class RKRecord extends CellValue implements NumberCell
    */
   private NumberFormat format;
 
+  /**
+   * The compiled equivalent of the number format, or NULL if the java
+   * format is to be used
+   */
+  private ExcelNumberFormat excelFormat;
+
   /**
    * The formatter to convert the value into a string
    */
@@ -63,16 +69,31 @@ class RKRecord extends CellValue implements NumberCell
    */
   public RKRecord(Record t, FormattingRecords fr, SheetImpl si)
   {
-    super(t, fr, si);
-    byte[] data = getRecord().getData();
-    int rknum = IntegerHelper.getInt(data[6], data[7], data[8], data[9]);
+    this(t, fr, si, true);
+  }
+
+  /**
+   * Constructs this object from the raw data, optionally without looking
+   * up the number format
+   *
+   * @param t the raw data
+   * @param fr the available formats
+   * @param si the sheet
+   * @param formatted FALSE if the default number format is to be used
+   */
+  RKRecord(Record t, FormattingRecords fr, SheetImpl si, boolean formatted)
+  {
+    super(t, fr, si, false);
+    int rknum = t.getInt(6);
     value = RKHelper.getDouble(rknum);
 
     // Now get the number format
-    format = fr.getNumberFormat(getXFIndex());
+    format = formatted ? fr.getNumberFormat(getXFIndex()) : null;
+    excelFormat = formatted ? fr.getExcelNumberFormat(getXFIndex()) : null;
     if (format == null)
     {
       format = defaultFormat;
+      excelFormat = ExcelNumberFormat.getDefaultFormat();
     }
   }
 
@@ -93,7 +114,8 @@ class RKRecord extends CellValue implements NumberCell
    */
   public String getContents()
   {
-    return format.format(value);
+    return excelFormat != null ?
+      excelFormat.format(value) : format.format(value);
   }
 
   /**
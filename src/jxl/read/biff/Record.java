@@ -23,7 +23,6 @@ import java.util.ArrayList;
 
 import jxl.common.Logger;
 
-import jxl.biff.IntegerHelper;
 import jxl.biff.Type;
 
 
@@ -57,6 +56,10 @@ public final class Record
    * A handle to the excel 97 file
    */
   private File file;
+  /**
+   * The workbook stream containing this record's data
+   */
+  private SectorStream stream;
   /**
    * The raw data within this record
    */
@@ -74,10 +77,44 @@ public final class Record
    * @param f the excel 97 biff file
    * @param d the data record
    */
-  Record(byte[] d, int offset, File f)
+  Record(SectorStream d, int offset, File f)
+  {
+    initialize(d, offset, f);
+  }
+
+  /**
+   * Constructs a copy of the record cursor passed in, which may be
+   * retained after the cursor has moved on to another record
+   *
+   * @param r the record cursor
+   */
+  private Record(Record r)
   {
-    code = IntegerHelper.getInt(d[offset], d[offset + 1]);
-    length = IntegerHelper.getInt(d[offset + 2], d[offset + 3]);
+    code = r.code;
+    type = r.type;
+    length = r.length;
+    dataPos = r.dataPos;
+    file = r.file;
+    stream = r.stream;
+    data = r.data;
+  }
+
+  /**
+   * Positions this record on the raw file data at the specified offset.
+   * This allows a single record to be used as a cursor over the file,
+   * rather than allocating a new record each time
+   *
+   * @param d the data record
+   * @param offset the offset in the raw file
+   * @param f the excel 97 biff file
+   */
+  void initialize(SectorStream d, int offset, File f)
+  {
+    data = null;
+    continueRecords = null;
+    stream = d;
+    code = d.getUShort(offset);
+    length = d.getUShort(offset + 2);
     file = f;
     file.skip(4);
     dataPos = f.getPos();
@@ -105,6 +142,116 @@ public final class Record
     return length;
   }
 
+  /**
+   * Gets the position in the workbook stream of this record's data
+   *
+   * @return the position of the data
+   */
+  int getDataPosition()
+  {
+    return dataPos;
+  }
+
+  /**
+   * Gets a copy of this record which is safe to retain.  This must be
+   * used by any record which holds on to the record passed to it, when
+   * that record is a reusable cursor
+   *
+   * @return a copy of this record
+   */
+  Record copy()
+  {
+    Record r = new Record(this);
+
+    if (continueRecords != null)
+    {
+      r.continueRecords = new ArrayList(continueRecords);
+    }
+
+    return r;
+  }
+
+  /**
+   * Gets the byte at the specified position within the data portion of
+   * the record.  The data is read directly from the file, and any continue
+   * records are treated as following on from the end of this record's data
+   *
+   * @param pos the position within the data portion of the record
+   * @return the byte
+   */
+  public byte getByte(int pos)
+  {
+    if (data != null)
+    {
+      return data[pos];
+    }
+
+    if (pos < length)
+    {
+      return stream.get(dataPos + pos);
+    }
+
+    int p = pos - length;
+    for (int i = 0; continueRecords != null && i < continueRecords.size(); i++)
+    {
+      Record r = (Record) continueRecords.get(i);
+      if (p < r.getLength())
+      {
+        return r.getByte(p);
+      }
+      p -= r.getLength();
+    }
+
+    throw new ArrayIndexOutOfBoundsException(pos);
+  }
+
+  /**
+   * Gets the unsigned two byte little endian value at the specified
+   * position within the data portion of the record
+   *
+   * @param pos the position within the data portion of the record
+   * @return the value
+   */
+  public int getUShort(int pos)
+  {
+    if (data == null && pos + 2 <= length)
+    {
+      return stream.getUShort(dataPos + pos);
+    }
+
+    return (getByte(pos) & 0xff) | ((getByte(pos + 1) & 0xff) << 8);
+  }
+
+  /**
+   * Gets the four byte little endian value at the specified position
+   * within the data portion of the record
+   *
+   * @param pos the position within the data portion of the record
+   * @return the value
+   */
+  public int getInt(int pos)
+  {
+    if (data == null && pos + 4 <= length)
+    {
+      return stream.getInt(dataPos + pos);
+    }
+
+    return getUShort(pos) | (getUShort(pos + 2) << 16);
+  }
+
+  /**
+   * Gets the IEEE double at the specified position within the data
+   * portion of the record
+   *
+   * @param pos the position within the data portion of the record
+   * @return the value
+   */
+  public double getDouble(int pos)
+  {
+    long bits = ((long) getInt(pos + 4) << 32) | (getInt(pos) & 0xffffffffL);
+    return Double.longBitsToDouble(bits);
+  }
+
   /**
    * Gets the data portion of the record
    *
@@ -0,0 +1,92 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+package jxl.read.biff;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Decodes ranges of the row blocks of a sheet on a fork join pool.  Each
+ * range has its own sheet reader, and the task is split in half until it
+ * covers a single range
+ */
+final class RowBlockDecoder extends RecursiveAction
+{
+  /**
+   * The reader for each range of blocks
+   */
+  private SheetReader[] readers;
+
+  /**
+   * The row block index
+   */
+  private RowBlockIndex index;
+
+  /**
+   * The first block of each range, followed by the number of blocks
+   */
+  private int[] bounds;
+
+  /**
+   * The first range decoded by this task
+   */
+  private int firstRange;
+
+  /**
+   * The range after the last range decoded by this task
+   */
+  private int lastRange;
+
+  /**
+   * Constructor
+   *
+   * @param r the reader for each range
+   * @param ind the row block index
+   * @param b the first block of each range, followed by the number of blocks
+   * @param fr the first range to decode
+   * @param lr the range after the last range to decode
+   */
+  RowBlockDecoder(SheetReader[] r, RowBlockIndex ind, int[] b,
+                  int fr, int lr)
+  {
+    readers = r;
+    index = ind;
+    bounds = b;
+    firstRange = fr;
+    lastRange = lr;
+  }
+
+  /**
+   * Decodes the ranges, splitting the task if there is more than one
+   */
+  protected void compute()
+  {
+    if (lastRange - firstRange == 1)
+    {
+      readers[firstRange].readBlockRange(index,
+                                         bounds[firstRange],
+                                         bounds[lastRange]);
+      return;
+    }
+
+    int mid = (firstRange + lastRange) >>> 1;
+    invokeAll(new RowBlockDecoder(readers, index, bounds, firstRange, mid),
+              new RowBlockDecoder(readers, index, bounds, mid, lastRange));
+  }
+}
@@ -0,0 +1,240 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+package jxl.read.biff;
+
+import jxl.common.Logger;
+
+import jxl.biff.Type;
+
+/**
+ * An index of the row blocks within a biff8 worksheet, built from the
+ * INDEX record at the start of the sheet and the DBCELL record at the
+ * end of each block.  Each block holds the ROW records and cells of (at
+ * most) 32 consecutive rows, so this allows the cells on any row to be
+ * read without reading the rest of the sheet
+ */
+final class RowBlockIndex
+{
+  /**
+   * The logger
+   */
+  private static Logger logger = Logger.getLogger(RowBlockIndex.class);
+
+  /**
+   * The position in the stream of the first ROW record in each block
+   */
+  private int[] startPositions;
+
+  /**
+   * The position in the stream of the DBCELL record which ends each block
+   */
+  private int[] endPositions;
+
+  /**
+   * The number of the first row in each block
+   */
+  private int[] firstRows;
+
+  /**
+   * Constructor
+   *
+   * @param sp the start positions of the blocks
+   * @param ep the end positions of the blocks
+   * @param fr the first row of each block
+   */
+  private RowBlockIndex(int[] sp, int[] ep, int[] fr)
+  {
+    startPositions = sp;
+    endPositions = ep;
+    firstRows = fr;
+  }
+
+  /**
+   * Reads the index for the sheet whose records start at the specified
+   * position.  Every block referenced by the INDEX record is checked
+   * against its DBCELL and first ROW record, and if any of these are
+   * missing or out of order then the index is not used
+   *
+   * @param f the excel file
+   * @param pos the position of the first record after the sheet BOF
+   * @return the index, or NULL if the sheet does not have a usable one
+   */
+  static RowBlockIndex read(File f, int pos)
+  {
+    int oldPos = f.getPos();
+
+    try
+    {
+      f.setPos(pos);
+      if (!f.hasNext())
+      {
+        return null;
+      }
+
+      Record index = f.next();
+      if (index.getType() != Type.INDEX || index.getLength() < 16)
+      {
+        return null;
+      }
+
+      // The index record holds the first row, the row after the last row,
+      // the position of the DEFCOLWIDTH record and then the position of
+      // each DBCELL record
+      int rowMin = index.getInt(4);
+      int rowMax = index.getInt(8);
+      int numBlocks = (index.getLength() - 16) / 4;
+
+      if (numBlocks == 0 && rowMax > rowMin)
+      {
+        return null;
+      }
+
+      int[] sp = new int[numBlocks];
+      int[] ep = new int[numBlocks];
+      int[] fr = new int[numBlocks];
+      int lastEnd = f.getPos();
+
+      for (int i = 0; i < numBlocks; i++)
+      {
+        int dbcellPos = index.getInt(16 + i * 4);
+        if (dbcellPos <= lastEnd)
+        {
+          return invalid();
+        }
+
+        f.setPos(dbcellPos);
+        if (!f.hasNext())
+        {
+          return invalid();
+        }
+
+        Record dbcell = f.next();
+        if (dbcell.getType() != Type.DBCELL || dbcell.getLength() < 4)
+        {
+          return invalid();
+        }
+
+        // The DBCELL gives the offset back to the first ROW of its block
+        int start = dbcellPos - dbcell.getInt(0);
+        if (start < lastEnd || start >= dbcellPos)
+        {
+          return invalid();
+        }
+
+        f.setPos(start);
+        Record row = f.next();
+        if (row.getType() != Type.ROW)
+        {
+          return invalid();
+        }
+
+        sp[i] = start;
+        ep[i] = dbcellPos;
+        fr[i] = row.getUShort(0);
+
+        if (i > 0 && fr[i] <= fr[i - 1])
+        {
+          return invalid();
+        }
+
+        lastEnd = dbcellPos;
+      }
+
+      return new RowBlockIndex(sp, ep, fr);
+    }
+    finally
+    {
+      f.setPos(oldPos);
+    }
+  }
+
+  /**
+   * Logs that the index could not be used
+   *
+   * @return NULL
+   */
+  private static RowBlockIndex invalid()
+  {
+    logger.warn("Row block index is inconsistent - reading the whole sheet");
+    return null;
+  }
+
+  /**
+   * Gets the number of blocks in the sheet
+   *
+   * @return the number of blocks
+   */
+  int getNumberOfBlocks()
+  {
+    return firstRows.length;
+  }
+
+  /**
+   * Gets the block which would contain the specified row
+   *
+   * @param row the row
+   * @return the block index, or -1 if the row precedes all the blocks
+   */
+  int getBlock(int row)
+  {
+    int low = 0;
+    int high = firstRows.length - 1;
+    int block = -1;
+
+    while (low <= high)
+    {
+      int mid = (low + high) >>> 1;
+      if (firstRows[mid] <= row)
+      {
+        block = mid;
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid - 1;
+      }
+    }
+
+    return block;
+  }
+
+  /**
+   * Gets the position in the stream of the first record in the block
+   *
+   * @param block the block index
+   * @return the start position
+   */
+  int getStartPosition(int block)
+  {
+    return startPositions[block];
+  }
+
+  /**
+   * Gets the position in the stream of the DBCELL record which follows the
+   * last record in the block
+   *
+   * @param block the block index
+   * @return the end position
+   */
+  int getEndPosition(int block)
+  {
+    return endPositions[block];
+  }
+}
@@ -19,7 +19,10 @@
 
 package jxl.read.biff;
 
+import java.util.concurrent.ForkJoinPool;
+
 import jxl.common.Assert;
+import jxl.common.Logger;
 
 import jxl.WorkbookSettings;
 import jxl.biff.IntegerHelper;
@@ -27,10 +30,26 @@ import jxl.biff.RecordData;
 import jxl.biff.StringHelper;
 
 /**
- * Holds all the strings in the shared string table
+ * Holds all the strings in the shared string table.  The strings are
+ * decoded from the raw data as and when they are first asked for, using
+ * an index of string positions which is seeded from the EXTSST record
+ * (when present) and is filled in as the table is read.  Alternatively,
+ * the strings may be packed into a pool of compressed characters and a
+ * pool of unicode characters, and a string is then created from the pool
+ * each time it is asked for
  */
 class SSTRecord extends RecordData
 {
+  /**
+   * The logger
+   */
+  private static Logger logger = Logger.getLogger(SSTRecord.class);
+
+  /**
+   * The number of strings between the entries in the position index
+   */
+  private static final int INDEX_INTERVAL = 16;
+
   /**
    * The total number of strings in this table
    */
@@ -40,13 +59,134 @@ class SSTRecord extends RecordData
    */
   private int uniqueStrings;
   /**
-   * The shared strings
+   * The shared strings which have been decoded so far
    */
   private String[] strings;
   /**
    * The array of continuation breaks
    */
   private int[] continuationBreaks;
+  /**
+   * The raw data of the SST and all its continuations
+   */
+  private byte[] data;
+  /**
+   * The position in the raw data of every INDEX_INTERVAL'th string, or
+   * zero if that position has not yet been found
+   */
+  private int[] positions;
+  /**
+   * The number of strings in each bucket of the EXTSST record
+   */
+  private int bucketSize;
+  /**
+   * The position in the raw data of the first string in each bucket of the
+   * EXTSST record, or NULL if there is no usable EXTSST record
+   */
+  private int[] bucketPositions;
+  /**
+   * The character pools holding the strings, when the strings are packed
+   */
+  private CharacterPools pools;
+  /**
+   * The position of each packed string in the compressed character pool,
+   * or the complement of its position in the unicode character pool
+   */
+  private int[] stringPositions;
+  /**
+   * The number of characters in each packed string
+   */
+  private char[] stringLengths;
+  /**
+   * The workbook settings
+   */
+  private WorkbookSettings settings;
+
+  /**
+   * The pools into which the characters of the strings are packed.  The
+   * characters of compressed strings are held as bytes, and those of
+   * unicode strings as chars
+   */
+  static final class CharacterPools
+  {
+    /**
+     * The characters of the compressed strings
+     */
+    byte[] compressedChars;
+    /**
+     * The number of characters in the compressed character pool
+     */
+    int compressedLength;
+    /**
+     * The characters of the unicode strings
+     */
+    char[] unicodeChars;
+    /**
+     * The number of characters in the unicode character pool
+     */
+    int unicodeLength;
+
+    /**
+     * Constructor
+     *
+     * @param size the number of bytes of raw data to be packed
+     */
+    CharacterPools(int size)
+    {
+      compressedChars = new byte[size];
+      unicodeChars = new char[size / 4 + 16];
+    }
+
+    /**
+     * Makes sure that the unicode character pool has room for the
+     * specified number of further characters
+     *
+     * @param chars the number of characters
+     */
+    void ensureUnicodeCapacity(int chars)
+    {
+      if (unicodeLength + chars > unicodeChars.length)
+      {
+        char[] uc = new char[Math.max(unicodeChars.length * 2,
+                                      unicodeLength + chars)];
+        System.arraycopy(unicodeChars, 0, uc, 0, unicodeLength);
+        unicodeChars = uc;
+      }
+    }
+
+    /**
+     * Appends the characters in the other pools onto these ones
+     *
+     * @param p the other pools
+     */
+    void append(CharacterPools p)
+    {
+      System.arraycopy(p.compressedChars, 0,
+                       compressedChars, compressedLength,
+                       p.compressedLength);
+      compressedLength += p.compressedLength;
+
+      ensureUnicodeCapacity(p.unicodeLength);
+      System.arraycopy(p.unicodeChars, 0,
+                       unicodeChars, unicodeLength,
+                       p.unicodeLength);
+      unicodeLength += p.unicodeLength;
+    }
+
+    /**
+     * Trims the pools down to the characters which they hold
+     */
+    void trim()
+    {
+      byte[] cc = new byte[compressedLength];
+      System.arraycopy(compressedChars, 0, cc, 0, compressedLength);
+      compressedChars = cc;
+
+      char[] uc = new char[unicodeLength];
+      System.arraycopy(unicodeChars, 0, uc, 0, unicodeLength);
+      unicodeChars = uc;
+    }
+  }
 
   /**
    * A holder for a byte array
@@ -75,9 +215,13 @@ class SSTRecord extends RecordData
    *
    * @param t the raw data
    * @param continuations the continuations
+   * @param extsst the EXTSST record which follows the table, or NULL
    * @param ws the workbook settings
+   * @param pool the pool on which the strings are packed in parallel, or
+   *             NULL to pack them on this thread
    */
-  public SSTRecord(Record t, Record[] continuations, WorkbookSettings ws)
+  public SSTRecord(Record t, Record[] continuations, Record extsst,
+                   WorkbookSettings ws, ForkJoinPool pool)
   {
     super(t);
 
@@ -93,7 +237,7 @@ class SSTRecord extends RecordData
     }
     totalRecordLength += getRecord().getLength();
 
-    byte[] data = new byte[totalRecordLength];
+    data = new byte[totalRecordLength];
 
     // First the original data gets put in
     int pos = 0;
@@ -119,95 +263,491 @@ class SSTRecord extends RecordData
     uniqueStrings = IntegerHelper.getInt(data[4], data[5],
                                          data[6], data[7]);
 
+    settings = ws;
     strings = new String[uniqueStrings];
-    readStrings(data, 8, ws);
+    positions = new int[uniqueStrings / INDEX_INTERVAL + 1];
+    positions[0] = 8;
+
+    if (extsst != null)
+    {
+      readBuckets(t, continuations, extsst);
+    }
+
+    if (ws.getCompactSharedStrings())
+    {
+      if (pool == null || bucketPositions == null ||
+          !packStringsInParallel(pool, ws.getBlockDecodingParallelism()))
+      {
+        packStrings();
+      }
+
+      data = null;
+      strings = null;
+      positions = null;
+      bucketPositions = null;
+    }
   }
 
   /**
-   * Reads in all the strings from the raw data
+   * Reads the positions of the string buckets from the EXTSST record.
+   * Each bucket gives the position in the workbook stream of its first
+   * string, and this is converted into a position in the raw data.  If
+   * any of the buckets are inconsistent with the table, then none of them
+   * are used
    *
-   * @param data the raw data
-   * @param offset the offset
-   * @param ws the workbook settings
+   * @param t the SST record
+   * @param continuations the continuations
+   * @param extsst the EXTSST record
+   */
+  private void readBuckets(Record t, Record[] continuations, Record extsst)
+  {
+    if (extsst.getLength() < 2)
+    {
+      return;
+    }
+
+    byte[] d = extsst.getData();
+    int size = IntegerHelper.getInt(d[0], d[1]);
+    if (size == 0)
+    {
+      return;
+    }
+
+    int numBuckets = Math.min((d.length - 2) / 8,
+                              (uniqueStrings + size - 1) / size);
+    int[] bp = new int[numBuckets];
+    int segment = 0;
+    int segmentStart = t.getDataPosition();
+    int segmentLength = t.getLength();
+    int segmentOffset = 0;
+    int lastPosition = 0;
+
+    for (int i = 0; i < numBuckets; i++)
+    {
+      int streamPos = IntegerHelper.getInt(d[i * 8 + 2], d[i * 8 + 3],
+                                           d[i * 8 + 4], d[i * 8 + 5]);
+      int recordPos = IntegerHelper.getInt(d[i * 8 + 6], d[i * 8 + 7]);
+
+      // Find the record which contains the start of the bucket
+      while (streamPos >= segmentStart + segmentLength &&
+             segment < continuations.length)
+      {
+        segmentOffset += segmentLength;
+        segmentStart = continuations[segment].getDataPosition();
+        segmentLength = continuations[segment].getLength();
+        segment++;
+      }
+
+      int position = segmentOffset + streamPos - segmentStart;
+      if (streamPos < segmentStart ||
+          streamPos >= segmentStart + segmentLength ||
+          recordPos != streamPos - segmentStart + 4 ||
+          position <= lastPosition)
+      {
+        logger.warn("EXTSST record is inconsistent - ignoring");
+        return;
+      }
+
+      bp[i] = position;
+      lastPosition = position;
+    }
+
+    if (numBuckets > 0 && bp[0] != 8)
+    {
+      logger.warn("EXTSST record is inconsistent - ignoring");
+      return;
+    }
+
+    bucketSize = size;
+    bucketPositions = bp;
+  }
+
+  /**
+   * Reads in the string at the specified position in the raw data
+   *
+   * @param pos the position of the string
+   * @return the string
    */
-  private void readStrings(byte[] data, int offset, WorkbookSettings ws)
+  private String readString(int pos)
   {
-    int pos = offset;
     int numChars;
     byte optionFlags;
-    String s = null;
     boolean asciiEncoding = false;
     boolean richString = false;
     boolean extendedString = false;
+
+    // Read in the number of characters
+    numChars = IntegerHelper.getInt(data[pos], data[pos + 1]);
+    pos += 2;
+    optionFlags = data[pos];
+    pos++;
+
+    // See if it is an extended string
+    extendedString = ((optionFlags & 0x04) != 0);
+
+    // See if string contains formatting information
+    richString = ((optionFlags & 0x08) != 0);
+
+    if (richString)
+    {
+      // Skip the crun
+      pos += 2;
+    }
+
+    if (extendedString)
+    {
+      // Skip the cchExtRst
+      pos += 4;
+    }
+
+    // See if string is ASCII (compressed) or unicode
+    asciiEncoding = ((optionFlags & 0x01) == 0);
+
+    // If the string doesn't span a continuation break, decode it straight
+    // from the record data
+    int byteLength = asciiEncoding ? numChars : numChars * 2;
+    int i = findBreak(pos);
+    if (i == continuationBreaks.length ||
+        pos + byteLength <= continuationBreaks[i])
+    {
+      return asciiEncoding ?
+        StringHelper.getString(data, numChars, pos, settings) :
+        StringHelper.getUnicodeString(data, numChars, pos);
+    }
+
+    ByteArrayHolder bah = new ByteArrayHolder();
+    BooleanHolder   bh = new BooleanHolder();
+    bh.value = asciiEncoding;
+    getChars(data, bah, pos, bh, numChars);
+    asciiEncoding = bh.value;
+
+    if (asciiEncoding)
+    {
+      return StringHelper.getString(bah.bytes, numChars, 0, settings);
+    }
+    else
+    {
+      return StringHelper.getUnicodeString(bah.bytes, numChars, 0);
+    }
+  }
+
+  /**
+   * Steps over the string at the specified position in the raw data,
+   * without decoding it.  If character pools are given, then the
+   * characters of the string are also appended to the compressed or the
+   * unicode pool
+   *
+   * @param pos the position of the string
+   * @param index the index of the string
+   * @param p the pools into which the string is packed, or NULL to just
+   *          skip it
+   * @return the position of the next string
+   */
+  private int readChars(int pos, int index, CharacterPools p)
+  {
+    int numChars = IntegerHelper.getInt(data[pos], data[pos + 1]);
+    byte optionFlags = data[pos + 2];
+    pos += 3;
+
     int formattingRuns = 0;
     int extendedRunLength = 0;
 
-    for (int i = 0; i < uniqueStrings; i++)
+    if ((optionFlags & 0x08) != 0)
     {
-      // Read in the number of characters
-      numChars = IntegerHelper.getInt(data[pos], data[pos + 1]);
+      // Read in the crun
+      formattingRuns = IntegerHelper.getInt(data[pos], data[pos + 1]);
       pos += 2;
-      optionFlags = data[pos];
-      pos++;
+    }
 
-      // See if it is an extended string
-      extendedString = ((optionFlags & 0x04) != 0);
+    if ((optionFlags & 0x04) != 0)
+    {
+      // Read in cchExtRst
+      extendedRunLength = IntegerHelper.getInt
+        (data[pos], data[pos + 1], data[pos + 2], data[pos + 3]);
+      pos += 4;
+    }
 
-      // See if string contains formatting information
-      richString = ((optionFlags & 0x08) != 0);
+    boolean ascii = ((optionFlags & 0x01) == 0);
+    boolean compressed = ascii;
+    int start = 0;
 
-      if (richString)
+    if (p != null)
+    {
+      start = compressed ? p.compressedLength : p.unicodeLength;
+      stringLengths[index] = (char) numChars;
+    }
+
+    // Step over the characters.  When they span a continuation break,
+    // the rest of the string is preceded by a new encoding byte
+    int charsLeft = numChars;
+    int i = findBreak(pos);
+
+    while (charsLeft > 0)
+    {
+      int end = i < continuationBreaks.length ?
+        continuationBreaks[i] : data.length;
+      int bytesPerChar = ascii ? 1 : 2;
+      int chars = i >= continuationBreaks.length ?
+        charsLeft : Math.min(charsLeft, (end - pos) / bytesPerChar);
+
+      if (p != null)
       {
-        // Read in the crun
-        formattingRuns = IntegerHelper.getInt(data[pos], data[pos + 1]);
-        pos += 2;
+        if (compressed && !ascii)
+        {
+          // The string started off compressed but continues in unicode,
+          // so move what there is of it into the unicode pool
+          int length = p.compressedLength - start;
+          p.ensureUnicodeCapacity(numChars);
+          for (int j = 0; j < length; j++)
+          {
+            p.unicodeChars[p.unicodeLength + j] =
+              (char) (p.compressedChars[start + j] & 0xff);
+          }
+          p.compressedLength = start;
+          start = p.unicodeLength;
+          p.unicodeLength += length;
+          compressed = false;
+        }
+
+        if (compressed)
+        {
+          System.arraycopy(data, pos, p.compressedChars, p.compressedLength,
+                           chars);
+          p.compressedLength += chars;
+        }
+        else
+        {
+          p.ensureUnicodeCapacity(chars);
+          for (int j = 0; j < chars; j++)
+          {
+            p.unicodeChars[p.unicodeLength + j] = ascii ?
+              (char) (data[pos + j] & 0xff) :
+              (char) ((data[pos + j * 2] & 0xff) |
+                      ((data[pos + j * 2 + 1] & 0xff) << 8));
+          }
+          p.unicodeLength += chars;
+        }
       }
 
-      if (extendedString)
+      pos += chars * bytesPerChar;
+      charsLeft -= chars;
+
+      if (charsLeft > 0)
       {
-        // Read in cchExtRst
-        extendedRunLength = IntegerHelper.getInt
-          (data[pos], data[pos + 1], data[pos + 2], data[pos + 3]);
-        pos += 4;
+        ascii = data[end] == 0;
+        pos = end + 1;
+        i++;
       }
+    }
+
+    if (p != null)
+    {
+      stringPositions[index] = compressed ? start : ~start;
+    }
+
+    // Step over the formatting runs and the extended string data
+    pos += 4 * formattingRuns + extendedRunLength;
+
+    if (pos > data.length)
+    {
+      Assert.verify(false, "pos exceeds record length");
+    }
 
-      // See if string is ASCII (compressed) or unicode
-      asciiEncoding = ((optionFlags & 0x01) == 0);
+    return pos;
+  }
+
+  /**
+   * Packs all the strings into the compressed and unicode character pools,
+   * after which the raw data is no longer needed
+   */
+  private void packStrings()
+  {
+    stringPositions = new int[uniqueStrings];
+    stringLengths = new char[uniqueStrings];
+    pools = new CharacterPools(data.length);
+    packStrings(0, uniqueStrings, 8, pools);
+    pools.trim();
+  }
+
+  /**
+   * Packs the strings on the fork join pool.  The table is divided into
+   * ranges of EXTSST buckets, and each range is packed into its own
+   * character pools starting from the position given by its first bucket.
+   * The pools are then joined together.  If any range does not end where
+   * the next one starts, then the EXTSST record is inconsistent with the
+   * table, and the strings must be packed sequentially instead
+   *
+   * @param pool the fork join pool
+   * @param threads the number of threads in the pool
+   * @return TRUE if the strings were packed, FALSE otherwise
+   */
+  private boolean packStringsInParallel(ForkJoinPool pool, int threads)
+  {
+    int numBuckets = bucketPositions.length;
+    int numRanges = Math.min(numBuckets, threads * 4);
+    if (numRanges < 2)
+    {
+      return false;
+    }
+
+    int[] bounds = new int[numRanges + 1];
+    int[] starts = new int[numRanges];
+    CharacterPools[] rangePools = new CharacterPools[numRanges];
+    for (int i = 0; i < numRanges; i++)
+    {
+      int bucket = (int) ((long) numBuckets * i / numRanges);
+      bounds[i] = bucket * bucketSize;
+      starts[i] = bucketPositions[bucket];
+    }
+    bounds[numRanges] = uniqueStrings;
+
+    for (int i = 0; i < numRanges; i++)
+    {
+      int end = i < numRanges - 1 ? starts[i + 1] : data.length;
+      rangePools[i] = new CharacterPools(end - starts[i]);
+    }
 
-      ByteArrayHolder bah = new ByteArrayHolder();
-      BooleanHolder   bh = new BooleanHolder();
-      bh.value = asciiEncoding;
-      pos += getChars(data, bah, pos, bh, numChars);
-      asciiEncoding = bh.value;
+    stringPositions = new int[uniqueStrings];
+    stringLengths = new char[uniqueStrings];
+
+    int[] ends = new int[numRanges];
+    pool.invoke(new SharedStringDecoder(this, bounds, starts, rangePools,
+                                        ends, 0, numRanges));
+
+    boolean consistent = ends[numRanges - 1] >= 0;
+    for (int i = 0; i < numRanges - 1; i++)
+    {
+      consistent &= ends[i] == starts[i + 1];
+    }
 
-      if (asciiEncoding)
+    if (!consistent)
+    {
+      logger.warn("EXTSST record is inconsistent - " +
+                  "packing strings sequentially");
+      stringPositions = null;
+      stringLengths = null;
+      return false;
+    }
+
+    // Join the pools, and move the positions of the strings in each range
+    // along by the number of characters in the ranges before it
+    pools = new CharacterPools(data.length);
+    for (int i = 0; i < numRanges; i++)
+    {
+      int compressedOffset = pools.compressedLength;
+      int unicodeOffset = pools.unicodeLength;
+      pools.append(rangePools[i]);
+      rangePools[i] = null;
+
+      for (int j = bounds[i]; j < bounds[i + 1]; j++)
       {
-        s = StringHelper.getString(bah.bytes, numChars, 0, ws);
+        int start = stringPositions[j];
+        stringPositions[j] = start >= 0 ?
+          start + compressedOffset :
+          ~(~start + unicodeOffset);
       }
-      else
+    }
+    pools.trim();
+
+    return true;
+  }
+
+  /**
+   * Packs a range of the strings into the specified character pools
+   *
+   * @param first the index of the first string in the range
+   * @param last the index after the last string in the range
+   * @param pos the position of the first string in the raw data
+   * @param p the character pools
+   * @return the position after the last string in the range
+   */
+  final int packStrings(int first, int last, int pos, CharacterPools p)
+  {
+    for (int i = first; i < last; i++)
+    {
+      pos = readChars(pos, i, p);
+    }
+
+    return pos;
+  }
+
+  /**
+   * Finds the position in the raw data of the specified string, starting
+   * from the nearest preceding string whose position is known and noting
+   * the positions of any indexed strings which are passed along the way
+   *
+   * @param index the index of the string
+   * @return the position of the string
+   */
+  private int findString(int index)
+  {
+    int entry = index / INDEX_INTERVAL;
+    while (positions[entry] == 0)
+    {
+      entry--;
+    }
+
+    int current = entry * INDEX_INTERVAL;
+    int pos = positions[entry];
+
+    // Jump ahead if an EXTSST bucket starts closer to the string
+    if (bucketPositions != null)
+    {
+      int bucket = index / bucketSize;
+      if (bucket < bucketPositions.length && bucket * bucketSize > current)
       {
-        s = StringHelper.getUnicodeString(bah.bytes, numChars, 0);
+        current = bucket * bucketSize;
+        pos = bucketPositions[bucket];
       }
+    }
 
-      strings[i] = s;
+    while (current < index)
+    {
+      pos = readChars(pos, current, null);
+      current++;
 
-      // For rich strings, skip over the formatting runs
-      if (richString)
+      if (current % INDEX_INTERVAL == 0)
       {
-        pos += 4 * formattingRuns;
+        positions[current / INDEX_INTERVAL] = pos;
       }
 
-      // For extended strings, skip over the extended string data
-      if (extendedString)
+      if (bucketPositions != null && current % bucketSize == 0 &&
+          current / bucketSize < bucketPositions.length &&
+          bucketPositions[current / bucketSize] != pos)
       {
-        pos += extendedRunLength;
+        logger.warn("EXTSST record is inconsistent - ignoring");
+        bucketPositions = null;
       }
+    }
+
+    return pos;
+  }
+
+  /**
+   * Finds the first continuation break at or after the specified position
+   *
+   * @param pos the position in the raw data
+   * @return the index of the continuation break
+   */
+  private int findBreak(int pos)
+  {
+    int low = 0;
+    int high = continuationBreaks.length;
 
-      if (pos > data.length)
+    while (low < high)
+    {
+      int mid = (low + high) >>> 1;
+      if (continuationBreaks[mid] < pos)
+      {
+        low = mid + 1;
+      }
+      else
       {
-        Assert.verify(false, "pos exceeds record length");
+        high = mid;
       }
     }
+
+    return low;
   }
 
   /**
@@ -227,9 +767,6 @@ class SSTRecord extends RecordData
                        BooleanHolder ascii,
                        int numChars)
   {
-    int i = 0;
-    boolean spansBreak = false;
-
     if (ascii.value)
     {
       bah.bytes = new byte[numChars];
@@ -239,16 +776,11 @@ class SSTRecord extends RecordData
       bah.bytes = new byte[numChars * 2];
     }
 
-    while (i < continuationBreaks.length && !spansBreak)
-    {
-      spansBreak = pos <= continuationBreaks[i] &&
-                   (pos + bah.bytes.length > continuationBreaks[i]);
-
-      if (!spansBreak)
-      {
-        i++;
-      }
-    }
+    // Only the first break at or after the start of the string can fall
+    // within it
+    int i = findBreak(pos);
+    boolean spansBreak = i < continuationBreaks.length &&
+      pos + bah.bytes.length > continuationBreaks[i];
 
     // If it doesn't span a break simply do an array copy into the
     // destination array and finish
@@ -416,16 +948,50 @@ class SSTRecord extends RecordData
   }
 
   /**
-   * Gets the string at the specified position
+   * Gets the string at the specified position, decoding it if this has
+   * not already been done
    *
    * @param index the index of the string to return
    * @return the strings
    */
-  public String getString(int index)
+  public synchronized String getString(int index)
   {
     Assert.verify(index < uniqueStrings);
-    return strings[index];
-  }
-}
 
+    if (stringPositions != null)
+    {
+      return getPackedString(index);
+    }
+
+    String s = strings[index];
+    if (s == null)
+    {
+      s = readString(findString(index));
+      if (settings.getInternSharedStrings())
+      {
+        s = s.intern();
+      }
+      strings[index] = s;
+    }
 
+    return s;
+  }
+
+  /**
+   * Creates the string at the specified position from the character pools
+   *
+   * @param index the index of the string
+   * @return the string
+   */
+  private String getPackedString(int index)
+  {
+    int start = stringPositions[index];
+    int length = stringLengths[index];
+    String s = start >= 0 ?
+      StringHelper.getString(pools.compressedChars, length, start,
+                             settings) :
+      new String(pools.unicodeChars, ~start, length);
+
+    return settings.getInternSharedStrings() ? s.intern() : s;
+  }
+}
@@ -0,0 +1,239 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+package jxl.read.biff;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A read only view of a stream within an OLE compound file.  The chain of
+ * blocks which make up the stream is resolved once into a map of physical
+ * sector positions, and all reads are served through that map directly
+ * from the underlying file data.  This means that the stream is never
+ * defragged into a contiguous copy
+ */
+final class SectorStream
+{
+  /**
+   * The shift used for a stream which is stored contiguously.  Every
+   * non-negative position then falls within the first (and only) sector
+   */
+  private static final int CONTIGUOUS_SHIFT = 31;
+
+  /**
+   * The underlying file data
+   */
+  private ByteBuffer data;
+
+  /**
+   * The array backing the file data, if the data is on the heap.  This is
+   * used in preference to the buffer for performance reasons
+   */
+  private byte[] array;
+
+  /**
+   * The offset of the file data within the backing array
+   */
+  private int arrayOffset;
+
+  /**
+   * The number of bytes of file data available
+   */
+  private int limit;
+
+  /**
+   * The physical position of each sector in the stream, in stream order
+   */
+  private int[] sectors;
+
+  /**
+   * The log base 2 of the sector size
+   */
+  private int sectorShift;
+
+  /**
+   * The mask which extracts the position within a sector
+   */
+  private int sectorMask;
+
+  /**
+   * The length of this stream
+   */
+  private int length;
+
+  /**
+   * Constructs a stream over data which is already contiguous, such as a
+   * stream which has been previously extracted
+   *
+   * @param d the stream data
+   */
+  SectorStream(ByteBuffer d)
+  {
+    initialize(d, new int[] {0}, CONTIGUOUS_SHIFT, d.remaining());
+  }
+
+  /**
+   * Constructs a stream from the sector map
+   *
+   * @param d the file data, indexed from zero
+   * @param s the physical position of each sector in the stream
+   * @param sectorSize the sector size, which must be a power of two
+   * @param len the length of the stream
+   */
+  SectorStream(ByteBuffer d, int[] s, int sectorSize, int len)
+  {
+    initialize(d, s, Integer.numberOfTrailingZeros(sectorSize), len);
+  }
+
+  /**
+   * Initializes the stream
+   *
+   * @param d the file data
+   * @param s the physical position of each sector in the stream
+   * @param shift the log base 2 of the sector size
+   * @param len the length of the stream
+   */
+  private void initialize(ByteBuffer d, int[] s, int shift, int len)
+  {
+    data = d.slice();
+    limit = data.capacity();
+    if (data.hasArray())
+    {
+      array = data.array();
+      arrayOffset = data.arrayOffset();
+    }
+    sectors = s;
+    sectorShift = shift;
+    sectorMask = shift == CONTIGUOUS_SHIFT ?
+      Integer.MAX_VALUE : (1 << shift) - 1;
+    length = len;
+  }
+
+  /**
+   * Accessor for the length of the stream
+   *
+   * @return the number of bytes in the stream
+   */
+  int getLength()
+  {
+    return length;
+  }
+
+  /**
+   * Gets the byte at the specified position in the stream.  Positions
+   * which lie within a sector that has been truncated from the end of the
+   * file are read as zero
+   *
+   * @param pos the logical position in the stream
+   * @return the byte at that position
+   */
+  byte get(int pos)
+  {
+    int p = sectors[pos >>> sectorShift] + (pos & sectorMask);
+
+    if (p >= limit)
+    {
+      return 0;
+    }
+
+    return array != null ? array[arrayOffset + p] : data.get(p);
+  }
+
+  /**
+   * Gets the unsigned two byte little endian value at the specified
+   * position in the stream
+   *
+   * @param pos the logical position in the stream
+   * @return the value
+   */
+  int getUShort(int pos)
+  {
+    return (get(pos) & 0xff) | ((get(pos + 1) & 0xff) << 8);
+  }
+
+  /**
+   * Gets the four byte little endian value at the specified position in
+   * the stream
+   *
+   * @param pos the logical position in the stream
+   * @return the value
+   */
+  int getInt(int pos)
+  {
+    return getUShort(pos) | (getUShort(pos + 2) << 16);
+  }
+
+  /**
+   * Copies bytes out of the stream
+   *
+   * @param pos the logical position in the stream
+   * @param dest the destination array
+   * @param destPos the position in the destination array
+   * @param len the number of bytes to copy
+   */
+  void get(int pos, byte[] dest, int destPos, int len)
+  {
+    if (pos < 0 || len < 0 || pos + len > length)
+    {
+      throw new ArrayIndexOutOfBoundsException(pos + len);
+    }
+
+    while (len > 0)
+    {
+      int offset = pos & sectorMask;
+      int room = sectorMask - offset;
+      int chunk = len <= room ? len : room + 1;
+      int p = sectors[pos >>> sectorShift] + offset;
+      int available = Math.max(0, Math.min(chunk, limit - p));
+
+      if (array != null)
+      {
+        System.arraycopy(array, arrayOffset + p, dest, destPos, available);
+      }
+      else if (available > 0)
+      {
+        ByteBuffer src = data.duplicate();
+        src.position(p);
+        src.get(dest, destPos, available);
+      }
+
+      // Zero the remainder of a truncated sector
+      for (int i = available; i < chunk; i++)
+      {
+        dest[destPos + i] = 0;
+      }
+
+      pos += chunk;
+      destPos += chunk;
+      len -= chunk;
+    }
+  }
+
+  /**
+   * Copies the entire stream into a contiguous array
+   *
+   * @return the stream data
+   */
+  byte[] toByteArray()
+  {
+    byte[] d = new byte[length];
+    get(0, d, 0, length);
+    return d;
+  }
+}
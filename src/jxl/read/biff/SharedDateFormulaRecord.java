@@ -20,6 +20,7 @@
 package jxl.read.biff;
 
 import java.text.DateFormat;
+import java.time.LocalDateTime;
 import java.util.Date;
 
 
@@ -158,6 +159,26 @@ public class SharedDateFormulaRecord extends BaseSharedFormulaRecord
     return dateRecord.getDate();
   }
 
+  /**
+   * Gets the date as the number of milliseconds since 01 Jan 1970 UTC
+   *
+   * @return the date in milliseconds
+   */
+  public long getEpochMillis()
+  {
+    return dateRecord.getEpochMillis();
+  }
+
+  /**
+   * Gets the date and time, as shown by Excel
+   *
+   * @return the date and time
+   */
+  public LocalDateTime getLocalDateTime()
+  {
+    return dateRecord.getLocalDateTime();
+  }
+
   /**
    * Indicates whether the date value contained in this cell refers to a date,
    * or merely a time
@@ -19,9 +19,6 @@
 
 package jxl.read.biff;
 
-import java.text.NumberFormat;
-import java.util.ArrayList;
-
 import jxl.common.Logger;
 
 import jxl.Cell;
@@ -32,7 +29,9 @@ import jxl.biff.WorkbookMethods;
 import jxl.biff.formula.ExternalSheet;
 
 /**
- * A shared formula
+ * A shared formula.  The group is held as its template formula and the
+ * range of cells which it covers, and the other formulas in the group are
+ * given the tokens of the template as they are read in
  */
 class SharedFormulaRecord
 {
@@ -66,11 +65,6 @@ class SharedFormulaRecord
    */
   private BaseSharedFormulaRecord templateFormula;
 
-  /**
-   * The rest of the cells  comprising this shared formula
-   */
-  private ArrayList formulas;
-
   /**
    * The token data
    */
@@ -110,8 +104,6 @@ class SharedFormulaRecord
     firstCol = data[4] & 0xff;
     lastCol  = data[5] & 0xff;
 
-    formulas = new ArrayList();
-
     templateFormula = fr;
 
     tokens = new byte[data.length - 10];
@@ -119,59 +111,62 @@ class SharedFormulaRecord
   }
 
   /**
-   * Adds this formula to the list of formulas, if it falls within
-   * the bounds
+   * Sees if the formula falls within the bounds of this group
    *
    * @param fr the formula record to test for membership of this group
-   * @return TRUE if the formulas was added, FALSE otherwise
+   * @return TRUE if the formula is a member of this group, FALSE otherwise
    */
-  public boolean add(BaseSharedFormulaRecord fr)
-  {    
-    boolean added = false;
+  public boolean contains(BaseSharedFormulaRecord fr)
+  {
     int r = fr.getRow();
-    if (r >= firstRow && r <= lastRow) 
-    {
-      int c = fr.getColumn();
-      if (c >= firstCol && c <= lastCol) 
-      {
-        formulas.add(fr);
-        added = true;
-      }
-    }
+    int c = fr.getColumn();
+    return r >= firstRow && r <= lastRow && c >= firstCol && c <= lastCol;
+  }
 
+  /**
+   * Accessor for the first row of the group, which holds the template
+   *
+   * @return the first row
+   */
+  int getFirstRow()
+  {
+    return firstRow;
+  }
 
-    return added;
+  /**
+   * Accessor for the first column of the group, which holds the template
+   *
+   * @return the first column
+   */
+  int getFirstColumn()
+  {
+    return firstCol;
   }
 
   /**
-   * Manufactures individual cell formulas out the whole shared formula
-   * debacle
+   * Manufactures the cell for the template formula of this group
    *
    * @param fr the formatting records
    * @param nf flag indicating whether this uses the 1904 date system
-   * @return an array of formulas to be added to the sheet
+   * @return the template formula, or NULL if there is none
    */
-  Cell[] getFormulas(FormattingRecords fr, boolean nf)
+  Cell getTemplate(FormattingRecords fr, boolean nf)
   {
-    Cell[] sfs = new Cell[formulas.size() + 1];
-
     // This can happen if there are many identical formulas in the
     // sheet and excel has not sliced and diced them exclusively
     if (templateFormula == null)
     {
       logger.warn("Shared formula template formula is null");
-      return new Cell[0];
+      return null;
     }
 
     templateFormula.setTokens(tokens);
-    NumberFormat templateNumberFormat = null;
 
     // See if the template formula evaluates to date
     if (templateFormula.getType() == CellType.NUMBER_FORMULA)
     {
       SharedNumberFormulaRecord snfr = (SharedNumberFormulaRecord)
         templateFormula;
-      templateNumberFormat = snfr.getNumberFormat();
 
       if (fr.isDate(templateFormula.getXFIndex()))
       {
@@ -181,35 +176,38 @@ class SharedFormulaRecord
       }
     }
 
-    sfs[0] = templateFormula;
+    return templateFormula;
+  }
 
-    BaseSharedFormulaRecord f = null;
+  /**
+   * Manufactures the cell for a formula which is a member of this group
+   *
+   * @param f the member formula
+   * @param fr the formatting records
+   * @param nf flag indicating whether this uses the 1904 date system
+   * @return the formula, or NULL if the group has no template
+   */
+  Cell getFormula(BaseSharedFormulaRecord f, FormattingRecords fr, boolean nf)
+  {
+    if (templateFormula == null)
+    {
+      return null;
+    }
 
-    for (int i = 0; i < formulas.size(); i++)
+    // See if the formula evaluates to date
+    if (f.getType() == CellType.NUMBER_FORMULA)
     {
-      f = (BaseSharedFormulaRecord) formulas.get(i);
+      SharedNumberFormulaRecord snfr = (SharedNumberFormulaRecord) f;
 
-      // See if the formula evaluates to date
-      if (f.getType() == CellType.NUMBER_FORMULA)
+      if (fr.isDate(f.getXFIndex()))
       {
-        SharedNumberFormulaRecord snfr = (SharedNumberFormulaRecord) f;
-
-        if (fr.isDate(f.getXFIndex()))
-        {
-          f = new SharedDateFormulaRecord(snfr, fr, nf, sheet,
-                                          snfr.getFilePos());
-        }
-        else
-        {
-          ;// snfr.setNumberFormat(templateNumberFormat);
-        }
+        f = new SharedDateFormulaRecord(snfr, fr, nf, sheet,
+                                        snfr.getFilePos());
       }
-
-      f.setTokens(tokens);
-      sfs[i + 1] = f;
     }
 
-    return sfs;
+    f.setTokens(tokens);
+    return f;
   }
 
   /**
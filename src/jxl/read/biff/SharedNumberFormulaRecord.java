@@ -29,6 +29,7 @@ import jxl.NumberCell;
 import jxl.NumberFormulaCell;
 
 import jxl.biff.DoubleHelper;
+import jxl.biff.ExcelNumberFormat;
 import jxl.biff.FormattingRecords;
 import jxl.biff.FormulaData;
 import jxl.biff.IntegerHelper;
@@ -57,6 +58,12 @@ public class SharedNumberFormulaRecord extends BaseSharedFormulaRecord
    * The cell format
    */
   private NumberFormat format;
+
+  /**
+   * The compiled equivalent of the number format, or NULL if the java
+   * format is to be used
+   */
+  private ExcelNumberFormat excelFormat;
   /**
    * A handle to the formatting records
    */
@@ -90,6 +97,7 @@ public class SharedNumberFormulaRecord extends BaseSharedFormulaRecord
     value = v;
     format = defaultFormat;    // format is set up later from the 
                                // SharedFormulaRecord
+    excelFormat = ExcelNumberFormat.getDefaultFormat();
   }
 
   /**
@@ -98,12 +106,15 @@ public class SharedNumberFormulaRecord extends BaseSharedFormulaRecord
    * that this cell is a number and not a date
    *
    * @param f the format
+   * @param ef the compiled equivalent of the format, or NULL if it could
+   *    not be compiled
    */
-  final void setNumberFormat(NumberFormat f)
+  final void setNumberFormat(NumberFormat f, ExcelNumberFormat ef)
   {
     if (f != null)
     {
       format = f;
+      excelFormat = ef;
     }
   }
 
@@ -124,7 +135,13 @@ public class SharedNumberFormulaRecord extends BaseSharedFormulaRecord
    */
   public String getContents()
   {
-    return !Double.isNaN(value) ? format.format(value) : "";
+    if (Double.isNaN(value))
+    {
+      return "";
+    }
+
+    return excelFormat != null ?
+      excelFormat.format(value) : format.format(value);
   }
 
   /**
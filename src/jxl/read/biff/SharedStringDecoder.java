@@ -0,0 +1,122 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+package jxl.read.biff;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Packs ranges of the shared string table on a fork join pool.  Each range
+ * starts at an EXTSST bucket and has its own character pools, and the task
+ * is split in half until it covers a single range
+ */
+final class SharedStringDecoder extends RecursiveAction
+{
+  /**
+   * The shared string table
+   */
+  private SSTRecord sharedStrings;
+
+  /**
+   * The index of the first string in each range, followed by the number
+   * of strings
+   */
+  private int[] bounds;
+
+  /**
+   * The position in the raw data of the first string in each range
+   */
+  private int[] starts;
+
+  /**
+   * The character pools for each range
+   */
+  private SSTRecord.CharacterPools[] pools;
+
+  /**
+   * The position after the last string in each range, or -1 if the range
+   * could not be packed
+   */
+  private int[] ends;
+
+  /**
+   * The first range packed by this task
+   */
+  private int firstRange;
+
+  /**
+   * The range after the last range packed by this task
+   */
+  private int lastRange;
+
+  /**
+   * Constructor
+   *
+   * @param sst the shared string table
+   * @param b the first string of each range, followed by the number of
+   *          strings
+   * @param s the position of the first string in each range
+   * @param p the character pools for each range
+   * @param e the array which receives the end position of each range
+   * @param fr the first range to pack
+   * @param lr the range after the last range to pack
+   */
+  SharedStringDecoder(SSTRecord sst, int[] b, int[] s,
+                      SSTRecord.CharacterPools[] p, int[] e,
+                      int fr, int lr)
+  {
+    sharedStrings = sst;
+    bounds = b;
+    starts = s;
+    pools = p;
+    ends = e;
+    firstRange = fr;
+    lastRange = lr;
+  }
+
+  /**
+   * Packs the ranges, splitting the task if there is more than one
+   */
+  protected void compute()
+  {
+    if (lastRange - firstRange == 1)
+    {
+      try
+      {
+        ends[firstRange] = sharedStrings.packStrings(bounds[firstRange],
+                                                     bounds[lastRange],
+                                                     starts[firstRange],
+                                                     pools[firstRange]);
+      }
+      catch (RuntimeException e)
+      {
+        // The range does not start at a string, so the bucket offsets
+        // cannot be relied upon
+        ends[firstRange] = -1;
+      }
+      return;
+    }
+
+    int mid = (firstRange + lastRange) >>> 1;
+    invokeAll(new SharedStringDecoder(sharedStrings, bounds, starts, pools,
+                                      ends, firstRange, mid),
+              new SharedStringDecoder(sharedStrings, bounds, starts, pools,
+                                      ends, mid, lastRange));
+  }
+}
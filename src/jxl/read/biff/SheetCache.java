@@ -0,0 +1,163 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+package jxl.read.biff;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import jxl.WorkbookSettings;
+
+/**
+ * Keeps track of the sheets which have been read in by Workbook.getSheet,
+ * and clears the least recently used ones when there are more than the
+ * maximum number of sheets, or their estimated size exceeds the memory
+ * budget.  Pinned sheets are never cleared.  If soft references are
+ * enabled, then the cells of cleared sheets are held through a soft
+ * reference so that they may be reused if they have not been garbage
+ * collected
+ */
+final class SheetCache
+{
+  /**
+   * The cached sheets, with the least recently used first
+   */
+  private ArrayList sheets;
+
+  /**
+   * The pinned sheets
+   */
+  private HashSet pinned;
+
+  /**
+   * The maximum number of sheets to keep
+   */
+  private int maxSheets;
+
+  /**
+   * The memory budget, or zero if there is none
+   */
+  private long maxBytes;
+
+  /**
+   * Indicates whether cleared sheets keep their cells through a
+   * soft reference
+   */
+  private boolean softReferences;
+
+  /**
+   * Constructor
+   *
+   * @param ws the workbook settings which hold the cache policy
+   */
+  SheetCache(WorkbookSettings ws)
+  {
+    sheets = new ArrayList();
+    pinned = new HashSet();
+    maxSheets = Math.max(ws.getSheetCacheSize(), 1);
+    maxBytes = ws.getSheetCacheMemory();
+    softReferences = ws.getSheetCacheSoftReferences();
+  }
+
+  /**
+   * Records that the sheet has just been used, and clears any sheets
+   * which no longer fit into the cache
+   *
+   * @param s the sheet
+   */
+  void touch(SheetImpl s)
+  {
+    sheets.remove(s);
+    sheets.add(s);
+    evict();
+  }
+
+  /**
+   * Pins the sheet, so that it is not cleared
+   *
+   * @param s the sheet
+   */
+  void pin(SheetImpl s)
+  {
+    pinned.add(s);
+  }
+
+  /**
+   * Unpins the sheet, which may then be cleared
+   *
+   * @param s the sheet
+   */
+  void unpin(SheetImpl s)
+  {
+    pinned.remove(s);
+    evict();
+  }
+
+  /**
+   * Clears all the cached sheets, including the pinned ones
+   */
+  void clear()
+  {
+    for (int i = 0; i < sheets.size(); i++)
+    {
+      ((SheetImpl) sheets.get(i)).clear();
+    }
+
+    sheets.clear();
+    pinned.clear();
+  }
+
+  /**
+   * Clears the least recently used sheets until the rest fit into the
+   * cache.  The most recently used sheet is always kept
+   */
+  private void evict()
+  {
+    long bytes = 0;
+    for (int i = 0; i < sheets.size(); i++)
+    {
+      bytes += ((SheetImpl) sheets.get(i)).getEstimatedSize();
+    }
+
+    int i = 0;
+    while (i < sheets.size() - 1 &&
+           (sheets.size() > maxSheets || (maxBytes > 0 && bytes > maxBytes)))
+    {
+      SheetImpl s = (SheetImpl) sheets.get(i);
+      if (pinned.contains(s))
+      {
+        i++;
+      }
+      else
+      {
+        bytes -= s.getEstimatedSize();
+        sheets.remove(i);
+
+        if (softReferences)
+        {
+          s.release();
+        }
+        else
+        {
+          s.clear();
+        }
+      }
+    }
+  }
+}
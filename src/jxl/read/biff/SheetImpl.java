@@ -19,7 +19,9 @@
 
 package jxl.read.biff;
 
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.regex.Pattern;
 
@@ -27,23 +29,29 @@ import jxl.common.Logger;
 import jxl.common.Assert;
 
 import jxl.Cell;
+import jxl.CellRegion;
 import jxl.CellType;
 import jxl.CellView;
+import jxl.ContentIndex;
 import jxl.Hyperlink;
 import jxl.Image;
+import jxl.IndexOptions;
 import jxl.LabelCell;
 import jxl.Range;
 import jxl.Sheet;
+import jxl.SheetEventHandler;
 import jxl.SheetSettings;
 import jxl.WorkbookSettings;
 import jxl.biff.BuiltInName;
 import jxl.biff.AutoFilter;
+import jxl.biff.CellContentIndex;
 import jxl.biff.CellFinder;
 import jxl.biff.CellReferenceHelper;
 import jxl.biff.ConditionalFormat;
 import jxl.biff.DataValidation;
 import jxl.biff.EmptyCell;
 import jxl.biff.FormattingRecords;
+import jxl.biff.SheetSnapshot;
 import jxl.biff.Type;
 import jxl.biff.WorkspaceInformationRecord;
 import jxl.biff.drawing.Chart;
@@ -109,7 +117,7 @@ public class SheetImpl implements Sheet
   /**
    * The cells
    */
-  private Cell[][] cells;
+  private CellStore cells;
 
   /**
    * The start position in the stream of this sheet
@@ -260,7 +268,30 @@ public class SheetImpl implements Sheet
   private WorkbookSettings workbookSettings;
 
   /**
-   * Constructor
+   * The index of the row blocks, used to read windows of rows without
+   * reading the whole sheet
+   */
+  private RowBlockIndex rowBlockIndex;
+
+  /**
+   * Indicates whether an attempt has been made to read the row block index
+   */
+  private boolean rowBlockIndexRead;
+
+  /**
+   * The cells of a sheet which has been released from the sheet cache,
+   * held so that they may be reused if they have not been garbage collected
+   */
+  private SoftReference releasedCells;
+
+  /**
+   * The index of the cell contents, or NULL if none has been built
+   */
+  private volatile CellContentIndex contentIndex;
+
+  /**
+   * Constructor.  The file is positioned immediately after the sheet's
+   * BOF record, and on return it has been moved past the sheet's EOF
    *
    * @param f the excel file
    * @param sst the shared string table
@@ -279,6 +310,54 @@ public class SheetImpl implements Sheet
             boolean nf,
             WorkbookParser wp)
     throws BiffException
+  {
+    this(f, sst, fr, sb, wb, nf, wp, f.getPos());
+
+    // Skip on until the end of the sheet
+    Record r = null;
+    int bofs = 1;
+
+    while (bofs >= 1)
+    {
+      r = f.next();
+
+      // use this form for quick performance
+      if (r.getCode() == Type.EOF.value)
+      {
+        bofs--;
+      }
+
+      if (r.getCode() == Type.BOF.value)
+      {
+        bofs++;
+      }
+    }
+  }
+
+  /**
+   * Constructs a sheet whose position in the stream is already known, for
+   * example from its boundsheet record.  The sheet's records are not
+   * read until they are needed, and the file position is not changed
+   *
+   * @param f the excel file
+   * @param sst the shared string table
+   * @param fr formatting records
+   * @param sb the bof record which indicates the start of the sheet
+   * @param wb the bof record which indicates the start of the sheet
+   * @param nf the 1904 flag
+   * @param wp the workbook which this sheet belongs to
+   * @param pos the position of the record following the sheet's BOF
+   * @exception BiffException
+   */
+  SheetImpl(File f,
+            SSTRecord sst,
+            FormattingRecords fr,
+            BOFRecord sb,
+            BOFRecord wb,
+            boolean nf,
+            WorkbookParser wp,
+            int pos)
+    throws BiffException
   {
     excelFile = f;
     sharedStrings = sst;
@@ -295,33 +374,14 @@ public class SheetImpl implements Sheet
     workbook = wp;
     workbookSettings = workbook.getSettings();
 
-    // Mark the position in the stream, and then skip on until the end
-    startPosition = f.getPos();
+    // Mark the position in the stream
+    startPosition = pos;
 
     if (sheetBof.isChart())
     {
       // Set the start pos to include the bof so the sheet reader can handle it
       startPosition -= (sheetBof.getLength() + 4);
     }
-
-    Record r = null;
-    int bofs = 1;
-
-    while (bofs >= 1)
-    {
-      r = f.next();
-
-      // use this form for quick performance
-      if (r.getCode() == Type.EOF.value)
-      {
-        bofs--;
-      }
-
-      if (r.getCode() == Type.BOF.value)
-      {
-        bofs++;
-      }
-    }
   }
 
   /**
@@ -353,12 +413,11 @@ public class SheetImpl implements Sheet
       readSheet();
     }
 
-    Cell c = cells[row][column];
+    Cell c = cells.get(row, column);
 
     if (c == null)
     {
       c = new EmptyCell(column, row);
-      cells[row][column] = c;
     }
 
     return c;
@@ -375,7 +434,7 @@ public class SheetImpl implements Sheet
    */
   public Cell findCell(String contents)
   {
-    CellFinder cellFinder = new CellFinder(this);
+    CellFinder cellFinder = new CellFinder(this, contentIndex);
     return cellFinder.findCell(contents);
   }
 
@@ -400,7 +459,7 @@ public class SheetImpl implements Sheet
                        int lastRow, 
                        boolean reverse)
   {
-    CellFinder cellFinder = new CellFinder(this);
+    CellFinder cellFinder = new CellFinder(this, contentIndex);
     return cellFinder.findCell(contents,
                                firstCol, 
                                firstRow, 
@@ -430,7 +489,7 @@ public class SheetImpl implements Sheet
                        int lastRow, 
                        boolean reverse)
   {
-    CellFinder cellFinder = new CellFinder(this);
+    CellFinder cellFinder = new CellFinder(this, contentIndex);
     return cellFinder.findCell(pattern,
                                firstCol, 
                                firstRow, 
@@ -453,10 +512,32 @@ public class SheetImpl implements Sheet
    */
   public LabelCell findLabelCell(String contents)
   {
-    CellFinder cellFinder = new CellFinder(this);
+    CellFinder cellFinder = new CellFinder(this, contentIndex);
     return cellFinder.findLabelCell(contents);
   }
 
+  /**
+   * Builds an index of the contents of the cells on this sheet, which is
+   * then used by findCell and findLabelCell
+   *
+   * @param options the index options, or NULL for the defaults
+   * @return the index
+   */
+  public ContentIndex buildContentIndex(IndexOptions options)
+  {
+    CellContentIndex index = new CellContentIndex(this, options);
+    contentIndex = index;
+    return index;
+  }
+
+  /**
+   * Discards the content index of this sheet
+   */
+  public void removeContentIndex()
+  {
+    contentIndex = null;
+  }
+
   /**
    * Returns the number of rows in this sheet
    *
@@ -508,27 +589,94 @@ public class SheetImpl implements Sheet
     }
 
     // Find the last non-null cell
-    boolean found = false;
-    int col = numCols - 1;
-    while (col >= 0 && !found)
+    int col = cells.getLastColumn(row);
+
+    // Only create entries for non-null cells
+    Cell[] c = new Cell[col + 1];
+
+    for (int i = 0; i <= col; i++)
     {
-      if (cells[row][col] != null)
+      c[i] = getCell(i, row);
+    }
+    return c;
+  }
+
+  /**
+   * Gets the cells on the rows from firstRow up to, but not including,
+   * lastRow.  If the sheet has not been read in (or has been cleared) and
+   * the sheet has a row block index, then only the row blocks containing
+   * these rows are read
+   *
+   * @param firstRow the first row to get
+   * @param lastRow the row after the last row to get
+   * @return the cells on the rows, indexed on the row relative to firstRow
+   */
+  public Cell[][] getRowWindow(int firstRow, int lastRow)
+  {
+    Cell[][] window = new Cell[lastRow - firstRow][];
+
+    if (cells == null && !rowBlockIndexRead)
+    {
+      if (sheetBof.isWorksheet() && workbookBof.isBiff8())
       {
-        found = true;
+        rowBlockIndex = RowBlockIndex.read(excelFile.duplicate(),
+                                           startPosition);
       }
-      else
+      rowBlockIndexRead = true;
+    }
+
+    if (cells == null && rowBlockIndex != null)
+    {
+      SheetReader reader = new SheetReader(excelFile.duplicate(),
+                                           sharedStrings,
+                                           formattingRecords,
+                                           sheetBof,
+                                           workbookBof,
+                                           nineteenFour,
+                                           workbook,
+                                           startPosition,
+                                           this);
+      Cell[][] rows = reader.readRows(firstRow, lastRow, rowBlockIndex);
+
+      for (int i = 0; i < window.length; i++)
       {
-        col--;
+        window[i] = trimRow(rows[i], firstRow + i);
       }
+
+      return window;
     }
 
-    // Only create entries for non-null cells
-    Cell[] c = new Cell[col + 1];
+    for (int i = 0; i < window.length; i++)
+    {
+      int row = firstRow + i;
+      window[i] = row < getRows() ? getRow(row) : new Cell[0];
+    }
+
+    return window;
+  }
+
+  /**
+   * Strips the trailing empty cells from a row read in by a window, and
+   * fills any gaps with empty cells
+   *
+   * @param cellRow the cells on the row, or NULL if it has none
+   * @param row the row number
+   * @return the cells on the row
+   */
+  private Cell[] trimRow(Cell[] cellRow, int row)
+  {
+    int col = cellRow == null ? -1 : cellRow.length - 1;
+    while (col >= 0 && cellRow[col] == null)
+    {
+      col--;
+    }
 
+    Cell[] c = new Cell[col + 1];
     for (int i = 0; i <= col; i++)
     {
-      c[i] = getCell(i, row);
+      c[i] = cellRow[i] != null ? cellRow[i] : new EmptyCell(i, row);
     }
+
     return c;
   }
 
@@ -549,19 +697,7 @@ public class SheetImpl implements Sheet
     }
 
     // Find the last non-null cell
-    boolean found = false;
-    int row = numRows - 1;
-    while (row >= 0 && !found)
-    {
-      if (cells[row][col] != null)
-      {
-        found = true;
-      }
-      else
-      {
-        row--;
-      }
-    }
+    int row = cells.getLastRow(col);
 
     // Only create entries for non-null cells
     Cell[] c = new Cell[row + 1];
@@ -573,6 +709,289 @@ public class SheetImpl implements Sheet
     return c;
   }
 
+  /**
+   * Gets a view of the cells on the specified row, up to the last cell
+   * held on that row.  The cells are not copied
+   *
+   * @param row the row
+   * @return a view of the row
+   */
+  public CellRegion rowView(int row)
+  {
+    return new SheetRegion(this, 0, row, getLastStoredColumn(row) + 1, 1);
+  }
+
+  /**
+   * Gets a view of the cells on the specified column, up to the last cell
+   * held on that column.  The cells are not copied
+   *
+   * @param col the column
+   * @return a view of the column
+   */
+  public CellRegion columnView(int col)
+  {
+    if (cells == null)
+    {
+      readSheet();
+    }
+
+    int row = col >= 0 && col < numCols ? cells.getLastRow(col) : -1;
+    return new SheetRegion(this, col, 0, 1, row + 1);
+  }
+
+  /**
+   * Gets a view of the cells in the specified range.  The cells are not
+   * copied
+   *
+   * @param col1 the first column of the range
+   * @param row1 the first row of the range
+   * @param col2 the last column of the range
+   * @param row2 the last row of the range
+   * @return a view of the range
+   */
+  public CellRegion range(int col1, int row1, int col2, int row2)
+  {
+    return new SheetRegion(this, col1, row1,
+                           col2 - col1 + 1, row2 - row1 + 1);
+  }
+
+  /**
+   * Takes an immutable copy of this sheet
+   *
+   * @return an immutable copy of this sheet
+   */
+  public Sheet snapshot()
+  {
+    // The settings are only available once the sheet has been read
+    if (cells == null)
+    {
+      readSheet();
+    }
+
+    return new SheetSnapshot(this);
+  }
+
+  /**
+   * Reads the numbers in the specified rows of a column into the array
+   * passed in.  If the workbook was read with columnar cell storage, the
+   * values are copied straight from the stored columns
+   *
+   * @param col the column
+   * @param firstRow the first row to read
+   * @param lastRow the last row to read
+   * @param values the array to receive the values
+   * @param present if not NULL, receives TRUE for each row which contains
+   *        a number and FALSE otherwise
+   * @return the number of rows which contain a number
+   */
+  public int readDoubles(int col, int firstRow, int lastRow,
+                         double[] values, boolean[] present)
+  {
+    if (lastRow < firstRow)
+    {
+      return 0;
+    }
+
+    if (cells == null)
+    {
+      readSheet();
+    }
+
+    int length = lastRow - firstRow + 1;
+    Arrays.fill(values, 0, length, Double.NaN);
+    if (present != null)
+    {
+      Arrays.fill(present, 0, length, false);
+    }
+
+    int first = Math.max(firstRow, 0);
+    int last = Math.min(lastRow, numRows - 1);
+    if (col < 0 || col >= numCols || first > last)
+    {
+      return 0;
+    }
+
+    return cells.readNumbers(col, first, last, values, present,
+                             first - firstRow);
+  }
+
+  /**
+   * Reads the contents of the specified rows of a column into the array
+   * passed in
+   *
+   * @param col the column
+   * @param firstRow the first row to read
+   * @param lastRow the last row to read
+   * @param values the array to receive the contents
+   * @return the number of rows for which the sheet holds a cell
+   */
+  public int readStrings(int col, int firstRow, int lastRow, String[] values)
+  {
+    if (lastRow < firstRow)
+    {
+      return 0;
+    }
+
+    if (cells == null)
+    {
+      readSheet();
+    }
+
+    Arrays.fill(values, 0, lastRow - firstRow + 1, null);
+
+    int first = Math.max(firstRow, 0);
+    int last = Math.min(lastRow, numRows - 1);
+    if (col < 0 || col >= numCols || first > last)
+    {
+      return 0;
+    }
+
+    return cells.readContents(col, first, last, values, first - firstRow);
+  }
+
+  /**
+   * Reads the types of the cells in the specified rows of a column into
+   * the array passed in.  If the workbook was read with columnar cell
+   * storage, this does not create any cell objects
+   *
+   * @param col the column
+   * @param firstRow the first row to read
+   * @param lastRow the last row to read
+   * @param types the array to receive the cell types
+   * @return the number of rows which are not empty
+   */
+  public int readCellTypes(int col, int firstRow, int lastRow,
+                           CellType[] types)
+  {
+    if (lastRow < firstRow)
+    {
+      return 0;
+    }
+
+    if (cells == null)
+    {
+      readSheet();
+    }
+
+    Arrays.fill(types, 0, lastRow - firstRow + 1, CellType.EMPTY);
+
+    int first = Math.max(firstRow, 0);
+    int last = Math.min(lastRow, numRows - 1);
+    if (col < 0 || col >= numCols || first > last)
+    {
+      return 0;
+    }
+
+    return cells.readCellTypes(col, first, last, types, first - firstRow);
+  }
+
+  /**
+   * Gets the cell which is held at the specified position, without
+   * creating an empty cell if there is none.  Used by the regions of this
+   * sheet
+   *
+   * @param column the column
+   * @param row the row
+   * @return the cell, or NULL if there is none
+   */
+  Cell getStoredCell(int column, int row)
+  {
+    if (cells == null)
+    {
+      readSheet();
+    }
+
+    if (row < 0 || row >= numRows || column < 0 || column >= numCols)
+    {
+      return null;
+    }
+
+    return cells.get(row, column);
+  }
+
+  /**
+   * Gets the column of the last cell held on the specified row
+   *
+   * @param row the row
+   * @return the column, or -1 if there are no cells on the row
+   */
+  int getLastStoredColumn(int row)
+  {
+    if (cells == null)
+    {
+      readSheet();
+    }
+
+    return row >= 0 && row < numRows ? cells.getLastColumn(row) : -1;
+  }
+
+  /**
+   * Gets the type of the cell at the specified location.  If the workbook
+   * was read with columnar cell storage, this does not create a cell object
+   *
+   * @param column the column number
+   * @param row the row number
+   * @return the cell type
+   */
+  public CellType getCellType(int column, int row)
+  {
+    if (cells == null)
+    {
+      readSheet();
+    }
+
+    return cells.getCellType(row, column);
+  }
+
+  /**
+   * Gets the value of the number at the specified location.  If the workbook
+   * was read with columnar cell storage, this does not create a cell object
+   *
+   * @param column the column number
+   * @param row the row number
+   * @return the value, or NaN if the cell does not contain a number
+   */
+  public double getNumber(int column, int row)
+  {
+    if (cells == null)
+    {
+      readSheet();
+    }
+
+    return cells.getNumber(row, column);
+  }
+
+  /**
+   * Gets the index in the shared string table of the label at the
+   * specified location.  If the workbook was read with columnar cell
+   * storage, this does not create a cell object.  The label itself may be
+   * obtained from getSharedString
+   *
+   * @param column the column number
+   * @param row the row number
+   * @return the index, or -1 if the cell is not a shared string label
+   */
+  public int getStringIndex(int column, int row)
+  {
+    if (cells == null)
+    {
+      readSheet();
+    }
+
+    return cells.getStringIndex(row, column);
+  }
+
+  /**
+   * Gets the string at the specified index in the shared string table
+   *
+   * @param index the index returned by getStringIndex
+   * @return the string
+   */
+  public String getSharedString(int index)
+  {
+    return sharedStrings.getString(index);
+  }
+
   /**
    * Gets the name of this sheet
    *
@@ -681,18 +1100,91 @@ public class SheetImpl implements Sheet
     sharedFormulas.clear();
     hyperlinks.clear();
     columnInfosInitialized = false;
+    releasedCells = null;
+  }
 
-    if (!workbookSettings.getGCDisabled())
+  /**
+   * Releases the cells of this sheet, but keeps hold of them through a soft
+   * reference.  The rest of the sheet is retained, so if the cells have not
+   * been garbage collected by the time they are next needed then the sheet
+   * does not have to be read again
+   */
+  final void release()
+  {
+    if (cells != null)
     {
-      System.gc();
+      releasedCells = new SoftReference(cells);
+      cells = null;
     }
   }
 
+  /**
+   * Gets an estimate of the number of bytes used by the cells of this
+   * sheet.  This only counts the cell store and the cell objects themselves,
+   * not the formats or strings they share with the rest of the workbook
+   *
+   * @return the estimated size, or zero if the sheet has not been read in
+   */
+  final long getEstimatedSize()
+  {
+    return cells != null ? cells.getEstimatedSize() : 0;
+  }
+
+  /**
+   * Determines whether the cells of this sheet are currently held
+   * in memory
+   *
+   * @return TRUE if the sheet has been read in, FALSE otherwise
+   */
+  final boolean isRead()
+  {
+    return cells != null;
+  }
+
+  /**
+   * Reads the cells of this sheet, passing each one on to the handler
+   * without keeping them.  Sheets which contain only a chart have no cells
+   *
+   * @param handler the handler which receives the cells
+   */
+  final void process(SheetEventHandler handler)
+  {
+    if (!sheetBof.isWorksheet())
+    {
+      return;
+    }
+
+    SheetReader reader = new SheetReader(excelFile.duplicate(),
+                                         sharedStrings,
+                                         formattingRecords,
+                                         sheetBof,
+                                         workbookBof,
+                                         nineteenFour,
+                                         workbook,
+                                         startPosition,
+                                         this);
+    reader.setEventHandler(handler);
+    reader.read();
+  }
+
   /**
    * Reads in the contents of this sheet
    */
   final void readSheet()
   {
+    // If the cells were released from the cache and have not been garbage
+    // collected, then the rest of the sheet is still intact
+    if (releasedCells != null)
+    {
+      cells = (CellStore) releasedCells.get();
+      releasedCells = null;
+
+      if (cells != null)
+      {
+        return;
+      }
+    }
+
     // If this sheet contains only a chart, then set everything to
     // empty and do not bother parsing the sheet
     // Thanks to steve.brophy for spotting this
@@ -700,11 +1192,11 @@ public class SheetImpl implements Sheet
     {
       numRows = 0;
       numCols = 0;
-      cells = new Cell[0][0];
+      cells = CellStore.create(0, 0);
       //      return;
     }
 
-    SheetReader reader = new SheetReader(excelFile,
+    SheetReader reader = new SheetReader(excelFile.duplicate(),
                                          sharedStrings,
                                          formattingRecords,
                                          sheetBof,
@@ -740,11 +1232,6 @@ public class SheetImpl implements Sheet
 
     reader = null;
 
-    if (!workbookSettings.getGCDisabled())
-    {
-      System.gc();
-    }
-
     if (columnInfosArray.size() > 0)
     {
       ColumnInfoRecord cir = (ColumnInfoRecord)
@@ -1179,7 +1666,7 @@ public class SheetImpl implements Sheet
    */
   public DrawingData getDrawingData()
   {
-    SheetReader reader = new SheetReader(excelFile,
+    SheetReader reader = new SheetReader(excelFile.duplicate(),
                                          sharedStrings,
                                          formattingRecords,
                                          sheetBof,
@@ -26,13 +26,17 @@ import java.util.Iterator;
 import jxl.common.Assert;
 import jxl.common.Logger;
 
+import jxl.BooleanCell;
 import jxl.Cell;
 import jxl.CellFeatures;
 import jxl.CellReferenceHelper;
 import jxl.CellType;
 import jxl.DateCell;
 import jxl.HeaderFooter;
+import jxl.NumberCell;
 import jxl.Range;
+import jxl.ReadProjection;
+import jxl.SheetEventHandler;
 import jxl.SheetSettings;
 import jxl.WorkbookSettings;
 import jxl.biff.AutoFilter;
@@ -47,6 +51,7 @@ import jxl.biff.DataValidityListRecord;
 import jxl.biff.DataValiditySettingsRecord;
 import jxl.biff.FilterModeRecord;
 import jxl.biff.FormattingRecords;
+import jxl.biff.IntegerHelper;
 import jxl.biff.Type;
 import jxl.biff.WorkspaceInformationRecord;
 import jxl.biff.drawing.Button;
@@ -117,7 +122,25 @@ final class SheetReader
   /**
    * The cells
    */
-  private Cell[][] cells;
+  private CellStore cells;
+
+  /**
+   * The cells on the rows of a window, indexed on the row relative to
+   * the first row of the window
+   */
+  private Cell[][] windowCells;
+
+  /**
+   * The handler to which the cells are passed on, rather than being added
+   * to the cell store, or NULL if the cells are kept
+   */
+  private SheetEventHandler eventHandler;
+
+  /**
+   * The row of the last cell passed on to the event handler, or -1 if
+   * none have been passed on yet
+   */
+  private int eventRow;
 
   /**
    * Any cells which are out of the defined bounds
@@ -145,6 +168,11 @@ final class SheetReader
    */
   private ArrayList sharedFormulas;
 
+  /**
+   * The shared formula groups, keyed on the cell which holds the template
+   */
+  private HashMap sharedFormulaGroups;
+
   /**
    * A list of hyperlinks on this page
    */
@@ -246,6 +274,110 @@ final class SheetReader
    */
   private SheetImpl sheet;
 
+  /**
+   * The most recent base shared formula which has not yet been added to
+   * a shared formula group
+   */
+  private BaseSharedFormulaRecord sharedFormula;
+
+  /**
+   * Indicates whether the most recent base shared formula was added to
+   * a shared formula group
+   */
+  private boolean sharedFormulaAdded;
+
+  /**
+   * Indicates that only a window of rows is being read, rather than the
+   * whole sheet
+   */
+  private boolean windowed;
+
+  /**
+   * The first row of the window being read
+   */
+  private int firstWindowRow;
+
+  /**
+   * When reading a window of rows, the base shared formulas which could
+   * not be added to any of the shared formula groups decoded so far
+   */
+  private ArrayList unresolvedSharedFormulas;
+
+  /**
+   * When decoding a range of row blocks on behalf of another reader, the
+   * cells which have been read
+   */
+  private ArrayList blockCells;
+
+  /**
+   * The maximum number of columns on a sheet
+   */
+  private static final int MAX_COLUMNS = 256;
+
+  /**
+   * The families of sheet records which are read in
+   */
+  private ReadProjection projection;
+
+  /**
+   * Indicates whether the cell formats are part of the projection.  If
+   * not, numbers are neither formatted nor turned into dates
+   */
+  private boolean formatted;
+
+  /**
+   * The read projection family of each type of record which may be
+   * skipped.  Records of any other type are always read
+   */
+  private static final HashMap recordFamilies = new HashMap();
+
+  static
+  {
+    addRecordFamily(ReadProjection.ROWS_AND_COLUMNS,
+                    new Type[] {Type.ROW, Type.COLINFO, Type.DEFCOLWIDTH,
+                                Type.DEFAULTROWHEIGHT, Type.GUTS});
+    addRecordFamily(ReadProjection.MERGED_CELLS,
+                    new Type[] {Type.MERGEDCELLS});
+    addRecordFamily(ReadProjection.HYPERLINKS, new Type[] {Type.HLINK});
+    addRecordFamily(ReadProjection.DRAWINGS,
+                    new Type[] {Type.MSODRAWING, Type.OBJ, Type.NOTE,
+                                Type.CONTINUE, Type.BUTTONPROPERTYSET});
+    addRecordFamily(ReadProjection.CONDITIONAL_FORMATS,
+                    new Type[] {Type.CONDFMT, Type.CF});
+    addRecordFamily(ReadProjection.DATA_VALIDATIONS,
+                    new Type[] {Type.DVAL, Type.DV});
+    addRecordFamily(ReadProjection.AUTOFILTERS,
+                    new Type[] {Type.FILTERMODE, Type.AUTOFILTERINFO,
+                                Type.AUTOFILTER});
+    addRecordFamily(ReadProjection.PAGE_SETUP,
+                    new Type[] {Type.PRINTGRIDLINES, Type.PRINTHEADERS,
+                                Type.HEADER, Type.FOOTER, Type.SETUP,
+                                Type.WSBOOL, Type.LEFTMARGIN,
+                                Type.RIGHTMARGIN, Type.TOPMARGIN,
+                                Type.BOTTOMMARGIN,
+                                Type.HORIZONTALPAGEBREAKS,
+                                Type.VERTICALPAGEBREAKS, Type.PLS,
+                                Type.HCENTER, Type.VCENTER});
+    addRecordFamily(ReadProjection.SHEET_SETTINGS,
+                    new Type[] {Type.WINDOW2, Type.PANE, Type.SCL,
+                                Type.PROTECT, Type.PASSWORD, Type.CALCMODE,
+                                Type.SAVERECALC});
+  }
+
+  /**
+   * Records the read projection family of the record types
+   *
+   * @param family the read projection family
+   * @param types the record types
+   */
+  private static void addRecordFamily(ReadProjection family, Type[] types)
+  {
+    for (int i = 0; i < types.length; i++)
+    {
+      recordFamilies.put(types[i], family);
+    }
+  }
+
   /**
    * Constructor
    *
@@ -277,6 +409,7 @@ final class SheetReader
     workbookBof = wb;
     columnInfosArray = new ArrayList();
     sharedFormulas = new ArrayList();
+    sharedFormulaGroups = new HashMap();
     hyperlinks = new ArrayList();
     conditionalFormats = new ArrayList();
     rowProperties = new ArrayList(10);
@@ -289,6 +422,8 @@ final class SheetReader
     sheet = sh;
     settings = new SheetSettings(sh);
     workbookSettings = workbook.getSettings();
+    projection = workbookSettings.getReadProjection();
+    formatted = projection.includes(ReadProjection.FORMATS);
   }
 
   /**
@@ -298,11 +433,40 @@ final class SheetReader
    */
   private void addCell(Cell cell)
   {
+    if (eventHandler != null)
+    {
+      fireCellEvent(cell);
+      return;
+    }
+
+    // When decoding row blocks for another reader, simply collect the
+    // cells so that they can be added in the order of the blocks
+    if (blockCells != null)
+    {
+      blockCells.add(cell);
+      return;
+    }
+
+    // When reading a window, only keep the cells on the rows in the window
+    if (windowed)
+    {
+      int row = cell.getRow() - firstWindowRow;
+      if (row >= 0 && row < numRows && cell.getColumn() < MAX_COLUMNS)
+      {
+        if (windowCells[row] == null)
+        {
+          windowCells[row] = new Cell[MAX_COLUMNS];
+        }
+        windowCells[row][cell.getColumn()] = cell;
+      }
+      return;
+    }
+
     // Sometimes multiple cells (eg. MULBLANK) can exceed the
     // column/row boundaries.  Ignore these
     if (cell.getRow() < numRows && cell.getColumn() < numCols)
     {
-      if (cells[cell.getRow()][cell.getColumn()] != null)
+      if (cells.contains(cell.getRow(), cell.getColumn()))
       {
         StringBuffer sb = new StringBuffer();
         CellReferenceHelper.getCellReference
@@ -310,7 +474,7 @@ final class SheetReader
         logger.warn("Cell " + sb.toString() +
                     " already contains data");
       }
-      cells[cell.getRow()][cell.getColumn()] = cell;
+      cells.set(cell.getRow(), cell.getColumn(), cell);
     }
     else
     {
@@ -331,11 +495,19 @@ final class SheetReader
   final void read()
   {
     Record r = null;
-    BaseSharedFormulaRecord sharedFormula = null;
-    boolean sharedFormulaAdded = false;
 
     boolean cont = true;
 
+    // If the row blocks are to be decoded in parallel, get their positions
+    // before moving to the start of the sheet
+    RowBlockIndex blocks = null;
+    int nextBlock = 0;
+    if (workbookSettings.getParallelBlockDecoding() && eventHandler == null &&
+        sheetBof.isWorksheet() && workbookBof.isBiff8())
+    {
+      blocks = RowBlockIndex.read(excelFile, startPosition);
+    }
+
     // Set the position within the file
     excelFile.setPos(startPosition);
 
@@ -372,11 +544,44 @@ final class SheetReader
 
   boolean first = true;
 
+    // A reusable record for the cell records which are decoded entirely
+    // within their constructors
+    Record cursor = null;
+
     while (cont)
     {
-      r = excelFile.next();
+      // Skip over the row blocks, which are all decoded in parallel when
+      // the first of them is reached
+      if (blocks != null && nextBlock < blocks.getNumberOfBlocks() &&
+          excelFile.getPos() == blocks.getStartPosition(nextBlock))
+      {
+        if (nextBlock == 0)
+        {
+          readBlocksInParallel(blocks);
+        }
+
+        excelFile.skip(blocks.getEndPosition(nextBlock) - excelFile.getPos());
+        nextBlock++;
+      }
+
+      cursor = excelFile.next(cursor);
+      r = cursor;
       Type type = r.getType();
 
+      // Skip over the records which are not part of the projection before
+      // anything is made of them
+      if (!isProjected(type))
+      {
+        continue;
+      }
+
+      // Anything other than these cell records may hold on to the record,
+      // so is given its own copy
+      if (!isDecodedImmediately(type))
+      {
+        r = cursor.copy();
+      }
+
       if (type == Type.UNKNOWN && r.getCode() == 0)
       {
         logger.warn("Biff code zero found");
@@ -394,9 +599,11 @@ final class SheetReader
       }
 
       if (first && type != Type.DIMENSION) {
-        numRows = workbookSettings.getStartRowCount();
-        numCols = workbookSettings.getStartColumnCount();
-        cells = new Cell[numRows][numCols];
+        Integer startRows = workbookSettings.getStartRowCount();
+        Integer startCols = workbookSettings.getStartColumnCount();
+        numRows = startRows != null ? startRows.intValue() : 0;
+        numCols = startCols != null ? startCols.intValue() : 0;
+        cells = eventHandler == null ? createCellStore() : null;
         first = false;
       }
 
@@ -414,30 +621,11 @@ final class SheetReader
         }
         numRows = dr.getNumberOfRows();
         numCols = dr.getNumberOfColumns();
-        cells = new Cell[numRows][numCols];
-      }
-      else if (type == Type.LABELSST)
-      {
-        LabelSSTRecord label = new LabelSSTRecord(r,
-                                                  sharedStrings,
-                                                  formattingRecords,
-                                                  sheet);
-        addCell(label);
+        cells = eventHandler == null ? createCellStore() : null;
       }
-      else if (type == Type.RK || type == Type.RK2)
+      else if (readCellRecord(r, type))
       {
-        RKRecord rkr = new RKRecord(r, formattingRecords, sheet);
-
-        if (formattingRecords.isDate(rkr.getXFIndex()))
-        {
-          DateCell dc = new DateRecord
-            (rkr, rkr.getXFIndex(), formattingRecords, nineteenFour, sheet);
-          addCell(dc);
-        }
-        else
-        {
-          addCell(rkr);
-        }
+        ;
       }
       else if (type == Type.HLINK)
       {
@@ -464,74 +652,6 @@ final class SheetReader
           mergedCells = newMergedCells;
         }
       }
-      else if (type == Type.MULRK)
-      {
-        MulRKRecord mulrk = new MulRKRecord(r);
-
-        // Get the individual cell records from the multiple record
-        int num = mulrk.getNumberOfColumns();
-        int ixf = 0;
-        for (int i = 0; i < num; i++)
-        {
-          ixf = mulrk.getXFIndex(i);
-
-          NumberValue nv = new NumberValue
-            (mulrk.getRow(),
-             mulrk.getFirstColumn() + i,
-             RKHelper.getDouble(mulrk.getRKNumber(i)),
-             ixf,
-             formattingRecords,
-             sheet);
-
-
-          if (formattingRecords.isDate(ixf))
-          {
-            DateCell dc = new DateRecord(nv,
-                                         ixf,
-                                         formattingRecords,
-                                         nineteenFour,
-                                         sheet);
-            addCell(dc);
-          }
-          else
-          {
-            nv.setNumberFormat(formattingRecords.getNumberFormat(ixf));
-            addCell(nv);
-          }
-        }
-      }
-      else if (type == Type.NUMBER)
-      {
-        NumberRecord nr = new NumberRecord(r, formattingRecords, sheet);
-
-        if (formattingRecords.isDate(nr.getXFIndex()))
-        {
-          DateCell dc = new DateRecord(nr,
-                                       nr.getXFIndex(),
-                                       formattingRecords,
-                                       nineteenFour, sheet);
-          addCell(dc);
-        }
-        else
-        {
-          addCell(nr);
-        }
-      }
-      else if (type == Type.BOOLERR)
-      {
-        BooleanRecord br = new BooleanRecord(r, formattingRecords, sheet);
-
-        if (br.isError())
-        {
-          ErrorRecord er = new ErrorRecord(br.getRecord(), formattingRecords,
-                                           sheet);
-          addCell(er);
-        }
-        else
-        {
-          addCell(br);
-        }
-      }
       else if (type == Type.PRINTGRIDLINES)
       {
         printGridLinesRecord = new PrintGridLinesRecord(r);
@@ -614,119 +734,6 @@ final class SheetReader
         ProtectRecord pr = new ProtectRecord(r);
         settings.setProtected(pr.isProtected());
       }
-      else if (type == Type.SHAREDFORMULA)
-      {
-        if (sharedFormula == null)
-        {
-          logger.warn("Shared template formula is null - " +
-                      "trying most recent formula template");
-          SharedFormulaRecord lastSharedFormula =
-            (SharedFormulaRecord) sharedFormulas.get(sharedFormulas.size() - 1);
-
-          if (lastSharedFormula != null)
-          {
-            sharedFormula = lastSharedFormula.getTemplateFormula();
-          }
-        }
-
-        SharedFormulaRecord sfr = new SharedFormulaRecord
-          (r, sharedFormula, workbook, workbook, sheet);
-        sharedFormulas.add(sfr);
-        sharedFormula = null;
-      }
-      else if (type == Type.FORMULA || type == Type.FORMULA2)
-      {
-        FormulaRecord fr = new FormulaRecord(r,
-                                             excelFile,
-                                             formattingRecords,
-                                             workbook,
-                                             workbook,
-                                             sheet,
-                                             workbookSettings);
-
-        if (fr.isShared())
-        {
-          BaseSharedFormulaRecord prevSharedFormula = sharedFormula;
-          sharedFormula = (BaseSharedFormulaRecord) fr.getFormula();
-
-          // See if it fits in any of the shared formulas
-          sharedFormulaAdded = addToSharedFormulas(sharedFormula);
-
-          if (sharedFormulaAdded)
-          {
-            sharedFormula = prevSharedFormula;
-          }
-
-          // If we still haven't added the previous base shared formula,
-          // revert it to an ordinary formula and add it to the cell
-          if (!sharedFormulaAdded && prevSharedFormula != null)
-          {
-            // Do nothing.  It's possible for the biff file to contain the
-            // record sequence
-            // FORMULA-SHRFMLA-FORMULA-SHRFMLA-FORMULA-FORMULA-FORMULA
-            // ie. it first lists all the formula templates, then it
-            // lists all the individual formulas
-            addCell(revertSharedFormula(prevSharedFormula));
-          }
-        }
-        else
-        {
-          Cell cell = fr.getFormula();
-          try
-          {
-            // See if the formula evaluates to date
-            if (fr.getFormula().getType() == CellType.NUMBER_FORMULA)
-            {
-              NumberFormulaRecord nfr = (NumberFormulaRecord) fr.getFormula();
-              if (formattingRecords.isDate(nfr.getXFIndex()))
-              {
-                cell = new DateFormulaRecord(nfr,
-                                             formattingRecords,
-                                             workbook,
-                                             workbook,
-                                             nineteenFour,
-                                             sheet);
-              }
-            }
-
-            addCell(cell);
-          }
-          catch (FormulaException e)
-          {
-            // Something has gone wrong trying to read the formula data eg. it
-            // might be unsupported biff7 data
-            logger.warn
-              (CellReferenceHelper.getCellReference
-               (cell.getColumn(), cell.getRow()) + " " + e.getMessage());
-          }
-        }
-      }
-      else if (type == Type.LABEL)
-      {
-        LabelRecord lr = null;
-
-        if (workbookBof.isBiff8())
-        {
-          lr = new LabelRecord(r, formattingRecords, sheet, workbookSettings);
-        }
-        else
-        {
-          lr = new LabelRecord(r, formattingRecords, sheet, workbookSettings,
-                               LabelRecord.biff7);
-        }
-        addCell(lr);
-      }
-      else if (type == Type.RSTRING)
-      {
-        RStringRecord lr = null;
-
-        // RString records are obsolete in biff 8
-        Assert.verify(!workbookBof.isBiff8());
-        lr = new RStringRecord(r, formattingRecords,
-                               sheet, workbookSettings,
-                               RStringRecord.biff7);
-        addCell(lr);
-      }
       else if (type == Type.NAME)
       {
         ;
@@ -738,49 +745,7 @@ final class SheetReader
       }
       else if (type == Type.ROW)
       {
-        RowRecord rr = new RowRecord(r);
-
-        // See if the row has anything funny about it
-        if (!rr.isDefaultHeight() ||
-            !rr.matchesDefaultFontHeight() ||
-            rr.isCollapsed() ||
-            rr.hasDefaultFormat() ||
-            rr.getOutlineLevel() != 0)
-        {
-          rowProperties.add(rr);
-        }
-      }
-      else if (type == Type.BLANK)
-      {
-        if (!workbookSettings.getIgnoreBlanks())
-        {
-          BlankCell bc = new BlankCell(r, formattingRecords, sheet);
-          addCell(bc);
-        }
-      }
-      else if (type == Type.MULBLANK)
-      {
-        if (!workbookSettings.getIgnoreBlanks())
-        {
-          MulBlankRecord mulblank = new MulBlankRecord(r);
-
-          // Get the individual cell records from the multiple record
-          int num = mulblank.getNumberOfColumns();
-
-          for (int i = 0; i < num; i++)
-          {
-            int ixf = mulblank.getXFIndex(i);
-
-            MulBlankCell mbc = new MulBlankCell
-              (mulblank.getRow(),
-               mulblank.getFirstColumn() + i,
-               ixf,
-               formattingRecords,
-               sheet);
-
-            addCell(mbc);
-          }
-        }
+        readRowRecord(r);
       }
       else if (type == Type.SCL)
       {
@@ -1145,7 +1110,8 @@ final class SheetReader
               drawingData = new DrawingData();
             }
 
-            if (!workbookSettings.getDrawingsDisabled())
+            if (!workbookSettings.getDrawingsDisabled() &&
+                projection.includes(ReadProjection.DRAWINGS))
             {
               Chart chart = new Chart(msoRecord, objRecord, drawingData,
                                       startpos, excelFile.getPos(),
@@ -1186,21 +1152,6 @@ final class SheetReader
       handleOutOfBoundsCells();
     }
 
-    // Add all the shared formulas to the sheet as individual formulas
-    Iterator i = sharedFormulas.iterator();
-
-    while (i.hasNext())
-    {
-      SharedFormulaRecord sfr = (SharedFormulaRecord) i.next();
-
-      Cell[] sfnr = sfr.getFormulas(formattingRecords, nineteenFour);
-
-      for (int sf = 0; sf < sfnr.length; sf++)
-      {
-        addCell(sfnr[sf]);
-      }
-    }
-
     // If the last base shared formula wasn't added to the sheet, then
     // revert it to an ordinary formula and add it
     if (!sharedFormulaAdded && sharedFormula != null)
@@ -1220,66 +1171,842 @@ final class SheetReader
     {
       logger.warn("Not all comments have a corresponding Note record");
     }
+
+    // Now that the number of cells is known, use the most compact store
+    if (cells != null)
+    {
+      cells = cells.optimize();
+    }
+
+    if (eventHandler != null && eventRow >= 0)
+    {
+      eventHandler.endRow(eventRow);
+    }
   }
 
   /**
-   * Sees if the shared formula belongs to any of the shared formula
-   * groups
+   * Determines whether records of the specified type are part of the
+   * read projection
    *
-   * @param fr the candidate shared formula
-   * @return TRUE if the formula was added, FALSE otherwise
+   * @param type the record type
+   * @return TRUE if the record is to be read, FALSE if it is skipped
    */
-  private boolean addToSharedFormulas(BaseSharedFormulaRecord fr)
+  private boolean isProjected(Type type)
   {
-    boolean added = false;
-    SharedFormulaRecord sfr = null;
-
-    for (int i=0, size=sharedFormulas.size(); i<size && !added; ++i)
-    {
-      sfr = (SharedFormulaRecord ) sharedFormulas.get(i);
-      added = sfr.add(fr);
-    }
-
-    return added;
+    ReadProjection family = (ReadProjection) recordFamilies.get(type);
+    return family == null || projection.includes(family);
   }
 
   /**
-   * Reverts the shared formula passed in to an ordinary formula and adds
-   * it to the list
+   * Sets the handler to which the cells are passed on as they are read.
+   * The cells are then not kept by this reader
    *
-   * @param f the formula
-   * @return the new formula
-   * @exception FormulaException
+   * @param handler the event handler
    */
-  private Cell revertSharedFormula(BaseSharedFormulaRecord f)
+  final void setEventHandler(SheetEventHandler handler)
   {
-    // String formulas look for a STRING record soon after the formula
-    // occurred.  Temporarily the position in the excel file back
-    // to the point immediately after the formula record
-    int pos = excelFile.getPos();
-    excelFile.setPos(f.getFilePos());
+    eventHandler = handler;
+    eventRow = -1;
+  }
 
-    FormulaRecord fr = new FormulaRecord(f.getRecord(),
-                                         excelFile,
-                                         formattingRecords,
-                                         workbook,
-                                         workbook,
-                                         FormulaRecord.ignoreSharedFormula,
-                                         sheet,
-                                         workbookSettings);
+  /**
+   * Passes the cell on to the event handler.  The end of the previous row
+   * is signalled when the first cell on a later row is read
+   *
+   * @param cell the cell
+   */
+  private void fireCellEvent(Cell cell)
+  {
+    int row = cell.getRow();
+    int col = cell.getColumn();
 
-    try
+    if (row > eventRow)
     {
-    Cell cell = fr.getFormula();
+      if (eventRow >= 0)
+      {
+        eventHandler.endRow(eventRow);
+      }
+      eventRow = row;
+    }
 
-    // See if the formula evaluates to date
-    if (fr.getFormula().getType() == CellType.NUMBER_FORMULA)
+    int xf = 0;
+    if (cell instanceof CellValue)
     {
-      NumberFormulaRecord nfr = (NumberFormulaRecord) fr.getFormula();
-      if (formattingRecords.isDate(fr.getXFIndex()))
-      {
-        cell = new DateFormulaRecord(nfr,
-                                     formattingRecords,
+      xf = ((CellValue) cell).getXFIndex();
+    }
+    else if (cell instanceof NumberValue)
+    {
+      xf = ((NumberValue) cell).getXFIndex();
+    }
+    else if (cell instanceof MulBlankCell)
+    {
+      xf = ((MulBlankCell) cell).getXFIndex();
+    }
+
+    CellType type = cell.getType();
+
+    if (type == CellType.NUMBER || type == CellType.NUMBER_FORMULA)
+    {
+      if (formatted && formattingRecords.isDate(xf))
+      {
+        type = type == CellType.NUMBER ? CellType.DATE : CellType.DATE_FORMULA;
+      }
+      eventHandler.cell(row, col, type, ((NumberCell) cell).getValue(), xf);
+    }
+    else if (type == CellType.BOOLEAN || type == CellType.BOOLEAN_FORMULA)
+    {
+      eventHandler.cell(row, col, type, ((BooleanCell) cell).getValue(), xf);
+    }
+    else
+    {
+      eventHandler.cell(row, col, type, cell.getContents(), xf);
+    }
+  }
+
+  /**
+   * Creates the store for the cells of the sheet, once the dimensions
+   * are known
+   *
+   * @return the cell store
+   */
+  private CellStore createCellStore()
+  {
+    if (workbookSettings.getColumnarCellStorage())
+    {
+      return new ColumnarCellStore(numRows, numCols, formattingRecords,
+                                   sharedStrings, nineteenFour, sheet,
+                                   formatted);
+    }
+
+    return CellStore.create(numRows, numCols);
+  }
+
+  /**
+   * Determines whether a number with the specified xf index is read in as
+   * a date.  The columnar cell store and the event handler work out which
+   * numbers are dates themselves, so there is no need to create date
+   * cells for them.  Numbers are never dates if the cell formats are
+   * not part of the read projection
+   *
+   * @param xfIndex the xf index of the number
+   * @return TRUE if a date cell should be created, FALSE otherwise
+   */
+  private boolean isDate(int xfIndex)
+  {
+    if (!formatted)
+    {
+      return false;
+    }
+
+    if ((workbookSettings.getColumnarCellStorage() || eventHandler != null) &&
+        !windowed)
+    {
+      return false;
+    }
+
+    return formattingRecords.isDate(xfIndex);
+  }
+
+  /**
+   * Reads in a cell record and adds the cells it contains to the sheet
+   *
+   * @param r the record
+   * @param type the record type
+   * @return TRUE if the record was a cell record, FALSE otherwise
+   */
+  private boolean readCellRecord(Record r, Type type)
+  {
+    if (type == Type.LABELSST)
+    {
+      LabelSSTRecord label = new LabelSSTRecord(r,
+                                                sharedStrings,
+                                                formattingRecords,
+                                                sheet);
+      addCell(label);
+    }
+    else if (type == Type.RK || type == Type.RK2)
+    {
+      RKRecord rkr = new RKRecord(r, formattingRecords, sheet, formatted);
+
+      if (isDate(rkr.getXFIndex()))
+      {
+        DateCell dc = new DateRecord
+          (rkr, rkr.getXFIndex(), formattingRecords, nineteenFour, sheet);
+        addCell(dc);
+      }
+      else
+      {
+        addCell(rkr);
+      }
+    }
+    else if (type == Type.MULRK)
+    {
+      MulRKRecord mulrk = new MulRKRecord(r);
+
+      // Get the individual cell records from the multiple record
+      int num = mulrk.getNumberOfColumns();
+      int ixf = 0;
+      for (int i = 0; i < num; i++)
+      {
+        ixf = mulrk.getXFIndex(i);
+
+        NumberValue nv = new NumberValue
+          (mulrk.getRow(),
+           mulrk.getFirstColumn() + i,
+           RKHelper.getDouble(mulrk.getRKNumber(i)),
+           ixf,
+           formattingRecords,
+           sheet);
+
+
+        if (isDate(ixf))
+        {
+          DateCell dc = new DateRecord(nv,
+                                       ixf,
+                                       formattingRecords,
+                                       nineteenFour,
+                                       sheet);
+          addCell(dc);
+        }
+        else
+        {
+          if (formatted)
+          {
+            nv.setNumberFormat(formattingRecords.getNumberFormat(ixf),
+                               formattingRecords.getExcelNumberFormat(ixf));
+          }
+          addCell(nv);
+        }
+      }
+    }
+    else if (type == Type.NUMBER)
+    {
+      NumberRecord nr = new NumberRecord(r, formattingRecords, sheet,
+                                         formatted);
+
+      if (isDate(nr.getXFIndex()))
+      {
+        DateCell dc = new DateRecord(nr,
+                                     nr.getXFIndex(),
+                                     formattingRecords,
+                                     nineteenFour, sheet);
+        addCell(dc);
+      }
+      else
+      {
+        addCell(nr);
+      }
+    }
+    else if (type == Type.BOOLERR)
+    {
+      BooleanRecord br = new BooleanRecord(r, formattingRecords, sheet);
+
+      if (br.isError())
+      {
+        ErrorRecord er = new ErrorRecord(br.getRecord(), formattingRecords,
+                                         sheet);
+        addCell(er);
+      }
+      else
+      {
+        addCell(br);
+      }
+    }
+    else if (type == Type.SHAREDFORMULA && eventHandler != null)
+    {
+      // SHRFMLA records are ignored in event mode, as the values of the
+      // shared formulas are passed on from their FORMULA records
+    }
+    else if (type == Type.SHAREDFORMULA)
+    {
+      boolean borrowed = sharedFormula == null;
+      if (borrowed)
+      {
+        logger.warn("Shared template formula is null - " +
+                    "trying most recent formula template");
+        SharedFormulaRecord lastSharedFormula =
+          (SharedFormulaRecord) sharedFormulas.get(sharedFormulas.size() - 1);
+
+        if (lastSharedFormula != null)
+        {
+          sharedFormula = lastSharedFormula.getTemplateFormula();
+        }
+      }
+
+      SharedFormulaRecord sfr = new SharedFormulaRecord
+        (r, sharedFormula, workbook, workbook, sheet);
+      sharedFormulas.add(sfr);
+      sharedFormulaGroups.put(new Integer(getGroupKey(sfr.getFirstRow(),
+                                                      sfr.getFirstColumn())),
+                              sfr);
+
+      // Add the template now, unless it has been borrowed from the previous
+      // group, in which case it is already in the sheet
+      Cell template = sfr.getTemplate(formattingRecords, nineteenFour);
+      if (template != null && !borrowed)
+      {
+        addCell(template);
+      }
+      sharedFormula = null;
+    }
+    else if (type == Type.FORMULA || type == Type.FORMULA2)
+    {
+      FormulaRecord fr = new FormulaRecord(r,
+                                           excelFile,
+                                           formattingRecords,
+                                           workbook,
+                                           workbook,
+                                           sheet,
+                                           workbookSettings);
+
+      if (fr.isShared() && eventHandler != null)
+      {
+        // Only the value is passed on to the event handler, so there is no
+        // need to find the shared formula record which holds the formula
+        addCell(fr.getFormula());
+      }
+      else if (fr.isShared())
+      {
+        BaseSharedFormulaRecord prevSharedFormula = sharedFormula;
+        sharedFormula = (BaseSharedFormulaRecord) fr.getFormula();
+
+        // See if it fits in any of the shared formulas
+        sharedFormulaAdded = addToSharedFormulas(sharedFormula);
+
+        if (sharedFormulaAdded)
+        {
+          sharedFormula = prevSharedFormula;
+        }
+
+        // If we still haven't added the previous base shared formula,
+        // revert it to an ordinary formula and add it to the cell
+        if (!sharedFormulaAdded && prevSharedFormula != null)
+        {
+          // Do nothing.  It's possible for the biff file to contain the
+          // record sequence
+          // FORMULA-SHRFMLA-FORMULA-SHRFMLA-FORMULA-FORMULA-FORMULA
+          // ie. it first lists all the formula templates, then it
+          // lists all the individual formulas
+          addRevertedSharedFormula(prevSharedFormula);
+        }
+      }
+      else
+      {
+        Cell cell = fr.getFormula();
+        try
+        {
+          // See if the formula evaluates to date
+          if (fr.getFormula().getType() == CellType.NUMBER_FORMULA)
+          {
+            NumberFormulaRecord nfr = (NumberFormulaRecord) fr.getFormula();
+            if (eventHandler == null && formatted &&
+                formattingRecords.isDate(nfr.getXFIndex()))
+            {
+              cell = new DateFormulaRecord(nfr,
+                                           formattingRecords,
+                                           workbook,
+                                           workbook,
+                                           nineteenFour,
+                                           sheet);
+            }
+          }
+
+          addCell(cell);
+        }
+        catch (FormulaException e)
+        {
+          // Something has gone wrong trying to read the formula data eg. it
+          // might be unsupported biff7 data
+          logger.warn
+            (CellReferenceHelper.getCellReference
+             (cell.getColumn(), cell.getRow()) + " " + e.getMessage());
+        }
+      }
+    }
+    else if (type == Type.LABEL)
+    {
+      LabelRecord lr = null;
+
+      if (workbookBof.isBiff8())
+      {
+        lr = new LabelRecord(r, formattingRecords, sheet, workbookSettings);
+      }
+      else
+      {
+        lr = new LabelRecord(r, formattingRecords, sheet, workbookSettings,
+                             LabelRecord.biff7);
+      }
+      addCell(lr);
+    }
+    else if (type == Type.RSTRING)
+    {
+      RStringRecord lr = null;
+
+      // RString records are obsolete in biff 8
+      Assert.verify(!workbookBof.isBiff8());
+      lr = new RStringRecord(r, formattingRecords,
+                             sheet, workbookSettings,
+                             RStringRecord.biff7);
+      addCell(lr);
+    }
+    else if (type == Type.BLANK)
+    {
+      if (!workbookSettings.getIgnoreBlanks())
+      {
+        BlankCell bc = new BlankCell(r, formattingRecords, sheet);
+        addCell(bc);
+      }
+    }
+    else if (type == Type.MULBLANK)
+    {
+      if (!workbookSettings.getIgnoreBlanks())
+      {
+        MulBlankRecord mulblank = new MulBlankRecord(r);
+
+        // Get the individual cell records from the multiple record
+        int num = mulblank.getNumberOfColumns();
+
+        for (int i = 0; i < num; i++)
+        {
+          int ixf = mulblank.getXFIndex(i);
+
+          MulBlankCell mbc = new MulBlankCell
+            (mulblank.getRow(),
+             mulblank.getFirstColumn() + i,
+             ixf,
+             formattingRecords,
+             sheet);
+
+          addCell(mbc);
+        }
+      }
+    }
+    else
+    {
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Reads in a row record, and keeps hold of it if the row has any
+   * non-default properties
+   *
+   * @param r the record
+   */
+  private void readRowRecord(Record r)
+  {
+    RowRecord rr = new RowRecord(r);
+
+    // See if the row has anything funny about it
+    if (!rr.isDefaultHeight() ||
+        !rr.matchesDefaultFontHeight() ||
+        rr.isCollapsed() ||
+        rr.hasDefaultFormat() ||
+        rr.getOutlineLevel() != 0)
+    {
+      rowProperties.add(rr);
+    }
+  }
+
+  /**
+   * Determines whether records of the specified type are entirely decoded
+   * by the constructor of the cell, and so can be read from a reused record
+   *
+   * @param type the record type
+   * @return TRUE if the cell does not hold on to the record
+   */
+  private static boolean isDecodedImmediately(Type type)
+  {
+    return type == Type.NUMBER || type == Type.RK || type == Type.RK2 ||
+      type == Type.LABELSST || type == Type.MULRK;
+  }
+
+  /**
+   * Reads in the cells on the rows from firstRow up to, but not including,
+   * lastRow.  Only the row blocks which contain these rows (and the blocks
+   * holding the groups of any shared formulas on them) are decoded, so
+   * none of the other sheet records such as merged cells, comments or
+   * drawings are read.  The rows in the returned array are NULL if
+   * they contain no cells, or MAX_COLUMNS long otherwise
+   *
+   * @param firstRow the first row to read
+   * @param lastRow the row after the last row to read
+   * @param index the row block index for this sheet
+   * @return the cells, indexed on the row relative to firstRow
+   */
+  final Cell[][] readRows(int firstRow, int lastRow, RowBlockIndex index)
+  {
+    int pos = excelFile.getPos();
+
+    windowed = true;
+    firstWindowRow = firstRow;
+    numRows = lastRow - firstRow;
+    numCols = MAX_COLUMNS;
+
+    boolean[] decode = new boolean[index.getNumberOfBlocks()];
+    int lastBlock = index.getBlock(lastRow - 1);
+    for (int b = Math.max(index.getBlock(firstRow), 0); b <= lastBlock; b++)
+    {
+      decode[b] = true;
+    }
+
+    // A shared formula in the window may belong to a group defined in an
+    // earlier block, in which case decode that block as well and try again
+    boolean retry = true;
+    while (retry)
+    {
+      readBlocks(index, decode);
+
+      retry = false;
+      Iterator i = unresolvedSharedFormulas.iterator();
+      while (i.hasNext())
+      {
+        BaseSharedFormulaRecord f = (BaseSharedFormulaRecord) i.next();
+        int block = index.getBlock(getGroupRow(f));
+        if (block >= 0 && !decode[block])
+        {
+          decode[block] = true;
+          retry = true;
+        }
+      }
+    }
+
+    // Revert any shared formulas which still don't have a group
+    Iterator i = unresolvedSharedFormulas.iterator();
+    while (i.hasNext())
+    {
+      Cell cell = revertSharedFormula((BaseSharedFormulaRecord) i.next());
+      if (cell != null)
+      {
+        addCell(cell);
+      }
+    }
+
+    excelFile.setPos(pos);
+
+    return windowCells;
+  }
+
+  /**
+   * Decodes the cell records in the specified row blocks
+   *
+   * @param index the row block index
+   * @param decode flags indicating which blocks to decode
+   */
+  private void readBlocks(RowBlockIndex index, boolean[] decode)
+  {
+    windowCells = new Cell[numRows][];
+    sharedFormulas = new ArrayList();
+    sharedFormulaGroups = new HashMap();
+    unresolvedSharedFormulas = new ArrayList();
+    sharedFormula = null;
+    sharedFormulaAdded = false;
+
+    for (int b = 0; b < decode.length; b++)
+    {
+      if (decode[b])
+      {
+        readBlock(index, b);
+      }
+    }
+
+    if (!sharedFormulaAdded && sharedFormula != null)
+    {
+      unresolvedSharedFormulas.add(sharedFormula);
+    }
+  }
+
+  /**
+   * Decodes the cell and row records in a single row block.  The row
+   * records are ignored when reading a window
+   *
+   * @param index the row block index
+   * @param block the block to decode
+   */
+  private void readBlock(RowBlockIndex index, int block)
+  {
+    Record cursor = null;
+    excelFile.setPos(index.getStartPosition(block));
+
+    while (excelFile.getPos() < index.getEndPosition(block))
+    {
+      cursor = excelFile.next(cursor);
+      Type type = cursor.getType();
+
+      if (isDecodedImmediately(type))
+      {
+        readCellRecord(cursor, type);
+      }
+      else if (type == Type.ROW)
+      {
+        if (!windowed && isProjected(type))
+        {
+          readRowRecord(cursor.copy());
+        }
+      }
+      else
+      {
+        readCellRecord(cursor.copy(), type);
+      }
+    }
+  }
+
+  /**
+   * Decodes all the row blocks on the workbook's fork join pool, and adds
+   * the cells to this sheet in the order of the blocks.  The blocks are
+   * divided into a few ranges for each thread, and each range is decoded
+   * by its own reader with its own position in the file.  Shared
+   * formulas whose group lies in an earlier range are matched up once all
+   * the ranges have been decoded, and any still without a group are
+   * reverted to ordinary formulas
+   *
+   * @param index the row block index
+   */
+  private void readBlocksInParallel(RowBlockIndex index)
+  {
+    int numBlocks = index.getNumberOfBlocks();
+    int numRanges =
+      Math.min(numBlocks, workbookSettings.getBlockDecodingParallelism() * 4);
+
+    SheetReader[] readers = new SheetReader[numRanges];
+    int[] bounds = new int[numRanges + 1];
+    for (int i = 0; i < numRanges; i++)
+    {
+      readers[i] = new SheetReader(excelFile.duplicate(),
+                                   sharedStrings,
+                                   formattingRecords,
+                                   sheetBof,
+                                   workbookBof,
+                                   nineteenFour,
+                                   workbook,
+                                   startPosition,
+                                   sheet);
+      bounds[i + 1] = (int) ((long) numBlocks * (i + 1) / numRanges);
+    }
+
+    workbook.getBlockDecodingPool().invoke
+      (new RowBlockDecoder(readers, index, bounds, 0, numRanges));
+
+    for (int i = 0; i < numRanges; i++)
+    {
+      SheetReader reader = readers[i];
+      rowProperties.addAll(reader.rowProperties);
+      sharedFormulas.addAll(reader.sharedFormulas);
+      sharedFormulaGroups.putAll(reader.sharedFormulaGroups);
+
+      for (Iterator c = reader.blockCells.iterator(); c.hasNext();)
+      {
+        addCell((Cell) c.next());
+      }
+    }
+
+    for (int i = 0; i < numRanges; i++)
+    {
+      Iterator f = readers[i].unresolvedSharedFormulas.iterator();
+      while (f.hasNext())
+      {
+        BaseSharedFormulaRecord sf = (BaseSharedFormulaRecord) f.next();
+        if (!addToSharedFormulas(sf))
+        {
+          Cell cell = revertSharedFormula(sf);
+          if (cell != null)
+          {
+            addCell(cell);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Decodes a range of row blocks on behalf of another reader, which
+   * collects the cells, row properties and shared formulas once all the
+   * ranges have been decoded
+   *
+   * @param index the row block index
+   * @param firstBlock the first block to decode
+   * @param lastBlock the block after the last block to decode
+   */
+  final void readBlockRange(RowBlockIndex index, int firstBlock, int lastBlock)
+  {
+    blockCells = new ArrayList();
+    unresolvedSharedFormulas = new ArrayList();
+
+    for (int b = firstBlock; b < lastBlock; b++)
+    {
+      readBlock(index, b);
+    }
+
+    if (!sharedFormulaAdded && sharedFormula != null)
+    {
+      unresolvedSharedFormulas.add(sharedFormula);
+    }
+  }
+
+  /**
+   * Gets the row of the cell which holds the group of the shared formula.
+   * The formula consists of a single token referring to this cell
+   *
+   * @param f the shared formula
+   * @return the row, or -1 if the token is not present
+   */
+  private static int getGroupRow(BaseSharedFormulaRecord f)
+  {
+    byte[] data = f.getRecord().getData();
+
+    // The tokens follow the 22 bytes of cell, value and option data
+    if (data.length < 25 || data[22] != 0x1)
+    {
+      return -1;
+    }
+
+    return IntegerHelper.getInt(data[23], data[24]);
+  }
+
+  /**
+   * Gets the key of the shared formula group which the formula refers to.
+   * The formula consists of a single token referring to the cell which
+   * holds the template of the group
+   *
+   * @param f the shared formula
+   * @return the key, or -1 if the token is not present
+   */
+  private static int getGroupKey(BaseSharedFormulaRecord f)
+  {
+    byte[] data = f.getRecord().getData();
+
+    // The tokens follow the 22 bytes of cell, value and option data
+    if (data.length < 27 || data[22] != 0x1)
+    {
+      return -1;
+    }
+
+    return getGroupKey(IntegerHelper.getInt(data[23], data[24]),
+                       IntegerHelper.getInt(data[25], data[26]));
+  }
+
+  /**
+   * Gets the key of the shared formula group whose template is in the
+   * specified cell
+   *
+   * @param row the row of the template
+   * @param col the column of the template
+   * @return the key
+   */
+  private static int getGroupKey(int row, int col)
+  {
+    return (row << 8) | (col & 0xff);
+  }
+
+  /**
+   * Reverts the shared formula to an ordinary formula and adds it to the
+   * sheet.  When reading a window or a range of row blocks, the group for
+   * the formula may simply be in a block which has not been decoded by this
+   * reader, so it is held back until all the blocks have been read
+   *
+   * @param f the formula
+   */
+  private void addRevertedSharedFormula(BaseSharedFormulaRecord f)
+  {
+    if (unresolvedSharedFormulas != null)
+    {
+      unresolvedSharedFormulas.add(f);
+    }
+    else
+    {
+      addCell(revertSharedFormula(f));
+    }
+  }
+
+  /**
+   * Sees if the shared formula belongs to any of the shared formula
+   * groups, and if so gives it the tokens of the group and adds it to
+   * the sheet.  The group is looked up from the template cell which the
+   * formula refers to, and only formulas without such a reference are
+   * checked against every group
+   *
+   * @param fr the candidate shared formula
+   * @return TRUE if the formula was added, FALSE otherwise
+   */
+  private boolean addToSharedFormulas(BaseSharedFormulaRecord fr)
+  {
+    SharedFormulaRecord sfr = null;
+    int key = getGroupKey(fr);
+
+    if (key != -1)
+    {
+      sfr = (SharedFormulaRecord) sharedFormulaGroups.get(new Integer(key));
+      if (sfr != null && !sfr.contains(fr))
+      {
+        sfr = null;
+      }
+    }
+    else
+    {
+      for (int i = 0, size = sharedFormulas.size(); i < size && sfr == null;
+           ++i)
+      {
+        sfr = (SharedFormulaRecord) sharedFormulas.get(i);
+        if (!sfr.contains(fr))
+        {
+          sfr = null;
+        }
+      }
+    }
+
+    if (sfr == null)
+    {
+      return false;
+    }
+
+    Cell cell = sfr.getFormula(fr, formattingRecords, nineteenFour);
+    if (cell != null)
+    {
+      addCell(cell);
+    }
+
+    return true;
+  }
+
+  /**
+   * Reverts the shared formula passed in to an ordinary formula and adds
+   * it to the list
+   *
+   * @param f the formula
+   * @return the new formula
+   * @exception FormulaException
+   */
+  private Cell revertSharedFormula(BaseSharedFormulaRecord f)
+  {
+    // String formulas look for a STRING record soon after the formula
+    // occurred.  Temporarily the position in the excel file back
+    // to the point immediately after the formula record
+    int pos = excelFile.getPos();
+    excelFile.setPos(f.getFilePos());
+
+    FormulaRecord fr = new FormulaRecord(f.getRecord(),
+                                         excelFile,
+                                         formattingRecords,
+                                         workbook,
+                                         workbook,
+                                         FormulaRecord.ignoreSharedFormula,
+                                         sheet,
+                                         workbookSettings);
+
+    try
+    {
+    Cell cell = fr.getFormula();
+
+    // See if the formula evaluates to date
+    if (fr.getFormula().getType() == CellType.NUMBER_FORMULA)
+    {
+      NumberFormulaRecord nfr = (NumberFormulaRecord) fr.getFormula();
+      if (formattingRecords.isDate(fr.getXFIndex()))
+      {
+        cell = new DateFormulaRecord(nfr,
+                                     formattingRecords,
                                      workbook,
                                      workbook,
                                      nineteenFour,
@@ -1328,7 +2055,7 @@ final class SheetReader
    *
    * @return the cells
    */
-  final Cell[][] getCells()
+  final CellStore getCells()
   {
     return cells;
   }
@@ -1498,7 +2225,13 @@ final class SheetReader
                               double width,
                               double height)
   {
-    Cell c = cells[row][col];
+    // Cell features are not passed on to event handlers
+    if (eventHandler != null)
+    {
+      return;
+    }
+
+    Cell c = row < numRows && col < numCols ? cells.get(row, col) : null;
     if (c == null)
     {
       logger.warn("Cell at " + CellReferenceHelper.getCellReference(col, row) +
@@ -1528,6 +2261,9 @@ final class SheetReader
       }
 
       cf.setReadComment(text, width ,height);
+
+      // Store the cell again, in case the store only held its value
+      cells.set(row, col, c);
     }
     else
     {
@@ -1552,15 +2288,21 @@ final class SheetReader
                                  int row2,
                                  DataValiditySettingsRecord dvsr)
   {
+    // Cell features are not passed on to event handlers
+    if (eventHandler != null)
+    {
+      return;
+    }
+
     for (int row = row1; row <= row2; row++)
     {
       for (int col = col1; col <= col2; col++)
       {
         Cell c = null;
 
-        if (cells.length > row && cells[row].length > col)
+        if (row < numRows && col < numCols)
         {
-          c = cells[row][col];
+          c = cells.get(row, col);
         }
 
         if (c == null)
@@ -1587,6 +2329,9 @@ final class SheetReader
           }
 
           cf.setValidationSettings(dvsr);
+
+          // Store the cell again, in case the store only held its value
+          cells.set(row, col, c);
         }
         else
         {
@@ -1890,31 +2635,7 @@ final class SheetReader
     // on entire rows or columns - in which case it would blow out any
     // existing dimensions
 
-    // Resize the columns, if necessary
-    if (resizedCols > numCols)
-    {
-      for (int r = 0 ; r < numRows ; r++)
-      {
-        Cell[] newRow = new Cell[resizedCols];
-        Cell[] oldRow = cells[r];
-        System.arraycopy(oldRow, 0, newRow, 0, oldRow.length);
-        cells[r] = newRow;
-      }
-    }
-
-    // Resize the rows, if necessary
-    if (resizedRows > numRows)
-    {
-      Cell[][] newCells = new Cell[resizedRows][];
-      System.arraycopy(cells, 0, newCells, 0, cells.length);
-      cells = newCells;
-
-      // Create the new rows
-      for (int i = numRows; i < resizedRows; i++)
-      {
-        newCells[i] = new Cell[resizedCols];
-      }
-    }
+    cells.resize(resizedRows, resizedCols);
 
     numRows = resizedRows;
     numCols = resizedCols;
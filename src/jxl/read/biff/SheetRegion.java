@@ -0,0 +1,73 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+package jxl.read.biff;
+
+import jxl.Cell;
+import jxl.biff.AbstractCellRegion;
+
+/**
+ * A region of a sheet which has been read in.  The cells are read from
+ * the sheet's cell store, so no arrays of cells are created
+ */
+final class SheetRegion extends AbstractCellRegion
+{
+  /**
+   * The sheet
+   */
+  private SheetImpl sheet;
+
+  /**
+   * Constructor
+   *
+   * @param s the sheet
+   * @param c the first column
+   * @param r the first row
+   * @param nc the number of columns
+   * @param nr the number of rows
+   */
+  SheetRegion(SheetImpl s, int c, int r, int nc, int nr)
+  {
+    super(c, r, nc, nr);
+    sheet = s;
+  }
+
+  /**
+   * Gets the cell which the sheet holds at the specified position
+   *
+   * @param column the column
+   * @param row the row
+   * @return the cell, or NULL if the sheet holds nothing there
+   */
+  protected Cell getStoredCell(int column, int row)
+  {
+    return sheet.getStoredCell(column, row);
+  }
+
+  /**
+   * Gets the column after the last cell on the specified row
+   *
+   * @param row the row
+   * @return the column after the last cell on the row
+   */
+  protected int getColumnLimit(int row)
+  {
+    return sheet.getLastStoredColumn(row) + 1;
+  }
+}
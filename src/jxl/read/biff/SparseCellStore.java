@@ -0,0 +1,296 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+package jxl.read.biff;
+
+import jxl.Cell;
+
+/**
+ * A cell store which only holds the locations which contain cells.  Each
+ * row has a compact array of the columns which contain cells, in ascending
+ * order, together with the cells themselves.  As cells are mostly read in
+ * column order, they are nearly always appended to the end of the row
+ */
+final class SparseCellStore extends CellStore
+{
+  /**
+   * The columns of the cells on each row, or NULL for empty rows
+   */
+  private int[][] cellColumns;
+
+  /**
+   * The cells on each row, or NULL for empty rows
+   */
+  private Cell[][] cells;
+
+  /**
+   * The number of cells on each row
+   */
+  private int[] rowSizes;
+
+  /**
+   * The initial capacity of a row
+   */
+  private static final int INITIAL_ROW_SIZE = 4;
+
+  /**
+   * Constructor
+   *
+   * @param r the number of rows
+   * @param c the number of columns
+   */
+  SparseCellStore(int r, int c)
+  {
+    super(r, c);
+    cellColumns = new int[r][];
+    cells = new Cell[r][];
+    rowSizes = new int[r];
+  }
+
+  /**
+   * Finds the position of the column on the row
+   *
+   * @param row the row
+   * @param col the column
+   * @return the index of the column, or (-(insertion point) - 1) if the row
+   *         has no cell in that column
+   */
+  private int find(int row, int col)
+  {
+    int[] cols = cellColumns[row];
+    int low = 0;
+    int high = rowSizes[row] - 1;
+
+    while (low <= high)
+    {
+      int mid = (low + high) >>> 1;
+      if (cols[mid] < col)
+      {
+        low = mid + 1;
+      }
+      else if (cols[mid] > col)
+      {
+        high = mid - 1;
+      }
+      else
+      {
+        return mid;
+      }
+    }
+
+    return -(low + 1);
+  }
+
+  /**
+   * Gets the cell at the specified location
+   *
+   * @param row the row
+   * @param col the column
+   * @return the cell, or NULL if there is no cell at this location
+   * @exception ArrayIndexOutOfBoundsException if the location is outside
+   *            the dimensions of the store
+   */
+  Cell get(int row, int col)
+  {
+    if (col < 0 || col >= columns)
+    {
+      throw new ArrayIndexOutOfBoundsException(col);
+    }
+
+    if (rowSizes[row] == 0)
+    {
+      return null;
+    }
+
+    int pos = find(row, col);
+    return pos >= 0 ? cells[row][pos] : null;
+  }
+
+  /**
+   * Sets the cell at the specified location
+   *
+   * @param row the row
+   * @param col the column
+   * @param cell the cell
+   */
+  void set(int row, int col, Cell cell)
+  {
+    int size = rowSizes[row];
+
+    if (size == 0)
+    {
+      if (cells[row] == null)
+      {
+        cellColumns[row] = new int[INITIAL_ROW_SIZE];
+        cells[row] = new Cell[INITIAL_ROW_SIZE];
+      }
+      insert(row, 0, col, cell);
+      return;
+    }
+
+    // Append to the end of the row in the usual case
+    if (cellColumns[row][size - 1] < col)
+    {
+      insert(row, size, col, cell);
+      return;
+    }
+
+    int pos = find(row, col);
+    if (pos >= 0)
+    {
+      cells[row][pos] = cell;
+    }
+    else
+    {
+      insert(row, -pos - 1, col, cell);
+    }
+  }
+
+  /**
+   * Inserts a cell into the row at the specified position, growing the row
+   * if necessary
+   *
+   * @param row the row
+   * @param pos the position within the row
+   * @param col the column
+   * @param cell the cell
+   */
+  private void insert(int row, int pos, int col, Cell cell)
+  {
+    int size = rowSizes[row];
+    int[] cols = cellColumns[row];
+    Cell[] rowCells = cells[row];
+
+    if (size == cols.length)
+    {
+      int newSize = Math.min(Math.max(size * 2, INITIAL_ROW_SIZE), columns);
+      int[] newCols = new int[newSize];
+      Cell[] newCells = new Cell[newSize];
+      System.arraycopy(cols, 0, newCols, 0, size);
+      System.arraycopy(rowCells, 0, newCells, 0, size);
+      cellColumns[row] = cols = newCols;
+      cells[row] = rowCells = newCells;
+    }
+
+    System.arraycopy(cols, pos, cols, pos + 1, size - pos);
+    System.arraycopy(rowCells, pos, rowCells, pos + 1, size - pos);
+    cols[pos] = col;
+    rowCells[pos] = cell;
+    rowSizes[row] = size + 1;
+    cellCount++;
+  }
+
+  /**
+   * Gets the column of the last cell on the specified row
+   *
+   * @param row the row
+   * @return the column, or -1 if the row has no cells
+   */
+  int getLastColumn(int row)
+  {
+    int size = rowSizes[row];
+    return size == 0 ? -1 : cellColumns[row][size - 1];
+  }
+
+  /**
+   * Gets the row of the last cell in the specified column
+   *
+   * @param col the column
+   * @return the row, or -1 if the column has no cells
+   */
+  int getLastRow(int col)
+  {
+    int row = rows - 1;
+    while (row >= 0 && (rowSizes[row] == 0 || find(row, col) < 0))
+    {
+      row--;
+    }
+    return row;
+  }
+
+  /**
+   * Enlarges the store to the specified dimensions
+   *
+   * @param r the new number of rows
+   * @param c the new number of columns
+   */
+  void resize(int r, int c)
+  {
+    columns = Math.max(columns, c);
+
+    if (r > rows)
+    {
+      int[][] newColumns = new int[r][];
+      Cell[][] newCells = new Cell[r][];
+      int[] newSizes = new int[r];
+      System.arraycopy(cellColumns, 0, newColumns, 0, rows);
+      System.arraycopy(cells, 0, newCells, 0, rows);
+      System.arraycopy(rowSizes, 0, newSizes, 0, rows);
+      cellColumns = newColumns;
+      cells = newCells;
+      rowSizes = newSizes;
+      rows = r;
+    }
+  }
+
+  /**
+   * Gets an estimate of the number of bytes used by the store and the
+   * cell objects it holds
+   *
+   * @return the estimated size
+   */
+  long getEstimatedSize()
+  {
+    long size = 3 * ARRAY_SIZE + rows * 12L;
+    for (int r = 0; r < rows; r++)
+    {
+      if (cells[r] != null)
+      {
+        size += 2 * ARRAY_SIZE + cells[r].length * 8L;
+      }
+    }
+
+    return size + (long) cellCount * CELL_SIZE;
+  }
+
+  /**
+   * Once all the cells have been added, switches to a dense store if the
+   * sheet turned out to be mostly full, as that is then smaller
+   *
+   * @return the store to use from now on
+   */
+  CellStore optimize()
+  {
+    if ((long) cellCount * 2 < (long) rows * columns)
+    {
+      return this;
+    }
+
+    DenseCellStore dense = new DenseCellStore(rows, columns);
+    for (int r = 0; r < rows; r++)
+    {
+      for (int i = 0; i < rowSizes[r]; i++)
+      {
+        dense.set(r, cellColumns[r][i], cells[r][i]);
+      }
+    }
+
+    return dense;
+  }
+}
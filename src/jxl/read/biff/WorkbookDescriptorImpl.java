@@ -0,0 +1,628 @@
+/*********************************************************************
+*
+*      Copyright (C) 2002 Andrew Khan
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+***************************************************************************/
+
+package jxl.read.biff;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+
+import jxl.common.Logger;
+
+import jxl.WorkbookDescriptor;
+import jxl.WorkbookSettings;
+import jxl.biff.BaseCompoundFile;
+import jxl.biff.CellReferenceHelper;
+import jxl.biff.StringHelper;
+import jxl.biff.Type;
+
+/**
+ * Reads the descriptive information about a workbook.  Only the workbook
+ * globals are read, along with the dimension record of each sheet, which
+ * is found using the offset in the sheet's boundsheet record.  None of
+ * the shared strings, formatting records, drawings or cells are read
+ */
+public class WorkbookDescriptorImpl implements WorkbookDescriptor
+{
+  /**
+   * The logger
+   */
+  private static Logger logger =
+    Logger.getLogger(WorkbookDescriptorImpl.class);
+
+  /**
+   * The excel file
+   */
+  private File excelFile;
+
+  /**
+   * The workbook settings
+   */
+  private WorkbookSettings settings;
+
+  /**
+   * The workbook globals bof
+   */
+  private BOFRecord workbookBof;
+
+  /**
+   * The boundsheet records, one for each sheet
+   */
+  private ArrayList boundsheets;
+
+  /**
+   * The number of rows in each sheet
+   */
+  private int[] rows;
+
+  /**
+   * The number of columns in each sheet
+   */
+  private int[] columns;
+
+  /**
+   * The global names, keyed on the name
+   */
+  private HashMap namedRecords;
+
+  /**
+   * The list of names, in the order in which they appear in the globals
+   */
+  private ArrayList rangeNames;
+
+  /**
+   * The external sheet record
+   */
+  private ExternalSheetRecord externSheet;
+
+  /**
+   * The summary information
+   */
+  private PropertySet summaryInformation;
+
+  /**
+   * The document summary information
+   */
+  private PropertySet documentSummaryInformation;
+
+  /**
+   * Constructor
+   *
+   * @param f the excel file
+   * @param ws the workbook settings
+   */
+  public WorkbookDescriptorImpl(File f, WorkbookSettings ws)
+  {
+    excelFile = f;
+    settings = ws;
+    boundsheets = new ArrayList();
+    namedRecords = new HashMap();
+    rangeNames = new ArrayList();
+  }
+
+  /**
+   * Reads the descriptive information, and then releases the excel file
+   *
+   * @exception BiffException
+   * @exception PasswordException if the workbook is password protected
+   */
+  public void read() throws BiffException, PasswordException
+  {
+    try
+    {
+      readGlobals();
+      readDimensions();
+      readSummaryInformation();
+    }
+    finally
+    {
+      // Nothing is copied from the file afterwards, so release all of it
+      excelFile.disablePropertySetCopying();
+      excelFile.clear();
+      excelFile = null;
+    }
+  }
+
+  /**
+   * Reads the boundsheet, name and external sheet records from the
+   * workbook globals
+   *
+   * @exception BiffException
+   * @exception PasswordException if the workbook is password protected
+   */
+  private void readGlobals() throws BiffException, PasswordException
+  {
+    workbookBof = new BOFRecord(excelFile.next());
+
+    if (!workbookBof.isBiff8() && !workbookBof.isBiff7())
+    {
+      throw new BiffException(BiffException.unrecognizedBiffVersion);
+    }
+
+    if (!workbookBof.isWorkbookGlobals())
+    {
+      throw new BiffException(BiffException.expectedGlobals);
+    }
+
+    int nameIndex = 0;
+    Record cursor = null;
+    boolean eof = false;
+
+    while (!eof && excelFile.hasNext())
+    {
+      cursor = excelFile.next(cursor);
+      Type type = cursor.getType();
+
+      if (type == Type.FILEPASS)
+      {
+        throw new PasswordException();
+      }
+      else if (type == Type.CODEPAGE)
+      {
+        CodepageRecord cr = new CodepageRecord(cursor.copy());
+        settings.setCharacterSet(cr.getCharacterSet());
+      }
+      else if (type == Type.BOUNDSHEET)
+      {
+        BoundsheetRecord br = null;
+
+        if (workbookBof.isBiff8())
+        {
+          br = new BoundsheetRecord(cursor.copy(), settings);
+        }
+        else
+        {
+          br = new BoundsheetRecord(cursor.copy(), BoundsheetRecord.biff7);
+        }
+
+        // Include the same sheets as a fully parsed workbook
+        if (br.isSheet() ||
+            (br.isChart() && !settings.getDrawingsDisabled()))
+        {
+          boundsheets.add(br);
+        }
+      }
+      else if (type == Type.NAME)
+      {
+        NameRecord nr = null;
+
+        if (workbookBof.isBiff8())
+        {
+          nr = new NameRecord(cursor.copy(), settings, nameIndex);
+        }
+        else
+        {
+          nr = new NameRecord(cursor.copy(), settings, nameIndex,
+                              NameRecord.biff7);
+        }
+        nameIndex++;
+
+        if (nr.isGlobal() && !namedRecords.containsKey(nr.getName()))
+        {
+          namedRecords.put(nr.getName(), nr);
+          rangeNames.add(nr.getName());
+        }
+      }
+      else if (type == Type.EXTERNSHEET)
+      {
+        if (workbookBof.isBiff8())
+        {
+          externSheet = new ExternalSheetRecord(cursor.copy(), settings);
+        }
+        else
+        {
+          externSheet = new ExternalSheetRecord(cursor.copy(), settings,
+                                                ExternalSheetRecord.biff7);
+        }
+      }
+      else if (type == Type.EOF)
+      {
+        eof = true;
+      }
+    }
+  }
+
+  /**
+   * Reads the dimension record of each sheet, by going directly to the
+   * sheet's position in the stream
+   */
+  private void readDimensions()
+  {
+    int globalsEnd = excelFile.getPos();
+    rows = new int[boundsheets.size()];
+    columns = new int[boundsheets.size()];
+
+    Record cursor = null;
+
+    for (int i = 0; i < boundsheets.size(); i++)
+    {
+      BoundsheetRecord br = (BoundsheetRecord) boundsheets.get(i);
+      excelFile.setPos(br.getOffset());
+
+      if (br.getOffset() < globalsEnd || !excelFile.hasNext() ||
+          (cursor = excelFile.next(cursor)).getType() != Type.BOF)
+      {
+        logger.warn("Cannot find the start of sheet " + br.getName());
+        continue;
+      }
+
+      // The dimension record precedes the rows and cells
+      boolean done = false;
+      while (!done && excelFile.hasNext())
+      {
+        cursor = excelFile.next(cursor);
+        Type type = cursor.getType();
+
+        if (type == Type.DIMENSION)
+        {
+          DimensionRecord dr = null;
+
+          if (workbookBof.isBiff8())
+          {
+            dr = new DimensionRecord(cursor.copy());
+          }
+          else
+          {
+            dr = new DimensionRecord(cursor.copy(), DimensionRecord.biff7);
+          }
+          rows[i] = dr.getNumberOfRows();
+          columns[i] = dr.getNumberOfColumns();
+          done = true;
+        }
+        else if (type == Type.EOF || type == Type.BOF || type == Type.ROW)
+        {
+          done = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the summary information property sets, if the file has them
+   */
+  private void readSummaryInformation()
+  {
+    String encoding = settings.getEncoding();
+
+    byte[] data = excelFile.getStream
+      (BaseCompoundFile.SUMMARY_INFORMATION_NAME);
+    if (data != null)
+    {
+      summaryInformation = new PropertySet(data, encoding);
+    }
+
+    data = excelFile.getStream
+      (BaseCompoundFile.DOCUMENT_SUMMARY_INFORMATION_NAME);
+    if (data != null)
+    {
+      documentSummaryInformation = new PropertySet(data, encoding);
+    }
+  }
+
+  /**
+   * Gets the number of sheets in the workbook
+   *
+   * @return the number of sheets
+   */
+  public int getNumberOfSheets()
+  {
+    return boundsheets.size();
+  }
+
+  /**
+   * Gets the sheet names
+   *
+   * @return an array of strings containing the sheet names
+   */
+  public String[] getSheetNames()
+  {
+    String[] names = new String[boundsheets.size()];
+    for (int i = 0; i < names.length; i++)
+    {
+      names[i] = ((BoundsheetRecord) boundsheets.get(i)).getName();
+    }
+
+    return names;
+  }
+
+  /**
+   * Determines whether the specified sheet is hidden
+   *
+   * @param index the zero based index of the sheet
+   * @return TRUE if the sheet is hidden, FALSE otherwise
+   */
+  public boolean isHidden(int index)
+  {
+    return ((BoundsheetRecord) boundsheets.get(index)).isHidden();
+  }
+
+  /**
+   * Gets the number of rows in the specified sheet, as recorded in the
+   * sheet's dimension record
+   *
+   * @param index the zero based index of the sheet
+   * @return the number of rows, or zero if the sheet has no dimensions
+   */
+  public int getRows(int index)
+  {
+    return rows[index];
+  }
+
+  /**
+   * Gets the number of columns in the specified sheet, as recorded in the
+   * sheet's dimension record
+   *
+   * @param index the zero based index of the sheet
+   * @return the number of columns, or zero if the sheet has no dimensions
+   */
+  public int getColumns(int index)
+  {
+    return columns[index];
+  }
+
+  /**
+   * Gets the names of the global named ranges
+   *
+   * @return the list of named cells within the workbook
+   */
+  public String[] getRangeNames()
+  {
+    String[] names = new String[rangeNames.size()];
+    return (String[]) rangeNames.toArray(names);
+  }
+
+  /**
+   * Gets the cell references of the ranges with the specified name,
+   * eg. "Sheet1!A1:C10"
+   *
+   * @param name the name of the range
+   * @return the references, or NULL if there is no such name
+   */
+  public String[] getRangeReferences(String name)
+  {
+    NameRecord nr = (NameRecord) namedRecords.get(name);
+
+    if (nr == null)
+    {
+      return null;
+    }
+
+    NameRecord.NameRange[] ranges = nr.getRanges();
+    String[] references = new String[ranges.length];
+
+    for (int i = 0; i < ranges.length; i++)
+    {
+      StringBuffer buf = new StringBuffer();
+      buf.append(getSheetName(ranges[i].getExternalSheet()));
+      buf.append('!');
+      CellReferenceHelper.getCellReference(ranges[i].getFirstColumn(),
+                                           ranges[i].getFirstRow(),
+                                           buf);
+
+      if (ranges[i].getFirstColumn() != ranges[i].getLastColumn() ||
+          ranges[i].getFirstRow() != ranges[i].getLastRow())
+      {
+        buf.append(':');
+        CellReferenceHelper.getCellReference(ranges[i].getLastColumn(),
+                                             ranges[i].getLastRow(),
+                                             buf);
+      }
+
+      references[i] = buf.toString();
+    }
+
+    return references;
+  }
+
+  /**
+   * Gets the name of the sheet, or sheets, referred to by the external
+   * sheet index, quoted in the same way as a fully parsed workbook
+   *
+   * @param index the external sheet index
+   * @return the sheet name
+   */
+  private String getSheetName(int index)
+  {
+    int firstTab = index;
+    int lastTab = index;
+
+    // For biff7 the sheet references are assumed to be local
+    if (workbookBof.isBiff8() && externSheet != null)
+    {
+      firstTab = externSheet.getFirstTabIndex(index);
+      lastTab = externSheet.getLastTabIndex(index);
+    }
+
+    String sheetName = getTabName(firstTab);
+    if (firstTab != lastTab)
+    {
+      sheetName = sheetName + ':' + getTabName(lastTab);
+    }
+
+    // if the sheet name contains apostrophes then escape them
+    sheetName = sheetName.indexOf('\'') == -1 ? sheetName :
+      StringHelper.replace(sheetName, "\'", "\'\'");
+
+    // if the sheet name contains spaces, then enclose in quotes
+    return sheetName.indexOf(' ') == -1 ? sheetName :
+      '\'' + sheetName + '\'';
+  }
+
+  /**
+   * Gets the name of the sheet at the specified tab index
+   *
+   * @param tab the tab index
+   * @return the sheet name, or #REF if there is no such sheet
+   */
+  private String getTabName(int tab)
+  {
+    if (tab < 0 || tab >= boundsheets.size())
+    {
+      return "#REF";
+    }
+
+    return ((BoundsheetRecord) boundsheets.get(tab)).getName();
+  }
+
+  /**
+   * Gets a string from the summary information
+   *
+   * @param id the property identifier
+   * @return the value, or NULL if it is not present
+   */
+  private String getSummaryString(int id)
+  {
+    return summaryInformation != null ?
+      summaryInformation.getString(id) : null;
+  }
+
+  /**
+   * Gets a string from the document summary information
+   *
+   * @param id the property identifier
+   * @return the value, or NULL if it is not present
+   */
+  private String getDocumentSummaryString(int id)
+  {
+    return documentSummaryInformation != null ?
+      documentSummaryInformation.getString(id) : null;
+  }
+
+  /**
+   * Gets the title from the document summary
+   *
+   * @return the title, or NULL if it is not present
+   */
+  public String getTitle()
+  {
+    return getSummaryString(PropertySet.TITLE);
+  }
+
+  /**
+   * Gets the subject from the document summary
+   *
+   * @return the subject, or NULL if it is not present
+   */
+  public String getSubject()
+  {
+    return getSummaryString(PropertySet.SUBJECT);
+  }
+
+  /**
+   * Gets the author from the document summary
+   *
+   * @return the author, or NULL if it is not present
+   */
+  public String getAuthor()
+  {
+    return getSummaryString(PropertySet.AUTHOR);
+  }
+
+  /**
+   * Gets the keywords from the document summary
+   *
+   * @return the keywords, or NULL if they are not present
+   */
+  public String getKeywords()
+  {
+    return getSummaryString(PropertySet.KEYWORDS);
+  }
+
+  /**
+   * Gets the comments from the document summary
+   *
+   * @return the comments, or NULL if they are not present
+   */
+  public String getComments()
+  {
+    return getSummaryString(PropertySet.COMMENTS);
+  }
+
+  /**
+   * Gets the user who last saved the workbook
+   *
+   * @return the last author, or NULL if it is not present
+   */
+  public String getLastAuthor()
+  {
+    return getSummaryString(PropertySet.LAST_AUTHOR);
+  }
+
+  /**
+   * Gets the name of the application which created the workbook
+   *
+   * @return the application name, or NULL if it is not present
+   */
+  public String getApplicationName()
+  {
+    return getSummaryString(PropertySet.APPLICATION_NAME);
+  }
+
+  /**
+   * Gets the time at which the workbook was created
+   *
+   * @return the creation time, or NULL if it is not present
+   */
+  public Date getCreated()
+  {
+    return summaryInformation != null ?
+      summaryInformation.getDate(PropertySet.CREATED) : null;
+  }
+
+  /**
+   * Gets the time at which the workbook was last saved
+   *
+   * @return the last saved time, or NULL if it is not present
+   */
+  public Date getLastSaved()
+  {
+    return summaryInformation != null ?
+      summaryInformation.getDate(PropertySet.LAST_SAVED) : null;
+  }
+
+  /**
+   * Gets the category from the document summary
+   *
+   * @return the category, or NULL if it is not present
+   */
+  public String getCategory()
+  {
+    return getDocumentSummaryString(PropertySet.CATEGORY);
+  }
+
+  /**
+   * Gets the manager from the document summary
+   *
+   * @return the manager, or NULL if it is not present
+   */
+  public String getManager()
+  {
+    return getDocumentSummaryString(PropertySet.MANAGER);
+  }
+
+  /**
+   * Gets the company from the document summary
+   *
+   * @return the company, or NULL if it is not present
+   */
+  public String getCompany()
+  {
+    return getDocumentSummaryString(PropertySet.COMPANY);
+  }
+}
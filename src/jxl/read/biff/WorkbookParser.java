@@ -22,6 +22,9 @@ package jxl.read.biff;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import jxl.common.Assert;
 import jxl.common.Logger;
@@ -29,6 +32,7 @@ import jxl.common.Logger;
 import jxl.Cell;
 import jxl.Range;
 import jxl.Sheet;
+import jxl.SheetEventHandler;
 import jxl.Workbook;
 import jxl.WorkbookSettings;
 import jxl.biff.BuiltInName;
@@ -99,14 +103,9 @@ public class WorkbookParser extends Workbook
   private ArrayList sheets;
 
   /**
-   * The last sheet accessed
+   * The sheets which have been read in by getSheet
    */
-  private SheetImpl lastSheet;
-
-  /**
-   * The index of the last sheet retrieved
-   */
-  private int lastSheetIndex;
+  private SheetCache sheetCache;
 
   /**
    * The named records found in this workbook
@@ -168,6 +167,13 @@ public class WorkbookParser extends Workbook
    */
   private DrawingGroup drawingGroup;
 
+  /**
+   * The pool used to decode the row blocks of sheets in parallel.  This is
+   * created when it is first needed, and shut down when the workbook is
+   * closed
+   */
+  private ForkJoinPool blockDecodingPool;
+
   /**
    * The country record (containing the language and regional settings)
    * for this workbook
@@ -192,11 +198,11 @@ public class WorkbookParser extends Workbook
     sheets = new ArrayList(10);
     supbooks = new ArrayList(10);
     namedRecords = new HashMap();
-    lastSheetIndex = -1;
     wbProtected = false;
     containsMacros = false;
     settings = s;
     xctRecords = new ArrayList(10);
+    sheetCache = new SheetCache(s);
   }
 
  /**
@@ -233,30 +239,39 @@ public class WorkbookParser extends Workbook
    */
   public Sheet getSheet(int index)
   {
-    // First see if the last sheet index is the same as this sheet index.
-    // If so, then the same sheet is being re-requested, so simply
-    // return it instead of rereading it
-    if ((lastSheet != null) && lastSheetIndex == index)
+    // Only read the sheet if it is not already in memory, then let the
+    // cache clear out any sheets which no longer fit
+    SheetImpl sheet = (SheetImpl) sheets.get(index);
+    if (!sheet.isRead())
     {
-      return lastSheet;
+      sheet.readSheet();
     }
 
-    // Flush out all of the cached data in the last sheet
-    if (lastSheet != null)
-    {
-      lastSheet.clear();
+    sheetCache.touch(sheet);
 
-      if (!settings.getGCDisabled())
-      {
-        System.gc();
-      }
-    }
+    return sheet;
+  }
 
-    lastSheet = (SheetImpl) sheets.get(index);
-    lastSheetIndex = index;
-    lastSheet.readSheet();
+  /**
+   * Pins the specified sheet, so that once it has been read in it is not
+   * cleared out of the sheet cache
+   *
+   * @param index the zero based index of the sheet
+   */
+  public void pinSheet(int index)
+  {
+    sheetCache.pin((SheetImpl) sheets.get(index));
+  }
 
-    return lastSheet;
+  /**
+   * Unpins the specified sheet, so that it may be cleared out of the
+   * sheet cache
+   *
+   * @param index the zero based index of the sheet
+   */
+  public void unpinSheet(int index)
+  {
+    sheetCache.unpin((SheetImpl) sheets.get(index));
   }
 
   /**
@@ -513,11 +528,17 @@ public class WorkbookParser extends Workbook
    */
   public void close()
   {
-    if (lastSheet != null)
+    sheetCache.clear();
+    excelFile.clear();
+
+    synchronized (this)
     {
-      lastSheet.clear();
+      if (blockDecodingPool != null)
+      {
+        blockDecodingPool.shutdown();
+        blockDecodingPool = null;
+      }
     }
-    excelFile.clear();
 
     if (!settings.getGCDisabled())
     {
@@ -525,6 +546,168 @@ public class WorkbookParser extends Workbook
     }
   }
 
+  /**
+   * Reads in the specified sheets, using the executor to read them
+   * concurrently.  Each sheet is read through its own duplicate of the
+   * excel file, so the readers do not share a position in the stream.
+   * Once read, the sheets are pinned in the sheet cache until they are
+   * unpinned or the workbook is closed
+   *
+   * @param indices the zero based indices of the sheets to read
+   * @param executor the executor on which to read the sheets
+   * @return the sheets, in the same order as the indices
+   */
+  public Sheet[] loadSheets(int[] indices, Executor executor)
+  {
+    Sheet[] loaded = new Sheet[indices.length];
+    ArrayList toRead = new ArrayList(indices.length);
+    boolean[] scheduled = new boolean[sheets.size()];
+
+    for (int i = 0; i < indices.length; i++)
+    {
+      loaded[i] = (Sheet) sheets.get(indices[i]);
+
+      // Only read each sheet once, even if it is requested more than once
+      if (!scheduled[indices[i]])
+      {
+        scheduled[indices[i]] = true;
+        toRead.add(loaded[i]);
+      }
+    }
+
+    CountDownLatch done = new CountDownLatch(toRead.size());
+    SheetLoader[] loaders = new SheetLoader[toRead.size()];
+    for (int i = 0; i < loaders.length; i++)
+    {
+      loaders[i] = new SheetLoader((SheetImpl) toRead.get(i), done);
+      executor.execute(loaders[i]);
+    }
+
+    // Wait for all the sheets, even if this thread is interrupted, as
+    // the sheets are not usable until they have been read
+    boolean interrupted = false;
+    while (done.getCount() > 0)
+    {
+      try
+      {
+        done.await();
+      }
+      catch (InterruptedException e)
+      {
+        interrupted = true;
+      }
+    }
+
+    if (interrupted)
+    {
+      Thread.currentThread().interrupt();
+    }
+
+    for (int i = 0; i < loaders.length; i++)
+    {
+      loaders[i].rethrow();
+    }
+
+    // Pin all the sheets before adding any of them to the cache, so that
+    // they can't clear each other out
+    for (int i = 0; i < toRead.size(); i++)
+    {
+      sheetCache.pin((SheetImpl) toRead.get(i));
+    }
+
+    for (int i = 0; i < toRead.size(); i++)
+    {
+      sheetCache.touch((SheetImpl) toRead.get(i));
+    }
+
+    return loaded;
+  }
+
+  /**
+   * Reads each of the sheets in turn, passing their cells on to the
+   * handler rather than keeping them
+   *
+   * @param handler the handler which receives the cells
+   */
+  protected void process(SheetEventHandler handler)
+  {
+    for (int i = 0; i < sheets.size(); i++)
+    {
+      SheetImpl sheet = (SheetImpl) sheets.get(i);
+      handler.startSheet(i, sheet.getName());
+      sheet.process(handler);
+      handler.endSheet(i);
+    }
+  }
+
+  /**
+   * Reads in a single sheet on behalf of loadSheets
+   */
+  private static class SheetLoader implements Runnable
+  {
+    /**
+     * The sheet to read
+     */
+    private SheetImpl sheet;
+
+    /**
+     * The latch counted down once the sheet has been read
+     */
+    private CountDownLatch done;
+
+    /**
+     * Any exception or error thrown whilst reading the sheet
+     */
+    private Throwable failure;
+
+    /**
+     * Constructor
+     *
+     * @param s the sheet to read
+     * @param d the latch to count down once the sheet has been read
+     */
+    SheetLoader(SheetImpl s, CountDownLatch d)
+    {
+      sheet = s;
+      done = d;
+    }
+
+    /**
+     * Reads the sheet
+     */
+    public void run()
+    {
+      try
+      {
+        sheet.readSheet();
+      }
+      catch (Throwable t)
+      {
+        failure = t;
+      }
+      finally
+      {
+        done.countDown();
+      }
+    }
+
+    /**
+     * Rethrows any exception or error which occurred whilst reading
+     * the sheet
+     */
+    void rethrow()
+    {
+      if (failure instanceof RuntimeException)
+      {
+        throw (RuntimeException) failure;
+      }
+      else if (failure instanceof Error)
+      {
+        throw (Error) failure;
+      }
+    }
+  }
+
   /**
    * Adds the sheet to the end of the array
    *
@@ -582,7 +765,14 @@ public class WorkbookParser extends Workbook
         Record[] records = new Record[continueRecords.size()];
         records = (Record[]) continueRecords.toArray(records);
 
-        sharedStrings = new SSTRecord(r, records, settings);
+        // The EXTSST record gives the positions of the strings in the table
+        Record extsst = nextrec.getType() == Type.EXTSST ? nextrec : null;
+
+        ForkJoinPool pool = settings.getCompactSharedStrings() &&
+          settings.getParallelSharedStringDecoding() ?
+          getBlockDecodingPool() : null;
+
+        sharedStrings = new SSTRecord(r, records, extsst, settings, pool);
       }
       else if (r.getType() == Type.FILEPASS)
       {
@@ -828,8 +1018,11 @@ public class WorkbookParser extends Workbook
       }
     }
 
+    // Go straight to each sheet using the offsets in the boundsheet
+    // records.  The sheets are only walked through record by record if
+    // these offsets cannot be relied upon
     bof = null;
-    if (excelFile.hasNext())
+    if (!readSheetsFromOffsets() && excelFile.hasNext())
     {
       r = excelFile.next();
 
@@ -929,6 +1122,73 @@ public class WorkbookParser extends Workbook
     }
   }
 
+  /**
+   * Creates the sheets from the stream offsets held in the boundsheet
+   * records, without reading any of the sheets' records.  The offsets are
+   * only used if every one of them lies beyond the workbook globals and
+   * points at the BOF of a worksheet or chart.  Otherwise nothing is
+   * created and the file position is left unchanged, so that the caller
+   * can fall back to walking through the sheets
+   *
+   * @return TRUE if the sheets were created, FALSE otherwise
+   * @exception BiffException
+   */
+  private boolean readSheetsFromOffsets() throws BiffException
+  {
+    int globalsEnd = excelFile.getPos();
+    BOFRecord[] bofs = new BOFRecord[boundsheets.size()];
+    int[] positions = new int[bofs.length];
+    boolean valid = true;
+
+    for (int i = 0; i < bofs.length && valid; i++)
+    {
+      BoundsheetRecord br = (BoundsheetRecord) boundsheets.get(i);
+      excelFile.setPos(br.getOffset());
+
+      valid = br.getOffset() >= globalsEnd && excelFile.hasNext();
+
+      if (valid)
+      {
+        Record r = excelFile.next();
+        valid = r.getType() == Type.BOF;
+
+        if (valid)
+        {
+          bofs[i] = new BOFRecord(r);
+          positions[i] = excelFile.getPos();
+          valid = (bofs[i].isBiff8() || bofs[i].isBiff7()) &&
+                  (bofs[i].isWorksheet() || bofs[i].isChart());
+        }
+      }
+    }
+
+    excelFile.setPos(globalsEnd);
+
+    if (!valid)
+    {
+      logger.warn("Sheet offsets are inconsistent - reading all sheets");
+      return false;
+    }
+
+    for (int i = 0; i < bofs.length; i++)
+    {
+      BoundsheetRecord br = (BoundsheetRecord) boundsheets.get(i);
+      SheetImpl s = new SheetImpl(excelFile,
+                                  sharedStrings,
+                                  formattingRecords,
+                                  bofs[i],
+                                  workbookBof,
+                                  nineteenFour,
+                                  this,
+                                  positions[i]);
+      s.setName(br.getName());
+      s.setHidden(br.isHidden());
+      addSheet(s);
+    }
+
+    return true;
+  }
+
   /**
    * Accessor for the formattingRecords, used by the WritableWorkbook
    * when creating a copy of this
@@ -1197,6 +1457,23 @@ public class WorkbookParser extends Workbook
     return drawingGroup;
   }
 
+  /**
+   * Gets the pool on which the row blocks of sheets and the shared
+   * strings are decoded in parallel, creating it if necessary
+   *
+   * @return the block decoding pool
+   */
+  synchronized ForkJoinPool getBlockDecodingPool()
+  {
+    if (blockDecodingPool == null)
+    {
+      blockDecodingPool =
+        new ForkJoinPool(settings.getBlockDecodingParallelism());
+    }
+
+    return blockDecodingPool;
+  }
+
   /**
    * Accessor for the CompoundFile.  For this feature to return non-null
    * value, the propertySets feature in WorkbookSettings must be enabled
@@ -19,6 +19,8 @@
 
 package jxl.write;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Date;
 
 import jxl.DateCell;
@@ -118,6 +120,63 @@ public class DateTime extends DateRecord implements WritableCell, DateCell
     super(c, r, d, st, tim);
   }
 
+  /**
+   * Constructor which takes a java.time date and time.  The cell shows the
+   * date and time exactly as given, with no time zone adjustment, using
+   * the default date format
+   *
+   * @param c the column
+   * @param r the row
+   * @param d the date and time
+   */
+  public DateTime(int c, int r, LocalDateTime d)
+  {
+    super(c, r, d);
+  }
+
+  /**
+   * Constructor which takes a java.time date and time and the format for
+   * this cell.  No time zone adjustment is made
+   *
+   * @param c the column
+   * @param r the row
+   * @param d the date and time
+   * @param st the format
+   */
+  public DateTime(int c, int r, LocalDateTime d, CellFormat st)
+  {
+    super(c, r, d, st, false);
+  }
+
+  /**
+   * Constructor which takes a java.time date and time, the format for the
+   * cell and an indicator as to whether this cell is purely a time.
+   * No time zone adjustment is made
+   *
+   * @param c the column
+   * @param r the row
+   * @param d the date and time
+   * @param st the style
+   * @param tim flag indicating that this represents a time
+   */
+  public DateTime(int c, int r, LocalDateTime d, CellFormat st, boolean tim)
+  {
+    super(c, r, d, st, tim);
+  }
+
+  /**
+   * Constructor which takes a java.time date and the format for this cell
+   *
+   * @param c the column
+   * @param r the row
+   * @param d the date
+   * @param st the format
+   */
+  public DateTime(int c, int r, LocalDate d, CellFormat st)
+  {
+    super(c, r, d, st);
+  }
+
   /**
    * A constructor called by the worksheet when creating a writable version
    * of a spreadsheet that has been read in
@@ -163,6 +222,17 @@ public class DateTime extends DateRecord implements WritableCell, DateCell
     super.setDate(d, a);
   }
 
+  /**
+   * Sets the date for this cell from a java.time date and time.  No
+   * timezone adjustment is made
+   *
+   * @param d the date and time
+   */
+  public void setDate(LocalDateTime d)
+  {
+    super.setDate(d);
+  }
+
   /**
    * Implementation of the deep copy function
    *
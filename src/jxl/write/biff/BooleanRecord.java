@@ -131,6 +131,7 @@ public abstract class BooleanRecord extends CellValue
   protected void setValue(boolean val)
   {
     value = val;
+    contentsChanged();
   }
 
   /**
@@ -201,6 +201,20 @@ public abstract class CellValue extends WritableRecordData
     Assert.verify(formattingRecords != null);
 
     addCellFormat();
+    contentsChanged();
+  }
+
+  /**
+   * Called by subclasses when the value of this cell is modified.  If the
+   * cell has been added to a sheet, the sheet is notified so that it can
+   * keep its content index up to date
+   */
+  protected final void contentsChanged()
+  {
+    if (referenced)
+    {
+      sheet.cellContentsChanged(this);
+    }
   }
 
   /**
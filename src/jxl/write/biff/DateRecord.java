@@ -20,13 +20,16 @@
 package jxl.write.biff;
 
 import java.text.DateFormat;
-import java.util.Calendar;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Date;
+import java.util.TimeZone;
 
 import jxl.common.Logger;
 
 import jxl.CellType;
 import jxl.DateCell;
+import jxl.biff.DateHelper;
 import jxl.biff.DoubleHelper;
 import jxl.biff.Type;
 import jxl.format.CellFormat;
@@ -57,17 +60,6 @@ public abstract class DateRecord extends CellValue
    */
   private boolean time;
 
-  // The number of days between 01 Jan 1900 and 01 Jan 1970 - this gives
-  // the UTC offset
-  /**
-   */
-  private final static int utcOffsetDays = 25569;
-
-  // The number of milliseconds in  a day
-  /**
-   */
-  private final static long msInADay = 24 * 60 * 60 * 1000;
-
   /**
    * This is package protected so that the worksheet might detect
    * whether or not to override it with the column cell format
@@ -75,14 +67,6 @@ public abstract class DateRecord extends CellValue
   static final WritableCellFormat defaultDateFormat = 
     new WritableCellFormat(DateFormats.DEFAULT);
 
-  // The number of days between 1 Jan 1900 and 1 March 1900. Excel thinks
-  // the day before this was 29th Feb 1900, but it was 28th Feb 19000.
-  // I guess the programmers thought nobody would notice that they
-  // couldn't be bothered to program this dating anomaly properly
-  /**
-   */
-  private final static int nonLeapDay = 61;
-
   /**
    * Class definition for a dummy variable
    */
@@ -164,6 +148,51 @@ public abstract class DateRecord extends CellValue
     calculateValue(false);
   }
 
+  /**
+   * Constructor invoked from the user API with a java.time date and time.
+   * No time zone adjustment is made
+   *
+   * @param c the column
+   * @param r the row
+   * @param d the date and time
+   */
+  protected DateRecord(int c, int r, LocalDateTime d)
+  {
+    this(c, r, d, defaultDateFormat, false);
+  }
+
+  /**
+   * Constructor invoked from the user API with a java.time date and time.
+   * No time zone adjustment is made
+   *
+   * @param c the column
+   * @param r the row
+   * @param d the date and time
+   * @param st the format for the date
+   * @param tim time indicator
+   */
+  protected DateRecord(int c, int r, LocalDateTime d, CellFormat st,
+                       boolean tim)
+  {
+    super(Type.NUMBER, c, r, st);
+    date = new Date(DateHelper.getEpochMillis(d));
+    time = tim;
+    calculateValue(false);
+  }
+
+  /**
+   * Constructor invoked from the user API with a java.time date
+   *
+   * @param c the column
+   * @param r the row
+   * @param d the date
+   * @param st the format for the date
+   */
+  protected DateRecord(int c, int r, LocalDate d, CellFormat st)
+  {
+    this(c, r, d.atStartOfDay(), st, false);
+  }
+
   /**
    * Constructor invoked when copying a readable spreadsheet
    * 
@@ -201,45 +230,17 @@ public abstract class DateRecord extends CellValue
    */
   private void calculateValue(boolean adjust)
   {
-    // Offsets for current time zone
+    // Offset for the current time zone, including daylight saving
     long zoneOffset = 0;
-    long dstOffset = 0;
 
     // Get the timezone and dst offsets if we want to take these into
     // account
     if (adjust)
     {
-      // Get the current calender, replete with timezone information
-      Calendar cal = Calendar.getInstance();
-      cal.setTime(date);
-
-      zoneOffset = cal.get(Calendar.ZONE_OFFSET);
-      dstOffset = cal.get(Calendar.DST_OFFSET);
+      zoneOffset = TimeZone.getDefault().getOffset(date.getTime());
     }
 
-    long utcValue = date.getTime() + zoneOffset + dstOffset;
-
-    // Convert this to the number of days, plus fractions of a day since
-    // 01 Jan 1970
-    double utcDays = (double) utcValue / (double) msInADay;
-
-    // Add in the offset to get the number of days since 01 Jan 1900
-    value = utcDays + utcOffsetDays;
-
-    // Work round a bug in excel.  Excel seems to think there is a date 
-    // called the 29th Feb, 1900 - but this was not a leap year.  
-    // Therefore for values less than 61, we must subtract 1.  Only do
-    // this for full dates, not times
-    if (!time && value < nonLeapDay)
-    {
-      value -= 1;
-    }
-
-    // If this refers to a time, then get rid of the integer part
-    if (time)
-    {
-      value = value - (int) value;
-    }
+    value = DateHelper.getSerial(date.getTime() + zoneOffset, time, false);
   }
 
   /**
@@ -288,6 +289,7 @@ public abstract class DateRecord extends CellValue
   {
     date = d;
     calculateValue(true);
+    contentsChanged();
   }
 
   /**
@@ -300,6 +302,7 @@ public abstract class DateRecord extends CellValue
   {
     date = d;
     calculateValue(false);
+    contentsChanged();
   }
 
 
@@ -313,6 +316,40 @@ public abstract class DateRecord extends CellValue
     return date;
   }
 
+  /**
+   * Sets the date in this cell from a java.time date and time.  No time
+   * zone adjustment is made
+   *
+   * @param d the date and time
+   */
+  protected void setDate(LocalDateTime d)
+  {
+    date = new Date(DateHelper.getEpochMillis(d));
+    calculateValue(false);
+    contentsChanged();
+  }
+
+  /**
+   * Gets the date contained in this cell as the number of milliseconds
+   * since 01 Jan 1970 UTC
+   *
+   * @return the date in milliseconds
+   */
+  public long getEpochMillis()
+  {
+    return date.getTime();
+  }
+
+  /**
+   * Gets the date and time which Excel will show for this cell
+   *
+   * @return the date and time
+   */
+  public LocalDateTime getLocalDateTime()
+  {
+    return DateHelper.getLocalDateTime(value, false);
+  }
+
   /**
    * Indicates whether the date value contained in this cell refers to a date,
    * or merely a time.  When writing a cell, all dates are fully defined,
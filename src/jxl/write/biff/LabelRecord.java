@@ -182,6 +182,7 @@ public abstract class LabelRecord extends CellValue
     }
 
     contents = s;
+    contentsChanged();
 
     // Don't bother doing anything if this cell has not been referenced
     // yet - everything will be set up in due course
@@ -25,6 +25,7 @@ import java.text.NumberFormat;
 import jxl.CellType;
 import jxl.NumberCell;
 import jxl.biff.DoubleHelper;
+import jxl.biff.ExcelNumberFormat;
 import jxl.biff.Type;
 import jxl.biff.XFRecord;
 import jxl.format.CellFormat;
@@ -45,6 +46,12 @@ public abstract class NumberRecord extends CellValue
    */
   private NumberFormat format;
 
+  /**
+   * The compiled equivalent of the number format, or NULL if the java
+   * format is to be used
+   */
+  private ExcelNumberFormat excelFormat;
+
   /**
    * The formatter to convert the value into a string
    */
@@ -138,13 +145,17 @@ public abstract class NumberRecord extends CellValue
   {
     if (format == null)
     {
-      format = ( (XFRecord) getCellFormat()).getNumberFormat();
+      XFRecord xf = (XFRecord) getCellFormat();
+      format = xf.getNumberFormat();
+      excelFormat = xf.getExcelNumberFormat();
       if (format == null)
       {
         format = defaultFormat;
+        excelFormat = ExcelNumberFormat.getDefaultFormat();
       }
     }
-    return format.format(value);
+    return excelFormat != null ?
+      excelFormat.format(value) : format.format(value);
   }
 
   /**
@@ -165,6 +176,7 @@ public abstract class NumberRecord extends CellValue
   public void setValue(double val)
   {
     value = val;
+    contentsChanged();
   }
 
   /**
@@ -20,6 +20,7 @@
 package jxl.write.biff;
 
 import java.text.DateFormat;
+import java.time.LocalDateTime;
 import java.util.Date;
 
 import jxl.DateFormulaCell;
@@ -51,6 +52,26 @@ class ReadDateFormulaRecord extends ReadFormulaRecord
     return ( (DateFormulaCell) getReadFormula()).getDate();
   }
 
+  /**
+   * Gets the date as the number of milliseconds since 01 Jan 1970 UTC
+   *
+   * @return the date in milliseconds
+   */
+  public long getEpochMillis()
+  {
+    return ( (DateFormulaCell) getReadFormula()).getEpochMillis();
+  }
+
+  /**
+   * Gets the date and time, as shown by Excel
+   *
+   * @return the date and time
+   */
+  public LocalDateTime getLocalDateTime()
+  {
+    return ( (DateFormulaCell) getReadFormula()).getLocalDateTime();
+  }
+
   /**
    * Indicates whether the date value contained in this cell refers to a date,
    * or merely a time
@@ -31,14 +31,17 @@ import jxl.common.Logger;
 
 import jxl.BooleanCell;
 import jxl.Cell;
+import jxl.CellRegion;
 import jxl.CellFeatures;
 import jxl.CellReferenceHelper;
 import jxl.CellType;
 import jxl.CellView;
+import jxl.ContentIndex;
 import jxl.DateCell;
 import jxl.HeaderFooter;
 import jxl.Hyperlink;
 import jxl.Image;
+import jxl.IndexOptions;
 import jxl.LabelCell;
 import jxl.NumberCell;
 import jxl.Range;
@@ -47,6 +50,7 @@ import jxl.SheetSettings;
 import jxl.WorkbookSettings;
 import jxl.biff.AutoFilter;
 import jxl.biff.BuiltInName;
+import jxl.biff.CellContentIndex;
 import jxl.biff.CellFinder;
 import jxl.biff.ConditionalFormat;
 import jxl.biff.DataValidation;
@@ -57,6 +61,7 @@ import jxl.biff.FormulaData;
 import jxl.biff.IndexMapping;
 import jxl.biff.NumFormatRecordsException;
 import jxl.biff.SheetRangeImpl;
+import jxl.biff.SheetSnapshot;
 import jxl.biff.WorkspaceInformationRecord;
 import jxl.biff.XFRecord;
 import jxl.biff.drawing.Chart;
@@ -242,6 +247,11 @@ class WritableSheetImpl implements WritableSheet
    */
   private WritableWorkbookImpl workbook;
 
+  /**
+   * The index of the cell contents, or NULL if none has been built
+   */
+  private CellContentIndex contentIndex;
+
   /**
    * The amount by which to grow the rows array
    */
@@ -451,7 +461,7 @@ class WritableSheetImpl implements WritableSheet
    */
   public Cell findCell(String contents)
   {
-    CellFinder cellFinder = new CellFinder(this);
+    CellFinder cellFinder = new CellFinder(this, contentIndex);
     return cellFinder.findCell(contents);
   }
 
@@ -476,7 +486,7 @@ class WritableSheetImpl implements WritableSheet
                        int lastRow, 
                        boolean reverse)
   {
-    CellFinder cellFinder = new CellFinder(this);
+    CellFinder cellFinder = new CellFinder(this, contentIndex);
     return cellFinder.findCell(contents,
                                firstCol, 
                                firstRow, 
@@ -506,7 +516,7 @@ class WritableSheetImpl implements WritableSheet
                        int lastRow, 
                        boolean reverse)
   {
-    CellFinder cellFinder = new CellFinder(this);
+    CellFinder cellFinder = new CellFinder(this, contentIndex);
     return cellFinder.findCell(pattern,
                                firstCol, 
                                firstRow, 
@@ -529,10 +539,47 @@ class WritableSheetImpl implements WritableSheet
    */
   public LabelCell findLabelCell(String contents)
   {
-    CellFinder cellFinder = new CellFinder(this);
+    CellFinder cellFinder = new CellFinder(this, contentIndex);
     return cellFinder.findLabelCell(contents);
   }
 
+  /**
+   * Builds an index of the contents of the cells on this sheet, which is
+   * then used by findCell and findLabelCell.  The index is kept up to
+   * date as cells are added, removed and modified
+   *
+   * @param options the index options, or NULL for the defaults
+   * @return the index
+   */
+  public ContentIndex buildContentIndex(IndexOptions options)
+  {
+    contentIndex = new CellContentIndex(this, options);
+    return contentIndex;
+  }
+
+  /**
+   * Discards the content index of this sheet
+   */
+  public void removeContentIndex()
+  {
+    contentIndex = null;
+  }
+
+  /**
+   * Called when the contents or format of a cell which has been added to
+   * this sheet are modified, in order to keep the content index up to date
+   *
+   * @param cell the modified cell
+   */
+  void cellContentsChanged(CellValue cell)
+  {
+    if (contentIndex != null &&
+        getStoredCell(cell.getColumn(), cell.getRow()) == cell)
+    {
+      contentIndex.update(cell.getColumn(), cell.getRow());
+    }
+  }
+
   /**
    * Gets all the cells on the specified row
    * 
@@ -566,6 +613,27 @@ class WritableSheetImpl implements WritableSheet
     return cells;
   }
 
+  /**
+   * Gets the cells on the rows from firstRow up to, but not including,
+   * lastRow
+   *
+   * @param firstRow the first row to get
+   * @param lastRow the row after the last row to get
+   * @return the cells on the rows, indexed on the row relative to firstRow
+   */
+  public Cell[][] getRowWindow(int firstRow, int lastRow)
+  {
+    Cell[][] window = new Cell[lastRow - firstRow][];
+
+    for (int i = 0; i < window.length; i++)
+    {
+      int row = firstRow + i;
+      window[i] = row < numRows ? getRow(row) : new Cell[0];
+    }
+
+    return window;
+  }
+
   /**
    * Gets all the cells on the specified column
    * 
@@ -600,6 +668,187 @@ class WritableSheetImpl implements WritableSheet
     return cells;
   }
 
+  /**
+   * Gets a view of the cells on the specified row, up to the last cell
+   * held on that row.  The cells are not copied
+   *
+   * @param row the row
+   * @return a view of the row
+   */
+  public CellRegion rowView(int row)
+  {
+    return new WritableSheetRegion(this, 0, row, getColumnLimit(row), 1);
+  }
+
+  /**
+   * Gets a view of the cells on the specified column, up to the last cell
+   * held on that column.  The cells are not copied
+   *
+   * @param col the column
+   * @return a view of the column
+   */
+  public CellRegion columnView(int col)
+  {
+    int row = Math.min(numRows, rows.length) - 1;
+    while (row >= 0 && getStoredCell(col, row) == null)
+    {
+      row--;
+    }
+
+    return new WritableSheetRegion(this, col, 0, 1, row + 1);
+  }
+
+  /**
+   * Gets a view of the cells in the specified range.  The cells are not
+   * copied
+   *
+   * @param col1 the first column of the range
+   * @param row1 the first row of the range
+   * @param col2 the last column of the range
+   * @param row2 the last row of the range
+   * @return a view of the range
+   */
+  public CellRegion range(int col1, int row1, int col2, int row2)
+  {
+    return new WritableSheetRegion(this, col1, row1,
+                                   col2 - col1 + 1, row2 - row1 + 1);
+  }
+
+  /**
+   * Takes an immutable copy of this sheet
+   *
+   * @return an immutable copy of this sheet
+   */
+  public Sheet snapshot()
+  {
+    return new SheetSnapshot(this);
+  }
+
+  /**
+   * Reads the numbers in the specified rows of a column into the array
+   * passed in
+   *
+   * @param col the column
+   * @param firstRow the first row to read
+   * @param lastRow the last row to read
+   * @param values the array to receive the values
+   * @param present if not NULL, receives TRUE for each row which contains
+   *        a number and FALSE otherwise
+   * @return the number of rows which contain a number
+   */
+  public int readDoubles(int col, int firstRow, int lastRow,
+                         double[] values, boolean[] present)
+  {
+    int count = 0;
+    for (int row = firstRow, i = 0; row <= lastRow; row++, i++)
+    {
+      Cell c = getStoredCell(col, row);
+      boolean number = c instanceof NumberCell;
+      values[i] = number ? ((NumberCell) c).getValue() : Double.NaN;
+      if (present != null)
+      {
+        present[i] = number;
+      }
+      if (number)
+      {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Reads the contents of the specified rows of a column into the array
+   * passed in
+   *
+   * @param col the column
+   * @param firstRow the first row to read
+   * @param lastRow the last row to read
+   * @param values the array to receive the contents
+   * @return the number of rows for which the sheet holds a cell
+   */
+  public int readStrings(int col, int firstRow, int lastRow, String[] values)
+  {
+    int count = 0;
+    for (int row = firstRow, i = 0; row <= lastRow; row++, i++)
+    {
+      Cell c = getStoredCell(col, row);
+      values[i] = c != null ? c.getContents() : null;
+      if (c != null)
+      {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Reads the types of the cells in the specified rows of a column into
+   * the array passed in
+   *
+   * @param col the column
+   * @param firstRow the first row to read
+   * @param lastRow the last row to read
+   * @param types the array to receive the cell types
+   * @return the number of rows which are not empty
+   */
+  public int readCellTypes(int col, int firstRow, int lastRow,
+                           CellType[] types)
+  {
+    int count = 0;
+    for (int row = firstRow, i = 0; row <= lastRow; row++, i++)
+    {
+      Cell c = getStoredCell(col, row);
+      types[i] = c != null ? c.getType() : CellType.EMPTY;
+      if (types[i] != CellType.EMPTY)
+      {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Gets the cell which is held at the specified position, without
+   * creating an empty cell if there is none.  Used by the regions of this
+   * sheet
+   *
+   * @param column the column
+   * @param row the row
+   * @return the cell, or NULL if there is none
+   */
+  WritableCell getStoredCell(int column, int row)
+  {
+    if (row < 0 || row >= rows.length || rows[row] == null)
+    {
+      return null;
+    }
+
+    return rows[row].getCell(column);
+  }
+
+  /**
+   * Gets the column after the last cell held on the specified row
+   *
+   * @param row the row
+   * @return the column after the last cell, or zero if the row is empty
+   */
+  int getColumnLimit(int row)
+  {
+    if (row < 0 || row >= rows.length || rows[row] == null)
+    {
+      return 0;
+    }
+
+    int col = rows[row].getMaxColumn() - 1;
+    while (col >= 0 && rows[row].getCell(col) == null)
+    {
+      col--;
+    }
+
+    return col + 1;
+  }
+
   /**
    * Gets the name of this sheet
    * 
@@ -623,6 +872,11 @@ class WritableSheetImpl implements WritableSheet
       return;
     }
 
+    if (contentIndex != null)
+    {
+      contentIndex.invalidate();
+    }
+
     // Create a new array to hold the new rows.  Grow it if need be
     RowRecord[] oldRows = rows;
 
@@ -728,6 +982,11 @@ class WritableSheetImpl implements WritableSheet
       return;
     }
 
+    if (contentIndex != null)
+    {
+      contentIndex.invalidate();
+    }
+
     // Iterate through all the row records adding in the column
     for (int i = 0 ; i < numRows ; i++)
     {
@@ -845,6 +1104,11 @@ class WritableSheetImpl implements WritableSheet
       return;
     }
 
+    if (contentIndex != null)
+    {
+      contentIndex.invalidate();
+    }
+
     // Iterate through all the row records removing the column
     for (int i = 0 ; i < numRows ; i++)
     {
@@ -999,6 +1263,11 @@ class WritableSheetImpl implements WritableSheet
       return;
     }
 
+    if (contentIndex != null)
+    {
+      contentIndex.invalidate();
+    }
+
     // Create a new array to hold the new rows.  Grow it if need be
     RowRecord[] oldRows = rows;
 
@@ -1197,6 +1466,11 @@ class WritableSheetImpl implements WritableSheet
     // Indicate this cell is now part of a worksheet, so that it can't be
     // added anywhere else
     cv.setCellDetails(formatRecords, sharedStrings, this);
+
+    if (contentIndex != null)
+    {
+      contentIndex.update(cv.getColumn(), row);
+    }
   }
 
   /** 
@@ -1742,6 +2016,11 @@ class WritableSheetImpl implements WritableSheet
       // information - to be empty
       Assert.verify(rows.length > h.getRow() && rows[h.getRow()] != null);
       rows[h.getRow()].removeCell(h.getColumn());
+
+      if (contentIndex != null)
+      {
+        contentIndex.update(h.getColumn(), h.getRow());
+      }
     }
   }
 
@@ -1818,6 +2097,11 @@ class WritableSheetImpl implements WritableSheet
           if (rows.length < h.getLastColumn() && rows[i] != null)
           {
             rows[i].removeCell(j);
+
+            if (contentIndex != null)
+            {
+              contentIndex.update(j, i);
+            }
           }
         }
       }